@@ -115,14 +115,47 @@ CREATE TABLE IF NOT EXISTS reviews (
     created_at      TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Marcas de leitura do chat (última mensagem lida por usuário e projeto)
+CREATE TABLE IF NOT EXISTS chat_read_markers (
+    id                   BIGSERIAL PRIMARY KEY,
+    user_id              BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    project_id           BIGINT NOT NULL REFERENCES projects(id) ON DELETE CASCADE,
+    last_read_message_id BIGINT NOT NULL,
+    updated_at           TIMESTAMP,
+    CONSTRAINT uk_chat_read_markers_user_project UNIQUE (user_id, project_id)
+);
+
+-- Sessões TCP compartilhadas entre os nós (session.store=database); instantes em epoch ms
+CREATE TABLE IF NOT EXISTS tcp_sessions (
+    session_id    VARCHAR(36) PRIMARY KEY,
+    user_id       BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    created_at    BIGINT NOT NULL,
+    last_activity BIGINT NOT NULL
+);
+
+-- Tokens de sessão TCP revogados no LOGOUT (session.mode=stateless), até expirarem; instantes em epoch ms
+CREATE TABLE IF NOT EXISTS tcp_revoked_tokens (
+    token_id   BIGINT PRIMARY KEY,
+    expires_at BIGINT NOT NULL,
+    revoked_at BIGINT NOT NULL
+);
+
 -- Indexes for performance
 CREATE INDEX IF NOT EXISTS idx_projects_user ON projects(user_id);
 CREATE INDEX IF NOT EXISTS idx_projects_consultant ON projects(consultant_id);
-CREATE INDEX IF NOT EXISTS idx_chat_project ON chat_messages(project_id);
+-- (project_id, id): histórico paginado por id; também atende filtros só por project_id
+DROP INDEX IF EXISTS idx_chat_project;
+CREATE INDEX IF NOT EXISTS idx_chat_messages_project_id_id ON chat_messages(project_id, id);
 CREATE INDEX IF NOT EXISTS idx_chat_sender ON chat_messages(sender_id);
+-- Busca textual do chat (CHAT SEARCH); a consulta usa a mesma expressão
+CREATE INDEX IF NOT EXISTS idx_chat_messages_content_fts ON chat_messages USING GIN (to_tsvector('portuguese', content));
 CREATE INDEX IF NOT EXISTS idx_status_history_project ON status_history(project_id);
 CREATE INDEX IF NOT EXISTS idx_roadmaps_project ON roadmaps(project_id);
 CREATE INDEX IF NOT EXISTS idx_roadmaps_created_by ON roadmaps(created_by_id);
+-- Expiração das sessões TCP por inatividade
+CREATE INDEX IF NOT EXISTS idx_tcp_sessions_last_activity ON tcp_sessions(last_activity);
+-- Revogações novas lidas periodicamente por cada nó
+CREATE INDEX IF NOT EXISTS idx_tcp_revoked_tokens_revoked_at ON tcp_revoked_tokens(revoked_at);
 
 -- Trigger to update updated_at (generic example for projects)
 CREATE OR REPLACE FUNCTION set_updated_at() RETURNS TRIGGER AS $$
@@ -0,0 +1,173 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.benchmark;
+
+import com.consultoria.app.model.ChatMessage;
+import com.consultoria.app.model.Project;
+import com.consultoria.app.model.User;
+import com.consultoria.app.service.ChatIngestService;
+import com.consultoria.app.tcp.metrics.LatencyHistogram;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.google.gson.JsonObject;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * CHAT SEND com banco simulado (ida e volta de DB_RTT_MS, custo por linha
+ * gravada e pool de conexões do tamanho padrão do Hikari): o caminho
+ * anterior (findById do projeto, findById do usuário e save de uma linha
+ * por envio) contra o write-behind do ChatIngestService (confirmação pelo
+ * log local em disco, INSERTs de várias linhas em segundo plano).
+ *
+ * Execução: mvn -Pbenchmark test-compile exec:java
+ *     -Dbenchmark.class=com.consultoria.app.benchmark.ChatIngestBenchmark
+ */
+public class ChatIngestBenchmark {
+
+    private static final int WORKERS = 20;
+    private static final int DB_POOL = 10;
+    private static final long DB_RTT_MS = 1;
+    private static final long DB_ROW_NANOS = 20_000;
+    private static final int PROJECTS = 4;
+    private static final long WARMUP_MS = 2000;
+    private static final long MEASURE_MS = 5000;
+
+    private static final Semaphore pool = new Semaphore(DB_POOL);
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final LongAdder roundTrips = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d workers, pool de %d conexões, ida e volta %dms + %dus por linha, %d projetos%n",
+                WORKERS, DB_POOL, DB_RTT_MS, DB_ROW_NANOS / 1000, PROJECTS);
+        run("save por envio", null);
+
+        Path logDir = Files.createTempDirectory("chat-ingest-bench");
+        ChatIngestService ingest = new ChatIngestService();
+        ReflectionTestUtils.setField(ingest, "logDir", logDir.toString());
+        ReflectionTestUtils.setField(ingest, "segmentBytes", 16L << 20);
+        ReflectionTestUtils.setField(ingest, "batchSize", 200);
+        ReflectionTestUtils.setField(ingest, "flushIntervalMs", 100L);
+        ReflectionTestUtils.setField(ingest, "maxPending", 50000);
+        ReflectionTestUtils.setField(ingest, "idBlockSize", 64);
+        ReflectionTestUtils.setField(ingest, "jdbcTemplate", new SimulatedDatabase());
+        ReflectionTestUtils.setField(ingest, "metrics", new MetricsRegistry());
+        ingest.start();
+        run("write-behind (log local + lotes)", ingest);
+        ingest.stop();
+    }
+
+    private static void run(String label, ChatIngestService ingest) throws Exception {
+        Load load = new Load();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            final long projectId = i % PROJECTS;
+            Thread worker = new Thread(() -> {
+                while (load.running) {
+                    long start = System.nanoTime();
+                    if (ingest == null) {
+                        roundTrip(0); // projectRepository.findById
+                        roundTrip(0); // userRepository.findById
+                        roundTrip(1); // chatMessageRepository.save
+                        sequence.incrementAndGet();
+                    } else {
+                        ingest.submit(message(projectId)).join();
+                    }
+                    load.latency.recordNanos(System.nanoTime() - start);
+                    load.sent.increment();
+                }
+            }, "Bench-Chat-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+
+        Thread.sleep(WARMUP_MS);
+        load.reset();
+        long trips = roundTrips.sum();
+        long start = System.nanoTime();
+        Thread.sleep(MEASURE_MS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long sent = load.sent.sum();
+        trips = roundTrips.sum() - trips;
+        JsonObject latency = load.latency.snapshot();
+        load.running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        System.out.printf("%-34s %8.0f envios/s  p50 %5.1fms p99 %5.1fms  %5.2f idas ao banco/envio%n",
+                label, sent / seconds, latency.get("p50Ms").getAsDouble(), latency.get("p99Ms").getAsDouble(),
+                (double) trips / Math.max(1, sent));
+    }
+
+    private static ChatMessage message(long projectId) {
+        Project project = new Project();
+        project.setId(projectId);
+        User sender = new User();
+        sender.setId(projectId);
+        sender.setName("Cliente " + projectId);
+        ChatMessage message = new ChatMessage();
+        message.setProject(project);
+        message.setSender(sender);
+        message.setContent("Bom dia, segue o cronograma.");
+        return message;
+    }
+
+    /**
+     * Uma ida e volta ao banco ocupando uma conexão do pool
+     */
+    private static void roundTrip(int rows) {
+        pool.acquireUninterruptibly();
+        try {
+            roundTrips.increment();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(DB_RTT_MS) + rows * DB_ROW_NANOS);
+        } finally {
+            pool.release();
+        }
+    }
+
+    /**
+     * Postgres simulado: reserva de ids e INSERTs custam uma ida e volta
+     */
+    private static final class SimulatedDatabase extends JdbcTemplate {
+        @Override
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            roundTrip(0);
+            List<T> ids = new ArrayList<>();
+            for (int i = 0; i < (Integer) args[0]; i++) {
+                ids.add(elementType.cast(sequence.incrementAndGet()));
+            }
+            return ids;
+        }
+
+        @Override
+        public int update(String sql, PreparedStatementSetter setter) {
+            int rows = sql.length() - sql.replace("(?", "(").length();
+            roundTrip(rows);
+            return rows;
+        }
+    }
+
+    /**
+     * Contadores da rodada; reset() descarta o aquecimento
+     */
+    private static final class Load {
+        private volatile boolean running = true;
+        private volatile LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder sent = new LongAdder();
+
+        void reset() {
+            latency = new LatencyHistogram();
+            sent.reset();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.benchmark;
+
+import com.consultoria.app.tcp.AdmissionControl;
+import com.consultoria.app.tcp.ClientConnection;
+import com.consultoria.app.tcp.CommandDispatcher;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.RequestPipeline;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.TcpExecutors;
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.tcp.metrics.LatencyHistogram;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.google.gson.JsonObject;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Carga mista no caminho real de despacho (RequestPipeline, CommandDispatcher
+ * e CommandRouter com os limites padrão): clientes fazendo LOGIN em laço
+ * fechado (BCrypt custo 10) enquanto outros enviam CHAT SEND em taxa fixa.
+ * Mede logins/s e a latência de chat com o BCrypt nos workers (como antes)
+ * e no executor password-hash dedicado.
+ *
+ * Execução: mvn -Pbenchmark test-compile exec:java
+ *     -Dbenchmark.class=com.consultoria.app.benchmark.LoginThroughputBenchmark
+ */
+public class LoginThroughputBenchmark {
+
+    private static final int WORKER_THREADS = 20;
+    private static final int WORKER_QUEUE = 256;
+    private static final int ROUTE_MAX_CONCURRENT = 16;
+    private static final int HASH_QUEUE = 64;
+    private static final int LOGIN_CLIENTS = 64;
+    private static final int CHAT_CLIENTS = 16;
+    private static final long CHAT_INTERVAL_MS = 10;
+    // Simula o INSERT da mensagem
+    private static final long CHAT_WORK_MS = 1;
+    private static final long WARMUP_MS = 3000;
+    private static final long MEASURE_MS = 10000;
+
+    private static final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+    private static final String PASSWORD = "segredo123";
+    private static final String HASH = encoder.encode(PASSWORD);
+
+    public static void main(String[] args) throws Exception {
+        int hashThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        System.out.printf("%d processadores, %d workers, %d clientes de login, %d de chat (1 a cada %dms)%n",
+                Runtime.getRuntime().availableProcessors(), WORKER_THREADS, LOGIN_CLIENTS, CHAT_CLIENTS,
+                CHAT_INTERVAL_MS);
+        run("BCrypt nos workers", 0);
+        run("executor password-hash (" + hashThreads + " threads)", hashThreads);
+    }
+
+    private static void run(String label, int hashThreads) throws Exception {
+        ExecutorService workers = TcpExecutors.createBounded(TcpExecutors.PLATFORM, WORKER_THREADS, WORKER_QUEUE,
+                "Bench-Worker");
+        ExecutorService hashExecutor = hashThreads > 0
+                ? TcpExecutors.createBounded(TcpExecutors.PLATFORM, hashThreads, HASH_QUEUE, "Bench-Hash")
+                : null;
+        CommandRouter router = new CommandRouter(SessionManager.getInstance(), new MetricsRegistry(),
+                new AdmissionControl(0, 200), ROUTE_MAX_CONCURRENT);
+        CommandRouter.RouteBuilder login = router.route("AUTH", "LOGIN").requires("password");
+        if (hashExecutor != null) {
+            login.executor("password-hash", hashExecutor).maxConcurrent(0);
+        }
+        login.to((message, user) -> encoder.matches(message.getString("password"), HASH)
+                ? Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject())
+                : Protocol.createError(message.getRequestId(), "Senha incorreta"));
+        router.route("CHAT", "SEND").to((message, user) -> {
+            sleep(CHAT_WORK_MS);
+            return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+        });
+        CommandDispatcher dispatcher = new CommandDispatcher(router);
+
+        Load load = new Load();
+        ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+        List<BenchConnection> logins = new ArrayList<>();
+        for (int i = 0; i < LOGIN_CLIENTS; i++) {
+            BenchConnection connection = new BenchConnection(load, timer, true);
+            connection.pipeline = new RequestPipeline(dispatcher, workers, connection, 1);
+            logins.add(connection);
+        }
+        for (int i = 0; i < CHAT_CLIENTS; i++) {
+            BenchConnection connection = new BenchConnection(load, timer, false);
+            connection.pipeline = new RequestPipeline(dispatcher, workers, connection, 8);
+            timer.scheduleAtFixedRate(connection::sendChat, i, CHAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        for (BenchConnection connection : logins) {
+            connection.sendLogin();
+        }
+
+        Thread.sleep(WARMUP_MS);
+        load.reset();
+        long start = System.nanoTime();
+        Thread.sleep(MEASURE_MS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        load.running = false;
+        JsonObject chat = load.chat.snapshot();
+
+        timer.shutdownNow();
+        workers.shutdown();
+        if (hashExecutor != null) {
+            hashExecutor.shutdown();
+        }
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+
+        System.out.printf("%-44s %7.1f logins/s  %6d BUSY  chat p50 %6.1fms p99 %6.1fms max %6.1fms (%d msgs)%n",
+                label, load.logins.sum() / seconds, load.busy.sum(), chat.get("p50Ms").getAsDouble(),
+                chat.get("p99Ms").getAsDouble(), chat.get("maxMs").getAsDouble(), chat.get("count").getAsLong());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Contadores da rodada; reset() descarta o aquecimento
+     */
+    private static final class Load {
+        private volatile boolean running = true;
+        private volatile LatencyHistogram chat = new LatencyHistogram();
+        private final LongAdder logins = new LongAdder();
+        private final LongAdder busy = new LongAdder();
+        private final AtomicLong ids = new AtomicLong();
+
+        void reset() {
+            chat = new LatencyHistogram();
+            logins.reset();
+            busy.reset();
+        }
+    }
+
+    /**
+     * Conexão simulada: mede do envio do frame até a resposta
+     */
+    private static final class BenchConnection implements ClientConnection {
+        private final Load load;
+        private final ScheduledExecutorService timer;
+        private final boolean loginClient;
+        private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        private RequestPipeline pipeline;
+
+        BenchConnection(Load load, ScheduledExecutorService timer, boolean loginClient) {
+            this.load = load;
+            this.timer = timer;
+            this.loginClient = loginClient;
+        }
+
+        void sendLogin() {
+            submit("{\"type\":\"AUTH\",\"requestId\":\"l-" + load.ids.incrementAndGet()
+                    + "\",\"data\":{\"action\":\"LOGIN\",\"password\":\"" + PASSWORD + "\"}}", "l-");
+        }
+
+        void sendChat() {
+            submit("{\"type\":\"CHAT\",\"requestId\":\"c-" + load.ids.incrementAndGet()
+                    + "\",\"data\":{\"action\":\"SEND\",\"content\":\"Bom dia, segue o cronograma.\"}}", "c-");
+        }
+
+        private void submit(String json, String prefix) {
+            if (!load.running) {
+                return;
+            }
+            int start = json.indexOf(prefix);
+            String requestId = json.substring(start, json.indexOf('"', start));
+            sentAt.put(requestId, System.nanoTime());
+            pipeline.submit(new Frame(json));
+        }
+
+        @Override
+        public void send(Protocol.Response response) {
+            Long start = sentAt.remove(response.getRequestId());
+            if (!loginClient) {
+                if (start != null) {
+                    load.chat.recordNanos(System.nanoTime() - start);
+                }
+                return;
+            }
+            if (response.isSuccess()) {
+                load.logins.increment();
+                sendLogin();
+            } else {
+                // BUSY: espera o retryAfterMs sugerido antes de tentar de novo
+                load.busy.increment();
+                if (load.running) {
+                    timer.schedule(this::sendLogin, 200, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public String getClientIp() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public int getClientPort() {
+            return 0;
+        }
+
+        @Override
+        public void addCloseListener(Runnable listener) {
+        }
+    }
+}
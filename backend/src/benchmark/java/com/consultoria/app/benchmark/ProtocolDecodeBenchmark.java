@@ -0,0 +1,100 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.benchmark;
+
+import com.consultoria.app.tcp.MessageDecoder;
+import com.consultoria.app.tcp.Protocol.Message;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compara bytes alocados e tempo por mensagem entre a decodificação antiga
+ * (Gson.fromJson com árvore JsonObject) e o MessageDecoder streaming,
+ * lendo os mesmos campos que os handlers de AUTH e CHAT leem.
+ *
+ * Execução: mvn -Pbenchmark test-compile exec:java
+ */
+public class ProtocolDecodeBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static final String CHAT_SEND = "{\"type\":\"CHAT\",\"sessionId\":\"3f1c2a9e-7d41-4b8e-9c55-0a6f2d8e1b77\","
+            + "\"requestId\":\"req-1042\",\"data\":{\"action\":\"SEND\",\"projectId\":42,\"userId\":7,"
+            + "\"content\":\"Bom dia, segue o cronograma atualizado da consultoria.\"}}";
+
+    private static final String AUTH_LOGIN = "{\"type\":\"AUTH\",\"requestId\":\"req-1\",\"data\":{\"action\":\"LOGIN\","
+            + "\"email\":\"cliente@consultoria.com\",\"password\":\"segredo123\"}}";
+
+    private static final Gson gson = new Gson();
+    private static long sink;
+
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("JVM não suporta medição de alocação por thread");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        String[] inputs = { CHAT_SEND, AUTH_LOGIN };
+        String[] names = { "CHAT SEND", "AUTH LOGIN" };
+        for (int i = 0; i < inputs.length; i++) {
+            String json = inputs[i];
+            for (int w = 0; w < WARMUP; w++) {
+                sink += treeDecode(json) + streamDecode(json);
+            }
+            measure(threads, names[i] + " / Gson árvore", json, false);
+            measure(threads, names[i] + " / MessageDecoder", json, true);
+        }
+        System.out.println("(sink=" + sink + ")");
+    }
+
+    private static void measure(com.sun.management.ThreadMXBean threads, String label,
+            String json, boolean streaming) {
+        long threadId = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += streaming ? streamDecode(json) : treeDecode(json);
+        }
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.printf("%-34s %8.1f bytes/msg %8.1f ns/msg%n", label,
+                (double) bytes / ITERATIONS, (double) elapsed / ITERATIONS);
+    }
+
+    /**
+     * Caminho anterior: Gson monta Message + JsonObject e o handler navega a árvore
+     */
+    private static long treeDecode(String json) {
+        Message message = gson.fromJson(json.trim(), Message.class);
+        JsonObject data = message.getData();
+        long acc = message.getType().length();
+        if (data.has("projectId")) {
+            acc += data.get("projectId").getAsLong() + data.get("userId").getAsLong()
+                    + data.get("content").getAsString().length();
+        } else {
+            acc += data.get("email").getAsString().length() + data.get("password").getAsString().length();
+        }
+        return acc + data.get("action").getAsString().length();
+    }
+
+    /**
+     * Caminho novo: JsonReader em passada única e acesso pelo índice de campos
+     */
+    private static long streamDecode(String json) {
+        Message message = MessageDecoder.decode(json);
+        long acc = message.getType().length();
+        if (message.has("projectId")) {
+            acc += message.getLong("projectId") + message.getLong("userId")
+                    + message.getString("content").length();
+        } else {
+            acc += message.getString("email").length() + message.getString("password").length();
+        }
+        return acc + message.getString("action").length();
+    }
+}
@@ -0,0 +1,128 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.benchmark;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.SessionManager.Session;
+import com.consultoria.app.tcp.session.CompactSessionTable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compara a memória por sessão entre o mapa atual (ConcurrentHashMap de
+ * String para Session com o User carregado do banco) e a
+ * CompactSessionTable (heap + bytes fora do heap), e o tempo de validação
+ * de cada um.
+ *
+ * Execução: mvn -Pbenchmark test-compile exec:java
+ *     -Dbenchmark.class=com.consultoria.app.benchmark.SessionTableMemoryBenchmark
+ *     [-Dbenchmark.sessions=1000000]
+ */
+public class SessionTableMemoryBenchmark {
+
+    private static final int SESSIONS = Integer.getInteger("benchmark.sessions", 1_000_000);
+    private static final int LOOKUPS = 2_000_000;
+    private static final long TIMEOUT_MS = 3_600_000;
+    // Hash BCrypt típico do campo password
+    private static final String PASSWORD_HASH = "$2a$10$N9qo8uLOickgx2ZMRZoMyeIjZAgcfl7p92ldGxad68LJZdL17lhWy";
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long now = System.currentTimeMillis();
+
+        String[] ids = new String[SESSIONS];
+        UUID[] uuids = new UUID[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            uuids[i] = UUID.randomUUID();
+            ids[i] = uuids[i].toString();
+        }
+        System.out.printf("%,d sessões%n", SESSIONS);
+
+        // Tabela primeiro: a medição não depende da coleta do mapa
+        long before = usedHeap(memory);
+        CompactSessionTable table = new CompactSessionTable(SESSIONS, now);
+        for (int i = 0; i < SESSIONS; i++) {
+            table.put(uuids[i], loadedUser(i), now);
+        }
+        // Heap da tabela é só a estrutura dos segmentos: diferenças negativas são ruído do GC
+        long tableHeap = Math.max(0, usedHeap(memory) - before);
+
+        before = usedHeap(memory);
+        Map<String, Session> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            // O id da sessão entra na conta: no mapa ele é a chave guardada
+            String key = new String(ids[i]);
+            map.put(key, new Session(key, loadedUser(i), now));
+        }
+        long mapHeap = usedHeap(memory) - before;
+
+        report("ConcurrentHashMap<String,Session>", mapHeap, 0);
+        report("CompactSessionTable", tableHeap, table.getOffHeapBytes());
+        measureMap(map, ids, now);
+        measureTable(table, uuids, now);
+        System.out.println("(sink=" + sink + ")");
+    }
+
+    private static void report(String label, long heapBytes, long offHeapBytes) {
+        System.out.printf("%-36s heap %8.1f MB  fora do heap %8.1f MB  %6.1f bytes/sessão%n", label,
+                heapBytes / 1048576.0, offHeapBytes / 1048576.0, (double) (heapBytes + offHeapBytes) / SESSIONS);
+    }
+
+    private static void measureMap(Map<String, Session> map, String[] ids, long now) {
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                Session session = map.get(ids[(int) ((i * 7919L) % ids.length)]);
+                if (now - session.getLastActivity() <= TIMEOUT_MS) {
+                    sink += session.getUser().getId();
+                }
+            }
+            if (round == 1) {
+                System.out.printf("%-36s %8.1f ns/validação%n", "  mapa", (double) (System.nanoTime() - start) / LOOKUPS);
+            }
+        }
+    }
+
+    private static void measureTable(CompactSessionTable table, UUID[] ids, long now) {
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                User user = table.touch(ids[(int) ((i * 7919L) % ids.length)], now, TIMEOUT_MS);
+                sink += user.getId();
+            }
+            if (round == 1) {
+                System.out.printf("%-36s %8.1f ns/validação%n", "  tabela compacta",
+                        (double) (System.nanoTime() - start) / LOOKUPS);
+            }
+        }
+    }
+
+    /**
+     * User como vem do repositório no login (uma instância por sessão)
+     */
+    private static User loadedUser(int i) {
+        User user = new User();
+        user.setId((long) i);
+        user.setEmail("cliente" + i + "@consultoria.com");
+        user.setPassword(new String(PASSWORD_HASH));
+        user.setName("Cliente " + i);
+        user.setRole(i % 5 == 0 ? User.Role.CONSULTANT : User.Role.USER);
+        user.setCompany("Empresa " + (i % 1000));
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        return user;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,33 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.config;
+
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PostConstruct;
+import java.util.Locale;
+
+/**
+ * Aplica a amostragem de logs por categoria a partir de
+ * consultoria.log.sample.&lt;categoria&gt; (ex.: tcp-command=100)
+ */
+@Configuration
+public class LoggingConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @PostConstruct
+    public void configureSampling() {
+        for (LogCategory category : LogCategory.values()) {
+            String key = "consultoria.log.sample." + category.getLabel().toLowerCase(Locale.ROOT);
+            Integer oneInN = environment.getProperty(key, Integer.class);
+            if (oneInN != null) {
+                ConsultoriaLogger.setSampling(category, oneInN);
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.config;
+
+import com.consultoria.app.repository.RevokedTokenRepository;
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.TcpSessionRepository;
+import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.session.CompactSessionTable;
+import com.consultoria.app.tcp.session.DatabaseSessionStore;
+import com.consultoria.app.tcp.session.InMemorySessionStore;
+import com.consultoria.app.tcp.session.SessionSnapshot;
+import com.consultoria.app.tcp.session.SessionTokens;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aplica session.timeout (segundos de inatividade), o store das sessões
+ * (session.store) e o modo de sessão (session.mode) ao SessionManager, e
+ * restaura/grava o snapshot local das sessões (session.snapshot.*)
+ */
+@Configuration
+public class SessionConfig {
+
+    @Value("${session.timeout:3600}")
+    private long sessionTimeoutSeconds;
+
+    // memory: sessões só neste nó | database: tabela tcp_sessions, compartilhada entre os nós
+    @Value("${session.store:memory}")
+    private String storeKind;
+
+    @Value("${session.store.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    // stateful: sessão guardada no store | stateless: token assinado, sem estado no servidor
+    // | compact: tabela fora do heap, só neste nó
+    @Value("${session.mode:stateful}")
+    private String mode;
+
+    @Value("${session.compact.capacity:65536}")
+    private int compactCapacity;
+
+    @Value("${session.token.ttl:3600}")
+    private long tokenTtlSeconds;
+
+    // Mesma chave dos JWT da API REST
+    @Value("${jwt.secret:mySecretKeyForJWTTokenGenerationThatIsLongEnoughForHS256Algorithm}")
+    private String secret;
+
+    // Vazio desativa o snapshot
+    @Value("${session.snapshot.file:./data/sessions.snapshot}")
+    private String snapshotFile;
+
+    @Value("${session.snapshot.interval-s:30}")
+    private long snapshotIntervalSeconds;
+
+    @Autowired
+    private TcpSessionRepository tcpSessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @PostConstruct
+    public void configureSessions() {
+        SessionManager sessionManager = SessionManager.getInstance();
+        sessionManager.setSessionTimeout(sessionTimeoutSeconds, TimeUnit.SECONDS);
+
+        if ("database".equalsIgnoreCase(storeKind)) {
+            sessionManager.setStore(new DatabaseSessionStore(tcpSessionRepository, revokedTokenRepository), cacheTtlMs, TimeUnit.MILLISECONDS);
+        } else {
+            sessionManager.setStore(new InMemorySessionStore(), cacheTtlMs, TimeUnit.MILLISECONDS);
+        }
+        if ("stateless".equalsIgnoreCase(mode)) {
+            sessionManager.setTokens(new SessionTokens(secret.getBytes(StandardCharsets.UTF_8),
+                    TimeUnit.SECONDS.toMillis(tokenTtlSeconds)));
+        } else if ("compact".equalsIgnoreCase(mode)) {
+            sessionManager.setCompactTable(new CompactSessionTable(compactCapacity, System.currentTimeMillis()));
+        }
+        ConsultoriaLogger.logInfo(LogCategory.AUTH, "Sessões: modo %s, store %s, timeout %ds, near-cache TTL %dms",
+                mode, storeKind, sessionTimeoutSeconds, cacheTtlMs);
+
+        if (!snapshotFile.trim().isEmpty() && sessionManager.hasLocalSessions()) {
+            Path file = Paths.get(snapshotFile.trim());
+            restoreSnapshot(sessionManager, file);
+            sessionManager.enableSnapshots(file, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Sessões do processo anterior: os usuários são lidos em uma consulta só,
+     * e quem foi removido nesse meio-tempo não tem a sessão restaurada
+     */
+    private void restoreSnapshot(SessionManager sessionManager, Path file) {
+        List<SessionSnapshot.Entry> entries;
+        try {
+            entries = SessionSnapshot.read(file);
+        } catch (IOException e) {
+            ConsultoriaLogger.logWarn(LogCategory.AUTH, "Snapshot de sessões ignorado (%s): %s", file, e.getMessage());
+            return;
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Set<Long> userIds = new HashSet<>();
+        for (SessionSnapshot.Entry entry : entries) {
+            userIds.add(entry.getUserId());
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            users.put(user.getId(), user);
+        }
+        int restored = sessionManager.restoreSessions(entries, users);
+        ConsultoriaLogger.logInfo(LogCategory.AUTH, "%d de %d sessões restauradas do snapshot %s",
+                restored, entries.size(), file);
+    }
+
+    /**
+     * Grava o snapshot final antes de o processo sair
+     */
+    @PreDestroy
+    public void saveSnapshot() {
+        SessionManager.getInstance().saveSnapshot();
+    }
+}
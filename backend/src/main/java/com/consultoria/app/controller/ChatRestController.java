@@ -9,11 +9,10 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/chat")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = "X-Has-More")
 public class ChatRestController {
     @Autowired
     private ChatService chatService;
@@ -35,12 +34,23 @@ public class ChatRestController {
         }
     }
 
+    /**
+     * Histórico paginado: sem cursor retorna as mensagens mais recentes;
+     * beforeId pagina para trás e afterId traz só as novas. O corpo segue
+     * sendo a lista em ordem cronológica; X-Has-More indica se há mais.
+     */
     @GetMapping("/{projectId}/messages")
-    public ResponseEntity<?> getMessages(@PathVariable Long projectId, HttpServletRequest request) {
+    public ResponseEntity<?> getMessages(@PathVariable Long projectId,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(required = false) Integer limit,
+            HttpServletRequest request) {
         try {
             Long userId = getUserIdFromRequest(request);
-            List<ChatMessage> messages = chatService.getMessagesByProjectId(projectId, userId);
-            return ResponseEntity.ok(messages);
+            ChatService.MessagePage page = chatService.getMessagesByProjectId(projectId, userId, beforeId, afterId, limit);
+            return ResponseEntity.ok()
+                    .header("X-Has-More", String.valueOf(page.hasMore()))
+                    .body(page.getMessages());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
         }
@@ -0,0 +1,26 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.controller;
+
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "*")
+public class MetricsController {
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * Latência por rota (p50/p99/p999) e gauges do servidor, o mesmo
+     * conteúdo do comando TCP METRICS
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getMetrics() {
+        return ResponseEntity.ok(metricsRegistry.snapshot().toString());
+    }
+}
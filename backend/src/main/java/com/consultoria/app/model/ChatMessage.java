@@ -5,8 +5,13 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+// Paginação do histórico por (projeto, id): WHERE project_id = ? AND id < ? ORDER BY id DESC LIMIT n
+@Table(name = "chat_messages", indexes = @Index(name = "idx_chat_messages_project_id_id", columnList = "project_id, id"))
 public class ChatMessage {
+    // Tamanho da coluna content; envios maiores são recusados antes da confirmação
+    public static final int MAX_CONTENT_LENGTH = 2000;
+
+    // Mensagens novas recebem o id antes do INSERT, em blocos da sequence desta coluna (ChatIngestService)
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -19,7 +24,7 @@ public class ChatMessage {
     @JoinColumn(name = "sender_id", nullable = false)
     private User sender;
 
-    @Column(length = 2000, nullable = false)
+    @Column(length = MAX_CONTENT_LENGTH, nullable = false)
     private String content;
 
     private LocalDateTime timestamp;
@@ -0,0 +1,71 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.model;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Última mensagem lida por um usuário no chat de um projeto (CHAT
+ * MARK_READ); base da contagem de não lidas da caixa de entrada
+ */
+@Entity
+@Table(name = "chat_read_markers", uniqueConstraints = @UniqueConstraint(name = "uk_chat_read_markers_user_project",
+        columnNames = {"user_id", "project_id"}))
+public class ChatReadMarker {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private long lastReadMessageId;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getProjectId() {
+        return projectId;
+    }
+
+    public void setProjectId(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    public long getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    public void setLastReadMessageId(long lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,48 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.model;
+
+import javax.persistence.*;
+
+/**
+ * Token de sessão TCP revogado no LOGOUT (session.mode=stateless), lido
+ * periodicamente por todos os nós até o token expirar
+ */
+@Entity
+@Table(name = "tcp_revoked_tokens", indexes = @Index(name = "idx_tcp_revoked_tokens_revoked_at", columnList = "revoked_at"))
+public class RevokedToken {
+    @Id
+    @Column(name = "token_id")
+    private Long tokenId;
+
+    // Epoch em ms
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private long revokedAt;
+
+    // Getters and Setters
+    public Long getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(Long tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+
+    public void setRevokedAt(long revokedAt) {
+        this.revokedAt = revokedAt;
+    }
+}
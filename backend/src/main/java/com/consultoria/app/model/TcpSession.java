@@ -0,0 +1,59 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.model;
+
+import javax.persistence.*;
+
+/**
+ * Sessão TCP compartilhada entre os nós (session.store=database)
+ */
+@Entity
+@Table(name = "tcp_sessions", indexes = @Index(name = "idx_tcp_sessions_last_activity", columnList = "last_activity"))
+public class TcpSession {
+    @Id
+    @Column(name = "session_id", length = 36)
+    private String sessionId;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // Epoch em ms, comparado direto com System.currentTimeMillis()
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "last_activity", nullable = false)
+    private long lastActivity;
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    public void setLastActivity(long lastActivity) {
+        this.lastActivity = lastActivity;
+    }
+}
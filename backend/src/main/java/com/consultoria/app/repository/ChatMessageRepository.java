@@ -2,6 +2,8 @@
 package com.consultoria.app.repository;
 
 import com.consultoria.app.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,5 +11,23 @@ import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    List<ChatMessage> findByProjectIdOrderByTimestampAsc(Long projectId);
+    // Páginas do histórico pelo índice (project_id, id); remetente vem no mesmo SELECT
+
+    /**
+     * Mensagens mais recentes do projeto, da mais nova para a mais antiga
+     */
+    @EntityGraph(attributePaths = "sender")
+    List<ChatMessage> findByProjectIdOrderByIdDesc(Long projectId, Pageable page);
+
+    /**
+     * Mensagens anteriores a beforeId, da mais nova para a mais antiga
+     */
+    @EntityGraph(attributePaths = "sender")
+    List<ChatMessage> findByProjectIdAndIdLessThanOrderByIdDesc(Long projectId, Long beforeId, Pageable page);
+
+    /**
+     * Mensagens posteriores a afterId (sincronização incremental), em ordem
+     */
+    @EntityGraph(attributePaths = "sender")
+    List<ChatMessage> findByProjectIdAndIdGreaterThanOrderByIdAsc(Long projectId, Long afterId, Pageable page);
 }
@@ -0,0 +1,31 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.repository;
+
+import com.consultoria.app.model.ChatReadMarker;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChatReadMarkerRepository extends JpaRepository<ChatReadMarker, Long> {
+    List<ChatReadMarker> findByUserIdAndProjectIdIn(Long userId, Collection<Long> projectIds);
+
+    /**
+     * Grava a marca de leitura em uma ida ao banco; a marca nunca volta
+     * para uma mensagem anterior
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO chat_read_markers (user_id, project_id, last_read_message_id, updated_at) "
+            + "VALUES (:userId, :projectId, :messageId, now()) "
+            + "ON CONFLICT (user_id, project_id) DO UPDATE SET last_read_message_id = "
+            + "GREATEST(chat_read_markers.last_read_message_id, EXCLUDED.last_read_message_id), updated_at = now()",
+            nativeQuery = true)
+    int markRead(@Param("userId") Long userId, @Param("projectId") Long projectId, @Param("messageId") long messageId);
+}
@@ -3,6 +3,8 @@ package com.consultoria.app.repository;
 
 import com.consultoria.app.model.Project;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,4 +16,12 @@ public interface ProjectRepository extends JpaRepository<Project, Long> {
     List<Project> findByConsultantId(Long consultantId);
 
     List<Project> findByStatus(Project.ProjectStatus status);
+
+    /**
+     * Projetos com chat ativo (consultor designado) em que o usuário é dono
+     * ou consultor, com os dois participantes no mesmo SELECT
+     */
+    @Query("select p from Project p join fetch p.user join fetch p.consultant "
+            + "where p.user.id = :userId or p.consultant.id = :userId")
+    List<Project> findChatProjects(@Param("userId") Long userId);
 }
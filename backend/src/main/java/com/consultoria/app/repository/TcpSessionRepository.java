@@ -0,0 +1,31 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.repository;
+
+import com.consultoria.app.model.TcpSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface TcpSessionRepository extends JpaRepository<TcpSession, String> {
+
+    // Só avança: atividade atrasada de outro nó não volta o relógio da sessão
+    @Modifying
+    @Transactional
+    @Query("update TcpSession s set s.lastActivity = :lastActivity "
+            + "where s.sessionId = :sessionId and s.lastActivity < :lastActivity")
+    int touch(@Param("sessionId") String sessionId, @Param("lastActivity") long lastActivity);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TcpSession s where s.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TcpSession s where s.lastActivity < :cutoff")
+    int deleteInactiveSince(@Param("cutoff") long cutoff);
+}
@@ -0,0 +1,548 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service;
+
+import com.consultoria.app.model.ChatMessage;
+import com.consultoria.app.model.ChatReadMarker;
+import com.consultoria.app.model.Project;
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.ChatReadMarkerRepository;
+import com.consultoria.app.repository.ProjectRepository;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caixa de entrada do chat por usuário: os projetos com chat ativo em que
+ * ele participa, a última mensagem de cada um e quantas ainda não leu.
+ *
+ * A caixa é montada na primeira leitura com consultas limitadas aos
+ * projetos do usuário (projetos, marcas de leitura, última mensagem e
+ * contagem de não lidas por projeto) e depois mantida em memória: cada
+ * envio confirmado chega em onMessage (thread Chat-Log do
+ * ChatIngestService, em ordem de id) e cada CHAT MARK_READ em markRead.
+ * Mudanças de participantes, nome ou status do projeto invalidam as caixas
+ * do dono e do consultor (ProjectService); chat.inbox.ttl-ms limita quanto
+ * tempo uma caixa vale sem ser relida.
+ *
+ * Como o anel de recentes, supõe que os envios passam por este nó.
+ */
+@Service
+public class ChatInboxService {
+    private static final int PREVIEW_CHARS = 100;
+    private static final long LOAD_WAIT_MS = 10000;
+
+    // Última mensagem de cada projeto pelo índice (project_id, id), com o nome do remetente
+    private static final String LATEST_SQL = "SELECT p.id, m.id, m.sender_id, u.name, m.content, m.\"timestamp\" "
+            + "FROM unnest(?::bigint[]) AS p(id) CROSS JOIN LATERAL "
+            + "(SELECT c.id, c.sender_id, c.content, c.\"timestamp\" FROM chat_messages c "
+            + "WHERE c.project_id = p.id ORDER BY c.id DESC LIMIT 1) m JOIN users u ON u.id = m.sender_id";
+
+    // Não lidas de outros remetentes depois da marca; as pendentes do write-behind são contadas à parte
+    private static final String UNREAD_SQL = "SELECT r.project_id, (SELECT count(*) FROM chat_messages c "
+            + "WHERE c.project_id = r.project_id AND c.id > r.last_read AND c.sender_id <> ? "
+            + "AND c.id <> ALL(?::bigint[])) FROM unnest(?::bigint[], ?::bigint[]) AS r(project_id, last_read)";
+
+    @Value("${chat.inbox.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${chat.inbox.max-users:20000}")
+    private int maxUsers;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ChatReadMarkerRepository markerRepository;
+
+    @Autowired
+    private ChatIngestService chatIngestService;
+
+    @Autowired(required = false)
+    private MetricsRegistry metrics;
+
+    // Ordem de acesso: o primeiro é o usuário que leu a caixa há mais tempo (trava: o próprio mapa)
+    private final LinkedHashMap<Long, Inbox> inboxes = new LinkedHashMap<Long, Inbox>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Inbox> eldest) {
+            return size() > Math.max(1, maxUsers);
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        chatIngestService.addListener(this::onMessage);
+        // Mensagem descartada pode ser a última (ou uma não lida) da caixa
+        chatIngestService.addDropListener(dropped -> invalidate(dropped.getProject()));
+        if (metrics == null) {
+            return;
+        }
+        metrics.gauge("chat.inbox.users", this::getUserCount);
+        metrics.gauge("chat.inbox.hits", hits::sum);
+        metrics.gauge("chat.inbox.loads", loads::sum);
+        metrics.gauge("chat.inbox.updates", updates::sum);
+    }
+
+    /**
+     * Projetos com chat do usuário, do mais recentemente ativo para o menos
+     */
+    public List<InboxEntry> getInbox(Long userId) {
+        Inbox inbox = inboxFor(userId);
+        List<InboxEntry> entries = new ArrayList<>();
+        synchronized (inbox) {
+            for (InboxEntry entry : inbox.entries.values()) {
+                entries.add(new InboxEntry(entry));
+            }
+        }
+        entries.sort(Comparator.comparing(InboxEntry::getActivity,
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return entries;
+    }
+
+    /**
+     * Marca como lidas as mensagens do projeto até messageId (null = até a
+     * última). A marca nunca volta; o acesso do usuário ao projeto deve ter
+     * sido verificado pelo chamador.
+     *
+     * @return A entrada atualizada, ou null se o projeto não tem chat ativo
+     *         para o usuário
+     */
+    public InboxEntry markRead(Long userId, Long projectId, Long messageId) {
+        Inbox inbox = inboxFor(userId);
+        long target;
+        synchronized (inbox) {
+            InboxEntry entry = inbox.entries.get(projectId);
+            if (entry == null) {
+                return null;
+            }
+            // Não marca além da última mensagem conhecida
+            target = messageId != null ? Math.min(messageId, entry.lastMessageId) : entry.lastMessageId;
+            if (target <= entry.lastReadId) {
+                return new InboxEntry(entry);
+            }
+        }
+
+        markerRepository.markRead(userId, projectId, target);
+        synchronized (inbox) {
+            InboxEntry entry = inbox.entries.get(projectId);
+            if (entry == null) {
+                return null;
+            }
+            updates.increment();
+            if (target <= entry.lastReadId || target >= entry.lastMessageId) {
+                entry.lastReadId = Math.max(entry.lastReadId, target);
+                entry.unread = target >= entry.lastMessageId ? 0 : entry.unread;
+                return new InboxEntry(entry);
+            }
+            // Leitura parcial (raro): a contagem das posteriores à marca vem do banco
+            inbox.loadedAt = 0;
+        }
+
+        Inbox fresh = inboxFor(userId);
+        synchronized (fresh) {
+            InboxEntry reloaded = fresh.entries.get(projectId);
+            return reloaded != null ? new InboxEntry(reloaded) : null;
+        }
+    }
+
+    /**
+     * Descarta a caixa do usuário; a próxima leitura a remonta
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        // Uma montagem em andamento termina fora do mapa e não é mais servida
+        synchronized (inboxes) {
+            inboxes.remove(userId);
+        }
+    }
+
+    /**
+     * Descarta as caixas do dono e do consultor do projeto
+     */
+    public void invalidate(Project project) {
+        invalidate(project.getUser() != null ? project.getUser().getId() : null);
+        invalidate(project.getConsultant() != null ? project.getConsultant().getId() : null);
+    }
+
+    public int getUserCount() {
+        synchronized (inboxes) {
+            return inboxes.size();
+        }
+    }
+
+    /**
+     * Envio confirmado: atualiza as caixas do dono e do consultor que estão
+     * em memória. O projeto da mensagem traz os participantes (ChatService).
+     */
+    void onMessage(ChatMessage message) {
+        Project project = message.getProject();
+        update(project.getUser(), message);
+        update(project.getConsultant(), message);
+    }
+
+    private void update(User participant, ChatMessage message) {
+        if (participant == null || participant.getId() == null) {
+            return;
+        }
+        Inbox inbox;
+        synchronized (inboxes) {
+            inbox = inboxes.get(participant.getId());
+        }
+        if (inbox == null) {
+            return;
+        }
+        synchronized (inbox) {
+            if (inbox.buffered != null) {
+                inbox.buffered.add(message);
+                return;
+            }
+            InboxEntry entry = inbox.entries.get(message.getProject().getId());
+            if (entry == null) {
+                // Projeto que ainda não estava na caixa (consultor acabou de assumir)
+                inbox.loadedAt = 0;
+                return;
+            }
+            entry.apply(message, inbox.userId);
+        }
+        updates.increment();
+    }
+
+    /**
+     * Caixa pronta do usuário, montada agora se não existe ou expirou
+     */
+    private Inbox inboxFor(Long userId) {
+        Inbox inbox;
+        boolean load = false;
+        synchronized (inboxes) {
+            inbox = inboxes.get(userId);
+            if (inbox == null || inbox.isExpired(System.currentTimeMillis(), ttlMs)) {
+                inbox = new Inbox(userId);
+                inboxes.put(userId, inbox);
+                load = true;
+            }
+        }
+
+        if (load) {
+            try {
+                load(inbox);
+                loads.increment();
+            } catch (RuntimeException e) {
+                synchronized (inboxes) {
+                    if (inboxes.get(userId) == inbox) {
+                        inboxes.remove(userId);
+                    }
+                }
+                synchronized (inbox) {
+                    inbox.failed = true;
+                    inbox.notifyAll();
+                }
+                throw e;
+            }
+            return inbox;
+        }
+
+        // Outra leitura pode estar montando a caixa
+        synchronized (inbox) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOAD_WAIT_MS);
+            while (inbox.buffered != null && !inbox.failed) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new RuntimeException("Tempo esgotado ao carregar a caixa de entrada do chat");
+                }
+                try {
+                    inbox.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Carregamento da caixa de entrada interrompido");
+                }
+            }
+            if (inbox.failed) {
+                throw new RuntimeException("Erro ao carregar a caixa de entrada do chat");
+            }
+        }
+        hits.increment();
+        return inbox;
+    }
+
+    /**
+     * Monta a caixa a partir do banco e das pendentes do write-behind. A
+     * caixa já está no mapa: envios confirmados durante a montagem ficam em
+     * buffered e entram no fim se forem posteriores ao que foi lido.
+     */
+    private void load(Inbox inbox) {
+        Long userId = inbox.userId;
+        Map<Long, InboxEntry> entries = new LinkedHashMap<>();
+        for (Project project : projectRepository.findChatProjects(userId)) {
+            entries.put(project.getId(), new InboxEntry(project, userId));
+        }
+
+        if (!entries.isEmpty()) {
+            for (ChatReadMarker marker : markerRepository.findByUserIdAndProjectIdIn(userId, entries.keySet())) {
+                entries.get(marker.getProjectId()).lastReadId = marker.getLastReadMessageId();
+            }
+
+            // Pendentes lidas antes do banco: uma mensagem gravada no meio aparece em um dos dois
+            Map<Long, NavigableMap<Long, ChatMessage>> pending = new HashMap<>();
+            List<Long> pendingIds = new ArrayList<>();
+            for (Long projectId : entries.keySet()) {
+                NavigableMap<Long, ChatMessage> messages = chatIngestService.getPending(projectId);
+                if (!messages.isEmpty()) {
+                    pending.put(projectId, messages);
+                    pendingIds.addAll(messages.keySet());
+                }
+            }
+
+            loadLatest(entries);
+            loadUnread(userId, entries, pendingIds);
+            // O banco não contou as pendentes (algumas podem já estar gravadas)
+            for (Map.Entry<Long, NavigableMap<Long, ChatMessage>> projectPending : pending.entrySet()) {
+                InboxEntry entry = entries.get(projectPending.getKey());
+                for (ChatMessage message : projectPending.getValue().values()) {
+                    if (message.getId() > entry.lastMessageId) {
+                        entry.setLast(message.getId(), message.getSender().getId(), message.getSender().getName(),
+                                message.getContent(), message.getTimestamp());
+                    }
+                    if (message.getId() > entry.lastReadId && !userId.equals(message.getSender().getId())) {
+                        entry.unread++;
+                    }
+                }
+            }
+        }
+
+        synchronized (inbox) {
+            inbox.entries = entries;
+            boolean stale = false;
+            for (ChatMessage message : inbox.buffered) {
+                InboxEntry entry = entries.get(message.getProject().getId());
+                if (entry != null) {
+                    // apply ignora o que já veio do banco ou das pendentes (id não posterior)
+                    entry.apply(message, userId);
+                } else {
+                    stale = true;
+                }
+            }
+            inbox.buffered = null;
+            inbox.loadedAt = stale ? 0 : System.currentTimeMillis();
+            inbox.notifyAll();
+        }
+    }
+
+    private void loadLatest(Map<Long, InboxEntry> entries) {
+        final Long[] projectIds = entries.keySet().toArray(new Long[0]);
+        jdbcTemplate.query(LATEST_SQL, statement -> statement.setArray(1, bigintArray(statement, projectIds)), row -> {
+            InboxEntry entry = entries.get(row.getLong(1));
+            Timestamp timestamp = row.getTimestamp(6);
+            entry.setLast(row.getLong(2), row.getLong(3), row.getString(4), row.getString(5),
+                    timestamp != null ? timestamp.toLocalDateTime() : null);
+        });
+    }
+
+    /**
+     * Conta as não lidas no banco só dos projetos com mensagem depois da
+     * marca de leitura
+     */
+    private void loadUnread(Long userId, Map<Long, InboxEntry> entries, List<Long> pendingIds) {
+        List<Long> projectIds = new ArrayList<>();
+        List<Long> lastReads = new ArrayList<>();
+        for (InboxEntry entry : entries.values()) {
+            if (entry.lastMessageId > entry.lastReadId) {
+                projectIds.add(entry.projectId);
+                lastReads.add(entry.lastReadId);
+            }
+        }
+        if (projectIds.isEmpty()) {
+            return;
+        }
+
+        final Long[] excluded = pendingIds.toArray(new Long[0]);
+        jdbcTemplate.query(UNREAD_SQL, statement -> {
+            statement.setLong(1, userId);
+            statement.setArray(2, bigintArray(statement, excluded));
+            statement.setArray(3, bigintArray(statement, projectIds.toArray(new Long[0])));
+            statement.setArray(4, bigintArray(statement, lastReads.toArray(new Long[0])));
+        }, row -> {
+            entries.get(row.getLong(1)).unread = row.getInt(2);
+        });
+    }
+
+    private static Array bigintArray(PreparedStatement statement, Long[] values) throws SQLException {
+        return statement.getConnection().createArrayOf("bigint", values);
+    }
+
+    private static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_CHARS) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_CHARS) + "…";
+    }
+
+    /**
+     * Caixa de um usuário; acesso sob a trava da própria caixa
+     */
+    private static final class Inbox {
+        private final Long userId;
+        private Map<Long, InboxEntry> entries = new LinkedHashMap<>();
+        // Envios confirmados enquanto a caixa é montada (null quando pronta)
+        private List<ChatMessage> buffered = new ArrayList<>();
+        private boolean failed;
+        private long loadedAt;
+
+        Inbox(Long userId) {
+            this.userId = userId;
+        }
+
+        boolean isExpired(long now, long ttlMs) {
+            synchronized (this) {
+                return buffered == null && now - loadedAt > ttlMs;
+            }
+        }
+    }
+
+    /**
+     * Projeto na caixa de entrada de um usuário
+     */
+    public static final class InboxEntry {
+        private final Long projectId;
+        private final String projectName;
+        private final String status;
+        private final Long otherPartyId;
+        private final String otherPartyName;
+        private long lastMessageId;
+        private Long lastSenderId;
+        private String lastSenderName;
+        private String lastPreview;
+        private LocalDateTime lastTimestamp;
+        private long lastReadId;
+        private int unread;
+
+        InboxEntry(Project project, Long userId) {
+            this.projectId = project.getId();
+            this.projectName = project.getName();
+            this.status = project.getStatus() != null ? project.getStatus().toString() : null;
+            User other = project.getUser().getId().equals(userId) ? project.getConsultant() : project.getUser();
+            this.otherPartyId = other.getId();
+            this.otherPartyName = other.getName();
+        }
+
+        InboxEntry(InboxEntry source) {
+            this.projectId = source.projectId;
+            this.projectName = source.projectName;
+            this.status = source.status;
+            this.otherPartyId = source.otherPartyId;
+            this.otherPartyName = source.otherPartyName;
+            this.lastMessageId = source.lastMessageId;
+            this.lastSenderId = source.lastSenderId;
+            this.lastSenderName = source.lastSenderName;
+            this.lastPreview = source.lastPreview;
+            this.lastTimestamp = source.lastTimestamp;
+            this.lastReadId = source.lastReadId;
+            this.unread = source.unread;
+        }
+
+        /**
+         * Aplica uma mensagem posterior à última conhecida; as demais já
+         * estão contadas
+         */
+        void apply(ChatMessage message, Long userId) {
+            if (message.getId() <= lastMessageId) {
+                return;
+            }
+            setLast(message.getId(), message.getSender().getId(), message.getSender().getName(),
+                    message.getContent(), message.getTimestamp());
+            if (!userId.equals(message.getSender().getId()) && message.getId() > lastReadId) {
+                unread++;
+            }
+        }
+
+        void setLast(long id, Long senderId, String senderName, String content, LocalDateTime timestamp) {
+            this.lastMessageId = id;
+            this.lastSenderId = senderId;
+            this.lastSenderName = senderName;
+            this.lastPreview = preview(content);
+            this.lastTimestamp = timestamp;
+        }
+
+        LocalDateTime getActivity() {
+            return lastTimestamp;
+        }
+
+        public Long getProjectId() {
+            return projectId;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Long getOtherPartyId() {
+            return otherPartyId;
+        }
+
+        public String getOtherPartyName() {
+            return otherPartyName;
+        }
+
+        /**
+         * Id da última mensagem do projeto (0 se ainda não há mensagens)
+         */
+        public long getLastMessageId() {
+            return lastMessageId;
+        }
+
+        public Long getLastSenderId() {
+            return lastSenderId;
+        }
+
+        public String getLastSenderName() {
+            return lastSenderName;
+        }
+
+        /**
+         * Início do texto da última mensagem
+         */
+        public String getLastPreview() {
+            return lastPreview;
+        }
+
+        public LocalDateTime getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        public long getLastReadId() {
+            return lastReadId;
+        }
+
+        public int getUnread() {
+            return unread;
+        }
+    }
+}
@@ -0,0 +1,676 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service;
+
+import com.consultoria.app.model.ChatMessage;
+import com.consultoria.app.model.Project;
+import com.consultoria.app.model.User;
+import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.service.chat.ChatAppendLog;
+import com.consultoria.app.service.chat.RecentMessageCache;
+import com.consultoria.app.tcp.metrics.LatencyHistogram;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Gravação das mensagens de chat em write-behind. O envio recebe o id na
+ * hora (blocos reservados na sequence de chat_messages; o próximo bloco é
+ * reservado em segundo plano pela thread Chat-Ids quando metade do atual
+ * foi usada, sem ida ao banco no caminho do envio), é anexado ao log
+ * local (ChatAppendLog) e confirmado assim que o log está em disco; a
+ * thread Chat-Log agrupa os envios simultâneos em uma escrita e um force.
+ * A thread Chat-Flush grava no Postgres em INSERTs de várias linhas quando
+ * o lote enche (chat.ingest.batch-size) ou a cada
+ * chat.ingest.flush-interval-ms, e libera os segmentos do log já gravados.
+ *
+ * Mensagens confirmadas e ainda fora do banco ficam em getPending() para
+ * que o histórico as inclua. Se o banco cair, os lotes ficam na fila e no
+ * log até voltar; acima de chat.ingest.max-pending novos envios são
+ * recusados. Depois de um restart o log restante é regravado (INSERT com
+ * ON CONFLICT, sem duplicar o que já tinha sido gravado). Uma mensagem
+ * confirmada que o banco recusa (projeto ou remetente removido) é
+ * descartada e avisada aos listeners de addDropListener.
+ *
+ * Supõe que os envios de chat passam por um nó só, como o anel de
+ * recentes: com vários nós os blocos de ids se intercalam, mensagens
+ * chegam ao banco fora da ordem de id e um cursor afterId pode pular uma
+ * mensagem de id menor gravada depois por outro nó.
+ */
+@Service
+public class ChatIngestService {
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('chat_messages', 'id')) FROM generate_series(1, ?)";
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, project_id, sender_id, content, \"timestamp\") VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT_SQL = " ON CONFLICT (id) DO NOTHING";
+    // Envios gravados no log por escrita
+    private static final int MAX_GROUP = 1024;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    @Value("${chat.ingest.log-dir:./data/chat-log}")
+    private String logDir;
+
+    @Value("${chat.ingest.segment-bytes:16777216}")
+    private long segmentBytes;
+
+    @Value("${chat.ingest.batch-size:200}")
+    private int batchSize;
+
+    @Value("${chat.ingest.flush-interval-ms:100}")
+    private long flushIntervalMs;
+
+    @Value("${chat.ingest.max-pending:50000}")
+    private int maxPending;
+
+    @Value("${chat.ingest.id-block-size:64}")
+    private int idBlockSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    @Autowired
+    private RecentMessageCache recentMessages;
+
+    private ChatAppendLog appendLog;
+    private Thread logThread;
+    private Thread flushThread;
+    private volatile boolean running;
+    private volatile boolean logStopped;
+
+    private final BlockingQueue<Submission> appendQueue = new LinkedBlockingQueue<>();
+    private final List<Consumer<ChatMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<ChatMessage>> dropListeners = new CopyOnWriteArrayList<>();
+    private final Object idLock = new Object();
+    private final ArrayDeque<Long> reservedIds = new ArrayDeque<>();
+    // Uma reserva no banco por vez, fora de idLock
+    private final Object reserveLock = new Object();
+    private final AtomicBoolean reserveScheduled = new AtomicBoolean();
+    private ExecutorService idReserver;
+
+    // Estado do write-behind, sob a trava deste objeto
+    private final ArrayDeque<Pending> flushQueue = new ArrayDeque<>();
+    private final TreeMap<Long, Integer> unflushedBySegment = new TreeMap<>();
+    // Confirmadas e ainda fora do banco, por projeto e id (leitura sem trava)
+    private final Map<Long, ConcurrentSkipListMap<Long, ChatMessage>> pendingByProject = new ConcurrentHashMap<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder logWrites = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushBatches = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private LatencyHistogram flushLatency;
+
+    /**
+     * Envio aguardando a escrita no log
+     */
+    private static final class Submission {
+        private final ChatMessage message;
+        private final CompletableFuture<ChatMessage> ack;
+
+        Submission(ChatMessage message, CompletableFuture<ChatMessage> ack) {
+            this.message = message;
+            this.ack = ack;
+        }
+    }
+
+    /**
+     * Mensagem no log aguardando o flush, com o segmento que a guarda
+     */
+    private static final class Pending {
+        private final ChatMessage message;
+        private final long segment;
+
+        Pending(ChatMessage message, long segment) {
+            this.message = message;
+            this.segment = segment;
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        appendLog = new ChatAppendLog(Paths.get(logDir), segmentBytes);
+        recover(appendLog.recover());
+
+        flushLatency = metrics.histogram("chat.ingest.flush");
+        metrics.gauge("chat.ingest.pending", pendingCount::get);
+        metrics.gauge("chat.ingest.appended", appended::sum);
+        metrics.gauge("chat.ingest.log.writes", logWrites::sum);
+        metrics.gauge("chat.ingest.log.bytes", appendLog::getDiskBytes);
+        metrics.gauge("chat.ingest.flush.rows", flushedRows::sum);
+        metrics.gauge("chat.ingest.flush.batches", flushBatches::sum);
+        metrics.gauge("chat.ingest.flush.failures", flushFailures::sum);
+        metrics.gauge("chat.ingest.dropped", dropped::sum);
+        metrics.gauge("chat.ingest.rejected", rejected::sum);
+
+        idReserver = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "Chat-Ids");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleReserve();
+
+        running = true;
+        logThread = new Thread(this::logLoop, "Chat-Log");
+        logThread.setDaemon(true);
+        logThread.start();
+        flushThread = new Thread(this::flushLoop, "Chat-Flush");
+        flushThread.setDaemon(true);
+        flushThread.start();
+        ConsultoriaLogger.logInfo(LogCategory.CHAT, "Write-behind do chat: log %s, lotes de %d a cada %dms",
+                logDir, batchSize, flushIntervalMs);
+    }
+
+    /**
+     * Encerra a entrada de mensagens, grava o que já está no log e tenta um
+     * último flush; o que não chegar ao banco fica no log para o próximo
+     * início
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        if (idReserver != null) {
+            idReserver.shutdownNow();
+        }
+        if (logThread != null) {
+            logThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        logStopped = true;
+        synchronized (this) {
+            notifyAll();
+        }
+        if (flushThread != null) {
+            flushThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        Submission orphan;
+        while ((orphan = appendQueue.poll()) != null) {
+            orphan.ack.completeExceptionally(new IllegalStateException("Servidor em desligamento"));
+        }
+        if (appendLog == null) {
+            return;
+        }
+        synchronized (this) {
+            releaseSegments();
+        }
+        if (pendingCount.get() == 0) {
+            appendLog.closeEmpty();
+        } else {
+            appendLog.close();
+        }
+    }
+
+    /**
+     * Reserva o id e enfileira a mensagem para o log. O futuro completa
+     * quando a mensagem está em disco (com a própria mensagem, já com id e
+     * timestamp) ou com erro se foi recusada ou a escrita falhou.
+     *
+     * A mensagem precisa de project e sender com id e conteúdo de até
+     * ChatMessage.MAX_CONTENT_LENGTH caracteres; o nome do remetente é
+     * usado no histórico enquanto ela não chega ao banco.
+     */
+    public CompletableFuture<ChatMessage> submit(ChatMessage message) {
+        CompletableFuture<ChatMessage> ack = new CompletableFuture<>();
+        if (!running) {
+            ack.completeExceptionally(new IllegalStateException("Servidor em desligamento"));
+            return ack;
+        }
+        String content = message.getContent();
+        if (content == null || content.length() > ChatMessage.MAX_CONTENT_LENGTH) {
+            ack.completeExceptionally(new IllegalArgumentException(
+                    "Mensagem vazia ou maior que " + ChatMessage.MAX_CONTENT_LENGTH + " caracteres"));
+            return ack;
+        }
+        if (pendingCount.get() >= maxPending) {
+            rejected.increment();
+            ack.completeExceptionally(new IllegalStateException("Muitas mensagens pendentes, tente novamente"));
+            return ack;
+        }
+        if (message.getTimestamp() == null) {
+            message.setTimestamp(LocalDateTime.now());
+        }
+
+        Submission submission = new Submission(message, ack);
+        try {
+            while (!enqueue(submission)) {
+                // Bloco esgotado antes da reserva em segundo plano (rajada ou banco lento)
+                reserveIds();
+            }
+        } catch (DataAccessException e) {
+            ConsultoriaLogger.logError(LogCategory.CHAT, "Reserva de ids do chat", e);
+            ack.completeExceptionally(e);
+        }
+        return ack;
+    }
+
+    /**
+     * Dá o próximo id reservado à mensagem e a enfileira para o log
+     *
+     * @return false se não há id reservado
+     */
+    private boolean enqueue(Submission submission) {
+        boolean low;
+        // Id e posição na fila sob a mesma trava: o log (e o banco) recebe em ordem de id
+        synchronized (idLock) {
+            Long id = reservedIds.poll();
+            if (id == null) {
+                return false;
+            }
+            submission.message.setId(id);
+            pendingCount.incrementAndGet();
+            appendQueue.add(submission);
+            low = reservedIds.size() <= lowWatermark();
+        }
+        if (low) {
+            scheduleReserve();
+        }
+        return true;
+    }
+
+    /**
+     * Recebe cada envio confirmado, em ordem de id, na thread Chat-Log e
+     * antes do ack; o listener não deve bloquear nem ir ao banco
+     */
+    public void addListener(Consumer<ChatMessage> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Recebe cada mensagem confirmada e depois recusada pelo banco, na
+     * thread Chat-Flush; o listener não deve bloquear
+     */
+    public void addDropListener(Consumer<ChatMessage> listener) {
+        dropListeners.add(listener);
+    }
+
+    /**
+     * Mensagens do projeto confirmadas e ainda não gravadas no banco, por id
+     */
+    public NavigableMap<Long, ChatMessage> getPending(Long projectId) {
+        ConcurrentSkipListMap<Long, ChatMessage> pending = pendingByProject.get(projectId);
+        return pending != null ? Collections.unmodifiableNavigableMap(pending) : Collections.emptyNavigableMap();
+    }
+
+    /**
+     * Mensagens confirmadas que ainda não estão no banco
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private int lowWatermark() {
+        return Math.max(1, idBlockSize) / 2;
+    }
+
+    private void scheduleReserve() {
+        if (!reserveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            idReserver.execute(() -> {
+                reserveScheduled.set(false);
+                try {
+                    reserveIds();
+                } catch (DataAccessException e) {
+                    // O próximo envio tenta de novo
+                    ConsultoriaLogger.logWarn(LogCategory.CHAT, "Reserva de ids do chat falhou: %s",
+                            e.getMostSpecificCause().getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Desligando
+            reserveScheduled.set(false);
+        }
+    }
+
+    /**
+     * Reserva mais um bloco na sequence se os ids restantes estão abaixo
+     * da metade do bloco. A consulta roda fora de idLock: os envios
+     * continuam com os ids que restam. Blocos novos são maiores que os
+     * anteriores (sequence de um nó só) e entram no fim da fila.
+     */
+    private void reserveIds() {
+        synchronized (reserveLock) {
+            synchronized (idLock) {
+                if (reservedIds.size() > lowWatermark()) {
+                    return;
+                }
+            }
+            List<Long> ids = jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, Math.max(1, idBlockSize));
+            synchronized (idLock) {
+                reservedIds.addAll(ids);
+            }
+        }
+    }
+
+    /**
+     * Mensagens que ficaram no log do processo anterior voltam para a fila
+     * de flush; os nomes dos remetentes vêm em uma consulta só
+     */
+    private void recover(List<ChatAppendLog.Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Set<Long> senderIds = new HashSet<>();
+        for (ChatAppendLog.Record record : records) {
+            senderIds.add(record.getSenderId());
+        }
+        Map<Long, String> names = new HashMap<>();
+        for (User user : userRepository.findAllById(senderIds)) {
+            names.put(user.getId(), user.getName());
+        }
+
+        synchronized (this) {
+            for (ChatAppendLog.Record record : records) {
+                ChatMessage message = toMessage(record, names.get(record.getSenderId()));
+                enqueueFlush(message, record.getSegment());
+            }
+        }
+        pendingCount.addAndGet(records.size());
+        ConsultoriaLogger.logInfo(LogCategory.CHAT, "%d mensagens do log de chat aguardando gravação no banco",
+                records.size());
+    }
+
+    private void logLoop() {
+        List<Submission> group = new ArrayList<>();
+        while (running || !appendQueue.isEmpty()) {
+            try {
+                Submission first = appendQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.clear();
+                group.add(first);
+                appendQueue.drainTo(group, MAX_GROUP - 1);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.CHAT, "Escrita do log de chat", e);
+            }
+        }
+    }
+
+    /**
+     * Uma escrita e um force para o grupo; só então os envios são
+     * confirmados e entram na fila de flush. Qualquer falha antes disso
+     * recusa o grupo inteiro: nenhum envio fica sem resposta.
+     */
+    private void writeGroup(List<Submission> group) {
+        long segment;
+        try {
+            List<ChatAppendLog.Record> records = new ArrayList<>(group.size());
+            for (Submission submission : group) {
+                ChatMessage message = submission.message;
+                records.add(new ChatAppendLog.Record(message.getId(), message.getProject().getId(),
+                        message.getSender().getId(), message.getTimestamp(), message.getContent()));
+            }
+            segment = appendLog.append(records);
+        } catch (IOException | RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.CHAT, "Escrita do log de chat", e);
+            failGroup(group, e);
+            return;
+        } catch (Error e) {
+            failGroup(group, e);
+            throw e;
+        }
+
+        synchronized (this) {
+            for (Submission submission : group) {
+                enqueueFlush(submission.message, segment);
+            }
+            // A escrita pode ter aberto um segmento novo: o anterior já gravado sai do disco
+            releaseSegments();
+            if (flushQueue.size() >= batchSize) {
+                notifyAll();
+            }
+        }
+        appended.add(group.size());
+        logWrites.increment();
+        for (Submission submission : group) {
+            // Esta thread confirma em ordem de id: o anel de recentes recebe na mesma ordem
+            try {
+                recentMessages.append(submission.message);
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.CHAT, "Anel de mensagens recentes", e);
+            }
+            for (Consumer<ChatMessage> listener : listeners) {
+                try {
+                    listener.accept(submission.message);
+                } catch (RuntimeException e) {
+                    ConsultoriaLogger.logError(LogCategory.CHAT, "Listener de envio confirmado", e);
+                }
+            }
+            submission.ack.complete(submission.message);
+        }
+    }
+
+    private void failGroup(List<Submission> group, Throwable cause) {
+        pendingCount.addAndGet(-group.size());
+        for (Submission submission : group) {
+            submission.ack.completeExceptionally(cause);
+        }
+    }
+
+    private void enqueueFlush(ChatMessage message, long segment) {
+        flushQueue.add(new Pending(message, segment));
+        unflushedBySegment.merge(segment, 1, Integer::sum);
+        pendingByProject.computeIfAbsent(message.getProject().getId(), id -> new ConcurrentSkipListMap<>())
+                .put(message.getId(), message);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Pending> batch;
+            synchronized (this) {
+                try {
+                    if (flushQueue.size() < batchSize && !logStopped) {
+                        wait(flushIntervalMs);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (flushQueue.isEmpty()) {
+                    if (logStopped) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = new ArrayList<>(Math.min(batchSize, flushQueue.size()));
+                Iterator<Pending> head = flushQueue.iterator();
+                while (head.hasNext() && batch.size() < batchSize) {
+                    batch.add(head.next());
+                }
+            }
+
+            if (!flush(batch)) {
+                if (logStopped) {
+                    // Desligando com o banco fora: o restante fica no log
+                    return;
+                }
+                sleep(RETRY_DELAY_MS);
+                continue;
+            }
+            synchronized (this) {
+                for (Pending pending : batch) {
+                    flushQueue.poll();
+                    unflushedBySegment.merge(pending.segment, -1, Integer::sum);
+                    Long projectId = pending.message.getProject().getId();
+                    pendingByProject.computeIfPresent(projectId, (id, messages) -> {
+                        messages.remove(pending.message.getId());
+                        return messages.isEmpty() ? null : messages;
+                    });
+                }
+                releaseSegments();
+            }
+            pendingCount.addAndGet(-batch.size());
+        }
+    }
+
+    /**
+     * Grava o lote em um INSERT de várias linhas. Uma linha recusada pelo
+     * banco (projeto ou usuário removido) não trava a fila: o lote é
+     * regravado linha a linha e só as recusadas são descartadas. Falhas de
+     * conexão retornam false para nova tentativa.
+     */
+    private boolean flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            insert(batch);
+        } catch (DataIntegrityViolationException e) {
+            try {
+                for (Pending pending : batch) {
+                    insertOne(pending);
+                }
+            } catch (DataAccessException retry) {
+                return failed(retry);
+            }
+        } catch (DataAccessException e) {
+            return failed(e);
+        }
+        flushLatency.recordNanos(System.nanoTime() - start);
+        flushBatches.increment();
+        flushedRows.add(batch.size());
+        return true;
+    }
+
+    private void insertOne(Pending pending) {
+        try {
+            insert(Collections.singletonList(pending));
+        } catch (DataIntegrityViolationException e) {
+            dropped.increment();
+            ConsultoriaLogger.logWarn(LogCategory.CHAT, "Mensagem %d do projeto %d descartada pelo banco: %s",
+                    pending.message.getId(), pending.message.getProject().getId(), e.getMostSpecificCause().getMessage());
+            for (Consumer<ChatMessage> listener : dropListeners) {
+                try {
+                    listener.accept(pending.message);
+                } catch (RuntimeException listenerError) {
+                    ConsultoriaLogger.logError(LogCategory.CHAT, "Listener de mensagem descartada", listenerError);
+                }
+            }
+        }
+    }
+
+    private boolean failed(DataAccessException e) {
+        flushFailures.increment();
+        ConsultoriaLogger.logWarn(LogCategory.CHAT, "Flush do chat falhou (%d pendentes), nova tentativa em %dms: %s",
+                pendingCount.get(), RETRY_DELAY_MS, e.getMostSpecificCause().getMessage());
+        return false;
+    }
+
+    private void insert(List<Pending> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_SQL.length() + batch.size() * (INSERT_ROW.length() + 1)
+                + ON_CONFLICT_SQL.length());
+        sql.append(INSERT_SQL);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "" : ",").append(INSERT_ROW);
+        }
+        sql.append(ON_CONFLICT_SQL);
+
+        jdbcTemplate.update(sql.toString(), (PreparedStatement statement) -> {
+            int index = 1;
+            for (Pending pending : batch) {
+                ChatMessage message = pending.message;
+                statement.setLong(index++, message.getId());
+                statement.setLong(index++, message.getProject().getId());
+                statement.setLong(index++, message.getSender().getId());
+                statement.setString(index++, message.getContent());
+                statement.setTimestamp(index++, Timestamp.valueOf(message.getTimestamp()));
+            }
+        });
+    }
+
+    /**
+     * Apaga os segmentos anteriores ao atual sem mensagens fora do banco
+     */
+    private void releaseSegments() {
+        long current = appendLog.getCurrentSegment();
+        Iterator<Map.Entry<Long, Integer>> segments = unflushedBySegment.entrySet().iterator();
+        while (segments.hasNext()) {
+            Map.Entry<Long, Integer> entry = segments.next();
+            if (entry.getKey() >= current || entry.getValue() > 0) {
+                continue;
+            }
+            try {
+                appendLog.delete(entry.getKey());
+                segments.remove();
+            } catch (IOException e) {
+                ConsultoriaLogger.logWarn(LogCategory.CHAT, "Segmento %d do log de chat não apagado: %s",
+                        entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private static ChatMessage toMessage(ChatAppendLog.Record record, String senderName) {
+        Project project = new Project();
+        project.setId(record.getProjectId());
+        User sender = new User();
+        sender.setId(record.getSenderId());
+        sender.setName(senderName);
+
+        ChatMessage message = new ChatMessage();
+        message.setId(record.getId());
+        message.setProject(project);
+        message.setSender(sender);
+        message.setContent(record.getContent());
+        message.setTimestamp(record.getTimestamp());
+        return message;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service;
+
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Busca textual no histórico do chat (CHAT SEARCH) pelo índice GIN de
+ * to_tsvector('portuguese', content) em chat_messages. A busca fica
+ * restrita aos projetos da caixa de entrada do usuário (ChatInboxService)
+ * e é paginada por id, da mensagem mais recente para a mais antiga; o
+ * trecho destacado (ts_headline) só é calculado para a página devolvida.
+ *
+ * O índice de expressão está em db/schema_postgres.sql; como o ddl-auto
+ * não cria índices de expressão, ensureIndex() também o confere quando a
+ * aplicação sobe (CREATE INDEX CONCURRENTLY, sem travar os envios) e
+ * refaz um índice inválido deixado por uma criação interrompida.
+ * Mensagens ainda no write-behind aparecem na busca depois do flush
+ * (chat.ingest.flush-interval-ms).
+ */
+@Service
+public class ChatSearchService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 50;
+    public static final int MAX_QUERY_CHARS = 200;
+
+    private static final String INDEX_NAME = "idx_chat_messages_content_fts";
+
+    // A expressão precisa ser idêntica à do índice para o Postgres usá-lo
+    private static final String CREATE_INDEX_SQL = "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME
+            + " ON chat_messages USING GIN (to_tsvector('portuguese', content))";
+
+    private static final String DROP_INDEX_SQL = "DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME;
+
+    // Sem linha: índice não existe; false: criação CONCURRENTLY interrompida (o planejador o ignora)
+    private static final String INDEX_VALID_SQL = "SELECT i.indisvalid FROM pg_index i "
+            + "JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?";
+
+    private static final String SEARCH_SQL = "SELECT r.id, r.project_id, r.project_name, r.sender_id, r.sender_name, "
+            + "r.\"timestamp\", ts_headline('portuguese', r.content, plainto_tsquery('portuguese', ?), "
+            + "'MaxFragments=1, MaxWords=24, MinWords=8, StartSel=<<, StopSel=>>') "
+            + "FROM (SELECT m.id, m.project_id, p.name AS project_name, m.sender_id, u.name AS sender_name, "
+            + "m.\"timestamp\", m.content FROM chat_messages m "
+            + "JOIN projects p ON p.id = m.project_id JOIN users u ON u.id = m.sender_id "
+            + "WHERE to_tsvector('portuguese', m.content) @@ plainto_tsquery('portuguese', ?) "
+            + "AND m.project_id = ANY(?::bigint[]) AND m.id < ? "
+            + "ORDER BY m.id DESC LIMIT ?) r ORDER BY r.id DESC";
+
+    @Value("${chat.search.create-index:true}")
+    private boolean createIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ChatInboxService chatInboxService;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
+    /**
+     * Cria o índice da busca se não existe e refaz o que ficou inválido.
+     * Falha (ex.: permissão) é registrada e a busca continua, sem o índice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        if (!createIndex) {
+            return;
+        }
+        try {
+            Boolean valid = indexValid();
+            if (Boolean.TRUE.equals(valid)) {
+                return;
+            }
+            if (valid != null) {
+                ConsultoriaLogger.logWarn(LogCategory.CHAT, "Índice %s inválido: recriando", INDEX_NAME);
+                jdbcTemplate.execute(DROP_INDEX_SQL);
+            }
+            jdbcTemplate.execute(CREATE_INDEX_SQL);
+            if (!Boolean.TRUE.equals(indexValid())) {
+                ConsultoriaLogger.logWarn(LogCategory.CHAT, "Índice %s não ficou válido; a busca fará varredura",
+                        INDEX_NAME);
+                return;
+            }
+            ConsultoriaLogger.logInfo(LogCategory.CHAT, "Índice de busca do chat %s criado", INDEX_NAME);
+        } catch (DataAccessException e) {
+            ConsultoriaLogger.logWarn(LogCategory.CHAT, "Índice de busca do chat não criado: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Validade do índice da busca, ou null se ele não existe
+     */
+    private Boolean indexValid() {
+        List<Boolean> valid = jdbcTemplate.queryForList(INDEX_VALID_SQL, Boolean.class, INDEX_NAME);
+        return valid.isEmpty() ? null : valid.get(0);
+    }
+
+    /**
+     * Mensagens com os termos da consulta (todos, após stemming), nos
+     * projetos com chat do usuário
+     *
+     * @param projectId restringe a um projeto do usuário (opcional)
+     * @param beforeId  cursor: só mensagens anteriores a ela (opcional)
+     * @param limit     resultados por página (padrão DEFAULT_PAGE_SIZE,
+     *                  máximo MAX_PAGE_SIZE)
+     */
+    public SearchPage search(Long userId, String query, Long projectId, Long beforeId, Integer limit) {
+        String text = query != null ? query.trim() : "";
+        if (text.isEmpty()) {
+            throw new RuntimeException("Informe o texto da busca");
+        }
+        if (text.length() > MAX_QUERY_CHARS) {
+            throw new RuntimeException("Busca limitada a " + MAX_QUERY_CHARS + " caracteres");
+        }
+
+        List<Long> projectIds = new ArrayList<>();
+        for (ChatInboxService.InboxEntry entry : chatInboxService.getInbox(userId)) {
+            if (projectId == null || projectId.equals(entry.getProjectId())) {
+                projectIds.add(entry.getProjectId());
+            }
+        }
+        if (projectIds.isEmpty()) {
+            if (projectId != null) {
+                throw new RuntimeException("Você não tem acesso a este projeto");
+            }
+            return new SearchPage(new ArrayList<>(), false);
+        }
+
+        int size = Math.min(MAX_PAGE_SIZE, Math.max(1, limit != null ? limit : DEFAULT_PAGE_SIZE));
+        final Long[] scope = projectIds.toArray(new Long[0]);
+        long start = System.nanoTime();
+        List<SearchHit> hits = jdbcTemplate.query(SEARCH_SQL, statement -> {
+            statement.setString(1, text);
+            statement.setString(2, text);
+            statement.setArray(3, statement.getConnection().createArrayOf("bigint", scope));
+            statement.setLong(4, beforeId != null ? beforeId : Long.MAX_VALUE);
+            statement.setInt(5, size + 1);
+        }, (row, rowNum) -> {
+            Timestamp timestamp = row.getTimestamp(6);
+            return new SearchHit(row.getLong(1), row.getLong(2), row.getString(3), row.getLong(4), row.getString(5),
+                    timestamp != null ? timestamp.toLocalDateTime() : null, row.getString(7));
+        });
+        metrics.histogram("chat.search").recordNanos(System.nanoTime() - start);
+
+        boolean hasMore = hits.size() > size;
+        if (hasMore) {
+            hits = new ArrayList<>(hits.subList(0, size));
+        }
+        return new SearchPage(hits, hasMore);
+    }
+
+    /**
+     * Página da busca, da mensagem mais recente para a mais antiga; a
+     * próxima página usa o id da última como beforeId
+     */
+    public static class SearchPage {
+        private final List<SearchHit> hits;
+        private final boolean hasMore;
+
+        public SearchPage(List<SearchHit> hits, boolean hasMore) {
+            this.hits = hits;
+            this.hasMore = hasMore;
+        }
+
+        public List<SearchHit> getHits() {
+            return hits;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    /**
+     * Mensagem encontrada, com o trecho em que os termos aparecem
+     * (destacados entre << e >>)
+     */
+    public static class SearchHit {
+        private final long messageId;
+        private final long projectId;
+        private final String projectName;
+        private final long senderId;
+        private final String senderName;
+        private final LocalDateTime timestamp;
+        private final String snippet;
+
+        public SearchHit(long messageId, long projectId, String projectName, long senderId, String senderName,
+                LocalDateTime timestamp, String snippet) {
+            this.messageId = messageId;
+            this.projectId = projectId;
+            this.projectName = projectName;
+            this.senderId = senderId;
+            this.senderName = senderName;
+            this.timestamp = timestamp;
+            this.snippet = snippet;
+        }
+
+        public long getMessageId() {
+            return messageId;
+        }
+
+        public long getProjectId() {
+            return projectId;
+        }
+
+        public String getProjectName() {
+            return projectName;
+        }
+
+        public long getSenderId() {
+            return senderId;
+        }
+
+        public String getSenderName() {
+            return senderName;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        public String getSnippet() {
+            return snippet;
+        }
+    }
+}
@@ -7,13 +7,30 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.ChatMessageRepository;
 import com.consultoria.app.repository.ProjectRepository;
 import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.service.chat.RecentMessageCache;
+import com.consultoria.app.tcp.ChatSubscriptions;
+import com.consultoria.app.tcp.ClientConnection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class ChatService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private ChatMessageRepository chatMessageRepository;
 
@@ -23,7 +40,53 @@ public class ChatService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ChatSubscriptions chatSubscriptions;
+
+    @Autowired
+    private ChatIngestService chatIngestService;
+
+    @Autowired
+    private RecentMessageCache recentMessages;
+
+    @Value("${chat.cache.messages-per-project:200}")
+    private int recentMessagesPerProject;
+
+    // Tempo em que os participantes de um projeto valem sem consultar o banco no envio (ProjectService
+    // descarta a entrada quando o consultor muda ou o projeto é removido)
+    @Value("${chat.participants.cache-ttl-ms:30000}")
+    private long participantsTtlMs;
+
+    @Value("${chat.participants.max-projects:10000}")
+    private int participantsMaxProjects;
+
+    // Ordem de acesso: o primeiro é o projeto enviado há mais tempo (trava: o próprio mapa)
+    private final LinkedHashMap<Long, Participants> participants =
+            new LinkedHashMap<Long, Participants>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Participants> eldest) {
+            return size() > Math.max(1, participantsMaxProjects);
+        }
+    };
+
+    /**
+     * Mensagem confirmada e recusada pelo banco: sai do anel de recentes e
+     * dos chats abertos
+     */
+    @PostConstruct
+    public void registerDropListener() {
+        chatIngestService.addDropListener(dropped -> {
+            recentMessages.invalidate(dropped.getProject().getId());
+            chatSubscriptions.publishDropped(dropped);
+        });
+    }
+
+    /**
+     * Envio pela API REST: a resposta mantém o projeto e o remetente
+     * completos. Retorna depois que a mensagem está no log do chat.
+     */
     public ChatMessage sendMessage(Long projectId, Long userId, String content) {
+        checkContent(content);
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Projeto não encontrado"));
 
@@ -43,21 +106,262 @@ public class ChatService {
         message.setSender(user);
         message.setContent(content);
 
-        return chatMessageRepository.save(message);
+        ChatMessage saved;
+        try {
+            saved = chatIngestService.submit(message).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Erro ao enviar mensagem: " + e.getCause().getMessage(), e.getCause());
+        }
+        // Mensagens enviadas pela API REST também chegam aos inscritos via TCP
+        chatSubscriptions.publish(saved, null);
+        return saved;
     }
 
-    public List<ChatMessage> getMessagesByProjectId(Long projectId, Long userId) {
-        // Verify user has access to project
-        Project project = projectRepository.findById(projectId)
-                .orElseThrow(() -> new RuntimeException("Projeto não encontrado"));
+    /**
+     * Envio do caminho TCP: o acesso é verificado com os participantes em
+     * cache e a mensagem segue para o write-behind sem consultas ao banco.
+     * O futuro completa quando a mensagem está no log, já entregue aos
+     * inscritos (exceto a conexão de origem). Projeto inexistente ou sem
+     * acesso gera RuntimeException na hora.
+     */
+    public CompletableFuture<ChatMessage> submitMessage(Long projectId, Long userId, String content,
+            ClientConnection origin) {
+        checkContent(content);
+        Participants members = getParticipants(projectId, userId);
 
-        boolean hasAccess = project.getUser().getId().equals(userId) ||
-                (project.getConsultant() != null && project.getConsultant().getId().equals(userId));
+        // Projeto só com id e participantes (caixas de entrada a atualizar)
+        Project project = new Project();
+        project.setId(projectId);
+        project.setUser(stub(members.ownerId, members.ownerName));
+        if (members.consultantId != null) {
+            project.setConsultant(stub(members.consultantId, members.consultantName));
+        }
+        User sender = stub(userId, members.nameOf(userId));
 
-        if (!hasAccess) {
+        ChatMessage message = new ChatMessage();
+        message.setProject(project);
+        message.setSender(sender);
+        message.setContent(content);
+        return chatIngestService.submit(message).thenApply(saved -> {
+            chatSubscriptions.publish(saved, origin);
+            return saved;
+        });
+    }
+
+    /**
+     * Recusa conteúdo vazio ou maior que a coluna: a confirmação do envio
+     * vem antes do INSERT e não pode ser desfeita
+     */
+    private static void checkContent(String content) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new RuntimeException("A mensagem não pode ser vazia");
+        }
+        if (content.length() > ChatMessage.MAX_CONTENT_LENGTH) {
+            throw new RuntimeException("Mensagem limitada a " + ChatMessage.MAX_CONTENT_LENGTH + " caracteres");
+        }
+    }
+
+    private static User stub(Long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        return user;
+    }
+
+    /**
+     * Verifica se o usuário participa do projeto, com os participantes em
+     * cache como no envio. RuntimeException se o projeto não existe ou o
+     * usuário não tem acesso.
+     */
+    public void checkAccess(Long projectId, Long userId) {
+        getParticipants(projectId, userId);
+    }
+
+    /**
+     * Participantes do projeto com acesso do usuário verificado. Uma entrada
+     * em cache que não inclui o usuário é relida (consultor pode ter
+     * assumido o projeto depois).
+     */
+    private Participants getParticipants(Long projectId, Long userId) {
+        Participants cached;
+        synchronized (participants) {
+            cached = participants.get(projectId);
+        }
+        if (cached != null && cached.includes(userId)
+                && System.currentTimeMillis() - cached.loadedAt <= participantsTtlMs) {
+            return cached;
+        }
+
+        Project project = projectRepository.findById(projectId)
+                .orElseThrow(() -> {
+                    invalidateParticipants(projectId);
+                    return new RuntimeException("Projeto não encontrado");
+                });
+        Participants loaded = new Participants(project, System.currentTimeMillis());
+        synchronized (participants) {
+            participants.put(projectId, loaded);
+        }
+        if (!loaded.includes(userId)) {
             throw new RuntimeException("Você não tem acesso a este projeto");
         }
+        return loaded;
+    }
+
+    /**
+     * Descarta os participantes em cache do projeto; chamado quando o
+     * consultor muda ou o projeto é removido
+     */
+    public void invalidateParticipants(Long projectId) {
+        synchronized (participants) {
+            participants.remove(projectId);
+        }
+    }
+
+    /**
+     * Página do histórico em ordem cronológica. Sem cursor: as mensagens
+     * mais recentes; beforeId: as anteriores a ela (rolar para cima);
+     * afterId: as posteriores (sincronizar ao reabrir o chat). O cursor
+     * afterId supõe ids gravados em ordem, o que vale com um nó só
+     * (ChatIngestService).
+     */
+    public MessagePage getMessagesByProjectId(Long projectId, Long userId, Long beforeId, Long afterId, Integer limit) {
+        checkAccess(projectId, userId);
+        return findPage(projectId, beforeId, afterId, limit);
+    }
+
+    /**
+     * Busca a página sem verificar acesso: pelo anel de recentes quando a
+     * janela pedida está em memória, senão pelo índice (project_id, id).
+     * Uma linha a mais que o limite indica se há mais mensagens. As
+     * mensagens voltam como visões leves (projeto e remetente só com id e
+     * nome), venham do cache ou do banco.
+     */
+    public MessagePage findPage(Long projectId, Long beforeId, Long afterId, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        MessagePage cached = recentMessages.page(projectId, beforeId, afterId, size);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Primeira leitura das recentes: lê o anel inteiro de uma vez
+        Object load = beforeId == null && afterId == null ? recentMessages.startLoad(projectId) : null;
+        try {
+            int rows = load != null ? Math.max(size, recentMessagesPerProject) : size;
+            List<ChatMessage> messages = query(projectId, beforeId, afterId, rows + 1);
 
-        return chatMessageRepository.findByProjectIdOrderByTimestampAsc(projectId);
+            boolean hasMore = messages.size() > rows;
+            messages = new ArrayList<>(hasMore ? messages.subList(0, rows) : messages);
+            if (afterId == null) {
+                // Consultas para trás vêm da mais nova para a mais antiga
+                Collections.reverse(messages);
+            }
+            List<ChatMessage> views = new ArrayList<>(messages.size());
+            for (ChatMessage message : messages) {
+                views.add(RecentMessageCache.view(message));
+            }
+            if (load != null) {
+                recentMessages.finishLoad(load, views, hasMore);
+                load = null;
+                if (views.size() > size) {
+                    return new MessagePage(new ArrayList<>(views.subList(views.size() - size, views.size())), true);
+                }
+            }
+            return new MessagePage(views, hasMore);
+        } finally {
+            if (load != null) {
+                recentMessages.abortLoad(load);
+            }
+        }
+    }
+
+    /**
+     * Até rows mensagens na direção do cursor, do banco e do write-behind
+     */
+    private List<ChatMessage> query(Long projectId, Long beforeId, Long afterId, int rows) {
+        PageRequest page = PageRequest.of(0, rows);
+        // Pendentes lidas antes do banco: o que sair da fila nesse meio-tempo já está gravado
+        NavigableMap<Long, ChatMessage> pending = new TreeMap<>(chatIngestService.getPending(projectId));
+        if (afterId != null) {
+            return merge(chatMessageRepository.findByProjectIdAndIdGreaterThanOrderByIdAsc(projectId, afterId, page),
+                    pending.tailMap(afterId, false), rows);
+        }
+        if (beforeId != null) {
+            return merge(chatMessageRepository.findByProjectIdAndIdLessThanOrderByIdDesc(projectId, beforeId, page),
+                    pending.headMap(beforeId, false).descendingMap(), rows);
+        }
+        return merge(chatMessageRepository.findByProjectIdOrderByIdDesc(projectId, page), pending.descendingMap(), rows);
+    }
+
+    /**
+     * Junta a página do banco com as mensagens ainda no write-behind, na
+     * mesma direção (pending já vem ordenado como a consulta)
+     */
+    private static List<ChatMessage> merge(List<ChatMessage> stored, NavigableMap<Long, ChatMessage> pending, int max) {
+        if (pending.isEmpty()) {
+            return stored;
+        }
+        Map<Long, ChatMessage> byId = new TreeMap<>(pending.comparator());
+        for (ChatMessage message : stored) {
+            byId.put(message.getId(), message);
+        }
+        byId.putAll(pending);
+
+        List<ChatMessage> merged = new ArrayList<>(Math.min(max, byId.size()));
+        for (ChatMessage message : byId.values()) {
+            if (merged.size() == max) {
+                break;
+            }
+            merged.add(message);
+        }
+        return merged;
+    }
+
+    /**
+     * Dono e consultor do projeto, lidos no envio pelo TCP
+     */
+    private static final class Participants {
+        private final Long ownerId;
+        private final String ownerName;
+        private final Long consultantId;
+        private final String consultantName;
+        private final long loadedAt;
+
+        Participants(Project project, long loadedAt) {
+            this.ownerId = project.getUser().getId();
+            this.ownerName = project.getUser().getName();
+            this.consultantId = project.getConsultant() != null ? project.getConsultant().getId() : null;
+            this.consultantName = project.getConsultant() != null ? project.getConsultant().getName() : null;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean includes(Long userId) {
+            return ownerId.equals(userId) || userId.equals(consultantId);
+        }
+
+        String nameOf(Long userId) {
+            return ownerId.equals(userId) ? ownerName : consultantName;
+        }
+    }
+
+    /**
+     * Página do histórico: hasMore indica mensagens além da página na
+     * direção consultada (mais antigas, ou mais novas com afterId)
+     */
+    public static class MessagePage {
+        private final List<ChatMessage> messages;
+        private final boolean hasMore;
+
+        public MessagePage(List<ChatMessage> messages, boolean hasMore) {
+            this.messages = messages;
+            this.hasMore = hasMore;
+        }
+
+        public List<ChatMessage> getMessages() {
+            return messages;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
     }
 }
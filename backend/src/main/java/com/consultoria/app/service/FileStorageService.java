@@ -27,6 +27,16 @@ public class FileStorageService {
      * @return Caminho relativo do arquivo salvo
      */
     public String saveFile(String base64Data, String fileName) throws IOException {
+        // Decodifica Base64 e salva
+        return saveFile(Base64.decodeBase64(base64Data), fileName);
+    }
+
+    /**
+     * Salva arquivo a partir dos bytes recebidos (frame binário)
+     *
+     * @return Caminho relativo do arquivo salvo
+     */
+    public String saveFile(byte[] fileBytes, String fileName) throws IOException {
         // Cria diretório se não existir
         File directory = new File(uploadDir);
         if (!directory.exists()) {
@@ -37,8 +47,6 @@ public class FileStorageService {
         String uniqueFileName = UUID.randomUUID().toString() + "_" + sanitizeFileName(fileName);
         String filePath = uploadDir + File.separator + uniqueFileName;
 
-        // Decodifica Base64 e salva
-        byte[] fileBytes = Base64.decodeBase64(base64Data);
         try (FileOutputStream fos = new FileOutputStream(filePath)) {
             fos.write(fileBytes);
         }
@@ -50,9 +58,15 @@ public class FileStorageService {
      * Lê arquivo e retorna em Base64
      */
     public String getFileAsBase64(String fileName) throws IOException {
+        return Base64.encodeBase64String(getFileBytes(fileName));
+    }
+
+    /**
+     * Lê arquivo e retorna os bytes
+     */
+    public byte[] getFileBytes(String fileName) throws IOException {
         String filePath = uploadDir + File.separator + fileName;
-        byte[] fileBytes = Files.readAllBytes(Paths.get(filePath));
-        return Base64.encodeBase64String(fileBytes);
+        return Files.readAllBytes(Paths.get(filePath));
     }
 
     /**
@@ -72,6 +86,13 @@ public class FileStorageService {
      */
     public boolean validateFileSize(String base64Data) {
         long sizeInBytes = (base64Data.length() * 3) / 4; // Aproximação do tamanho real
+        return validateFileSize(sizeInBytes);
+    }
+
+    /**
+     * Valida tamanho do arquivo em bytes (max 10MB)
+     */
+    public boolean validateFileSize(long sizeInBytes) {
         long maxSize = 10 * 1024 * 1024; // 10MB
         return sizeInBytes <= maxSize;
     }
@@ -36,7 +36,11 @@ public class ProjectService {
                         .orElseThrow(() -> new RuntimeException("Consultor não encontrado"));
                 project.setConsultant(consultant);
                 project.setStatus(Project.ProjectStatus.IN_PROGRESS);
-                return projectRepository.save(project);
+                Project saved = projectRepository.save(project);
+                // Chat ativo: o projeto entra na caixa de entrada do cliente e do consultor
+                chatInboxService.invalidate(saved);
+                chatService.invalidateParticipants(projectId);
+                return saved;
             }
 
             // Se já tem consultor, só ele pode acessar
@@ -55,6 +59,12 @@ public class ProjectService {
     @Autowired
     private StatusHistoryService statusHistoryService;
 
+    @Autowired
+    private ChatInboxService chatInboxService;
+
+    @Autowired
+    private ChatService chatService;
+
     @Transactional
     public Project createProject(Long userId, ProjectDTO dto) {
         User user = userRepository.findById(userId)
@@ -108,7 +118,10 @@ public class ProjectService {
             project.setPriority(Project.Priority.valueOf(dto.getPriority().toUpperCase()));
         }
 
-        return projectRepository.save(project);
+        Project saved = projectRepository.save(project);
+        // Nome do projeto aparece na caixa de entrada do chat do dono e do consultor
+        chatInboxService.invalidate(saved);
+        return saved;
     }
 
     @Transactional
@@ -122,6 +135,8 @@ public class ProjectService {
         }
 
         projectRepository.delete(project);
+        chatInboxService.invalidate(project);
+        chatService.invalidateParticipants(projectId);
     }
 
     @Transactional
@@ -148,6 +163,7 @@ public class ProjectService {
         }
 
         Project savedProject = projectRepository.save(project);
+        chatInboxService.invalidate(savedProject);
 
         // Create status history
         User user = userRepository.findById(userId).orElse(null);
@@ -0,0 +1,290 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service.chat;
+
+import com.consultoria.app.model.ChatMessage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Log local de mensagens de chat ainda não gravadas no banco. Cada envio
+ * é anexado e sincronizado em disco (force) antes de ser confirmado ao
+ * cliente; a gravação no Postgres acontece depois, em lotes.
+ *
+ * O log é dividido em segmentos (chat-000000000001.log, ...) que são
+ * apagados quando todas as suas mensagens já estão no banco. Registro:
+ * tamanho do conteúdo, conteúdo (id, projeto, remetente, instante, texto)
+ * e CRC32 do conteúdo. Um registro incompleto no fim do segmento (queda
+ * durante a escrita) nunca foi confirmado e é descartado na leitura.
+ *
+ * Uso por uma thread de escrita só; delete pode vir de outra thread.
+ */
+public class ChatAppendLog implements Closeable {
+    private static final String PREFIX = "chat-";
+    private static final String SUFFIX = ".log";
+    // id + projeto + remetente + segundos + nanos + tamanho do texto
+    private static final int FIXED_BYTES = 8 + 8 + 8 + 8 + 4 + 4;
+    // Texto de até ChatMessage.MAX_CONTENT_LENGTH chars: no máximo 3 bytes UTF-8 por char
+    private static final int MAX_RECORD_BYTES = FIXED_BYTES + 3 * ChatMessage.MAX_CONTENT_LENGTH;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private FileChannel channel;
+    private volatile long currentSegment;
+    private long currentSize;
+
+    /**
+     * Mensagem gravada no log e o segmento em que está
+     */
+    public static final class Record {
+        private final long id;
+        private final long projectId;
+        private final long senderId;
+        private final LocalDateTime timestamp;
+        private final String content;
+        private long segment;
+
+        public Record(long id, long projectId, long senderId, LocalDateTime timestamp, String content) {
+            this.id = id;
+            this.projectId = projectId;
+            this.senderId = senderId;
+            this.timestamp = timestamp;
+            this.content = content;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getProjectId() {
+            return projectId;
+        }
+
+        public long getSenderId() {
+            return senderId;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public long getSegment() {
+            return segment;
+        }
+    }
+
+    /**
+     * @param segmentBytes tamanho a partir do qual a próxima escrita abre
+     *                     um novo segmento
+     */
+    public ChatAppendLog(Path directory, long segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = Math.max(4096, segmentBytes);
+    }
+
+    /**
+     * Lê os segmentos deixados pelo processo anterior, em ordem, e abre um
+     * segmento novo para as próximas escritas. Os segmentos com registros
+     * continuam no disco até serem liberados com delete; os vazios são
+     * apagados aqui.
+     */
+    public List<Record> recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Record> records = new ArrayList<>();
+        long last = 0;
+        for (Map.Entry<Long, Path> entry : segments().entrySet()) {
+            int before = records.size();
+            readSegment(entry.getValue(), entry.getKey(), records);
+            if (records.size() == before) {
+                Files.deleteIfExists(entry.getValue());
+            }
+            last = entry.getKey();
+        }
+        open(last + 1);
+        return records;
+    }
+
+    /**
+     * Anexa os registros e sincroniza o arquivo (uma escrita e um force por
+     * grupo). Abre um novo segmento antes se o atual passou do limite.
+     * Um registro sem texto ou maior que MAX_RECORD_BYTES (que a leitura
+     * não aceitaria) recusa o grupo antes de qualquer escrita.
+     *
+     * @return Segmento em que os registros foram gravados
+     */
+    public long append(List<Record> records) throws IOException {
+        if (currentSize >= segmentBytes) {
+            channel.close();
+            open(currentSegment + 1);
+        }
+
+        List<byte[]> texts = new ArrayList<>(records.size());
+        int total = 0;
+        for (Record record : records) {
+            if (record.content == null) {
+                throw new IllegalArgumentException("Mensagem " + record.id + " sem conteúdo");
+            }
+            byte[] text = record.content.getBytes(StandardCharsets.UTF_8);
+            if (FIXED_BYTES + text.length > MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Mensagem " + record.id + " maior que o registro do log");
+            }
+            texts.add(text);
+            total += 4 + FIXED_BYTES + text.length + 4;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            byte[] text = texts.get(i);
+            buffer.putInt(FIXED_BYTES + text.length);
+            int start = buffer.position();
+            buffer.putLong(record.id);
+            buffer.putLong(record.projectId);
+            buffer.putLong(record.senderId);
+            buffer.putLong(record.timestamp.toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(record.timestamp.getNano());
+            buffer.putInt(text.length);
+            buffer.put(text);
+            crc.reset();
+            crc.update(buffer.array(), start, buffer.position() - start);
+            buffer.putInt((int) crc.getValue());
+            record.segment = currentSegment;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        currentSize += total;
+        return currentSegment;
+    }
+
+    /**
+     * Segmento que recebe as escritas
+     */
+    public long getCurrentSegment() {
+        return currentSegment;
+    }
+
+    /**
+     * Apaga um segmento já gravado no banco; o segmento atual nunca é
+     * apagado
+     */
+    public void delete(long segment) throws IOException {
+        if (segment != currentSegment) {
+            Files.deleteIfExists(segmentPath(segment));
+        }
+    }
+
+    /**
+     * Bytes dos segmentos no disco
+     */
+    public long getDiskBytes() {
+        long total = 0;
+        try {
+            for (Path path : segments().values()) {
+                total += Files.size(path);
+            }
+        } catch (IOException e) {
+            // Segmento apagado durante a contagem
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Fecha o log e apaga o segmento atual; usado no desligamento quando
+     * todas as mensagens já estão no banco
+     */
+    public void closeEmpty() throws IOException {
+        close();
+        Files.deleteIfExists(segmentPath(currentSegment));
+    }
+
+    private void open(long segment) throws IOException {
+        channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        currentSegment = segment;
+        currentSize = channel.size();
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%012d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // Arquivo que não é segmento do log
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Lê os registros válidos do segmento, parando no primeiro incompleto
+     * ou com CRC divergente
+     */
+    private static void readSegment(Path file, long segment, List<Record> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt();
+            if (length < FIXED_BYTES || length > MAX_RECORD_BYTES || buffer.remaining() < length + 4) {
+                return;
+            }
+            int start = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), start, length);
+            if (buffer.getInt(start + length) != (int) crc.getValue()) {
+                return;
+            }
+
+            long id = buffer.getLong();
+            long projectId = buffer.getLong();
+            long senderId = buffer.getLong();
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+            int textLength = buffer.getInt();
+            if (textLength != length - FIXED_BYTES) {
+                return;
+            }
+            String content = new String(buffer.array(), buffer.position(), textLength, StandardCharsets.UTF_8);
+            buffer.position(start + length + 4);
+
+            Record record = new Record(id, projectId, senderId, timestamp, content);
+            record.segment = segment;
+            records.add(record);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service.chat;
+
+import com.consultoria.app.model.ChatMessage;
+import com.consultoria.app.model.Project;
+import com.consultoria.app.model.User;
+import com.consultoria.app.service.ChatService.MessagePage;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mensagens recentes de cada projeto em memória, para servir a leitura
+ * mais comum do chat (a última tela) sem ir ao banco. Cada projeto tem um
+ * anel com as últimas chat.cache.messages-per-project mensagens, sempre um
+ * trecho contínuo do histórico (as mais novas, em ordem de id): é
+ * preenchido na primeira leitura sem cursor e recebe cada envio confirmado
+ * pelo ChatIngestService.
+ *
+ * Projetos frios saem por LRU quando o número de projetos ou a memória
+ * estimada passa dos limites. As mensagens guardadas são visões leves
+ * (projeto e remetente só com id e nome), compartilhadas pelo anel.
+ *
+ * Os envios chegam por este nó: com vários nós atendendo o mesmo projeto
+ * o cache deve ficar desligado (chat.cache.enabled=false), como as
+ * assinaturas de PUSH.
+ */
+@Component
+public class RecentMessageCache {
+    // Estimativa por mensagem além do texto: ChatMessage, String, LocalDateTime e slot do anel
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+    private static final int RING_OVERHEAD_BYTES = 256;
+
+    @Value("${chat.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.cache.messages-per-project:200}")
+    private int perProject;
+
+    @Value("${chat.cache.max-projects:10000}")
+    private int maxProjects;
+
+    @Value("${chat.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Autowired(required = false)
+    private MetricsRegistry metrics;
+
+    // Ordem de acesso: o primeiro é o projeto usado há mais tempo (trava: o próprio mapa)
+    private final LinkedHashMap<Long, Ring> rings = new LinkedHashMap<>(256, 0.75f, true);
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    public void registerGauges() {
+        if (metrics == null) {
+            return;
+        }
+        metrics.gauge("chat.cache.bytes", bytes::get);
+        metrics.gauge("chat.cache.projects", this::getProjectCount);
+        metrics.gauge("chat.cache.hits", hits::sum);
+        metrics.gauge("chat.cache.misses", misses::sum);
+        metrics.gauge("chat.cache.hit-rate", this::getHitRate);
+        metrics.gauge("chat.cache.evictions", evictions::sum);
+    }
+
+    /**
+     * Página servida pelo anel do projeto, ou null se a janela pedida não
+     * está inteira no cache
+     *
+     * @param size mensagens na página (já limitado pelo chamador)
+     */
+    public MessagePage page(Long projectId, Long beforeId, Long afterId, int size) {
+        if (!enabled) {
+            return null;
+        }
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.get(projectId);
+        }
+        MessagePage page = null;
+        if (ring != null) {
+            synchronized (ring) {
+                page = ring.page(beforeId, afterId, size);
+            }
+        }
+        if (page != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return page;
+    }
+
+    /**
+     * Reserva o anel do projeto antes de a primeira leitura ir ao banco;
+     * envios confirmados durante a leitura ficam guardados e entram junto
+     * em finishLoad. Retorna null se o projeto já tem anel (ou outra
+     * leitura está carregando).
+     *
+     * Chamar antes de ler as pendentes do write-behind e o banco.
+     */
+    public Object startLoad(Long projectId) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (rings) {
+            if (rings.containsKey(projectId)) {
+                return null;
+            }
+            Ring ring = new Ring(projectId);
+            rings.put(projectId, ring);
+            bytes.addAndGet(RING_OVERHEAD_BYTES);
+            evictOverflow();
+            return ring;
+        }
+    }
+
+    /**
+     * Completa o anel reservado em startLoad com as mensagens mais
+     * recentes lidas (ordem crescente de id)
+     *
+     * @param hasOlder há mensagens anteriores às lidas
+     */
+    public void finishLoad(Object token, List<ChatMessage> latest, boolean hasOlder) {
+        Ring ring = (Ring) token;
+        synchronized (ring) {
+            if (ring.evicted) {
+                return;
+            }
+            ring.load(latest, hasOlder);
+        }
+        synchronized (rings) {
+            evictOverflow();
+        }
+    }
+
+    /**
+     * Desiste do anel reservado (leitura falhou)
+     */
+    public void abortLoad(Object token) {
+        Ring ring = (Ring) token;
+        synchronized (rings) {
+            if (rings.get(ring.projectId) == ring) {
+                rings.remove(ring.projectId);
+                evict(ring);
+            }
+        }
+    }
+
+    /**
+     * Acrescenta uma mensagem confirmada ao anel do projeto, se ele está
+     * em cache. Chamado em ordem de id pelo ChatIngestService.
+     */
+    public void append(ChatMessage message) {
+        if (!enabled) {
+            return;
+        }
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.get(message.getProject().getId());
+        }
+        if (ring == null) {
+            return;
+        }
+        synchronized (ring) {
+            if (ring.evicted) {
+                return;
+            }
+            ring.append(message);
+        }
+        if (bytes.get() > maxBytes) {
+            synchronized (rings) {
+                evictOverflow();
+            }
+        }
+    }
+
+    /**
+     * Descarta o anel do projeto; a próxima leitura sem cursor o remonta
+     * do banco
+     */
+    public void invalidate(Long projectId) {
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.remove(projectId);
+        }
+        if (ring != null) {
+            evict(ring);
+        }
+    }
+
+    /**
+     * Visão leve da mensagem (projeto e remetente só com id e nome), a mesma
+     * forma servida pelo cache
+     */
+    public static ChatMessage view(ChatMessage message) {
+        Project project = new Project();
+        project.setId(message.getProject().getId());
+        return view(message, project, sender(message.getSender()));
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public int getProjectCount() {
+        synchronized (rings) {
+            return rings.size();
+        }
+    }
+
+    /**
+     * Fração das leituras servidas pelo cache desde o início
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private void evictOverflow() {
+        Iterator<Ring> eldest = rings.values().iterator();
+        while ((rings.size() > maxProjects || bytes.get() > maxBytes) && rings.size() > 1 && eldest.hasNext()) {
+            Ring ring = eldest.next();
+            eldest.remove();
+            evict(ring);
+            evictions.increment();
+        }
+    }
+
+    private void evict(Ring ring) {
+        synchronized (ring) {
+            ring.evicted = true;
+            bytes.addAndGet(-(ring.bytes + RING_OVERHEAD_BYTES));
+            ring.bytes = 0;
+        }
+    }
+
+    private static ChatMessage view(ChatMessage message, Project project, User sender) {
+        ChatMessage view = new ChatMessage();
+        view.setId(message.getId());
+        view.setProject(project);
+        view.setSender(sender);
+        view.setContent(message.getContent());
+        view.setTimestamp(message.getTimestamp());
+        return view;
+    }
+
+    private static User sender(User user) {
+        User sender = new User();
+        sender.setId(user.getId());
+        sender.setName(user.getName());
+        return sender;
+    }
+
+    private static long sizeOf(ChatMessage message) {
+        String name = message.getSender().getName();
+        return MESSAGE_OVERHEAD_BYTES + 2L * (message.getContent().length() + (name != null ? name.length() : 0));
+    }
+
+    /**
+     * Anel de um projeto; acesso sob a trava do próprio anel
+     */
+    private final class Ring {
+        private final Long projectId;
+        private final Project project;
+        private final Map<Long, User> senders = new HashMap<>();
+        private final ChatMessage[] slots = new ChatMessage[Math.max(1, perProject)];
+        private int head;
+        private int size;
+        // Há mensagens anteriores à mais antiga do anel
+        private boolean hasOlder;
+        private long bytes;
+        private boolean evicted;
+        // Envios confirmados enquanto a primeira leitura carrega (null quando pronto)
+        private List<ChatMessage> loading = new ArrayList<>();
+
+        Ring(Long projectId) {
+            this.projectId = projectId;
+            this.project = new Project();
+            this.project.setId(projectId);
+        }
+
+        void load(List<ChatMessage> latest, boolean older) {
+            TreeMap<Long, ChatMessage> merged = new TreeMap<>();
+            for (ChatMessage message : latest) {
+                merged.put(message.getId(), message);
+            }
+            for (ChatMessage message : loading) {
+                merged.put(message.getId(), message);
+            }
+            loading = null;
+            hasOlder = older;
+            for (ChatMessage message : merged.values()) {
+                push(message);
+            }
+        }
+
+        void append(ChatMessage message) {
+            if (loading != null) {
+                loading.add(message);
+                return;
+            }
+            if (size > 0 && message.getId() <= get(size - 1).getId()) {
+                // Fora de ordem: regrava o anel em ordem (raro)
+                TreeMap<Long, ChatMessage> merged = new TreeMap<>();
+                for (int i = 0; i < size; i++) {
+                    merged.put(get(i).getId(), get(i));
+                }
+                merged.put(message.getId(), message);
+                clear();
+                for (ChatMessage item : merged.values()) {
+                    push(item);
+                }
+                return;
+            }
+            push(message);
+        }
+
+        private void push(ChatMessage message) {
+            ChatMessage view = view(message, project, senders.computeIfAbsent(message.getSender().getId(),
+                    id -> sender(message.getSender())));
+            long added = sizeOf(view);
+            if (size == slots.length) {
+                added -= sizeOf(slots[head]);
+                slots[head] = view;
+                head = (head + 1) % slots.length;
+                hasOlder = true;
+            } else {
+                slots[(head + size) % slots.length] = view;
+                size++;
+            }
+            bytes += added;
+            RecentMessageCache.this.bytes.addAndGet(added);
+        }
+
+        private void clear() {
+            RecentMessageCache.this.bytes.addAndGet(-bytes);
+            bytes = 0;
+            head = 0;
+            size = 0;
+        }
+
+        private ChatMessage get(int index) {
+            return slots[(head + index) % slots.length];
+        }
+
+        /**
+         * Índice da primeira mensagem com id maior que o informado (size se
+         * nenhuma)
+         */
+        private int firstAfter(long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle).getId() <= id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        MessagePage page(Long beforeId, Long afterId, int pageSize) {
+            if (loading != null || evicted) {
+                return null;
+            }
+            if (afterId != null) {
+                // Tudo depois de afterId está no anel se afterId não é anterior à mais antiga guardada
+                if (hasOlder && (size == 0 || afterId < get(0).getId())) {
+                    return null;
+                }
+                int from = firstAfter(afterId);
+                int to = Math.min(size, from + pageSize);
+                return new MessagePage(copy(from, to), to < size);
+            }
+
+            // Sem cursor ou beforeId: as mensagens anteriores ao cursor formam o fim de um trecho contínuo
+            int end = beforeId != null ? firstAfter(beforeId - 1) : size;
+            int from = Math.max(0, end - pageSize);
+            if (end - from < pageSize && hasOlder) {
+                return null;
+            }
+            return new MessagePage(copy(from, end), from > 0 || hasOlder);
+        }
+
+        private List<ChatMessage> copy(int from, int to) {
+            List<ChatMessage> messages = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                messages.add(get(i));
+            }
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controle de admissão do servidor TCP: limite de conexões por IP no
+ * accept e contadores das recusas por sobrecarga. Trabalho recusado recebe
+ * uma resposta BUSY imediata com a sugestão de retryAfterMs, em vez de
+ * esperar em fila até o cliente desistir.
+ */
+public class AdmissionControl {
+    private final int maxConnectionsPerIp;
+    private final long retryAfterMs;
+    private final ConcurrentMap<String, Integer> connectionsByIp = new ConcurrentHashMap<>();
+
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rejectedQueue = new LongAdder();
+    private final LongAdder rejectedRoute = new LongAdder();
+
+    /**
+     * @param maxConnectionsPerIp conexões simultâneas por IP (0 = sem limite)
+     * @param retryAfterMs        espera sugerida ao cliente nas respostas BUSY
+     */
+    public AdmissionControl(int maxConnectionsPerIp, long retryAfterMs) {
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+        this.retryAfterMs = Math.max(0, retryAfterMs);
+    }
+
+    /**
+     * Reserva uma conexão para o IP; false se o IP já está no limite
+     */
+    public boolean tryAcquireConnection(String ip) {
+        if (maxConnectionsPerIp <= 0) {
+            return true;
+        }
+        if (connectionsByIp.merge(ip, 1, Integer::sum) > maxConnectionsPerIp) {
+            releaseConnection(ip);
+            rejectedConnections.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Libera a conexão reservada em tryAcquireConnection
+     */
+    public void releaseConnection(String ip) {
+        if (maxConnectionsPerIp <= 0) {
+            return;
+        }
+        // Remove a entrada ao chegar a zero para o mapa não crescer com IPs antigos
+        connectionsByIp.computeIfPresent(ip, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Resposta BUSY para um comando recusado
+     */
+    public Protocol.Response busy(String requestId, String reason) {
+        return Protocol.createBusy(requestId, reason, retryAfterMs);
+    }
+
+    public void recordQueueRejected() {
+        rejectedQueue.increment();
+    }
+
+    public void recordRouteRejected() {
+        rejectedRoute.increment();
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    public int getMaxConnectionsPerIp() {
+        return maxConnectionsPerIp;
+    }
+
+    /**
+     * IPs com ao menos uma conexão aberta
+     */
+    public int getTrackedIpCount() {
+        return connectionsByIp.size();
+    }
+
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    public long getRejectedQueue() {
+        return rejectedQueue.sum();
+    }
+
+    public long getRejectedRoute() {
+        return rejectedRoute.sum();
+    }
+}
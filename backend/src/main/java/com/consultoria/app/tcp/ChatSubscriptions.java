@@ -0,0 +1,174 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.model.ChatMessage;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import com.google.gson.JsonObject;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assinaturas de chat por projeto. Cada nova ChatMessage é enviada como
+ * frame PUSH a todas as conexões abertas inscritas no projeto:
+ *
+ * <pre>
+ * {"type": "PUSH", "success": true, "message": "CHAT_MESSAGE",
+ *  "data": {"projectId": 1, "message": {"id": 10, "senderId": 2, ...}}}
+ * </pre>
+ *
+ * Uma mensagem já confirmada que o banco recusou depois (projeto ou
+ * remetente removido) é retirada com CHAT_MESSAGE_DROPPED:
+ *
+ * <pre>
+ * {"type": "PUSH", "success": true, "message": "CHAT_MESSAGE_DROPPED",
+ *  "data": {"projectId": 1, "messageId": 10, "senderId": 2}}
+ * </pre>
+ *
+ * As assinaturas são removidas quando a conexão fecha.
+ */
+@Component
+public class ChatSubscriptions {
+    public static final String EVENT_CHAT_MESSAGE = "CHAT_MESSAGE";
+    public static final String EVENT_CHAT_MESSAGE_DROPPED = "CHAT_MESSAGE_DROPPED";
+
+    private final Map<Long, Set<ClientConnection>> subscribers = new ConcurrentHashMap<>();
+    private final Map<ClientConnection, Set<Long>> projectsByConnection = new ConcurrentHashMap<>();
+
+    /**
+     * Inscreve a conexão nas mensagens do projeto
+     */
+    public void subscribe(Long projectId, ClientConnection connection) {
+        Set<Long> projects = projectsByConnection.get(connection);
+        if (projects == null) {
+            Set<Long> created = ConcurrentHashMap.newKeySet();
+            projects = projectsByConnection.putIfAbsent(connection, created);
+            if (projects == null) {
+                // Primeira assinatura da conexão: limpa tudo quando ela fechar
+                projects = created;
+                connection.addCloseListener(() -> unsubscribeAll(connection));
+            }
+        }
+        projects.add(projectId);
+        subscribers.computeIfAbsent(projectId, id -> ConcurrentHashMap.newKeySet()).add(connection);
+
+        // Conexão fechou durante a inscrição
+        if (!connection.isOpen()) {
+            unsubscribeAll(connection);
+        }
+    }
+
+    /**
+     * Cancela a assinatura da conexão no projeto
+     */
+    public void unsubscribe(Long projectId, ClientConnection connection) {
+        Set<Long> projects = projectsByConnection.get(connection);
+        if (projects != null) {
+            projects.remove(projectId);
+        }
+        removeSubscriber(projectId, connection);
+    }
+
+    /**
+     * Cancela todas as assinaturas da conexão
+     */
+    public void unsubscribeAll(ClientConnection connection) {
+        Set<Long> projects = projectsByConnection.remove(connection);
+        if (projects != null) {
+            for (Long projectId : projects) {
+                removeSubscriber(projectId, connection);
+            }
+        }
+    }
+
+    private void removeSubscriber(Long projectId, ClientConnection connection) {
+        subscribers.computeIfPresent(projectId, (id, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    /**
+     * Envia a mensagem aos inscritos no projeto, exceto à conexão de origem
+     * (que já recebe a resposta do SEND)
+     *
+     * @return Número de conexões notificadas
+     */
+    public int publish(ChatMessage chatMessage, ClientConnection origin) {
+        Long projectId = chatMessage.getProject().getId();
+        Set<ClientConnection> connections = subscribers.get(projectId);
+        if (connections == null || connections.isEmpty()) {
+            return 0;
+        }
+
+        JsonObject data = new JsonObject();
+        data.addProperty("projectId", projectId);
+        data.add("message", toJson(chatMessage));
+        Protocol.Response push = Protocol.createPush(EVENT_CHAT_MESSAGE, data);
+
+        int delivered = 0;
+        for (ClientConnection connection : connections) {
+            if (connection != origin && connection.isOpen()) {
+                connection.send(push);
+                delivered++;
+            }
+        }
+
+        ConsultoriaLogger.logDebug(LogCategory.CHAT, "Push da mensagem %d do projeto %d para %d conexões",
+                chatMessage.getId(), projectId, delivered);
+        return delivered;
+    }
+
+    /**
+     * Avisa os inscritos no projeto, inclusive a conexão que enviou, que a
+     * mensagem confirmada não foi gravada
+     *
+     * @return Número de conexões notificadas
+     */
+    public int publishDropped(ChatMessage chatMessage) {
+        Long projectId = chatMessage.getProject().getId();
+        Set<ClientConnection> connections = subscribers.get(projectId);
+        if (connections == null || connections.isEmpty()) {
+            return 0;
+        }
+
+        JsonObject data = new JsonObject();
+        data.addProperty("projectId", projectId);
+        data.addProperty("messageId", chatMessage.getId());
+        data.addProperty("senderId", chatMessage.getSender().getId());
+        Protocol.Response push = Protocol.createPush(EVENT_CHAT_MESSAGE_DROPPED, data);
+
+        int delivered = 0;
+        for (ClientConnection connection : connections) {
+            if (connection.isOpen()) {
+                connection.send(push);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Número de conexões inscritas no projeto
+     */
+    public int getSubscriberCount(Long projectId) {
+        Set<ClientConnection> connections = subscribers.get(projectId);
+        return connections != null ? connections.size() : 0;
+    }
+
+    /**
+     * Mesmo formato dos itens de CHAT GET_MESSAGES
+     */
+    static JsonObject toJson(ChatMessage chatMessage) {
+        JsonObject msgObj = new JsonObject();
+        msgObj.addProperty("id", chatMessage.getId());
+        msgObj.addProperty("senderId", chatMessage.getSender().getId());
+        msgObj.addProperty("senderName", chatMessage.getSender().getName());
+        msgObj.addProperty("content", chatMessage.getContent());
+        msgObj.addProperty("timestamp", chatMessage.getTimestamp().toString());
+        return msgObj;
+    }
+}
@@ -0,0 +1,39 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+/**
+ * Conexão de cliente vista pelo servidor, independente do modo de I/O
+ * (ClientHandler bloqueante ou NioConnection)
+ */
+public interface ClientConnection {
+    /**
+     * Codifica a resposta no enquadramento negociado e envia.
+     * Seguro para chamadas concorrentes.
+     */
+    void send(Protocol.Response response);
+
+    /**
+     * Fecha a conexão
+     */
+    void close();
+
+    boolean isOpen();
+
+    String getClientIp();
+
+    int getClientPort();
+
+    /**
+     * Se a conexão negociou multiplex no HELLO; nas demais o streamId dos
+     * frames é ignorado
+     */
+    default boolean isMultiplexed() {
+        return false;
+    }
+
+    /**
+     * Registra callback executado uma única vez quando a conexão fecha.
+     * Se a conexão já estiver fechada, executa imediatamente.
+     */
+    void addCloseListener(Runnable listener);
+}
@@ -1,116 +1,203 @@
 // Criado por Felipe Lona
 package com.consultoria.app.tcp;
 
-import com.consultoria.app.tcp.handler.CommandHandler;
-import com.consultoria.app.tcp.Protocol.Message;
-import com.consultoria.app.tcp.Protocol.Response;
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.tcp.frame.FrameCodec;
+import com.consultoria.app.tcp.frame.FrameCompressor;
+import com.consultoria.app.tcp.frame.FrameReader;
+import com.consultoria.app.tcp.frame.FrameSettings;
+import com.consultoria.app.tcp.frame.Framing;
+import com.consultoria.app.tcp.frame.Handshake;
 import com.consultoria.app.util.ConsultoriaLogger;
 import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
 
 /**
- * Handler para cada conexão de cliente TCP/IP
+ * Handler para cada conexão de cliente TCP/IP (modo bloqueante).
+ * A thread da conexão apenas lê frames; os comandos rodam no RequestPipeline.
  */
-public class ClientHandler implements Runnable {
+public class ClientHandler implements Runnable, ClientConnection {
     private static final Logger log = LoggerFactory.getLogger(ClientHandler.class);
+    private static final long DRAIN_TIMEOUT_MS = 30000;
 
     private final Socket clientSocket;
-    private final Map<String, CommandHandler> commandHandlers;
-    private final SessionManager sessionManager;
-    private boolean running = true;
-
-    public ClientHandler(Socket socket, Map<String, CommandHandler> handlers) {
+    private final RequestPipeline pipeline;
+    private final FrameSettings settings;
+    private final String clientIp;
+    private final int clientPort;
+    private OutputStream out;
+    private volatile Framing outputFraming = Framing.NEWLINE;
+    private volatile FrameCompressor compressor;
+    // HELLO com multiplex aceito: frames com streamId abrem streams lógicos
+    private volatile boolean multiplexed;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    public ClientHandler(Socket socket, FrameSettings settings,
+            Function<ClientConnection, RequestPipeline> pipelineFactory) {
         this.clientSocket = socket;
-        this.commandHandlers = handlers;
-        this.sessionManager = SessionManager.getInstance();
+        this.settings = settings;
+        this.clientIp = socket.getInetAddress().getHostAddress();
+        this.clientPort = socket.getPort();
+        this.pipeline = pipelineFactory.apply(this);
     }
 
     @Override
     public void run() {
-        String clientIp = clientSocket.getInetAddress().getHostAddress();
-        int clientPort = clientSocket.getPort();
-
-        try (
-                BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)) {
-            
+        try (OutputStream writer = new BufferedOutputStream(clientSocket.getOutputStream())) {
+            FrameReader reader = new FrameReader(clientSocket.getInputStream(), settings.getMaxFrameBytes());
+            synchronized (this) {
+                out = writer;
+            }
             ConsultoriaLogger.logTCPConnection(clientIp, clientPort, "Cliente conectado", true);
 
-            String inputLine;
-            while (running && (inputLine = in.readLine()) != null) {
-                long startTime = System.currentTimeMillis();
-                try {
-                    // Decodifica mensagem
-                    Message message = Protocol.decode(inputLine);
-
-                    if (!Protocol.isValid(message)) {
-                        ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Mensagem inválida recebida de %s:%d", clientIp, clientPort);
-                        Response errorResponse = Protocol.createError(
-                                message != null ? message.getRequestId() : "unknown",
-                                "Mensagem inválida");
-                        out.println(Protocol.encodeResponse(errorResponse));
+            Framing inputFraming = Framing.NEWLINE;
+            boolean firstFrame = true;
+            Frame frame;
+            while (running && (frame = reader.read(inputFraming)) != null) {
+                if (firstFrame) {
+                    firstFrame = false;
+                    Handshake.Result hello = Handshake.tryNegotiate(frame, inputFraming, settings, clientIp);
+                    if (hello != null) {
+                        // Resposta ainda no enquadramento antigo; depois troca os dois sentidos
+                        inputFraming = hello.getFraming();
+                        if (hello.isMultiplexed()) {
+                            multiplexed = true;
+                            pipeline.setMaxInFlight(settings.getMultiplexMaxInFlight());
+                        }
+                        reader.setCompressor(hello.getCompressor());
+                        synchronized (this) {
+                            send(hello.getResponse());
+                            outputFraming = hello.getFraming();
+                            compressor = hello.getCompressor();
+                        }
                         continue;
                     }
-
-                    ConsultoriaLogger.logInfo(LogCategory.TCP_CLIENT, "Comando recebido: %s de %s:%d", 
-                            message.getType(), clientIp, clientPort);
-
-                    // Processa comando
-                    Response response = processCommand(message);
-
-                    // Envia resposta
-                    out.println(Protocol.encodeResponse(response));
-
-                    long duration = System.currentTimeMillis() - startTime;
-                    ConsultoriaLogger.logPerformance(LogCategory.TCP_CLIENT, 
-                            "Processamento de " + message.getType(), duration);
-
-                } catch (Exception e) {
-                    ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Processar mensagem", e);
-                    Response errorResponse = Protocol.createError("unknown",
-                            "Erro interno: " + e.getMessage());
-                    out.println(Protocol.encodeResponse(errorResponse));
                 }
+
+                pipeline.submit(frame);
+                // Backpressure: não lê novos frames enquanto houver backlog
+                pipeline.awaitBacklogDrained();
             }
 
+            // Fim do stream: entrega respostas pendentes antes de fechar
+            pipeline.awaitIdle(DRAIN_TIMEOUT_MS);
+
         } catch (IOException e) {
-            ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Conexão com cliente", e);
+            if (running) {
+                ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Conexão com cliente", e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
+            running = false;
+            releaseCompressor();
             try {
                 clientSocket.close();
                 ConsultoriaLogger.logTCPConnection(clientIp, clientPort, "Cliente desconectado", false);
             } catch (IOException e) {
                 ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Fechar socket", e);
             }
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public synchronized void send(Protocol.Response response) {
+        if (out == null || !running) {
+            return;
+        }
+        try {
+            out.write(FrameCodec.encode(outputFraming, response, compressor));
+            out.flush();
+        } catch (IOException e) {
+            ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Enviar resposta", e);
+            stop();
         }
     }
 
     /**
-     * Processa comando usando handler apropriado
+     * Recusa a conexão sem atendê-la (pool de conexões cheio): envia a
+     * resposta no enquadramento inicial e fecha o socket
      */
-    private Response processCommand(Message message) {
-        String commandType = message.getType();
-        CommandHandler handler = commandHandlers.get(commandType);
+    public void reject(Protocol.Response response) {
+        running = false;
+        try {
+            OutputStream rejected = clientSocket.getOutputStream();
+            rejected.write(FrameCodec.encode(Framing.NEWLINE, response));
+            rejected.flush();
+        } catch (IOException e) {
+            // Cliente já foi embora
+        } finally {
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+                // socket já inutilizável
+            }
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return running && !clientSocket.isClosed();
+    }
+
+    @Override
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    @Override
+    public int getClientPort() {
+        return clientPort;
+    }
 
-        if (handler == null) {
-            return Protocol.createError(message.getRequestId(),
-                    "Comando desconhecido: " + commandType);
+    @Override
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        if (!running) {
+            notifyClosed();
         }
+    }
 
-        try {
-            return handler.handle(message, sessionManager);
-        } catch (Exception e) {
-            log.error("Erro ao executar handler para " + commandType, e);
-            return Protocol.createError(message.getRequestId(),
-                    "Erro ao processar comando: " + e.getMessage());
+    private void notifyClosed() {
+        for (Runnable listener : closeListeners) {
+            // remove garante execução única mesmo com chamadas concorrentes
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    /**
+     * Registra a taxa de compressão da conexão e libera o contexto zlib
+     */
+    private synchronized void releaseCompressor() {
+        if (compressor != null) {
+            ConsultoriaLogger.logInfo(LogCategory.TCP_CLIENT, "Compressão %s:%d: %s",
+                    clientIp, clientPort, compressor.getStats());
+            compressor.close();
+            compressor = null;
         }
     }
 
@@ -0,0 +1,170 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.Protocol.Message;
+import com.consultoria.app.tcp.Protocol.Response;
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Decodifica mensagens e despacha pela tabela de rotas (type, action).
+ * Compartilhado pelo modo bloqueante (ClientHandler) e pelo modo NIO.
+ */
+public class CommandDispatcher {
+    public static final int DEFAULT_MAX_STREAMS = 256;
+
+    private static final Logger log = LoggerFactory.getLogger(CommandDispatcher.class);
+
+    private final CommandRouter router;
+    private final MultiplexedStreams streams;
+
+    public CommandDispatcher(CommandRouter router) {
+        this(router, DEFAULT_MAX_STREAMS);
+    }
+
+    /**
+     * @param maxStreams streams lógicos por conexão multiplexada
+     */
+    public CommandDispatcher(CommandRouter router, int maxStreams) {
+        this.router = router;
+        this.streams = new MultiplexedStreams(maxStreams);
+    }
+
+    /**
+     * Processa um frame recebido. O futuro completa com a resposta a ser
+     * enviada (nunca com erro); rotas com executor dedicado completam em
+     * outra thread.
+     */
+    public CompletableFuture<Response> processAsync(Frame frame, ClientConnection connection) {
+        String clientIp = connection.getClientIp();
+        int clientPort = connection.getClientPort();
+        long startTime = System.currentTimeMillis();
+        try {
+            // Decodifica mensagem
+            Message message = Protocol.decode(frame.getJson());
+
+            if (!Protocol.isValid(message)) {
+                ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Mensagem inválida recebida de %s:%d", clientIp, clientPort);
+                return CompletableFuture.completedFuture(Protocol.createError(
+                        message != null ? message.getRequestId() : "unknown",
+                        "Mensagem inválida"));
+            }
+
+            // Frames multiplexados executam no stream lógico e a resposta volta marcada;
+            // sem multiplex negociado no HELLO o streamId é ignorado
+            String streamId = connection.isMultiplexed() ? message.getStreamId() : null;
+            if (streamId != null) {
+                if (MultiplexedStreams.CLOSE_COMMAND.equals(message.getType())) {
+                    streams.close(connection, streamId);
+                    return CompletableFuture.completedFuture(
+                            Protocol.createSuccess(message.getRequestId(), "Stream encerrado", new JsonObject())
+                                    .withStreamId(streamId));
+                }
+                StreamConnection stream = streams.resolve(connection, streamId);
+                if (stream == null) {
+                    ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Limite de streams atingido em %s:%d",
+                            clientIp, clientPort);
+                    return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(),
+                            "Limite de streams da conexão atingido").withStreamId(streamId));
+                }
+                connection = stream;
+            }
+
+            message.setBody(frame.getBody());
+            message.setConnection(connection);
+            ConsultoriaLogger.logDebug(LogCategory.TCP_COMMAND, "Comando recebido: %s de %s:%d",
+                    message.getType(), clientIp, clientPort);
+
+            // Processa comando
+            Message command = message;
+            CompletableFuture<Response> pending;
+            try {
+                pending = router.dispatchAsync(command);
+            } catch (Exception e) {
+                pending = CompletableFuture.completedFuture(failed(command, e));
+            }
+            return pending.handle((response, error) -> {
+                Response result = error != null ? failed(command, unwrap(error)) : response;
+                if (streamId != null) {
+                    result = result.withStreamId(streamId);
+                }
+                long duration = System.currentTimeMillis() - startTime;
+                ConsultoriaLogger.logPerformance(LogCategory.TCP_COMMAND, command.getType(), duration);
+                return result;
+            });
+
+        } catch (Exception e) {
+            ConsultoriaLogger.logError(LogCategory.TCP_CLIENT, "Processar mensagem", e);
+            return CompletableFuture.completedFuture(Protocol.createError("unknown", "Erro interno: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Resposta BUSY para um frame recusado antes da execução (fila de
+     * workers cheia). Lê apenas o cabeçalho para devolver requestId e
+     * streamId; nenhum handler é executado.
+     */
+    public Response busy(Frame frame, String reason) {
+        AdmissionControl admission = router.getAdmission();
+        admission.recordQueueRejected();
+        String requestId = "unknown";
+        String streamId = null;
+        try {
+            Message message = Protocol.decode(frame.getJson());
+            if (message != null) {
+                requestId = message.getRequestId();
+                streamId = message.getStreamId();
+            }
+        } catch (RuntimeException e) {
+            // Frame malformado: recusa sem correlação
+        }
+        Response response = admission.busy(requestId, reason);
+        return streamId != null ? response.withStreamId(streamId) : response;
+    }
+
+    /**
+     * Streams lógicos das conexões multiplexadas
+     */
+    public MultiplexedStreams getStreams() {
+        return streams;
+    }
+
+    /**
+     * Tabela de rotas usada no despacho
+     */
+    public CommandRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * Processa comando pela rota (type, action) correspondente
+     */
+    public Response processCommand(Message message) {
+        try {
+            return router.dispatch(message);
+        } catch (Exception e) {
+            return failed(message, e);
+        }
+    }
+
+    private Response failed(Message message, Throwable error) {
+        log.error("Erro ao executar handler para " + message.getType(), error);
+        return Protocol.createError(message.getRequestId(),
+                "Erro ao processar comando: " + error.getMessage());
+    }
+
+    /**
+     * Exceção original do handler (o futuro a entrega embrulhada)
+     */
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
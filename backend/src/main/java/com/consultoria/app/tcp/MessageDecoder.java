@@ -0,0 +1,146 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.Protocol.Message;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decodificador streaming de mensagens baseado em JsonReader.
+ * Extrai type, sessionId e requestId sem montar árvore JSON e guarda os
+ * campos de data em um índice plano (String, Long, Double, Boolean).
+ * Apenas valores aninhados (objetos/arrays) viram JsonElement; o JsonObject
+ * completo só é montado se algum handler chamar getData().
+ */
+public final class MessageDecoder {
+
+    private MessageDecoder() {
+    }
+
+    /**
+     * Decodifica a mensagem, ou retorna null se o JSON for inválido ou
+     * tiver algo além de um único objeto
+     */
+    public static Message decode(String json) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true);
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+
+            Message message = new Message();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                switch (name) {
+                    case "type":
+                        message.setType(readString(reader));
+                        break;
+                    case "sessionId":
+                        message.setSessionId(readString(reader));
+                        break;
+                    case "requestId":
+                        message.setRequestId(readString(reader));
+                        break;
+                    case "streamId":
+                        message.setStreamId(readString(reader));
+                        break;
+                    case "data":
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                            message.setFields(readFields(reader));
+                        } else {
+                            return null;
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            // Leniente só dentro do objeto: dados depois dele tornam a mensagem inválida
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            return message;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static Map<String, Object> readFields(JsonReader reader) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (reader.peek()) {
+                case STRING:
+                    fields.put(name, reader.nextString());
+                    break;
+                case NUMBER:
+                    fields.put(name, parseNumber(reader.nextString()));
+                    break;
+                case BOOLEAN:
+                    fields.put(name, reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    fields.put(name, null);
+                    break;
+                default:
+                    // Objetos e arrays aninhados mantêm a representação do Gson
+                    fields.put(name, JsonParser.parseReader(reader));
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+
+    private static Object parseNumber(String literal) {
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(literal);
+        }
+    }
+
+    /**
+     * Monta o JsonObject equivalente ao índice de campos
+     */
+    static JsonObject toJsonObject(Map<String, Object> fields) {
+        JsonObject data = new JsonObject();
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                data.add(entry.getKey(), JsonNull.INSTANCE);
+            } else if (value instanceof String) {
+                data.addProperty(entry.getKey(), (String) value);
+            } else if (value instanceof Number) {
+                data.addProperty(entry.getKey(), (Number) value);
+            } else if (value instanceof Boolean) {
+                data.addProperty(entry.getKey(), (Boolean) value);
+            } else {
+                data.add(entry.getKey(), (JsonElement) value);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,78 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams lógicos abertos em cada conexão física. Um stream nasce no
+ * primeiro frame com seu streamId e termina com STREAM_CLOSE ou quando
+ * a conexão física fecha. Cada conexão abre no máximo maxStreams streams.
+ */
+public class MultiplexedStreams {
+    public static final String CLOSE_COMMAND = "STREAM_CLOSE";
+
+    private final Map<ClientConnection, Map<String, StreamConnection>> streams = new ConcurrentHashMap<>();
+    private final int maxStreams;
+
+    public MultiplexedStreams(int maxStreams) {
+        this.maxStreams = Math.max(1, maxStreams);
+    }
+
+    /**
+     * Retorna o stream da conexão, criando-o se necessário, ou null se a
+     * conexão já tem maxStreams streams abertos
+     */
+    public StreamConnection resolve(ClientConnection parent, String streamId) {
+        Map<String, StreamConnection> byId = streams.get(parent);
+        if (byId == null) {
+            Map<String, StreamConnection> created = new ConcurrentHashMap<>();
+            byId = streams.putIfAbsent(parent, created);
+            if (byId == null) {
+                byId = created;
+                parent.addCloseListener(() -> closeAll(parent));
+            }
+        }
+        StreamConnection stream = byId.get(streamId);
+        if (stream != null) {
+            return stream;
+        }
+        synchronized (byId) {
+            if (byId.size() >= maxStreams && !byId.containsKey(streamId)) {
+                return null;
+            }
+            return byId.computeIfAbsent(streamId, id -> new StreamConnection(parent, id));
+        }
+    }
+
+    /**
+     * Encerra um stream (comando STREAM_CLOSE)
+     */
+    public void close(ClientConnection parent, String streamId) {
+        Map<String, StreamConnection> byId = streams.get(parent);
+        StreamConnection stream = byId != null ? byId.remove(streamId) : null;
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void closeAll(ClientConnection parent) {
+        Map<String, StreamConnection> byId = streams.remove(parent);
+        if (byId != null) {
+            for (StreamConnection stream : byId.values()) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Total de streams abertos em todas as conexões
+     */
+    public int getStreamCount() {
+        int total = 0;
+        for (Map<String, StreamConnection> byId : streams.values()) {
+            total += byId.size();
+        }
+        return total;
+    }
+}
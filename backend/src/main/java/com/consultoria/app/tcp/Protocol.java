@@ -2,20 +2,31 @@
 package com.consultoria.app.tcp;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+import java.util.Map;
+
 /**
  * Protocolo de comunicação JSON sobre TCP/IP
  * Formato: {"type": "COMMAND_NAME", "sessionId": "...", "data": {...}}
+ * Conexões multiplexadas (TCPBridge) acrescentam "streamId", devolvido nas respostas.
  */
 public class Protocol {
     private static final Gson gson = new Gson();
 
+    // data.code das respostas recusadas por sobrecarga
+    public static final String BUSY = "BUSY";
+
     public static class Message {
         private String type;
         private String sessionId;
         private JsonObject data;
         private String requestId; // Para correlacionar request/response
+        private String streamId; // Stream lógico em conexão multiplexada
+        private transient byte[] body; // Corpo binário (somente framing BINARY)
+        private transient Map<String, Object> fields; // Campos de data sem árvore (MessageDecoder)
+        private transient ClientConnection connection; // Conexão de origem (push, vínculo com sessão)
 
         public String getType() {
             return type;
@@ -33,12 +44,100 @@ public class Protocol {
             this.sessionId = sessionId;
         }
 
+        /**
+         * Retorna data como JsonObject, montado sob demanda a partir do
+         * índice de campos. Prefira has/getString/getLong no caminho quente.
+         */
         public JsonObject getData() {
+            if (data == null && fields != null) {
+                data = MessageDecoder.toJsonObject(fields);
+            }
             return data;
         }
 
         public void setData(JsonObject data) {
             this.data = data;
+            this.fields = null;
+        }
+
+        void setFields(Map<String, Object> fields) {
+            this.fields = fields;
+            this.data = null;
+        }
+
+        /**
+         * Verifica se data contém o campo com valor (null explícito conta
+         * como ausente)
+         */
+        public boolean has(String field) {
+            if (fields != null) {
+                return fields.get(field) != null;
+            }
+            JsonElement element = data != null ? data.get(field) : null;
+            return element != null && !element.isJsonNull();
+        }
+
+        /**
+         * Valor textual do campo de data, ou null se ausente
+         */
+        public String getString(String field) {
+            if (fields != null) {
+                Object value = fields.get(field);
+                if (value instanceof JsonElement) {
+                    return ((JsonElement) value).getAsString();
+                }
+                return value != null ? value.toString() : null;
+            }
+            JsonElement element = data != null ? data.get(field) : null;
+            return element != null && !element.isJsonNull() ? element.getAsString() : null;
+        }
+
+        /**
+         * Valor numérico do campo de data, ou null se ausente
+         */
+        public Long getLong(String field) {
+            if (fields != null) {
+                Object value = fields.get(field);
+                if (value instanceof Number) {
+                    return ((Number) value).longValue();
+                }
+                if (value instanceof String) {
+                    return Long.parseLong((String) value);
+                }
+                if (value instanceof JsonElement) {
+                    return ((JsonElement) value).getAsLong();
+                }
+                return null;
+            }
+            JsonElement element = data != null ? data.get(field) : null;
+            return element != null && !element.isJsonNull() ? element.getAsLong() : null;
+        }
+
+        /**
+         * Valor booleano do campo de data, ou o padrão se ausente
+         */
+        public boolean getBoolean(String field, boolean defaultValue) {
+            String value = getString(field);
+            return value != null ? Boolean.parseBoolean(value) : defaultValue;
+        }
+
+        /**
+         * Valor do campo de data como JsonElement (objetos e listas aninhados),
+         * ou null se ausente
+         */
+        public JsonElement getElement(String field) {
+            if (fields != null && fields.get(field) instanceof JsonElement) {
+                return (JsonElement) fields.get(field);
+            }
+            JsonObject json = getData();
+            return json != null ? json.get(field) : null;
+        }
+
+        /**
+         * Indica se a mensagem possui data (objeto)
+         */
+        public boolean hasData() {
+            return fields != null || data != null;
         }
 
         public String getRequestId() {
@@ -48,14 +147,51 @@ public class Protocol {
         public void setRequestId(String requestId) {
             this.requestId = requestId;
         }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public void setBody(byte[] body) {
+            this.body = body;
+        }
+
+        public String getStreamId() {
+            return streamId;
+        }
+
+        public void setStreamId(String streamId) {
+            this.streamId = streamId;
+        }
+
+        /**
+         * Conexão TCP que enviou a mensagem, ou null fora do servidor TCP
+         */
+        public ClientConnection getConnection() {
+            return connection;
+        }
+
+        public void setConnection(ClientConnection connection) {
+            this.connection = connection;
+        }
     }
 
     public static class Response {
+        private String streamId; // Primeiro campo serializado: o bridge roteia sem ler o resto
         private String type;
         private String requestId;
         private boolean success;
         private String message;
         private JsonObject data;
+        private transient byte[] body; // Corpo binário, enviado fora do JSON no framing BINARY
+
+        public String getStreamId() {
+            return streamId;
+        }
+
+        public void setStreamId(String streamId) {
+            this.streamId = streamId;
+        }
 
         public String getType() {
             return type;
@@ -96,31 +232,65 @@ public class Protocol {
         public void setData(JsonObject data) {
             this.data = data;
         }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public void setBody(byte[] body) {
+            this.body = body;
+        }
+
+        /**
+         * Cópia rasa com outro streamId (respostas compartilhadas, como push)
+         */
+        public Response withStreamId(String streamId) {
+            Response copy = new Response();
+            copy.streamId = streamId;
+            copy.type = type;
+            copy.requestId = requestId;
+            copy.success = success;
+            copy.message = message;
+            copy.data = data;
+            copy.body = body;
+            return copy;
+        }
     }
 
     /**
      * Serializa Message para JSON string
      */
     public static String encode(Message message) {
+        message.getData(); // Materializa data antes de serializar
         return gson.toJson(message) + "\n"; // Adiciona newline como delimitador
     }
 
     /**
-     * Deserializa JSON string para Message
+     * Deserializa JSON string para Message (streaming, sem árvore para data)
      */
     public static Message decode(String json) {
-        try {
-            return gson.fromJson(json.trim(), Message.class);
-        } catch (Exception e) {
-            return null;
-        }
+        return MessageDecoder.decode(json);
     }
 
     /**
      * Serializa Response para JSON string
      */
     public static String encodeResponse(Response response) {
-        return gson.toJson(response) + "\n";
+        return toJson(response) + "\n";
+    }
+
+    /**
+     * Serializa Response para JSON sem delimitador (framing BINARY)
+     */
+    public static String toJson(Response response) {
+        return gson.toJson(response);
+    }
+
+    /**
+     * Serializa Response para árvore JSON (ex.: itens de um BATCH)
+     */
+    public static JsonObject toJsonTree(Response response) {
+        return gson.toJsonTree(response).getAsJsonObject();
     }
 
     /**
@@ -136,6 +306,18 @@ public class Protocol {
         return response;
     }
 
+    /**
+     * Cria frame de push (enviado sem requisição do cliente)
+     */
+    public static Response createPush(String event, JsonObject data) {
+        Response response = new Response();
+        response.setType("PUSH");
+        response.setSuccess(true);
+        response.setMessage(event);
+        response.setData(data);
+        return response;
+    }
+
     /**
      * Cria resposta de erro
      */
@@ -149,6 +331,17 @@ public class Protocol {
         return response;
     }
 
+    /**
+     * Cria resposta de sobrecarga: o comando não foi executado e pode ser
+     * reenviado após retryAfterMs
+     */
+    public static Response createBusy(String requestId, String message, long retryAfterMs) {
+        Response response = createError(requestId, message);
+        response.getData().addProperty("code", BUSY);
+        response.getData().addProperty("retryAfterMs", retryAfterMs);
+        return response;
+    }
+
     /**
      * Valida estrutura da mensagem
      */
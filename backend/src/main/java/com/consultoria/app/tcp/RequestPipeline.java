@@ -0,0 +1,187 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.Protocol.Response;
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Execução pipelined das requisições de uma conexão: até maxInFlight
+ * comandos rodam em paralelo e cada resposta é enviada assim que fica
+ * pronta, correlacionada pelo requestId. Frames acima do limite aguardam
+ * em fila e o transporte deve parar de ler enquanto houver backlog.
+ */
+public class RequestPipeline {
+    private final CommandDispatcher dispatcher;
+    private final Executor executor;
+    private final ClientConnection connection;
+    private int maxInFlight;
+
+    private final Deque<Frame> pending = new ArrayDeque<>();
+    private int inFlight = 0;
+    private Runnable onBacklogDrained;
+    private Runnable onIdle;
+
+    public RequestPipeline(CommandDispatcher dispatcher, Executor executor,
+            ClientConnection connection, int maxInFlight) {
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.connection = connection;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Altera o limite de comandos em andamento (ex.: conexão multiplexada)
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        synchronized (this) {
+            this.maxInFlight = Math.max(1, maxInFlight);
+        }
+        // Limite maior: libera frames que aguardavam
+        Frame next;
+        while ((next = pollIfSlotFree()) != null) {
+            execute(next);
+        }
+    }
+
+    private synchronized Frame pollIfSlotFree() {
+        if (inFlight >= maxInFlight || pending.isEmpty()) {
+            return null;
+        }
+        inFlight++;
+        Frame next = pending.poll();
+        if (pending.isEmpty()) {
+            notifyAll();
+        }
+        return next;
+    }
+
+    /**
+     * Callback executado quando o backlog esvazia (transporte pode voltar a ler)
+     */
+    public void setOnBacklogDrained(Runnable onBacklogDrained) {
+        this.onBacklogDrained = onBacklogDrained;
+    }
+
+    /**
+     * Callback executado quando não há mais comandos em andamento
+     */
+    public void setOnIdle(Runnable onIdle) {
+        this.onIdle = onIdle;
+    }
+
+    /**
+     * Submete um frame recebido. Nunca bloqueia.
+     */
+    public void submit(Frame frame) {
+        synchronized (this) {
+            if (inFlight >= maxInFlight) {
+                pending.add(frame);
+                return;
+            }
+            inFlight++;
+        }
+        execute(frame);
+    }
+
+    /**
+     * Indica se há frames aguardando um slot livre
+     */
+    public synchronized boolean hasBacklog() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Bloqueia a thread leitora enquanto houver backlog (modo bloqueante)
+     */
+    public synchronized void awaitBacklogDrained() throws InterruptedException {
+        while (!pending.isEmpty()) {
+            wait();
+        }
+    }
+
+    /**
+     * Aguarda os comandos em andamento terminarem (ex.: cliente fechou a escrita)
+     */
+    public synchronized boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (inFlight > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void execute(Frame frame) {
+        try {
+            executor.execute(() -> run(frame));
+        } catch (RejectedExecutionException e) {
+            // Fila de workers cheia: recusa na hora com BUSY em vez de enfileirar
+            ConsultoriaLogger.logDebug(LogCategory.TCP_COMMAND, "Executor recusou comando de %s:%d",
+                    connection.getClientIp(), connection.getClientPort());
+            connection.send(dispatcher.busy(frame, "Servidor ocupado: fila de workers cheia"));
+            complete();
+        }
+    }
+
+    private void run(Frame frame) {
+        CompletableFuture<Response> result;
+        try {
+            result = dispatcher.processAsync(frame, connection);
+        } catch (RuntimeException | Error e) {
+            complete();
+            throw e;
+        }
+        // Rotas com executor dedicado completam em outra thread: o worker já
+        // está livre e o slot da conexão só é devolvido ao enviar a resposta
+        result.whenComplete((response, error) -> {
+            try {
+                if (response != null) {
+                    connection.send(response);
+                }
+            } finally {
+                complete();
+            }
+        });
+    }
+
+    private void complete() {
+        Frame next;
+        boolean drained = false;
+        boolean idle = false;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                inFlight--;
+                idle = inFlight == 0;
+            } else if (pending.isEmpty()) {
+                drained = true;
+            }
+            notifyAll();
+        }
+
+        if (drained && onBacklogDrained != null) {
+            onBacklogDrained.run();
+        }
+        if (idle && onIdle != null) {
+            onIdle.run();
+        }
+        if (next != null) {
+            execute(next);
+        }
+    }
+}
@@ -2,19 +2,112 @@
 package com.consultoria.app.tcp;
 
 import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.session.CompactSessionTable;
+import com.consultoria.app.tcp.session.InMemorySessionStore;
+import com.consultoria.app.tcp.session.SessionSnapshot;
+import com.consultoria.app.tcp.session.SessionStore;
+import com.consultoria.app.tcp.session.SessionTokens;
+import com.consultoria.app.tcp.session.TimingWheel;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Gerenciador de sessões de usuários autenticados
+ *
+ * A expiração fica em uma roda de tempo (TimingWheel) varrida a cada
+ * segundo por uma thread em segundo plano: validar a sessão só atualiza a
+ * última atividade, e sessões abandonadas saem da memória sem depender de
+ * novos acessos.
+ *
+ * As sessões ficam em um SessionStore (memória ou banco compartilhado entre
+ * os nós); o mapa local é um near-cache read-through. Com store
+ * compartilhado, uma entrada é revalidada no store depois de cacheTtl e a
+ * atividade é propagada em segundo plano no máximo uma vez por intervalo.
+ *
+ * No modo sem estado (setTokens) o login emite um token assinado em vez de
+ * uma sessão: validar é conferir a assinatura e a lista de revogação, sem
+ * cache, roda de expiração ou store.
+ *
+ * No modo compacto (setCompactTable) as sessões ficam em uma tabela fora do
+ * heap, local a este nó, com varredura incremental própria: para volumes de
+ * sessões em que o mapa de objetos pesaria no heap e no GC.
+ *
+ * Sessões locais (store em memória ou tabela compacta) podem ser gravadas
+ * em snapshot periodicamente e no desligamento, e restauradas no início:
+ * depois de um deploy o cliente retoma a sessão (AUTH RESUME) sem refazer
+ * login.
  */
 public class SessionManager {
+    private static final long DEFAULT_SESSION_TIMEOUT_MS = 3600000; // 1 hora em ms
+    private static final long EXPIRY_TICK_MS = 1000;
+    private static final long DEFAULT_CACHE_TTL_MS = 5000;
+    private static final long MAX_TOUCH_INTERVAL_MS = 60000;
+    // Limpeza das sessões do store abandonadas por nós que caíram
+    private static final long STORE_CLEANUP_MS = 60000;
+    // Leitura das revogações gravadas por outros nós (tokens sem estado)
+    private static final long REVOCATION_PULL_MS = 2000;
+    // Folga de relógio entre os nós na leitura das revogações
+    private static final long REVOCATION_PULL_OVERLAP_MS = 5000;
+    // Evento enviado às conexões da sessão antes de fechá-las
+    public static final String SESSION_EXPIRED_EVENT = "SESSION_EXPIRED";
+
     private static SessionManager instance;
+    // Near-cache das sessões usadas neste nó
     private final Map<String, Session> sessions = new ConcurrentHashMap<>();
-    private final long SESSION_TIMEOUT = 3600000; // 1 hora em ms
+    // Conexões TCP abertas de cada sessão (push, encerramento no logout/expiração)
+    private final Map<String, Set<ClientConnection>> connections = new ConcurrentHashMap<>();
+    private final TimingWheel expiryWheel = new TimingWheel(EXPIRY_TICK_MS, System.currentTimeMillis());
+    private final List<SessionExpiryListener> expiryListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder expiredCount = new LongAdder();
+    private final LongAdder storeLoads = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+    private volatile long sessionTimeoutMs = DEFAULT_SESSION_TIMEOUT_MS;
+    private volatile SessionStore store = new InMemorySessionStore();
+    private volatile long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+    // Modo sem estado: null mantém sessões no store
+    private volatile SessionTokens tokens;
+    // tokenId → expiração; entradas saem quando o token venceria
+    private final Map<Long, Long> revokedTokens = new ConcurrentHashMap<>();
+    private volatile long lastRevocationPull;
+    // Modo compacto: null mantém sessões no near-cache/store
+    private volatile CompactSessionTable compactTable;
+    // Snapshot local das sessões: null desativa
+    private volatile Path snapshotFile;
+
+    /**
+     * Notificado quando uma sessão expira por inatividade (não no logout)
+     */
+    public interface SessionExpiryListener {
+        void sessionExpired(Session session);
+    }
 
     private SessionManager() {
+        addExpiryListener(this::closeConnections);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::cleanExpiredSessions, EXPIRY_TICK_MS, EXPIRY_TICK_MS, TimeUnit.MILLISECONDS);
+        sweeper.scheduleWithFixedDelay(this::cleanStore, STORE_CLEANUP_MS, STORE_CLEANUP_MS, TimeUnit.MILLISECONDS);
+        sweeper.scheduleWithFixedDelay(this::pullRevocations, REVOCATION_PULL_MS, REVOCATION_PULL_MS,
+                TimeUnit.MILLISECONDS);
     }
 
     public static synchronized SessionManager getInstance() {
@@ -25,12 +118,108 @@ public class SessionManager {
     }
 
     /**
-     * Cria nova sessão para usuário
+     * Define o tempo de inatividade até a sessão expirar (session.timeout).
+     * Vale também para as sessões já abertas.
+     */
+    public void setSessionTimeout(long timeout, TimeUnit unit) {
+        sessionTimeoutMs = Math.max(EXPIRY_TICK_MS, unit.toMillis(timeout));
+    }
+
+    public long getSessionTimeoutMs() {
+        return sessionTimeoutMs;
+    }
+
+    /**
+     * Troca o store das sessões (session.store). Deve ser chamado na
+     * inicialização, antes do primeiro login.
+     *
+     * @param cacheTtl tempo que uma entrada do near-cache vale sem consultar
+     *                 o store (só para store compartilhado)
+     */
+    public void setStore(SessionStore store, long cacheTtl, TimeUnit unit) {
+        this.store = store;
+        this.cacheTtlMs = Math.max(0, unit.toMillis(cacheTtl));
+    }
+
+    public SessionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Ativa o modo sem estado (session.mode=stateless): novos logins recebem
+     * tokens assinados. Sessões já abertas continuam válidas.
+     */
+    public void setTokens(SessionTokens tokens) {
+        this.tokens = tokens;
+    }
+
+    public boolean isStateless() {
+        return tokens != null;
+    }
+
+    /**
+     * Ativa o modo compacto (session.mode=compact): novos logins vão para a
+     * tabela fora do heap. Deve ser chamado na inicialização.
+     */
+    public void setCompactTable(CompactSessionTable table) {
+        this.compactTable = table;
+    }
+
+    public CompactSessionTable getCompactTable() {
+        return compactTable;
+    }
+
+    /**
+     * Ativa o snapshot das sessões locais em file, gravado a cada interval
+     * pela thread session-expiry. A gravação final no desligamento fica com
+     * quem chamou (saveSnapshot).
+     */
+    public void enableSnapshots(Path file, long interval, TimeUnit unit) {
+        this.snapshotFile = file;
+        long intervalMs = Math.max(EXPIRY_TICK_MS, unit.toMillis(interval));
+        sweeper.scheduleWithFixedDelay(this::saveSnapshot, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sessões que só existem neste nó e precisam de snapshot para
+     * sobreviver a um restart (store compartilhado já persiste as suas)
+     */
+    public boolean hasLocalSessions() {
+        return tokens == null && (compactTable != null || !store.isShared());
+    }
+
+    /**
+     * Registra um listener de expiração. As conexões da sessão são fechadas
+     * por um listener registrado na criação do SessionManager.
+     */
+    public void addExpiryListener(SessionExpiryListener listener) {
+        expiryListeners.add(listener);
+    }
+
+    public void removeExpiryListener(SessionExpiryListener listener) {
+        expiryListeners.remove(listener);
+    }
+
+    /**
+     * Cria nova sessão para usuário. No modo sem estado retorna um token
+     * assinado e nada é guardado no servidor.
      */
     public String createSession(User user) {
+        SessionTokens issuer = tokens;
+        if (issuer != null) {
+            return issuer.issue(user);
+        }
+        CompactSessionTable table = compactTable;
+        if (table != null) {
+            UUID id = UUID.randomUUID();
+            table.put(id, user, System.currentTimeMillis());
+            return id.toString();
+        }
+
         String sessionId = UUID.randomUUID().toString();
         Session session = new Session(sessionId, user);
-        sessions.put(sessionId, session);
+        store.save(session);
+        cache(session, session.getLastActivity());
         return sessionId;
     }
 
@@ -42,42 +231,471 @@ public class SessionManager {
             return null;
         }
 
+        // Caminho rápido: entrada do near-cache ainda dentro do TTL
+        long now = System.currentTimeMillis();
+        if (SessionTokens.isToken(sessionId)) {
+            return validateToken(sessionId, now);
+        }
+        CompactSessionTable table = compactTable;
+        if (table != null) {
+            UUID id = parseSessionId(sessionId);
+            return id != null ? table.touch(id, now, sessionTimeoutMs) : null;
+        }
+        SessionStore current = store;
         Session session = sessions.get(sessionId);
+        if (session == null) {
+            session = loadFromStore(sessionId, now);
+        } else if (current.isShared() && now - session.verifiedAt > cacheTtlMs) {
+            session = revalidate(session, now);
+        }
         if (session == null) {
             return null;
         }
 
-        // Verifica timeout
-        if (System.currentTimeMillis() - session.getLastActivity() > SESSION_TIMEOUT) {
-            sessions.remove(sessionId);
+        // Verifica timeout; a remoção e o aviso às conexões ficam com a varredura
+        if (now - session.getLastActivity() > sessionTimeoutMs) {
             return null;
         }
 
-        // Atualiza última atividade
-        session.updateActivity();
+        // Atualiza última atividade: o prazo na roda é relido quando o slot vencer
+        session.lastActivity = now;
+        if (current.isShared() && now - session.persistedActivity > touchIntervalMs()) {
+            session.persistedActivity = now;
+            propagateActivity(current, sessionId, now);
+        }
         return session.getUser();
     }
 
+    /**
+     * Token sem estado: assinatura, expiração e lista de revogação. O User
+     * retornado tem apenas id e perfil; handlers que precisam do cadastro
+     * completo o buscam no repositório.
+     */
+    private User validateToken(String token, long now) {
+        SessionTokens verifier = tokens;
+        SessionTokens.Claims claims = verifier != null ? verifier.verify(token, now) : null;
+        if (claims == null || revokedTokens.containsKey(claims.getTokenId())) {
+            return null;
+        }
+        return CompactSessionTable.principal(claims.getUserId(), claims.getRole());
+    }
+
+    private static UUID parseSessionId(String sessionId) {
+        try {
+            return UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Revoga um token sem estado (LOGOUT) neste nó e nos demais
+     */
+    private void revokeToken(String token) {
+        SessionTokens verifier = tokens;
+        SessionTokens.Claims claims = verifier != null ? verifier.verify(token, System.currentTimeMillis()) : null;
+        if (claims == null) {
+            return;
+        }
+        revokedTokens.put(claims.getTokenId(), claims.getExpiresAt());
+        store.revokeToken(claims.getTokenId(), claims.getExpiresAt());
+    }
+
+    /**
+     * Falta no near-cache: busca no store (login feito em outro nó)
+     */
+    private Session loadFromStore(String sessionId, long now) {
+        storeLoads.increment();
+        Session stored = store.load(sessionId);
+        if (stored == null || now - stored.getLastActivity() > sessionTimeoutMs) {
+            return null;
+        }
+        return cache(stored, now);
+    }
+
+    /**
+     * Confere no store uma entrada com TTL vencido: logout em outro nó
+     * remove a entrada; atividade em outro nó adia a expiração local
+     */
+    private Session revalidate(Session session, long now) {
+        Session stored;
+        try {
+            storeLoads.increment();
+            stored = store.load(session.getSessionId());
+        } catch (RuntimeException e) {
+            // Store fora do ar: segue com o cache até a próxima revalidação
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Revalidar sessão no store", e);
+            session.verifiedAt = now;
+            return session;
+        }
+
+        if (stored == null) {
+            if (sessions.remove(session.getSessionId(), session)) {
+                expiryWheel.cancel(session.expiry);
+                connections.remove(session.getSessionId());
+            }
+            return null;
+        }
+        session.verifiedAt = now;
+        if (stored.getLastActivity() > session.getLastActivity()) {
+            session.lastActivity = stored.getLastActivity();
+        }
+        return session;
+    }
+
+    /**
+     * Coloca a sessão no near-cache e agenda sua expiração
+     */
+    private Session cache(Session session, long now) {
+        session.verifiedAt = now;
+        session.persistedActivity = session.getLastActivity();
+        session.expiry = new ExpiryTimeout(session);
+        Session existing = sessions.putIfAbsent(session.getSessionId(), session);
+        if (existing != null) {
+            return existing;
+        }
+        if (!expiryWheel.schedule(session.expiry)) {
+            sessions.remove(session.getSessionId(), session);
+            return null;
+        }
+        return session;
+    }
+
+    private void propagateActivity(SessionStore target, String sessionId, long lastActivity) {
+        sweeper.execute(() -> {
+            try {
+                target.touch(sessionId, lastActivity);
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.AUTH, "Propagar atividade da sessão", e);
+            }
+        });
+    }
+
+    /**
+     * Atividade local pode chegar ao store com até este atraso
+     */
+    private long touchIntervalMs() {
+        return Math.min(MAX_TOUCH_INTERVAL_MS, sessionTimeoutMs / 10);
+    }
+
     /**
      * Invalida sessão (logout)
      */
     public void invalidateSession(String sessionId) {
-        sessions.remove(sessionId);
+        if (sessionId == null) {
+            return;
+        }
+        if (SessionTokens.isToken(sessionId)) {
+            revokeToken(sessionId);
+            connections.remove(sessionId);
+            return;
+        }
+        CompactSessionTable table = compactTable;
+        if (table != null) {
+            UUID id = parseSessionId(sessionId);
+            if (id != null) {
+                table.remove(id);
+            }
+            connections.remove(sessionId);
+            return;
+        }
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            expiryWheel.cancel(session.expiry);
+        }
+        store.delete(sessionId);
+        connections.remove(sessionId);
+    }
+
+    /**
+     * Associa uma conexão TCP à sessão. O vínculo some quando a conexão fecha.
+     */
+    public void bindConnection(String sessionId, ClientConnection connection) {
+        if (sessionId == null || connection == null) {
+            return;
+        }
+        Set<ClientConnection> bound = connections.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet());
+        if (bound.add(connection)) {
+            connection.addCloseListener(() -> unbindConnection(sessionId, connection));
+        }
+    }
+
+    private void unbindConnection(String sessionId, ClientConnection connection) {
+        connections.computeIfPresent(sessionId, (id, bound) -> {
+            bound.remove(connection);
+            return bound.isEmpty() ? null : bound;
+        });
     }
 
     /**
-     * Conta sessões ativas
+     * Conexões TCP abertas da sessão
+     */
+    public Set<ClientConnection> getConnections(String sessionId) {
+        Set<ClientConnection> bound = sessionId != null ? connections.get(sessionId) : null;
+        return bound != null ? Collections.unmodifiableSet(bound) : Collections.<ClientConnection>emptySet();
+    }
+
+    /**
+     * Conta sessões ativas no near-cache (ou na tabela compacta) deste nó
      */
     public int getActiveSessionCount() {
-        return sessions.size();
+        CompactSessionTable table = compactTable;
+        return sessions.size() + (table != null ? table.size() : 0);
+    }
+
+    /**
+     * Bytes fora do heap reservados pela tabela compacta (0 fora do modo compacto)
+     */
+    public long getCompactBytes() {
+        CompactSessionTable table = compactTable;
+        return table != null ? table.getOffHeapBytes() : 0;
+    }
+
+    /**
+     * Sessões removidas por inatividade desde o início
+     */
+    public long getExpiredSessionCount() {
+        return expiredCount.sum();
     }
 
     /**
-     * Limpa sessões expiradas
+     * Consultas ao store por falta ou revalidação no near-cache
+     */
+    public long getStoreLoadCount() {
+        return storeLoads.sum();
+    }
+
+    /**
+     * Limpa sessões expiradas: avança a roda até agora e notifica os
+     * listeners de cada sessão vencida. Executado a cada segundo pela
+     * thread session-expiry.
      */
     public void cleanExpiredSessions() {
         long now = System.currentTimeMillis();
-        sessions.entrySet().removeIf(entry -> now - entry.getValue().getLastActivity() > SESSION_TIMEOUT);
+        List<TimingWheel.Timeout> expired;
+        List<CompactSessionTable.Expired> compactExpired;
+        try {
+            expired = expiryWheel.advance(now);
+            CompactSessionTable table = compactTable;
+            compactExpired = table != null
+                    ? table.sweep(now, sessionTimeoutMs)
+                    : Collections.<CompactSessionTable.Expired>emptyList();
+        } catch (RuntimeException e) {
+            // Uma exceção cancelaria as próximas execuções agendadas
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Varrer sessões expiradas", e);
+            return;
+        }
+
+        int removed = 0;
+        for (TimingWheel.Timeout timeout : expired) {
+            Session session = ((ExpiryTimeout) timeout).session;
+            if (keptAliveElsewhere(session)) {
+                continue;
+            }
+            // Logout concorrente já removeu a sessão: nada a notificar
+            if (!sessions.remove(session.getSessionId(), session)) {
+                continue;
+            }
+            try {
+                store.delete(session.getSessionId());
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.AUTH, "Remover sessão expirada do store", e);
+            }
+            removed++;
+            notifyExpired(session);
+        }
+        // Tabela compacta: a sessão só existe como slot, os listeners recebem uma cópia leve
+        for (CompactSessionTable.Expired entry : compactExpired) {
+            removed++;
+            notifyExpired(new Session(entry.getSessionId().toString(),
+                    CompactSessionTable.principal(entry.getUserId(), entry.getRole()), entry.getLastActivity()));
+        }
+        if (removed > 0) {
+            ConsultoriaLogger.logInfo(LogCategory.AUTH, "%d sessões expiradas por inatividade", removed);
+        }
+    }
+
+    private void notifyExpired(Session session) {
+        expiredCount.increment();
+        for (SessionExpiryListener listener : expiryListeners) {
+            try {
+                listener.sessionExpired(session);
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.AUTH, "Listener de expiração de sessão", e);
+            }
+        }
+    }
+
+    /**
+     * Com store compartilhado, outro nó pode ter mantido a sessão ativa:
+     * nesse caso a entrada local é reagendada em vez de expirar
+     */
+    private boolean keptAliveElsewhere(Session session) {
+        if (!store.isShared()) {
+            return false;
+        }
+        Session stored;
+        try {
+            stored = store.load(session.getSessionId());
+        } catch (RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Consultar sessão expirada no store", e);
+            return false;
+        }
+        if (stored == null || stored.getLastActivity() <= session.getLastActivity()) {
+            return false;
+        }
+        session.lastActivity = stored.getLastActivity();
+        session.verifiedAt = System.currentTimeMillis();
+        return expiryWheel.schedule(session.expiry);
+    }
+
+    /**
+     * Remove do store compartilhado sessões que nenhum nó expirou (ex.: o
+     * nó que as criou caiu) e descarta revogações de tokens já vencidos
+     */
+    private void cleanStore() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+
+        SessionStore current = store;
+        if (!current.isShared()) {
+            return;
+        }
+        try {
+            current.deleteExpiredRevocations(now);
+        } catch (RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Limpar tokens revogados do store", e);
+        }
+        try {
+            long cutoff = now - sessionTimeoutMs - touchIntervalMs();
+            int removed = current.deleteInactiveSince(cutoff);
+            if (removed > 0) {
+                ConsultoriaLogger.logInfo(LogCategory.AUTH, "%d sessões abandonadas removidas do store", removed);
+            }
+        } catch (RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Limpar sessões do store", e);
+        }
+    }
+
+    /**
+     * Traz para a lista local os tokens revogados em outros nós
+     */
+    private void pullRevocations() {
+        SessionStore current = store;
+        if (tokens == null || !current.isShared()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            long since = lastRevocationPull > 0 ? lastRevocationPull - REVOCATION_PULL_OVERLAP_MS : 0;
+            revokedTokens.putAll(current.loadRevocations(since));
+            lastRevocationPull = now;
+        } catch (RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Ler tokens revogados do store", e);
+        }
+    }
+
+    /**
+     * Tokens revogados ainda não vencidos conhecidos por este nó
+     */
+    public int getRevokedTokenCount() {
+        return revokedTokens.size();
+    }
+
+    /**
+     * Grava o snapshot das sessões locais ainda válidas. Chamado
+     * periodicamente e no desligamento; falhas só são registradas no log.
+     */
+    public synchronized void saveSnapshot() {
+        Path file = snapshotFile;
+        if (file == null || !hasLocalSessions()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            List<SessionSnapshot.Entry> entries = exportSessions(now);
+            SessionSnapshot.write(file, entries, now);
+            ConsultoriaLogger.logDebug(LogCategory.AUTH, "Snapshot de %d sessões gravado em %s", entries.size(), file);
+        } catch (IOException | RuntimeException e) {
+            ConsultoriaLogger.logError(LogCategory.AUTH, "Gravar snapshot de sessões", e);
+        }
+    }
+
+    private List<SessionSnapshot.Entry> exportSessions(long now) {
+        CompactSessionTable table = compactTable;
+        List<SessionSnapshot.Entry> entries = table != null ? table.export() : new ArrayList<SessionSnapshot.Entry>();
+        for (Session session : sessions.values()) {
+            UUID id = parseSessionId(session.getSessionId());
+            if (id != null && now - session.getLastActivity() <= sessionTimeoutMs) {
+                entries.add(new SessionSnapshot.Entry(id, session.getUser().getId(), session.getUser().getRole(),
+                        session.getLastActivity()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Restaura sessões lidas do snapshot, com o cadastro atual dos usuários.
+     * Sessões já vencidas ou de usuários removidos são descartadas.
+     *
+     * @return sessões restauradas
+     */
+    public int restoreSessions(List<SessionSnapshot.Entry> entries, Map<Long, User> users) {
+        long now = System.currentTimeMillis();
+        CompactSessionTable table = compactTable;
+        int restored = 0;
+        for (SessionSnapshot.Entry entry : entries) {
+            User user = users.get(entry.getUserId());
+            if (user == null || now - entry.getLastActivity() > sessionTimeoutMs) {
+                continue;
+            }
+            if (table != null) {
+                table.put(entry.getSessionId(), user, entry.getLastActivity());
+            } else {
+                Session session = new Session(entry.getSessionId().toString(), user, entry.getLastActivity());
+                store.save(session);
+                if (cache(session, now) == null) {
+                    continue;
+                }
+            }
+            restored++;
+        }
+        return restored;
+    }
+
+    /**
+     * Avisa e fecha as conexões ainda vinculadas à sessão expirada
+     */
+    private void closeConnections(Session session) {
+        Set<ClientConnection> bound = connections.remove(session.getSessionId());
+        if (bound == null) {
+            return;
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("sessionId", session.getSessionId());
+        Protocol.Response push = Protocol.createPush(SESSION_EXPIRED_EVENT, data);
+        for (ClientConnection connection : bound) {
+            if (connection.isOpen()) {
+                connection.send(push);
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Prazo da sessão na roda: última atividade + timeout atual
+     */
+    private final class ExpiryTimeout extends TimingWheel.Timeout {
+        private final Session session;
+
+        ExpiryTimeout(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        protected long deadline() {
+            return session.getLastActivity() + sessionTimeoutMs;
+        }
     }
 
     /**
@@ -86,12 +704,20 @@ public class SessionManager {
     public static class Session {
         private final String sessionId;
         private final User user;
-        private long lastActivity;
+        private volatile long lastActivity;
+        private TimingWheel.Timeout expiry;
+        // Near-cache: última confirmação no store e última atividade propagada
+        private volatile long verifiedAt;
+        private volatile long persistedActivity;
 
         public Session(String sessionId, User user) {
+            this(sessionId, user, System.currentTimeMillis());
+        }
+
+        public Session(String sessionId, User user, long lastActivity) {
             this.sessionId = sessionId;
             this.user = user;
-            this.lastActivity = System.currentTimeMillis();
+            this.lastActivity = lastActivity;
         }
 
         public String getSessionId() {
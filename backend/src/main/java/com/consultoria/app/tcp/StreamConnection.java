@@ -0,0 +1,77 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão lógica dentro de uma conexão multiplexada (ex.: uma aba do
+ * navegador atrás do TCPBridge). Respostas e pushes saem pela conexão
+ * física marcados com o streamId; sessão e assinaturas de chat ficam
+ * associadas ao stream, não à conexão física.
+ */
+public class StreamConnection implements ClientConnection {
+    private final ClientConnection parent;
+    private final String streamId;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    StreamConnection(ClientConnection parent, String streamId) {
+        this.parent = parent;
+        this.streamId = streamId;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    @Override
+    public void send(Protocol.Response response) {
+        if (!closed.get()) {
+            parent.send(response.withStreamId(streamId));
+        }
+    }
+
+    /**
+     * Encerra apenas o stream; a conexão física continua aberta
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && parent.isOpen();
+    }
+
+    @Override
+    public String getClientIp() {
+        return parent.getClientIp();
+    }
+
+    @Override
+    public int getClientPort() {
+        return parent.getClientPort();
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed.get()) {
+            notifyClosed();
+        }
+    }
+
+    private void notifyClosed() {
+        for (Runnable listener : closeListeners) {
+            // remove garante execução única mesmo com chamadas concorrentes
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+}
@@ -3,45 +3,103 @@ package com.consultoria.app.tcp;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.consultoria.app.tcp.frame.Frame;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Bridge WebSocket para TCP/IP
- * Frontend conecta via WebSocket, bridge encaminha para servidor TCP/IP
+ * Frontend conecta via WebSocket, bridge encaminha para servidor TCP/IP.
+ *
+ * As sessões WebSocket são multiplexadas sobre um pool pequeno de conexões
+ * TCP de longa duração: cada sessão recebe um streamId, acrescentado aos
+ * frames enviados e devolvido pelo servidor nas respostas e pushes. A
+ * leitura das conexões usa um executor compartilhado (uma tarefa por
+ * conexão do pool, não por sessão).
+ *
+ * No modo inprocess (padrão) o bridge não usa socket: cada sessão vira uma
+ * WebSocketConnection com RequestPipeline próprio, despachada pelo mesmo
+ * CommandDispatcher do TCPServer. O modo tcp continua disponível e o
+ * servidor TCP segue atendendo clientes externos nos dois casos.
  */
 @Component
 public class TCPBridge extends TextWebSocketHandler {
     private static final Logger log = LoggerFactory.getLogger(TCPBridge.class);
     private static final String TCP_HOST = "localhost";
-    private static final int TCP_PORT = 8888;
+    private static final String STREAM_ATTRIBUTE = "tcpBridge.streamId";
+    private static final String CONNECTION_ATTRIBUTE = "tcpBridge.connection";
+    private static final String PIPELINE_ATTRIBUTE = "tcpBridge.pipeline";
+    private static final String MODE_TCP = "tcp";
+    private static final String STREAM_PREFIX = "{\"streamId\":\"";
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_LIMIT = 1024 * 1024;
 
-    private final Map<String, Socket> tcpConnections = new ConcurrentHashMap<>();
+    @Value("${tcp.server.port:8888}")
+    private int tcpPort;
+
+    @Value("${tcp.bridge.pool-size:2}")
+    private int poolSize;
+
+    // inprocess: despacho direto no TCPServer | tcp: pool de conexões TCP multiplexadas
+    @Value("${tcp.bridge.mode:inprocess}")
+    private String mode;
+
+    @Autowired
+    private TCPServer tcpServer;
+
+    private final Map<String, WebSocketSession> sessionsByStream = new ConcurrentHashMap<>();
+    private final Map<String, BridgeConnection> connectionsByStream = new ConcurrentHashMap<>();
+    private final AtomicLong streamCounter = new AtomicLong();
+    private BridgeConnection[] pool;
+    private ExecutorService readerPool;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        log.info("WebSocket conectado: {}", session.getId());
+        if (!MODE_TCP.equalsIgnoreCase(mode)) {
+            WebSocketConnection connection = new WebSocketConnection(session);
+            session.getAttributes().put(CONNECTION_ATTRIBUTE, connection);
+            session.getAttributes().put(PIPELINE_ATTRIBUTE, tcpServer.openInProcess(connection));
+            log.info("WebSocket conectado: {} (despacho no processo)", session.getId());
+            return;
+        }
 
-        // Cria conexão TCP para este cliente WebSocket
-        try {
-            Socket tcpSocket = new Socket(TCP_HOST, TCP_PORT);
-            tcpConnections.put(session.getId(), tcpSocket);
+        String streamId = "ws-" + streamCounter.incrementAndGet();
+        session.getAttributes().put(STREAM_ATTRIBUTE, streamId);
 
-            // Thread para ler respostas do TCP e enviar para WebSocket
-            new Thread(() -> readFromTCP(session, tcpSocket)).start();
+        try {
+            BridgeConnection connection = acquireConnection();
+            // Leitor do pool e erros locais podem enviar ao mesmo tempo
+            sessionsByStream.put(streamId,
+                    new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT));
+            connectionsByStream.put(streamId, connection);
+            connection.streams.incrementAndGet();
 
-            log.info("Conexão TCP estabelecida para sessão {}", session.getId());
-        } catch (Exception e) {
+            log.info("WebSocket conectado: {} (stream {} na conexão TCP {})", session.getId(), streamId, connection.index);
+        } catch (IOException e) {
             log.error("Erro ao conectar ao servidor TCP", e);
             session.close(CloseStatus.SERVER_ERROR);
         }
@@ -49,20 +107,37 @@ public class TCPBridge extends TextWebSocketHandler {
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
-        String payload = message.getPayload();
-        Socket tcpSocket = tcpConnections.get(session.getId());
+        RequestPipeline pipeline = (RequestPipeline) session.getAttributes().get(PIPELINE_ATTRIBUTE);
+        if (pipeline != null) {
+            pipeline.submit(new Frame(message.getPayload()));
+            // Como no modo bloqueante: segura a leitura da sessão enquanto houver backlog
+            pipeline.awaitBacklogDrained();
+            return;
+        }
 
-        if (tcpSocket != null && tcpSocket.isConnected()) {
-            try {
-                // Envia mensagem para servidor TCP
-                PrintWriter out = new PrintWriter(tcpSocket.getOutputStream(), true);
-                out.println(payload);
-                log.debug("Mensagem enviada ao TCP: {}", payload.substring(0, Math.min(100, payload.length())));
-            } catch (Exception e) {
-                log.error("Erro ao enviar mensagem para TCP", e);
+        String streamId = (String) session.getAttributes().get(STREAM_ATTRIBUTE);
+        BridgeConnection connection = streamId != null ? connectionsByStream.get(streamId) : null;
+
+        if (connection == null) {
+            log.warn("Conexão TCP não disponível para sessão {}", session.getId());
+            return;
+        }
+
+        String frame = tagWithStream(message.getPayload(), streamId);
+        if (frame == null) {
+            WebSocketSession target = sessionsByStream.get(streamId);
+            if (target != null) {
+                target.sendMessage(new TextMessage(Protocol.toJson(Protocol.createError("unknown", "Mensagem inválida"))));
             }
-        } else {
-            log.warn("Socket TCP não disponível para sessão {}", session.getId());
+            return;
+        }
+
+        try {
+            connection.writeLine(frame);
+            log.debug("Mensagem enviada ao TCP: {}", frame.substring(0, Math.min(100, frame.length())));
+        } catch (IOException e) {
+            log.error("Erro ao enviar mensagem para TCP", e);
+            connection.disconnect();
         }
     }
 
@@ -70,47 +145,209 @@ public class TCPBridge extends TextWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         log.info("WebSocket desconectado: {}", session.getId());
 
-        // Fecha conexão TCP
-        Socket tcpSocket = tcpConnections.remove(session.getId());
-        if (tcpSocket != null) {
+        ClientConnection inProcess = (ClientConnection) session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        if (inProcess != null) {
+            // Libera assinaturas de chat e vínculos de sessão da conexão
+            inProcess.close();
+            return;
+        }
+
+        String streamId = (String) session.getAttributes().get(STREAM_ATTRIBUTE);
+        if (streamId == null) {
+            return;
+        }
+        sessionsByStream.remove(streamId);
+        BridgeConnection connection = connectionsByStream.remove(streamId);
+        if (connection != null) {
+            connection.streams.decrementAndGet();
+            // Servidor libera sessão TCP, assinaturas e vínculos do stream
             try {
-                tcpSocket.close();
-            } catch (Exception e) {
-                log.error("Erro ao fechar socket TCP", e);
+                connection.writeLine("{\"type\":\"" + MultiplexedStreams.CLOSE_COMMAND
+                        + "\",\"streamId\":\"" + streamId + "\"}");
+            } catch (IOException e) {
+                log.debug("Não foi possível encerrar stream {}: {}", streamId, e.getMessage());
             }
         }
     }
 
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        log.error("Erro de transporte WebSocket", exception);
+        session.close(CloseStatus.SERVER_ERROR);
+    }
+
     /**
-     * Lê respostas do servidor TCP e envia para cliente WebSocket
+     * Escolhe a conexão do pool com menos streams, conectando se necessário
      */
-    private void readFromTCP(WebSocketSession session, Socket tcpSocket) {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(tcpSocket.getInputStream()))) {
-            String line;
-            while ((line = in.readLine()) != null) {
-                if (session.isOpen()) {
-                    session.sendMessage(new TextMessage(line));
-                    log.debug("Resposta TCP enviada ao WebSocket: {}", line.substring(0, Math.min(100, line.length())));
-                } else {
-                    break;
+    private synchronized BridgeConnection acquireConnection() throws IOException {
+        if (pool == null) {
+            pool = new BridgeConnection[Math.max(1, poolSize)];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = new BridgeConnection(i);
+            }
+            readerPool = TcpExecutors.create("platform", pool.length, "TCP-Bridge-Reader");
+        }
+
+        BridgeConnection selected = pool[0];
+        for (BridgeConnection candidate : pool) {
+            if (candidate.streams.get() < selected.streams.get()) {
+                selected = candidate;
+            }
+        }
+        selected.ensureConnected();
+        return selected;
+    }
+
+    /**
+     * Grava o streamId da aba no objeto JSON (substitui um streamId enviado
+     * pelo navegador) e o serializa em uma linha só. Retorna null se o
+     * payload não for um único objeto JSON (dados depois do objeto também
+     * são recusados).
+     */
+    static String tagWithStream(String payload, String streamId) {
+        JsonElement parsed;
+        try {
+            parsed = JsonParser.parseString(payload);
+        } catch (JsonParseException e) {
+            return null;
+        }
+        if (!parsed.isJsonObject()) {
+            return null;
+        }
+        JsonObject json = parsed.getAsJsonObject();
+        json.addProperty("streamId", streamId);
+        // Gson escapa quebras de linha dentro das strings: o frame continua em uma linha
+        return json.toString();
+    }
+
+    /**
+     * Lê o streamId do início da resposta (primeiro campo serializado)
+     */
+    static String extractStreamId(String line) {
+        if (!line.startsWith(STREAM_PREFIX)) {
+            return null;
+        }
+        int end = line.indexOf('"', STREAM_PREFIX.length());
+        return end > 0 ? line.substring(STREAM_PREFIX.length(), end) : null;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            for (BridgeConnection connection : pool) {
+                connection.disconnect();
+            }
+        }
+        if (readerPool != null) {
+            readerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Conexão TCP do pool, compartilhada por vários streams
+     */
+    private class BridgeConnection {
+        private final int index;
+        private final AtomicInteger streams = new AtomicInteger();
+        private Socket socket;
+        private OutputStream out;
+
+        BridgeConnection(int index) {
+            this.index = index;
+        }
+
+        synchronized void ensureConnected() throws IOException {
+            if (socket != null && !socket.isClosed()) {
+                return;
+            }
+
+            Socket tcpSocket = new Socket(TCP_HOST, tcpPort);
+            tcpSocket.setTcpNoDelay(true);
+            socket = tcpSocket;
+            out = new BufferedOutputStream(tcpSocket.getOutputStream());
+            writeLine("{\"type\":\"HELLO\",\"requestId\":\"bridge-" + index + "\",\"data\":{\"multiplex\":true}}");
+            readerPool.execute(() -> readFromTCP(tcpSocket));
+
+            log.info("Conexão TCP {} do bridge estabelecida", index);
+        }
+
+        synchronized void writeLine(String line) throws IOException {
+            if (out == null) {
+                throw new IOException("Conexão TCP " + index + " fechada");
+            }
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            out.flush();
+        }
+
+        synchronized void disconnect() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    log.error("Erro ao fechar socket TCP", e);
                 }
+                socket = null;
+                out = null;
             }
-        } catch (Exception e) {
-            log.error("Erro ao ler do TCP", e);
-        } finally {
-            try {
-                if (session.isOpen()) {
-                    session.close();
+        }
+
+        /**
+         * Lê respostas do servidor TCP e entrega à sessão WebSocket do stream
+         */
+        private void readFromTCP(Socket tcpSocket) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(tcpSocket.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String streamId = extractStreamId(line);
+                    WebSocketSession session = streamId != null ? sessionsByStream.get(streamId) : null;
+                    if (session == null) {
+                        // Resposta do HELLO ou de stream já encerrado
+                        continue;
+                    }
+
+                    try {
+                        if (session.isOpen()) {
+                            session.sendMessage(new TextMessage(line));
+                            log.debug("Resposta TCP enviada ao WebSocket: {}", line.substring(0, Math.min(100, line.length())));
+                        }
+                    } catch (Exception e) {
+                        // Falha de uma sessão não interrompe os demais streams da conexão
+                        log.warn("Erro ao enviar para sessão WebSocket do stream {}: {}", streamId, e.getMessage());
+                    }
                 }
             } catch (Exception e) {
-                log.error("Erro ao fechar sessão WebSocket", e);
+                if (!tcpSocket.isClosed()) {
+                    log.error("Erro ao ler do TCP", e);
+                }
+            } finally {
+                synchronized (this) {
+                    if (socket == tcpSocket) {
+                        disconnect();
+                    }
+                }
+                closeStreams();
             }
         }
-    }
 
-    @Override
-    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
-        log.error("Erro de transporte WebSocket", exception);
-        session.close(CloseStatus.SERVER_ERROR);
+        /**
+         * Fecha as sessões WebSocket desta conexão; o frontend reconecta
+         * e recebe um stream em outra conexão (ou nesta, reconectada)
+         */
+        private void closeStreams() {
+            for (Map.Entry<String, BridgeConnection> entry : connectionsByStream.entrySet()) {
+                if (entry.getValue() == this) {
+                    WebSocketSession session = sessionsByStream.get(entry.getKey());
+                    try {
+                        if (session != null && session.isOpen()) {
+                            session.close(CloseStatus.SERVICE_RESTARTED);
+                        }
+                    } catch (IOException e) {
+                        log.error("Erro ao fechar sessão WebSocket", e);
+                    }
+                }
+            }
+        }
     }
 }
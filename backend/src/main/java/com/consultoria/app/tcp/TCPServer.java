@@ -1,7 +1,15 @@
 // Criado por Ítalo de Souza
 package com.consultoria.app.tcp;
 
+import com.consultoria.app.tcp.frame.CompressionStats;
+import com.consultoria.app.tcp.frame.FrameSettings;
+import com.consultoria.app.tcp.handler.BatchCommandHandler;
 import com.consultoria.app.tcp.handler.CommandHandler;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.consultoria.app.tcp.nio.NioEventLoop;
+import com.consultoria.app.tcp.route.CommandRoute;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.consultoria.app.util.ConsultoriaLogger;
 import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
 import org.slf4j.Logger;
@@ -13,13 +21,20 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Servidor TCP/IP principal
@@ -31,27 +46,132 @@ public class TCPServer {
     @Value("${tcp.server.port:8888}")
     private int port;
 
+    // blocking: uma thread por conexão | nio: event loops com Selector
+    @Value("${tcp.server.mode:blocking}")
+    private String mode;
+
+    // platform: pool fixo de threads | virtual: uma thread virtual por tarefa (Java 21+)
+    @Value("${tcp.server.executor:platform}")
+    private String executorKind;
+
+    @Value("${tcp.server.worker-threads:20}")
+    private int workerThreads;
+
+    @Value("${tcp.server.io-threads:2}")
+    private int ioThreads;
+
+    @Value("${tcp.server.max-frame-bytes:16777216}")
+    private int maxFrameBytes;
+
+    // DEFLATE negociado no HELLO (framing BINARY); frames menores que o limite seguem sem compressão
+    @Value("${tcp.server.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${tcp.server.compression.threshold-bytes:512}")
+    private int compressionThreshold;
+
+    // Máximo de comandos em andamento por conexão (respostas fora de ordem, por requestId)
+    @Value("${tcp.server.pipeline.max-in-flight:8}")
+    private int maxInFlight;
+
+    // Limite para conexões que negociam multiplex no HELLO (TCPBridge: várias abas por conexão)
+    @Value("${tcp.server.pipeline.multiplex-max-in-flight:128}")
+    private int multiplexMaxInFlight;
+
+    // Multiplex só de loopback (TCPBridge), salvo allow-remote; streams lógicos por conexão multiplexada
+    @Value("${tcp.server.multiplex.allow-remote:false}")
+    private boolean multiplexAllowRemote;
+
+    @Value("${tcp.server.multiplex.max-streams:256}")
+    private int multiplexMaxStreams;
+
+    // Fila de respostas por conexão NIO: acima do high-water para de ler, acima do máximo fecha
+    @Value("${tcp.server.write.high-water-bytes:1048576}")
+    private long writeHighWaterBytes;
+
+    @Value("${tcp.server.write.max-queued-bytes:33554432}")
+    private long maxQueuedBytes;
+
+    // Máximo de comandos em um envelope BATCH
+    @Value("${tcp.server.batch.max-items:32}")
+    private int batchMaxItems;
+
+    // Comandos aguardando worker; com a fila cheia o comando recebe BUSY (0 = fila sem limite)
+    @Value("${tcp.server.worker-queue-capacity:256}")
+    private int workerQueueCapacity;
+
+    // Conexões aguardando thread no modo bloqueante; acima disso a conexão recebe BUSY e é fechada
+    @Value("${tcp.server.connection-queue-capacity:64}")
+    private int connectionQueueCapacity;
+
+    // Execuções simultâneas de uma mesma rota (type, action) quando a rota não define o seu limite
+    @Value("${tcp.server.route.max-concurrent:16}")
+    private int routeMaxConcurrent;
+
+    // Conexões TCP simultâneas por IP (0 = sem limite)
+    @Value("${tcp.server.max-connections-per-ip:64}")
+    private int maxConnectionsPerIp;
+
+    // Espera sugerida ao cliente nas respostas BUSY
+    @Value("${tcp.server.busy-retry-after-ms:200}")
+    private long busyRetryAfterMs;
+
     @Autowired(required = false)
     private List<CommandHandler> commandHandlersList;
 
+    @Autowired(required = false)
+    private List<RouteProvider> routeProviders;
+
+    @Autowired
+    private MetricsRegistry metrics;
+
     private ServerSocket serverSocket;
-    private ExecutorService threadPool;
+    private ServerSocketChannel serverChannel;
+    private NioEventLoop[] eventLoops;
+    private ExecutorService connectionPool;
+    private ExecutorService workerPool;
     private Thread serverThread;
-    private boolean running = false;
-    private Map<String, CommandHandler> commandHandlers = new HashMap<>();
+    private volatile boolean running = false;
+    private CommandRouter router;
+    private CommandDispatcher dispatcher;
+    private FrameSettings frameSettings;
+    private AdmissionControl admission;
+    // Conexões abertas em qualquer transporte (TCP bloqueante, NIO e WebSocket no processo)
+    private final AtomicInteger activeConnections = new AtomicInteger();
 
     @PostConstruct
     public void initialize() {
-        // Registra command handlers
+        // Monta a tabela de rotas (type, action) uma única vez
+        admission = new AdmissionControl(maxConnectionsPerIp, busyRetryAfterMs);
+        router = new CommandRouter(SessionManager.getInstance(), metrics, admission, routeMaxConcurrent);
+        if (routeProviders != null) {
+            for (RouteProvider provider : routeProviders) {
+                router.register(provider);
+            }
+        }
         if (commandHandlersList != null) {
-            ConsultoriaLogger.logSeparator();
-            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Registrando handlers de comandos...");
             for (CommandHandler handler : commandHandlersList) {
-                commandHandlers.put(handler.getCommandType(), handler);
-                ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "✓ Handler registrado: %s", handler.getCommandType());
+                router.register(handler);
             }
-            ConsultoriaLogger.logSeparator();
         }
+        dispatcher = new CommandDispatcher(router, multiplexMaxStreams);
+        workerPool = TcpExecutors.createBounded(executorKind, workerThreads, workerQueueCapacity, "TCP-Worker");
+
+        // BATCH depende do dispatcher e do pool de workers, por isso é registrado aqui
+        router.register(new BatchCommandHandler(dispatcher, workerPool, batchMaxItems));
+        // Mesma exigência de GET /api/metrics (autenticado)
+        router.route("METRICS", null).authenticated()
+                .to((message, user) -> Protocol.createSuccess(message.getRequestId(), "Métricas", metrics.snapshot()));
+        registerGauges();
+
+        ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Rotas de comandos registradas:");
+        for (CommandRoute route : router.getRoutes()) {
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "✓ %s%s", route,
+                    route.isAuthenticated() ? " (sessão)" : "");
+        }
+
+        frameSettings = new FrameSettings(maxFrameBytes, compressionEnabled, compressionThreshold, multiplexMaxInFlight,
+                multiplexAllowRemote, writeHighWaterBytes, maxQueuedBytes);
 
         // Inicia servidor em thread separada
         serverThread = new Thread(this::start);
@@ -60,31 +180,50 @@ public class TCPServer {
     }
 
     /**
-     * Inicia servidor TCP/IP
+     * Inicia servidor TCP/IP no modo configurado
      */
     public void start() {
+        if ("nio".equalsIgnoreCase(mode)) {
+            startNio();
+        } else {
+            startBlocking();
+        }
+    }
+
+    /**
+     * Modo bloqueante: cada conexão ocupa uma thread do pool
+     */
+    private void startBlocking() {
         try {
             serverSocket = new ServerSocket(port);
-            threadPool = Executors.newFixedThreadPool(20); // Pool de 20 threads
+            connectionPool = TcpExecutors.createBounded(executorKind, workerThreads, connectionQueueCapacity,
+                    "TCP-Connection");
             running = true;
 
-            ConsultoriaLogger.logSeparator();
             ConsultoriaLogger.logSuccess(LogCategory.TCP_SERVER, "Servidor TCP/IP iniciado na porta %d", port);
             ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Aguardando conexões de clientes...");
-            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Pool de threads: 20 threads");
-            ConsultoriaLogger.logSeparator();
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Executor: %s (%d threads no modo platform)", executorKind, workerThreads);
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Pipeline: até %d comandos por conexão", maxInFlight);
+            logAdmissionSettings();
 
             while (running) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    ConsultoriaLogger.logTCPConnection(
-                        clientSocket.getInetAddress().getHostAddress(),
-                        clientSocket.getPort(),
-                        "Nova conexão recebida",
-                        true
-                    );
-                    ClientHandler clientHandler = new ClientHandler(clientSocket, commandHandlers);
-                    threadPool.execute(clientHandler);
+                    String clientIp = clientSocket.getInetAddress().getHostAddress();
+                    ConsultoriaLogger.logTCPConnection(clientIp, clientSocket.getPort(), "Nova conexão recebida", true);
+                    if (!admission.tryAcquireConnection(clientIp)) {
+                        rejectConnection(clientSocket, clientIp);
+                        continue;
+                    }
+
+                    ClientHandler clientHandler = new ClientHandler(clientSocket, frameSettings, this::newTcpPipeline);
+                    try {
+                        connectionPool.execute(clientHandler);
+                    } catch (RejectedExecutionException e) {
+                        // Todas as threads ocupadas e fila cheia: recusa em vez de enfileirar
+                        admission.recordQueueRejected();
+                        clientHandler.reject(admission.busy("unknown", "Servidor ocupado: limite de conexões atingido"));
+                    }
                 } catch (IOException e) {
                     if (running) {
                         ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Aceitar conexão", e);
@@ -96,6 +235,170 @@ public class TCPServer {
         }
     }
 
+    /**
+     * Modo NIO: poucos event loops mantêm as conexões e o pool de workers
+     * recebe apenas frames completos
+     */
+    private void startNio() {
+        try {
+            eventLoops = new NioEventLoop[Math.max(1, ioThreads)];
+            for (int i = 0; i < eventLoops.length; i++) {
+                eventLoops[i] = new NioEventLoop("TCP-NIO-Loop-" + i, frameSettings, this::newTcpPipeline);
+                eventLoops[i].start();
+            }
+
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            running = true;
+
+            ConsultoriaLogger.logSuccess(LogCategory.TCP_SERVER, "Servidor TCP/IP (NIO) iniciado na porta %d", port);
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Event loops: %d | Executor: %s (%d threads no modo platform)",
+                    eventLoops.length, executorKind, workerThreads);
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Pipeline: até %d comandos por conexão", maxInFlight);
+            logAdmissionSettings();
+
+            int next = 0;
+            while (running) {
+                try {
+                    SocketChannel channel = serverChannel.accept();
+                    String clientIp = channel.socket().getInetAddress().getHostAddress();
+                    if (!admission.tryAcquireConnection(clientIp)) {
+                        rejectConnection(channel.socket(), clientIp);
+                        continue;
+                    }
+                    try {
+                        channel.socket().setTcpNoDelay(true);
+                        eventLoops[next++ % eventLoops.length].register(channel);
+                    } catch (IOException | RuntimeException e) {
+                        // A conexão ainda não existe para liberar a vaga ao fechar: libera aqui
+                        admission.releaseConnection(clientIp);
+                        try {
+                            channel.close();
+                        } catch (IOException ignored) {
+                            // canal já inutilizável
+                        }
+                        ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Registrar conexão aceita", e);
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Aceitar conexão", e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Inicializar servidor", e);
+        }
+    }
+
+    private void logAdmissionSettings() {
+        ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER,
+                "Admissão: fila de workers %d | %d execuções por rota | %d conexões por IP | retry-after %dms",
+                workerQueueCapacity, routeMaxConcurrent, maxConnectionsPerIp, busyRetryAfterMs);
+    }
+
+    /**
+     * Recusa no accept uma conexão de IP que já está no limite: envia BUSY
+     * no enquadramento inicial (NEWLINE) e fecha, sem criar pipeline
+     */
+    private void rejectConnection(Socket socket, String clientIp) {
+        ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Conexão de %s recusada: limite de %d conexões por IP",
+                clientIp, maxConnectionsPerIp);
+        Protocol.Response busy = admission.busy("unknown", "Servidor ocupado: limite de conexões por IP atingido");
+        byte[] bytes = Protocol.encodeResponse(busy).getBytes(StandardCharsets.UTF_8);
+        try {
+            if (socket.getChannel() != null) {
+                // Canal ainda bloqueante: a escrita cabe no buffer do socket recém-aberto
+                socket.getChannel().write(ByteBuffer.wrap(bytes));
+            } else {
+                socket.getOutputStream().write(bytes);
+                socket.getOutputStream().flush();
+            }
+        } catch (IOException e) {
+            // Cliente já foi embora
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // socket já inutilizável
+            }
+        }
+    }
+
+    /**
+     * Gauges lidos a cada consulta de métricas
+     */
+    private void registerGauges() {
+        SessionManager sessionManager = SessionManager.getInstance();
+        CompressionStats compression = CompressionStats.getGlobal();
+
+        metrics.gauge("tcp.connections.active", activeConnections::get);
+        metrics.gauge("tcp.streams.active", () -> dispatcher.getStreams().getStreamCount());
+        metrics.gauge("sessions.active", sessionManager::getActiveSessionCount);
+        metrics.gauge("sessions.expired", sessionManager::getExpiredSessionCount);
+        metrics.gauge("sessions.store.loads", sessionManager::getStoreLoadCount);
+        metrics.gauge("sessions.tokens.revoked", sessionManager::getRevokedTokenCount);
+        metrics.gauge("sessions.compact.bytes", sessionManager::getCompactBytes);
+        // Pool de threads virtuais não tem fila: apenas o modo platform reporta
+        if (workerPool instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) workerPool;
+            metrics.gauge("tcp.worker.queue", () -> pool.getQueue().size());
+            metrics.gauge("tcp.worker.active", pool::getActiveCount);
+        }
+        registerRouteExecutorGauges();
+        metrics.gauge("tcp.compression.frames.out", compression::getFramesOut);
+        metrics.gauge("tcp.compression.ratio.out", compression::getOutboundRatio);
+        metrics.gauge("tcp.compression.ratio.in", compression::getInboundRatio);
+        metrics.gauge("admission.rejected.connections", admission::getRejectedConnections);
+        metrics.gauge("admission.rejected.queue", admission::getRejectedQueue);
+        metrics.gauge("admission.rejected.route", admission::getRejectedRoute);
+        metrics.gauge("admission.ips", admission::getTrackedIpCount);
+        metrics.gauge("log.dropped", ConsultoriaLogger::getDroppedCount);
+        metrics.gauge("log.pending", ConsultoriaLogger::getPendingCount);
+    }
+
+    /**
+     * Fila e threads ativas de cada executor dedicado de rota (ex.:
+     * tcp.executor.password-hash.queue)
+     */
+    private void registerRouteExecutorGauges() {
+        Set<String> registered = new HashSet<>();
+        for (CommandRoute route : router.getRoutes()) {
+            if (route.getExecutor() instanceof ThreadPoolExecutor && registered.add(route.getExecutorName())) {
+                ThreadPoolExecutor pool = (ThreadPoolExecutor) route.getExecutor();
+                String prefix = "tcp.executor." + route.getExecutorName();
+                metrics.gauge(prefix + ".queue", () -> pool.getQueue().size());
+                metrics.gauge(prefix + ".active", pool::getActiveCount);
+            }
+        }
+    }
+
+    /**
+     * Cria o pipeline de requisições de uma nova conexão
+     */
+    private RequestPipeline newPipeline(ClientConnection connection) {
+        activeConnections.incrementAndGet();
+        connection.addCloseListener(activeConnections::decrementAndGet);
+        return new RequestPipeline(dispatcher, workerPool, connection, maxInFlight);
+    }
+
+    /**
+     * Pipeline de uma conexão TCP aceita: a vaga do IP reservada no accept
+     * é liberada quando a conexão fecha
+     */
+    private RequestPipeline newTcpPipeline(ClientConnection connection) {
+        String clientIp = connection.getClientIp();
+        connection.addCloseListener(() -> admission.releaseConnection(clientIp));
+        return newPipeline(connection);
+    }
+
+    /**
+     * Pipeline para uma conexão atendida no próprio processo (TCPBridge em
+     * modo inprocess), com o mesmo dispatcher e pool de workers do TCP
+     */
+    public RequestPipeline openInProcess(ClientConnection connection) {
+        return newPipeline(connection);
+    }
+
     /**
      * Para servidor
      */
@@ -108,10 +411,25 @@ public class TCPServer {
                 serverSocket.close();
             }
 
-            if (threadPool != null) {
-                threadPool.shutdown();
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+
+            if (eventLoops != null) {
+                for (NioEventLoop loop : eventLoops) {
+                    loop.stop();
+                }
+            }
+
+            if (connectionPool != null) {
+                connectionPool.shutdown();
+            }
+
+            if (workerPool != null) {
+                workerPool.shutdown();
             }
 
+            ConsultoriaLogger.logInfo(LogCategory.TCP_SERVER, "Compressão: %s", CompressionStats.getGlobal());
             log.info("Servidor TCP/IP finalizado");
         } catch (IOException e) {
             log.error("Erro ao finalizar servidor", e);
@@ -125,6 +443,33 @@ public class TCPServer {
         return running;
     }
 
+    /**
+     * Número de conexões abertas no modo NIO
+     */
+    public int getNioConnectionCount() {
+        int total = 0;
+        if (eventLoops != null) {
+            for (NioEventLoop loop : eventLoops) {
+                total += loop.getConnectionCount();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Contadores de compressão somados de todas as conexões
+     */
+    public CompressionStats getCompressionStats() {
+        return CompressionStats.getGlobal();
+    }
+
+    /**
+     * Rotas (type, action) atendidas pelo servidor, com seus metadados
+     */
+    public List<CommandRoute> getRoutes() {
+        return router.getRoutes();
+    }
+
     /**
      * Retorna porta do servidor
      */
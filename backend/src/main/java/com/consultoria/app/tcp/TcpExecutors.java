@@ -0,0 +1,96 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Criação dos executores do servidor TCP conforme tcp.server.executor
+ * (platform ou virtual). Threads virtuais são obtidas por reflexão para que
+ * o código continue compilando com Java 8; exigem runtime Java 21+.
+ */
+public final class TcpExecutors {
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private TcpExecutors() {
+    }
+
+    /**
+     * Cria executor do tipo solicitado. No modo virtual cada tarefa ganha sua
+     * própria thread virtual e o parâmetro threads é ignorado.
+     */
+    public static ExecutorService create(String kind, int threads, String namePrefix) {
+        if (VIRTUAL.equalsIgnoreCase(kind)) {
+            ExecutorService virtual = newVirtualThreadPerTaskExecutor(namePrefix);
+            if (virtual != null) {
+                return virtual;
+            }
+            ConsultoriaLogger.logWarn(LogCategory.TCP_SERVER,
+                    "Threads virtuais indisponíveis no Java %s, usando pool de %d threads",
+                    System.getProperty("java.version"), threads);
+        }
+        return Executors.newFixedThreadPool(threads, namedFactory(namePrefix));
+    }
+
+    /**
+     * Como create(), mas no modo platform a fila de tarefas tem capacidade
+     * fixa: com a fila cheia execute() lança RejectedExecutionException em
+     * vez de acumular trabalho que os clientes já desistiram de esperar.
+     * No modo virtual não há fila e o limite fica com o controle de admissão
+     * das rotas.
+     */
+    public static ExecutorService createBounded(String kind, int threads, int queueCapacity, String namePrefix) {
+        if (queueCapacity <= 0 || VIRTUAL.equalsIgnoreCase(kind) && isVirtualThreadsSupported()) {
+            return create(kind, threads, namePrefix);
+        }
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedFactory(namePrefix),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Indica se o runtime atual suporta threads virtuais
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        if (!isVirtualThreadsSupported()) {
+            return null;
+        }
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Criar executor virtual", e);
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> new Thread(runnable, namePrefix + "-" + counter.getAndIncrement());
+    }
+}
@@ -0,0 +1,102 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexão de uma sessão WebSocket atendida no próprio processo (TCPBridge
+ * em modo inprocess): os comandos passam pelo mesmo RequestPipeline e
+ * CommandDispatcher das conexões TCP, mas a resposta é escrita direto na
+ * sessão, sem socket de loopback.
+ */
+public class WebSocketConnection implements ClientConnection {
+    private static final int SEND_TIME_LIMIT_MS = 10000;
+    private static final int SEND_BUFFER_LIMIT = 1024 * 1024;
+
+    private final WebSocketSession session;
+    private final String clientIp;
+    private final int clientPort;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    public WebSocketConnection(WebSocketSession session) {
+        // Respostas do pipeline e pushes de chat podem chegar de várias threads
+        this.session = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT);
+        InetSocketAddress remote = session.getRemoteAddress();
+        this.clientIp = remote != null && remote.getAddress() != null
+                ? remote.getAddress().getHostAddress() : "websocket";
+        this.clientPort = remote != null ? remote.getPort() : 0;
+    }
+
+    @Override
+    public void send(Protocol.Response response) {
+        if (!isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(new TextMessage(Protocol.toJson(response)));
+        } catch (IOException | IllegalStateException e) {
+            ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Erro ao enviar para WebSocket %s: %s",
+                    session.getId(), e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            try {
+                if (session.isOpen()) {
+                    session.close(CloseStatus.NORMAL);
+                }
+            } catch (IOException e) {
+                ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Erro ao fechar WebSocket %s: %s",
+                        session.getId(), e.getMessage());
+            }
+            notifyClosed();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && session.isOpen();
+    }
+
+    @Override
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    @Override
+    public int getClientPort() {
+        return clientPort;
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed.get()) {
+            notifyClosed();
+        }
+    }
+
+    private void notifyClosed() {
+        for (Runnable listener : closeListeners) {
+            // remove garante execução única mesmo com chamadas concorrentes
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de compressão dos frames: bytes originais e bytes
+ * efetivamente trafegados, por sentido. Há uma instância por conexão
+ * e um agregado global (getGlobal) somado por todas elas.
+ */
+public class CompressionStats {
+    private static final CompressionStats GLOBAL = new CompressionStats(null);
+
+    private final CompressionStats parent;
+    private final LongAdder framesOut = new LongAdder();
+    private final LongAdder rawBytesOut = new LongAdder();
+    private final LongAdder wireBytesOut = new LongAdder();
+    private final LongAdder framesIn = new LongAdder();
+    private final LongAdder rawBytesIn = new LongAdder();
+    private final LongAdder wireBytesIn = new LongAdder();
+
+    private CompressionStats(CompressionStats parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Agregado de todas as conexões desde o início do servidor
+     */
+    public static CompressionStats getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Cria contadores de uma conexão, que também alimentam o agregado global
+     */
+    static CompressionStats newConnectionStats() {
+        return new CompressionStats(GLOBAL);
+    }
+
+    void recordOut(int rawBytes, int wireBytes) {
+        framesOut.increment();
+        rawBytesOut.add(rawBytes);
+        wireBytesOut.add(wireBytes);
+        if (parent != null) {
+            parent.recordOut(rawBytes, wireBytes);
+        }
+    }
+
+    void recordIn(int rawBytes, int wireBytes) {
+        framesIn.increment();
+        rawBytesIn.add(rawBytes);
+        wireBytesIn.add(wireBytes);
+        if (parent != null) {
+            parent.recordIn(rawBytes, wireBytes);
+        }
+    }
+
+    public long getFramesOut() {
+        return framesOut.sum();
+    }
+
+    public long getRawBytesOut() {
+        return rawBytesOut.sum();
+    }
+
+    public long getWireBytesOut() {
+        return wireBytesOut.sum();
+    }
+
+    public long getFramesIn() {
+        return framesIn.sum();
+    }
+
+    public long getRawBytesIn() {
+        return rawBytesIn.sum();
+    }
+
+    public long getWireBytesIn() {
+        return wireBytesIn.sum();
+    }
+
+    /**
+     * Razão bytes trafegados / bytes originais na saída (1.0 = sem ganho)
+     */
+    public double getOutboundRatio() {
+        return ratio(getWireBytesOut(), getRawBytesOut());
+    }
+
+    /**
+     * Razão bytes trafegados / bytes originais na entrada
+     */
+    public double getInboundRatio() {
+        return ratio(getWireBytesIn(), getRawBytesIn());
+    }
+
+    private static double ratio(long wire, long raw) {
+        return raw == 0 ? 1.0 : (double) wire / raw;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("saída %d frames %d→%d bytes (%.2f) | entrada %d frames %d→%d bytes (%.2f)",
+                getFramesOut(), getRawBytesOut(), getWireBytesOut(), getOutboundRatio(),
+                getFramesIn(), getWireBytesIn(), getRawBytesIn(), getInboundRatio());
+    }
+}
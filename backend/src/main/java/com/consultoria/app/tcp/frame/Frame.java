@@ -0,0 +1,27 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+/**
+ * Frame recebido do cliente: JSON da mensagem e corpo binário opcional
+ */
+public class Frame {
+    private final String json;
+    private final byte[] body;
+
+    public Frame(String json) {
+        this(json, null);
+    }
+
+    public Frame(String json, byte[] body) {
+        this.json = json;
+        this.body = body;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
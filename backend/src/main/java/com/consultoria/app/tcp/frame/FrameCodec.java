@@ -0,0 +1,144 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.Protocol.Response;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Codificação dos frames no modo BINARY:
+ *
+ * <pre>
+ * +----------------+----------+------------------------+
+ * | tamanho (int32)| tipo (1) | payload (tamanho bytes)|
+ * +----------------+----------+------------------------+
+ * </pre>
+ *
+ * TYPE_JSON: payload é o JSON em UTF-8.
+ * TYPE_JSON_WITH_BODY: payload é int32 com o tamanho do JSON, o JSON e o corpo binário.
+ * FLAG_DEFLATE no tipo: payload comprimido no contexto DEFLATE da conexão
+ * (ver FrameCompressor); o tamanho no cabeçalho é o do payload comprimido.
+ */
+public final class FrameCodec {
+    public static final int HEADER_SIZE = 5;
+    public static final byte TYPE_JSON = 1;
+    public static final byte TYPE_JSON_WITH_BODY = 2;
+    public static final byte FLAG_DEFLATE = (byte) 0x80;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Codifica a resposta no enquadramento da conexão
+     */
+    public static byte[] encode(Framing framing, Response response) {
+        return encode(framing, response, null);
+    }
+
+    /**
+     * Codifica a resposta, comprimindo o frame binário quando a conexão
+     * negociou compressão
+     */
+    public static byte[] encode(Framing framing, Response response, FrameCompressor compressor) {
+        if (framing == Framing.BINARY) {
+            byte[] frame = encodeBinary(Protocol.toJson(response), response.getBody());
+            return compressor != null ? compressor.compressFrame(frame) : frame;
+        }
+
+        // No modo newline o corpo binário segue em Base64 no campo data.body, em uma cópia de data
+        // (a resposta do chamador pode ser compartilhada, como um push)
+        if (response.getBody() != null) {
+            JsonObject data = new JsonObject();
+            if (response.getData() != null) {
+                for (Map.Entry<String, JsonElement> field : response.getData().entrySet()) {
+                    data.add(field.getKey(), field.getValue());
+                }
+            }
+            data.addProperty("body", Base64.encodeBase64String(response.getBody()));
+            response = response.withStreamId(response.getStreamId());
+            response.setData(data);
+        }
+        return Protocol.encodeResponse(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Monta um frame binário completo (cabeçalho + payload)
+     */
+    public static byte[] encodeBinary(String json, byte[] body) {
+        byte[] jsonBytes = json.getBytes(StandardCharsets.UTF_8);
+
+        if (body == null) {
+            ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + jsonBytes.length);
+            frame.putInt(jsonBytes.length).put(TYPE_JSON).put(jsonBytes);
+            return frame.array();
+        }
+
+        int payloadLength = 4 + jsonBytes.length + body.length;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+        frame.putInt(payloadLength).put(TYPE_JSON_WITH_BODY)
+                .putInt(jsonBytes.length).put(jsonBytes).put(body);
+        return frame.array();
+    }
+
+    /**
+     * Lê o tamanho do payload a partir do cabeçalho
+     */
+    public static int readLength(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+                | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8)
+                | (bytes[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Decodifica o payload de um frame binário
+     */
+    public static Frame decodePayload(byte type, byte[] bytes, int offset, int length) throws IOException {
+        return decodePayload(type, bytes, offset, length, null);
+    }
+
+    /**
+     * Decodifica o payload, descomprimindo-o no contexto da conexão se necessário
+     */
+    public static Frame decodePayload(byte type, byte[] bytes, int offset, int length,
+            FrameCompressor compressor) throws IOException {
+        if ((type & FLAG_DEFLATE) != 0) {
+            if (compressor == null) {
+                throw new IOException("Frame comprimido sem compressão negociada");
+            }
+            byte[] payload = compressor.inflatePayload(bytes, offset, length);
+            return decodePayload((byte) (type & ~FLAG_DEFLATE), payload, 0, payload.length, null);
+        }
+        if (compressor != null) {
+            compressor.recordUncompressedIn(length);
+        }
+
+        switch (type) {
+            case TYPE_JSON:
+                return new Frame(new String(bytes, offset, length, StandardCharsets.UTF_8));
+            case TYPE_JSON_WITH_BODY: {
+                if (length < 4) {
+                    throw new IOException("Frame com corpo truncado");
+                }
+                int jsonLength = readLength(bytes, offset);
+                if (jsonLength < 0 || jsonLength > length - 4) {
+                    throw new IOException("Tamanho de JSON inválido no frame: " + jsonLength);
+                }
+                String json = new String(bytes, offset + 4, jsonLength, StandardCharsets.UTF_8);
+                int bodyOffset = offset + 4 + jsonLength;
+                byte[] body = new byte[offset + length - bodyOffset];
+                System.arraycopy(bytes, bodyOffset, body, 0, body.length);
+                return new Frame(json, body);
+            }
+            default:
+                throw new IOException("Tipo de frame desconhecido: " + type);
+        }
+    }
+}
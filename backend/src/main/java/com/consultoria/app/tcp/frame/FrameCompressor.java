@@ -0,0 +1,166 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Contexto DEFLATE de uma conexão. Deflater e Inflater são mantidos entre
+ * frames (SYNC_FLUSH sem reset), então chaves JSON já vistas na conexão
+ * viram referências curtas. Os dois lados começam com o mesmo dicionário
+ * de chaves do protocolo, o que ajuda já no primeiro frame.
+ *
+ * Frames comprimidos levam FrameCodec.FLAG_DEFLATE no byte de tipo e devem
+ * ser descomprimidos na mesma ordem em que foram comprimidos.
+ */
+public class FrameCompressor {
+    public static final String ALGORITHM = "DEFLATE";
+
+    /**
+     * Dicionário inicial: trechos mais frequentes ficam no final
+     */
+    static final byte[] DICTIONARY = ("\"otherPartyName\":\"otherPartyId\":\"profilePhotoUrl\":\"hasEvaluation\":"
+            + "\"description\":\"clientName\":\"company\":\"progress\":\"status\":\"title\":\"rating\":\"comment\":"
+            + "\"uploadedBy\":\"uploadDate\":\"fileSize\":\"fileName\":\"fileId\":\"email\":\"role\":\"name\":"
+            + "\"sessionId\":\"projectId\":\"userId\":\"senderId\":\"senderName\":\"timestamp\":\"content\":"
+            + "{\"type\":\"CHAT\",\"action\":\"GET_MESSAGES\",\"requestId\":\"\",\"success\":true,"
+            + "\"message\":\"\",\"data\":{\"messages\":[{\"id\":")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final int threshold;
+    private final int maxFrameBytes;
+    private final CompressionStats stats = CompressionStats.newConnectionStats();
+    private volatile boolean closed = false;
+
+    public FrameCompressor(int threshold, int maxFrameBytes) {
+        this.threshold = threshold;
+        this.maxFrameBytes = maxFrameBytes;
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.deflater.setDictionary(DICTIONARY);
+        this.inflater = new Inflater(true);
+        this.inflater.setDictionary(DICTIONARY);
+    }
+
+    /**
+     * Comprime o payload de um frame binário completo se passar do limite.
+     * Chamadas devem seguir a ordem de escrita no socket.
+     */
+    public byte[] compressFrame(byte[] frame) {
+        int payloadLength = frame.length - FrameCodec.HEADER_SIZE;
+        if (payloadLength < threshold) {
+            stats.recordOut(frame.length, frame.length);
+            return frame;
+        }
+
+        synchronized (deflater) {
+            if (closed) {
+                return frame;
+            }
+            return deflate(frame, payloadLength);
+        }
+    }
+
+    private byte[] deflate(byte[] frame, int payloadLength) {
+        deflater.setInput(frame, FrameCodec.HEADER_SIZE, payloadLength);
+        byte[] out = new byte[FrameCodec.HEADER_SIZE + Math.max(64, payloadLength / 2)];
+        int position = FrameCodec.HEADER_SIZE;
+        while (true) {
+            if (position == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            position += deflater.deflate(out, position, out.length - position, Deflater.SYNC_FLUSH);
+            // Buffer não preenchido: todo o input foi descarregado
+            if (position < out.length) {
+                break;
+            }
+        }
+
+        int compressedLength = position - FrameCodec.HEADER_SIZE;
+        out[0] = (byte) (compressedLength >>> 24);
+        out[1] = (byte) (compressedLength >>> 16);
+        out[2] = (byte) (compressedLength >>> 8);
+        out[3] = (byte) compressedLength;
+        out[4] = (byte) (frame[4] | FrameCodec.FLAG_DEFLATE);
+
+        stats.recordOut(frame.length, position);
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Descomprime o payload de um frame recebido. Executado apenas pela
+     * thread de leitura da conexão.
+     */
+    public byte[] inflatePayload(byte[] bytes, int offset, int length) throws IOException {
+        synchronized (inflater) {
+            if (closed) {
+                throw new IOException("Conexão encerrada");
+            }
+            return inflate(bytes, offset, length);
+        }
+    }
+
+    private byte[] inflate(byte[] bytes, int offset, int length) throws IOException {
+        inflater.setInput(bytes, offset, length);
+        byte[] out = new byte[(int) Math.min(Math.max(256L, length * 4L), maxFrameBytes)];
+        int position = 0;
+        try {
+            while (true) {
+                if (position == out.length) {
+                    if (out.length >= maxFrameBytes) {
+                        throw new IOException("Frame descomprimido excede o limite de " + maxFrameBytes + " bytes");
+                    }
+                    out = Arrays.copyOf(out, (int) Math.min((long) out.length * 2, maxFrameBytes));
+                }
+                int inflated = inflater.inflate(out, position, out.length - position);
+                position += inflated;
+                if (position < out.length && inflater.needsInput()) {
+                    break;
+                }
+                if (inflated == 0 && position < out.length) {
+                    throw new IOException("Stream DEFLATE inválido");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Stream DEFLATE inválido: " + e.getMessage(), e);
+        }
+
+        stats.recordIn(FrameCodec.HEADER_SIZE + position, FrameCodec.HEADER_SIZE + length);
+        return out.length == position ? out : Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Registra um frame recebido sem compressão (abaixo do limite do cliente)
+     */
+    void recordUncompressedIn(int length) {
+        stats.recordIn(FrameCodec.HEADER_SIZE + length, FrameCodec.HEADER_SIZE + length);
+    }
+
+    public CompressionStats getStats() {
+        return stats;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Libera a memória nativa do zlib. Chamado ao fechar a conexão.
+     */
+    public void close() {
+        synchronized (deflater) {
+            synchronized (inflater) {
+                if (!closed) {
+                    closed = true;
+                    deflater.end();
+                    inflater.end();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Leitor de frames para o modo bloqueante. Lê linhas (NEWLINE) ou frames
+ * com prefixo de tamanho (BINARY) do mesmo buffer, permitindo trocar o
+ * enquadramento após o HELLO sem perder bytes lidos.
+ */
+public class FrameReader {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int RETAINED_LINE_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final int maxFrameBytes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] header = new byte[FrameCodec.HEADER_SIZE];
+    private int position;
+    private int limit;
+    // Linhas maiores que o buffer ou divididas entre leituras
+    private byte[] lineBuffer = new byte[BUFFER_SIZE];
+    private FrameCompressor compressor;
+
+    public FrameReader(InputStream in, int maxFrameBytes) {
+        this.in = in;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Contexto de compressão negociado no HELLO (frames BINARY)
+     */
+    public void setCompressor(FrameCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Lê o próximo frame, ou retorna null no fim do stream
+     */
+    public Frame read(Framing framing) throws IOException {
+        return framing == Framing.BINARY ? readBinary() : readLine();
+    }
+
+    private Frame readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                // Última linha sem delimitador ainda é entregue
+                return length > 0 ? lineFrame(length) : null;
+            }
+
+            // Procura o delimitador no trecho em buffer de uma vez
+            int newline = indexOfNewline();
+            int end = newline >= 0 ? newline : limit;
+            int chunk = end - position;
+            if (length + chunk > maxFrameBytes) {
+                throw new IOException("Frame excede o limite de " + maxFrameBytes + " bytes");
+            }
+
+            if (length == 0 && newline >= 0) {
+                // Linha inteira no buffer: sem cópia intermediária
+                int lineEnd = chunk > 0 && buffer[end - 1] == '\r' ? end - 1 : end;
+                Frame frame = new Frame(new String(buffer, position, lineEnd - position, StandardCharsets.UTF_8));
+                position = newline + 1;
+                return frame;
+            }
+
+            if (length + chunk > lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer,
+                        (int) Math.min(Math.max((long) lineBuffer.length * 2, length + chunk), maxFrameBytes));
+            }
+            System.arraycopy(buffer, position, lineBuffer, length, chunk);
+            length += chunk;
+            position = end;
+            if (newline >= 0) {
+                position = newline + 1;
+                return lineFrame(length);
+            }
+        }
+    }
+
+    private int indexOfNewline() {
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Frame da linha acumulada em lineBuffer; depois de uma linha grande o
+     * buffer volta ao tamanho inicial
+     */
+    private Frame lineFrame(int length) {
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        Frame frame = new Frame(new String(lineBuffer, 0, length, StandardCharsets.UTF_8));
+        if (lineBuffer.length > RETAINED_LINE_SIZE) {
+            lineBuffer = new byte[BUFFER_SIZE];
+        }
+        return frame;
+    }
+
+    private Frame readBinary() throws IOException {
+        if (position == limit && !fill()) {
+            return null;
+        }
+        readFully(header, FrameCodec.HEADER_SIZE);
+        int length = FrameCodec.readLength(header, 0);
+        byte type = header[4];
+
+        if (length < 0 || length > maxFrameBytes) {
+            throw new IOException("Tamanho de frame inválido: " + length);
+        }
+
+        // Alocação única com o tamanho exato do payload
+        byte[] payload = new byte[length];
+        readFully(payload, length);
+        return FrameCodec.decodePayload(type, payload, 0, length, compressor);
+    }
+
+    /**
+     * Copia o que está em buffer e lê o restante direto do stream
+     */
+    private void readFully(byte[] target, int length) throws IOException {
+        int copied = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, target, 0, copied);
+        position += copied;
+        while (copied < length) {
+            int read = in.read(target, copied, length - copied);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            copied += read;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+/**
+ * Parâmetros de protocolo compartilhados pelas conexões de um servidor
+ */
+public class FrameSettings {
+    private final int maxFrameBytes;
+    private final boolean compressionEnabled;
+    private final int compressionThreshold;
+    private final int multiplexMaxInFlight;
+    private final boolean multiplexAllowRemote;
+    private final long writeHighWaterBytes;
+    private final long maxQueuedBytes;
+
+    /**
+     * @param multiplexAllowRemote aceita multiplex de qualquer endereço; se
+     *                             false, só de loopback (TCPBridge)
+     * @param writeHighWaterBytes  respostas na fila acima das quais a
+     *                             conexão para de ler
+     * @param maxQueuedBytes       respostas na fila acima das quais a
+     *                             conexão é fechada (cliente que não lê)
+     */
+    public FrameSettings(int maxFrameBytes, boolean compressionEnabled, int compressionThreshold,
+            int multiplexMaxInFlight, boolean multiplexAllowRemote, long writeHighWaterBytes, long maxQueuedBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.compressionEnabled = compressionEnabled;
+        this.compressionThreshold = Math.max(0, compressionThreshold);
+        this.multiplexMaxInFlight = multiplexMaxInFlight;
+        this.multiplexAllowRemote = multiplexAllowRemote;
+        this.writeHighWaterBytes = Math.max(1, writeHighWaterBytes);
+        // Uma resposta do tamanho máximo sempre cabe
+        this.maxQueuedBytes = Math.max(this.writeHighWaterBytes + maxFrameBytes, maxQueuedBytes);
+    }
+
+    /**
+     * Tamanho máximo de um frame (também limita o payload descomprimido)
+     */
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    /**
+     * Se o servidor aceita negociar compressão no HELLO
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * Payloads menores que este tamanho seguem sem compressão
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Limite de comandos em andamento de uma conexão que negociou multiplex
+     * (vários clientes compartilham o mesmo pipeline)
+     */
+    public int getMultiplexMaxInFlight() {
+        return multiplexMaxInFlight;
+    }
+
+    /**
+     * Bytes na fila de escrita acima dos quais a conexão deixa de ler
+     * novos comandos até o cliente consumir metade
+     */
+    public long getWriteHighWaterBytes() {
+        return writeHighWaterBytes;
+    }
+
+    /**
+     * Limite da fila de escrita de uma conexão
+     */
+    public long getMaxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Se uma conexão vinda do endereço pode negociar multiplex. O limite
+     * ampliado de comandos em andamento vale só para o bridge (loopback),
+     * salvo tcp.server.multiplex.allow-remote=true.
+     */
+    public boolean allowsMultiplex(String clientIp) {
+        return multiplexAllowRemote || isLoopback(clientIp);
+    }
+
+    private static boolean isLoopback(String ip) {
+        return ip != null && (ip.startsWith("127.") || "::1".equals(ip) || "0:0:0:0:0:0:0:1".equals(ip));
+    }
+}
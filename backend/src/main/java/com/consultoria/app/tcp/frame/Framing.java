@@ -0,0 +1,12 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+/**
+ * Modos de enquadramento suportados pelo servidor TCP
+ */
+public enum Framing {
+    /** JSON terminado por newline (padrão, usado pelo tcpClient.js via bridge) */
+    NEWLINE,
+    /** Prefixo de tamanho + tipo de frame + payload, negociado via HELLO */
+    BINARY
+}
@@ -0,0 +1,112 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.Protocol.Message;
+import com.consultoria.app.tcp.Protocol.Response;
+import com.google.gson.JsonObject;
+
+/**
+ * Negociação do protocolo da conexão. Deve ser o primeiro frame enviado:
+ * {"type": "HELLO", "requestId": "...", "data": {"framing": "BINARY", "compression": "DEFLATE"}}
+ * A resposta ainda segue no enquadramento antigo; os frames seguintes,
+ * nos dois sentidos, já usam o enquadramento negociado.
+ *
+ * Compressão só vale com framing BINARY. A resposta informa o que o
+ * servidor aceitou (compression DEFLATE ou NONE) e o limite em bytes a
+ * partir do qual ele comprime; o cliente pode comprimir qualquer frame.
+ *
+ * "multiplex": true indica que vários clientes lógicos (streamId) dividem
+ * a conexão; o servidor amplia o limite de comandos em andamento dela.
+ * Só é aceito de conexões de loopback (TCPBridge), salvo configuração; a
+ * resposta informa "multiplex": false quando recusado.
+ */
+public final class Handshake {
+    public static final String COMMAND_TYPE = "HELLO";
+
+    private Handshake() {
+    }
+
+    /**
+     * Resultado de uma negociação
+     */
+    public static class Result {
+        private final Framing framing;
+        private final FrameCompressor compressor;
+        private final boolean multiplexed;
+        private final Response response;
+
+        Result(Framing framing, FrameCompressor compressor, boolean multiplexed, Response response) {
+            this.framing = framing;
+            this.compressor = compressor;
+            this.multiplexed = multiplexed;
+            this.response = response;
+        }
+
+        public Framing getFraming() {
+            return framing;
+        }
+
+        /**
+         * Contexto de compressão da conexão, ou null se não negociado
+         */
+        public FrameCompressor getCompressor() {
+            return compressor;
+        }
+
+        /**
+         * Se a conexão será compartilhada por vários streams
+         */
+        public boolean isMultiplexed() {
+            return multiplexed;
+        }
+
+        public Response getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * Retorna o resultado se o frame for um HELLO, ou null caso contrário
+     */
+    public static Result tryNegotiate(Frame frame, Framing current, FrameSettings settings, String clientIp) {
+        String json = frame.getJson();
+        if (json.indexOf(COMMAND_TYPE) < 0) {
+            return null;
+        }
+
+        Message message = Protocol.decode(json);
+        if (message == null || !COMMAND_TYPE.equals(message.getType())) {
+            return null;
+        }
+
+        Framing framing = current;
+        if (message.has("framing")) {
+            try {
+                framing = Framing.valueOf(message.getString("framing").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return new Result(current, null, false, Protocol.createError(message.getRequestId(),
+                        "Framing não suportado: " + message.getString("framing")));
+            }
+        }
+
+        // Algoritmo desconhecido ou indisponível não é erro: a conexão segue sem compressão
+        FrameCompressor compressor = null;
+        if (framing == Framing.BINARY && settings.isCompressionEnabled()
+                && FrameCompressor.ALGORITHM.equalsIgnoreCase(message.getString("compression"))) {
+            compressor = new FrameCompressor(settings.getCompressionThreshold(), settings.getMaxFrameBytes());
+        }
+
+        boolean multiplexed = message.getBoolean("multiplex", false) && settings.allowsMultiplex(clientIp);
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("framing", framing.name());
+        responseData.addProperty("multiplex", multiplexed);
+        responseData.addProperty("compression", compressor != null ? FrameCompressor.ALGORITHM : "NONE");
+        if (compressor != null) {
+            responseData.addProperty("compressionThreshold", compressor.getThreshold());
+        }
+        return new Result(framing, compressor, multiplexed, Protocol.createSuccess(message.getRequestId(),
+                "Protocolo negociado", responseData));
+    }
+}
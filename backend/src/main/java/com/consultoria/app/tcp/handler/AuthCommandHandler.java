@@ -3,67 +3,86 @@ package com.consultoria.app.tcp.handler;
 
 import com.consultoria.app.model.User;
 import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.tcp.ChatSubscriptions;
+import com.consultoria.app.tcp.ClientConnection;
 import com.consultoria.app.tcp.Protocol;
 import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.TcpExecutors;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
 /**
- * Handler para comandos de autenticação (LOGIN, REGISTER, LOGOUT)
+ * Handler para comandos de autenticação (LOGIN, REGISTER, LOGOUT, RESUME)
+ *
+ * LOGIN e REGISTER rodam no executor password-hash, de tamanho próprio e
+ * fila limitada: uma rajada de logins ocupa só esse pool com o BCrypt, e
+ * os workers continuam livres para chat e arquivos. Com a fila cheia o
+ * cliente recebe BUSY.
  */
 @Component
-public class AuthCommandHandler implements CommandHandler {
+public class AuthCommandHandler implements RouteProvider {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ChatSubscriptions chatSubscriptions;
+
+    // 0 = metade dos processadores (BCrypt é CPU pura)
+    @Value("${tcp.auth.hash-threads:0}")
+    private int hashThreads;
+
+    @Value("${tcp.auth.hash-queue-capacity:64}")
+    private int hashQueueCapacity;
+
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private final SessionManager sessionManager = SessionManager.getInstance();
     private static final String COMMAND_TYPE = "AUTH";
+    private static final String HASH_EXECUTOR = "password-hash";
+    private ExecutorService hashExecutor;
 
-    @Override
-    public String getCommandType() {
-        return COMMAND_TYPE;
+    @PostConstruct
+    public void startHashExecutor() {
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        hashExecutor = TcpExecutors.createBounded(TcpExecutors.PLATFORM, threads, hashQueueCapacity, "Auth-Hash");
     }
 
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
-
-        if (data == null || !data.has("action")) {
-            return Protocol.createError(message.getRequestId(),
-                    "Campo 'action' obrigatório (LOGIN, REGISTER, LOGOUT)");
-        }
+    @PreDestroy
+    public void stopHashExecutor() {
+        hashExecutor.shutdown();
+    }
 
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "LOGIN":
-                return handleLogin(message, sessionManager);
-            case "REGISTER":
-                return handleRegister(message, sessionManager);
-            case "LOGOUT":
-                return handleLogout(message, sessionManager);
-            default:
-                return Protocol.createError(message.getRequestId(),
-                        "Action inválida: " + action);
-        }
+    @Override
+    public void registerRoutes(CommandRouter router) {
+        // Rotas públicas: LOGIN e REGISTER criam a sessão. O limite fica com a
+        // fila do executor, não com o limite padrão de execuções da rota
+        router.route(COMMAND_TYPE, "LOGIN").requires("email", "password")
+                .executor(HASH_EXECUTOR, hashExecutor).maxConcurrent(0)
+                .to((message, user) -> handleLogin(message));
+        router.route(COMMAND_TYPE, "REGISTER").requires("name", "email", "password", "role")
+                .executor(HASH_EXECUTOR, hashExecutor).maxConcurrent(0)
+                .to((message, user) -> handleRegister(message));
+        router.route(COMMAND_TYPE, "LOGOUT").to((message, user) -> handleLogout(message));
+        // Reconexão: reaproveita a sessão existente sem verificar senha
+        router.route(COMMAND_TYPE, "RESUME").authenticated()
+                .to((message, user) -> handleResume(message, user));
     }
 
     /**
      * Processa login
      */
-    private Protocol.Response handleLogin(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
-
-        if (!data.has("email") || !data.has("password")) {
-            return Protocol.createError(message.getRequestId(),
-                    "Email e password obrigatórios");
-        }
-
-        String email = data.get("email").getAsString();
-        String password = data.get("password").getAsString();
+    private Protocol.Response handleLogin(Protocol.Message message) {
+        String email = message.getString("email");
+        String password = message.getString("password");
 
         User user = userRepository.findByEmail(email).orElse(null);
 
@@ -79,6 +98,7 @@ public class AuthCommandHandler implements CommandHandler {
 
         // Cria sessão
         String sessionId = sessionManager.createSession(user);
+        sessionManager.bindConnection(sessionId, message.getConnection());
 
         // Monta resposta
         JsonObject responseData = new JsonObject();
@@ -99,18 +119,11 @@ public class AuthCommandHandler implements CommandHandler {
     /**
      * Processa registro
      */
-    private Protocol.Response handleRegister(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
-
-        if (!data.has("name") || !data.has("email") || !data.has("password") || !data.has("role")) {
-            return Protocol.createError(message.getRequestId(),
-                    "Nome, email, password e role obrigatórios");
-        }
-
-        String name = data.get("name").getAsString();
-        String email = data.get("email").getAsString();
-        String password = data.get("password").getAsString();
-        String roleStr = data.get("role").getAsString().toUpperCase();
+    private Protocol.Response handleRegister(Protocol.Message message) {
+        String name = message.getString("name");
+        String email = message.getString("email");
+        String password = message.getString("password");
+        String roleStr = message.getString("role").toUpperCase();
 
         // Verifica se email já existe
         if (userRepository.findByEmail(email).isPresent()) {
@@ -138,6 +151,7 @@ public class AuthCommandHandler implements CommandHandler {
 
         // Cria sessão
         String sessionId = sessionManager.createSession(user);
+        sessionManager.bindConnection(sessionId, message.getConnection());
 
         // Monta resposta
         JsonObject responseData = new JsonObject();
@@ -151,13 +165,50 @@ public class AuthCommandHandler implements CommandHandler {
                 "Registro realizado com sucesso", responseData);
     }
 
+    /**
+     * Processa retomada de sessão: o cliente que reconecta (ex.: depois de
+     * um restart do servidor) envia o sessionId que já tinha e volta a ser
+     * vinculado à conexão, sem o custo do BCrypt do LOGIN
+     */
+    private Protocol.Response handleResume(Protocol.Message message, User sessionUser) {
+        String sessionId = message.getSessionId();
+
+        // Sessão pode trazer só id e perfil: os dados da resposta vêm do cadastro
+        User user = userRepository.findById(sessionUser.getId()).orElse(null);
+        if (user == null) {
+            sessionManager.invalidateSession(sessionId);
+            return Protocol.createError(message.getRequestId(),
+                    "Usuário não encontrado");
+        }
+
+        sessionManager.bindConnection(sessionId, message.getConnection());
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("sessionId", sessionId);
+        responseData.addProperty("userId", user.getId());
+        responseData.addProperty("name", user.getName());
+        responseData.addProperty("email", user.getEmail());
+        responseData.addProperty("role", user.getRole().toString());
+
+        if (user.getProfilePhotoUrl() != null) {
+            responseData.addProperty("profilePhotoUrl", user.getProfilePhotoUrl());
+        }
+
+        return Protocol.createSuccess(message.getRequestId(),
+                "Sessão retomada com sucesso", responseData);
+    }
+
     /**
      * Processa logout
      */
-    private Protocol.Response handleLogout(Protocol.Message message, SessionManager sessionManager) {
+    private Protocol.Response handleLogout(Protocol.Message message) {
         String sessionId = message.getSessionId();
 
         if (sessionId != null) {
+            // Conexões da sessão deixam de receber push de chat
+            for (ClientConnection connection : sessionManager.getConnections(sessionId)) {
+                chatSubscriptions.unsubscribeAll(connection);
+            }
             sessionManager.invalidateSession(sessionId);
         }
 
@@ -0,0 +1,213 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.handler;
+
+import com.consultoria.app.tcp.CommandDispatcher;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.commons.codec.binary.Base64;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Envelope BATCH: vários comandos em uma única ida e volta.
+ *
+ * <pre>
+ * {"type": "BATCH", "sessionId": "...", "requestId": "b1", "data": {
+ *     "sequential": false,
+ *     "messages": [
+ *         {"type": "REQUEST", "requestId": "r1", "data": {"action": "LIST"}},
+ *         {"type": "PROFILE", "requestId": "p1", "data": {"action": "GET"}, "dependsOn": ["r1"]}
+ *     ]}}
+ * </pre>
+ *
+ * Itens independentes rodam em paralelo nos handlers registrados. Um item
+ * com dependsOn (requestIds de itens anteriores) só roda depois deles e
+ * falha se algum falhar; sequential=true encadeia todos na ordem. Itens
+ * sem sessionId herdam o do lote. A resposta traz data.results com o
+ * resultado de cada item, na ordem enviada.
+ *
+ * Não é um @Component: o TCPServer registra o handler depois de montar o
+ * dispatcher e o pool de workers.
+ */
+public class BatchCommandHandler implements CommandHandler {
+    public static final String COMMAND_TYPE = "BATCH";
+
+    private final CommandDispatcher dispatcher;
+    private final Executor executor;
+    private final int maxItems;
+
+    public BatchCommandHandler(CommandDispatcher dispatcher, Executor executor, int maxItems) {
+        this.dispatcher = dispatcher;
+        this.executor = executor;
+        this.maxItems = maxItems;
+    }
+
+    @Override
+    public String getCommandType() {
+        return COMMAND_TYPE;
+    }
+
+    @Override
+    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
+        JsonElement messages = message.getElement("messages");
+        if (messages == null || !messages.isJsonArray()) {
+            return Protocol.createError(message.getRequestId(),
+                    "Campo 'messages' obrigatório (lista de comandos)");
+        }
+
+        JsonArray items = messages.getAsJsonArray();
+        if (items.size() == 0) {
+            return Protocol.createError(message.getRequestId(), "Lote vazio");
+        }
+        if (items.size() > maxItems) {
+            return Protocol.createError(message.getRequestId(),
+                    "Lote excede o limite de " + maxItems + " comandos");
+        }
+
+        boolean sequential = message.getBoolean("sequential", false);
+        List<FutureTask<Protocol.Response>> tasks = new ArrayList<>(items.size());
+        Map<String, Integer> indexByRequestId = new HashMap<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            String itemRequestId = message.getRequestId() + "." + i;
+            FutureTask<Protocol.Response> task;
+            try {
+                JsonObject item = items.get(i).getAsJsonObject();
+                Protocol.Message itemMessage = toMessage(item, message, itemRequestId);
+                itemRequestId = itemMessage.getRequestId();
+                List<FutureTask<Protocol.Response>> dependencies =
+                        resolveDependencies(item, sequential, i, tasks, indexByRequestId);
+                task = new FutureTask<>(() -> runItem(itemMessage, dependencies));
+            } catch (RuntimeException e) {
+                // Item inválido vira erro no resultado, sem derrubar o lote
+                Protocol.Response error = Protocol.createError(itemRequestId,
+                        e instanceof IllegalArgumentException ? e.getMessage() : "Item inválido: " + e.getMessage());
+                task = new FutureTask<>(() -> error);
+            }
+            indexByRequestId.put(itemRequestId, i);
+            tasks.add(task);
+        }
+
+        for (FutureTask<Protocol.Response> task : tasks) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Executado abaixo pela própria thread do lote
+            }
+        }
+
+        // A thread do lote executa os itens que ainda não começaram, então o
+        // lote não fica parado esperando um pool saturado
+        JsonArray results = new JsonArray();
+        int succeeded = 0;
+        for (FutureTask<Protocol.Response> task : tasks) {
+            Protocol.Response response = await(task, message.getRequestId());
+            if (response.isSuccess()) {
+                succeeded++;
+            }
+            results.add(toResult(response));
+        }
+
+        ConsultoriaLogger.logInfo(LogCategory.TCP_CLIENT, "BATCH %s: %d de %d comandos com sucesso",
+                message.getRequestId(), succeeded, tasks.size());
+
+        JsonObject responseData = new JsonObject();
+        responseData.add("results", results);
+        responseData.addProperty("succeeded", succeeded);
+        responseData.addProperty("failed", tasks.size() - succeeded);
+        return Protocol.createSuccess(message.getRequestId(),
+                "Lote processado: " + succeeded + " de " + tasks.size() + " comandos com sucesso", responseData);
+    }
+
+    private Protocol.Message toMessage(JsonObject item, Protocol.Message batch, String defaultRequestId) {
+        if (!item.has("type") || item.get("type").isJsonNull()) {
+            throw new IllegalArgumentException("Campo 'type' obrigatório no item");
+        }
+
+        Protocol.Message itemMessage = new Protocol.Message();
+        itemMessage.setType(item.get("type").getAsString());
+        if (COMMAND_TYPE.equals(itemMessage.getType())) {
+            throw new IllegalArgumentException("BATCH aninhado não é permitido");
+        }
+
+        itemMessage.setRequestId(item.has("requestId") && !item.get("requestId").isJsonNull()
+                ? item.get("requestId").getAsString() : defaultRequestId);
+        itemMessage.setSessionId(item.has("sessionId") && !item.get("sessionId").isJsonNull()
+                ? item.get("sessionId").getAsString() : batch.getSessionId());
+        itemMessage.setData(item.has("data") && item.get("data").isJsonObject()
+                ? item.getAsJsonObject("data") : new JsonObject());
+        itemMessage.setConnection(batch.getConnection());
+        return itemMessage;
+    }
+
+    private List<FutureTask<Protocol.Response>> resolveDependencies(JsonObject item, boolean sequential, int index,
+            List<FutureTask<Protocol.Response>> tasks, Map<String, Integer> indexByRequestId) {
+        List<FutureTask<Protocol.Response>> dependencies = new ArrayList<>();
+        if (sequential && index > 0) {
+            dependencies.add(tasks.get(index - 1));
+        }
+
+        if (item.has("dependsOn") && item.get("dependsOn").isJsonArray()) {
+            for (JsonElement dependency : item.getAsJsonArray("dependsOn")) {
+                Integer dependencyIndex = indexByRequestId.get(dependency.getAsString());
+                if (dependencyIndex == null) {
+                    throw new IllegalArgumentException("Dependência desconhecida: " + dependency.getAsString()
+                            + " (deve ser um item anterior do lote)");
+                }
+                dependencies.add(tasks.get(dependencyIndex));
+            }
+        }
+        return dependencies;
+    }
+
+    private Protocol.Response runItem(Protocol.Message itemMessage,
+            List<FutureTask<Protocol.Response>> dependencies) {
+        for (FutureTask<Protocol.Response> dependency : dependencies) {
+            Protocol.Response dependencyResponse = await(dependency, itemMessage.getRequestId());
+            if (!dependencyResponse.isSuccess()) {
+                return Protocol.createError(itemMessage.getRequestId(),
+                        "Dependência falhou: " + dependencyResponse.getRequestId());
+            }
+        }
+        return dispatcher.processCommand(itemMessage);
+    }
+
+    /**
+     * Executa a tarefa na thread atual se ainda não começou e aguarda o resultado
+     */
+    private Protocol.Response await(FutureTask<Protocol.Response> task, String requestId) {
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Protocol.createError(requestId, "Lote interrompido");
+        } catch (ExecutionException e) {
+            return Protocol.createError(requestId, "Erro ao processar comando: " + e.getCause().getMessage());
+        }
+    }
+
+    private JsonObject toResult(Protocol.Response response) {
+        JsonObject result = Protocol.toJsonTree(response);
+        // Corpo binário segue em Base64, como no framing newline
+        if (response.getBody() != null) {
+            JsonObject data = result.has("data") && result.get("data").isJsonObject()
+                    ? result.getAsJsonObject("data") : new JsonObject();
+            data.addProperty("body", Base64.encodeBase64String(response.getBody()));
+            result.add("data", data);
+        }
+        return result;
+    }
+}
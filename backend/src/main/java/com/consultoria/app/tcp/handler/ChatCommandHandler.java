@@ -4,187 +4,143 @@ package com.consultoria.app.tcp.handler;
 import com.consultoria.app.model.ChatMessage;
 import com.consultoria.app.model.Project;
 import com.consultoria.app.model.User;
-import com.consultoria.app.repository.ChatMessageRepository;
 import com.consultoria.app.repository.ProjectRepository;
-import com.consultoria.app.repository.UserRepository;
+import com.consultoria.app.service.ChatInboxService;
+import com.consultoria.app.service.ChatSearchService;
+import com.consultoria.app.service.ChatService;
+import com.consultoria.app.tcp.ChatSubscriptions;
 import com.consultoria.app.tcp.Protocol;
 import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Handler para processamento de mensagens de chat via TCP/IP
  */
 @Component
-public class ChatCommandHandler implements CommandHandler {
+public class ChatCommandHandler implements RouteProvider {
     private static final Logger log = LoggerFactory.getLogger(ChatCommandHandler.class);
-
-    @Autowired
-    private ChatMessageRepository chatMessageRepository;
+    private static final String COMMAND_TYPE = "CHAT";
 
     @Autowired
     private ProjectRepository projectRepository;
 
     @Autowired
-    private UserRepository userRepository;
-
-    @Override
-    public String getCommandType() {
-        return "CHAT";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        try {
-            JsonObject data = message.getData();
-            String action = data.has("action") ? data.get("action").getAsString() : "SEND";
+    private ChatInboxService chatInboxService;
 
-            log.info("====== CHAT COMMAND ======");
-            log.info("Action: {}", action);
-            log.info("Session ID: {}", message.getSessionId());
-            log.info("Project ID: {}", data.has("projectId") ? data.get("projectId").getAsLong() : "N/A");
-            log.info("==========================");
+    @Autowired
+    private ChatSearchService chatSearchService;
 
-            switch (action) {
-                case "SEND":
-                    return handleSendMessage(message, sessionManager);
+    @Autowired
+    private ChatSubscriptions chatSubscriptions;
 
-                case "GET_MESSAGES":
-                    return handleGetMessages(message, sessionManager);
+    @Autowired
+    private ChatService chatService;
 
-                case "GET_PROJECTS_WITH_CHAT":
-                    return handleGetProjectsWithChat(message, sessionManager);
+    private final SessionManager sessionManager = SessionManager.getInstance();
 
-                default:
-                    log.warn("Ação desconhecida no CHAT: {}", action);
-                    return Protocol.createError(message.getRequestId(), "Ação desconhecida: " + action);
-            }
-
-        } catch (Exception e) {
-            log.error("Erro ao processar comando CHAT", e);
-            return Protocol.createError(message.getRequestId(), "Erro ao processar chat: " + e.getMessage());
-        }
+    @Override
+    public void registerRoutes(CommandRouter router) {
+        // Mensagens sem action são envios (clientes antigos)
+        router.defaultAction(COMMAND_TYPE, "SEND");
+        router.route(COMMAND_TYPE, "SEND").requires("projectId", "userId", "content")
+                .toAsync((message, user) -> handleSendMessage(message));
+        router.route(COMMAND_TYPE, "GET_MESSAGES").requires("projectId", "userId")
+                .to((message, user) -> handleGetMessages(message));
+        // Caixa de entrada e marcas de leitura valem para o usuário da sessão (a caixa traz prévias das mensagens)
+        router.route(COMMAND_TYPE, "GET_PROJECTS_WITH_CHAT").authenticated().to(this::handleGetProjectsWithChat);
+        router.route(COMMAND_TYPE, "SEARCH").authenticated().requires("query").to(this::handleSearch);
+        router.route(COMMAND_TYPE, "MARK_READ").authenticated().requires("projectId").to(this::handleMarkRead);
+        router.route(COMMAND_TYPE, "SUBSCRIBE").authenticated().requires("projectId").to(this::handleSubscribe);
+        router.route(COMMAND_TYPE, "UNSUBSCRIBE").requires("projectId")
+                .to((message, user) -> handleUnsubscribe(message));
     }
 
     /**
-     * Processa envio de mensagem
+     * Processa envio de mensagem. A resposta sai quando a mensagem está no
+     * log do chat (write-behind); a gravação no banco vem depois, em lote.
      */
-    private Protocol.Response handleSendMessage(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
+    private CompletableFuture<Protocol.Response> handleSendMessage(Protocol.Message message) {
+        Long projectId = message.getLong("projectId");
+        Long userId = message.getLong("userId");
+        String content = message.getString("content");
 
-        try {
-            // Valida dados necessários
-            if (!data.has("projectId") || !data.has("userId") || !data.has("content")) {
-                return Protocol.createError(message.getRequestId(), "Dados incompletos: projectId, userId e content são obrigatórios");
-            }
-
-            Long projectId = data.get("projectId").getAsLong();
-            Long userId = data.get("userId").getAsLong();
-            String content = data.get("content").getAsString();
-
-            log.info("[CHAT-SEND] Enviando mensagem - Projeto: {}, Usuário: {}, Conteúdo: {}...", 
+        if (log.isDebugEnabled()) {
+            log.debug("[CHAT-SEND] Enviando mensagem - Projeto: {}, Usuário: {}, Conteúdo: {}...",
                     projectId, userId, content.substring(0, Math.min(50, content.length())));
+        }
 
-            // Obtém projeto
-            Optional<Project> projectOpt = projectRepository.findById(projectId);
-            if (!projectOpt.isPresent()) {
-                log.warn("[CHAT-SEND] Projeto não encontrado: {}", projectId);
-                return Protocol.createError(message.getRequestId(), "Projeto não encontrado");
-            }
-
-            Project project = projectOpt.get();
-
-            // Obtém usuário
-            Optional<User> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
-                log.warn("[CHAT-SEND] Usuário não encontrado: {}", userId);
-                return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
-            }
-
-            User user = userOpt.get();
-
-            // Verifica se o usuário tem acesso ao projeto
-            boolean hasAccess = project.getUser().getId().equals(userId) ||
-                    (project.getConsultant() != null && project.getConsultant().getId().equals(userId));
+        CompletableFuture<ChatMessage> ack;
+        try {
+            // Acesso verificado com os participantes do projeto em cache
+            ack = chatService.submitMessage(projectId, userId, content, message.getConnection());
+        } catch (RuntimeException e) {
+            log.warn("[CHAT-SEND] Envio recusado - Usuário {}, Projeto {}: {}", userId, projectId, e.getMessage());
+            return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(), e.getMessage()));
+        }
 
-            if (!hasAccess) {
-                log.warn("[CHAT-SEND] Acesso negado - Usuário {} não tem acesso ao Projeto {}", userId, projectId);
-                return Protocol.createError(message.getRequestId(), "Você não tem acesso a este projeto");
+        return ack.handle((savedMessage, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                log.error("[CHAT-SEND] Erro ao enviar mensagem", cause);
+                return Protocol.createError(message.getRequestId(), "Erro ao enviar mensagem: " + cause.getMessage());
             }
 
-            // Cria e salva mensagem
-            ChatMessage chatMessage = new ChatMessage();
-            chatMessage.setProject(project);
-            chatMessage.setSender(user);
-            chatMessage.setContent(content);
-            chatMessage.setTimestamp(LocalDateTime.now());
-
-            ChatMessage savedMessage = chatMessageRepository.save(chatMessage);
-
-            log.info("[CHAT-SEND] ✓ Mensagem salva com sucesso - ID: {}, Projeto: {}, Usuário: {}", 
-                    savedMessage.getId(), projectId, user.getName());
+            log.debug("[CHAT-SEND] ✓ Mensagem registrada - ID: {}, Projeto: {}, Usuário: {}",
+                    savedMessage.getId(), projectId, savedMessage.getSender().getName());
 
             // Prepara resposta
             JsonObject responseData = new JsonObject();
             responseData.addProperty("messageId", savedMessage.getId());
             responseData.addProperty("projectId", projectId);
-            responseData.addProperty("senderName", user.getName());
+            responseData.addProperty("senderId", userId);
+            responseData.addProperty("senderName", savedMessage.getSender().getName());
             responseData.addProperty("content", savedMessage.getContent());
             responseData.addProperty("timestamp", savedMessage.getTimestamp().toString());
 
             return Protocol.createSuccess(message.getRequestId(), "Mensagem enviada com sucesso", responseData);
-
-        } catch (Exception e) {
-            log.error("[CHAT-SEND] Erro ao enviar mensagem", e);
-            return Protocol.createError(message.getRequestId(), "Erro ao enviar mensagem: " + e.getMessage());
-        }
+        });
     }
 
     /**
-     * Processa obtenção de mensagens de um projeto
+     * Processa obtenção de mensagens de um projeto, paginada por id:
+     * sem cursor as mais recentes, beforeId para as anteriores e afterId
+     * para as novas desde a última vista (limit opcional)
      */
-    private Protocol.Response handleGetMessages(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
-
+    private Protocol.Response handleGetMessages(Protocol.Message message) {
         try {
-            if (!data.has("projectId") || !data.has("userId")) {
-                return Protocol.createError(message.getRequestId(), "projectId e userId são obrigatórios");
+            Long projectId = message.getLong("projectId");
+            Long userId = message.getLong("userId");
+
+            log.debug("[CHAT-GET] Buscando mensagens - Projeto: {}, Usuário: {}", projectId, userId);
+
+            // Acesso verificado com os participantes em cache; a página sai do anel de recentes quando possível
+            Long beforeId = message.getLong("beforeId");
+            Long afterId = message.getLong("afterId");
+            Long limitField = message.getLong("limit");
+            Integer limit = limitField != null ? limitField.intValue() : null;
+            try {
+                chatService.checkAccess(projectId, userId);
+            } catch (RuntimeException e) {
+                log.warn("[CHAT-GET] Leitura recusada - Usuário {}, Projeto {}: {}", userId, projectId, e.getMessage());
+                return Protocol.createError(message.getRequestId(), e.getMessage());
             }
+            ChatService.MessagePage page = chatService.findPage(projectId, beforeId, afterId, limit);
+            List<ChatMessage> messages = page.getMessages();
 
-            Long projectId = data.get("projectId").getAsLong();
-            Long userId = data.get("userId").getAsLong();
-
-            log.info("[CHAT-GET] Buscando mensagens - Projeto: {}, Usuário: {}", projectId, userId);
-
-            // Obtém projeto
-            Optional<Project> projectOpt = projectRepository.findById(projectId);
-            if (!projectOpt.isPresent()) {
-                log.warn("[CHAT-GET] Projeto não encontrado: {}", projectId);
-                return Protocol.createError(message.getRequestId(), "Projeto não encontrado");
-            }
-
-            Project project = projectOpt.get();
-
-            // Verifica acesso
-            boolean hasAccess = project.getUser().getId().equals(userId) ||
-                    (project.getConsultant() != null && project.getConsultant().getId().equals(userId));
-
-            if (!hasAccess) {
-                log.warn("[CHAT-GET] Acesso negado - Usuário {} não tem acesso ao Projeto {}", userId, projectId);
-                return Protocol.createError(message.getRequestId(), "Você não tem acesso a este projeto");
-            }
-
-            // Busca mensagens
-            List<ChatMessage> messages = chatMessageRepository.findByProjectIdOrderByTimestampAsc(projectId);
-
-            log.info("[CHAT-GET] ✓ {} mensagens encontradas no Projeto {}", messages.size(), projectId);
+            log.debug("[CHAT-GET] ✓ {} mensagens encontradas no Projeto {}", messages.size(), projectId);
 
             // Converte para JSON
             JsonObject responseData = new JsonObject();
@@ -202,6 +158,7 @@ public class ChatCommandHandler implements CommandHandler {
 
             responseData.add("messages", messagesArray);
             responseData.addProperty("totalMessages", messages.size());
+            responseData.addProperty("hasMore", page.hasMore());
 
             return Protocol.createSuccess(message.getRequestId(), "Mensagens recuperadas", responseData);
 
@@ -212,57 +169,96 @@ public class ChatCommandHandler implements CommandHandler {
     }
 
     /**
-     * Processa obtenção de projetos com chat ativo
+     * Inscreve a conexão para receber as novas mensagens do projeto via PUSH
      */
-    private Protocol.Response handleGetProjectsWithChat(Protocol.Message message, SessionManager sessionManager) {
-        JsonObject data = message.getData();
+    private Protocol.Response handleSubscribe(Protocol.Message message, User user) {
+        if (message.getConnection() == null) {
+            return Protocol.createError(message.getRequestId(), "Assinatura disponível apenas via TCP");
+        }
 
-        try {
-            if (!data.has("userId")) {
-                return Protocol.createError(message.getRequestId(), "userId é obrigatório");
-            }
+        Long projectId = message.getLong("projectId");
+        Optional<Project> projectOpt = projectRepository.findById(projectId);
+        if (!projectOpt.isPresent()) {
+            return Protocol.createError(message.getRequestId(), "Projeto não encontrado");
+        }
 
-            Long userId = data.get("userId").getAsLong();
+        Project project = projectOpt.get();
+        boolean hasAccess = project.getUser().getId().equals(user.getId()) ||
+                (project.getConsultant() != null && project.getConsultant().getId().equals(user.getId()));
 
-            log.info("[CHAT-PROJECTS] Buscando projetos com chat para usuário: {}", userId);
+        if (!hasAccess) {
+            log.warn("[CHAT-SUBSCRIBE] Acesso negado - Usuário {} não tem acesso ao Projeto {}", user.getId(), projectId);
+            return Protocol.createError(message.getRequestId(), "Você não tem acesso a este projeto");
+        }
 
-            Optional<User> userOpt = userRepository.findById(userId);
-            if (!userOpt.isPresent()) {
-                return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
-            }
+        sessionManager.bindConnection(message.getSessionId(), message.getConnection());
+        chatSubscriptions.subscribe(projectId, message.getConnection());
 
-            // Busca projetos onde o usuário é cliente ou consultor
-            // e onde há um consultor designado (chat está ativo)
-            List<Project> projects = projectRepository.findAll();
-            com.google.gson.JsonArray projectsArray = new com.google.gson.JsonArray();
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("projectId", projectId);
+        return Protocol.createSuccess(message.getRequestId(), "Inscrito no chat do projeto", responseData);
+    }
+
+    /**
+     * Cancela o recebimento de mensagens do projeto via PUSH
+     */
+    private Protocol.Response handleUnsubscribe(Protocol.Message message) {
+        if (message.getConnection() != null) {
+            chatSubscriptions.unsubscribe(message.getLong("projectId"), message.getConnection());
+        }
+
+        JsonObject responseData = new JsonObject();
+        responseData.addProperty("projectId", message.getLong("projectId"));
+        return Protocol.createSuccess(message.getRequestId(), "Inscrição cancelada", responseData);
+    }
 
-            for (Project project : projects) {
-                boolean isParticipant = project.getUser().getId().equals(userId) ||
-                        (project.getConsultant() != null && project.getConsultant().getId().equals(userId));
-
-                if (isParticipant && project.getConsultant() != null) {
-                    JsonObject projObj = new JsonObject();
-                    projObj.addProperty("projectId", project.getId());
-                    projObj.addProperty("projectName", project.getName());
-                    projObj.addProperty("status", project.getStatus().toString());
-
-                    if (project.getUser().getId().equals(userId)) {
-                        projObj.addProperty("otherPartyName", project.getConsultant().getName());
-                        projObj.addProperty("otherPartyId", project.getConsultant().getId());
-                    } else {
-                        projObj.addProperty("otherPartyName", project.getUser().getName());
-                        projObj.addProperty("otherPartyId", project.getUser().getId());
-                    }
-
-                    projectsArray.add(projObj);
+    /**
+     * Processa obtenção de projetos com chat ativo: a caixa de entrada do
+     * usuário, com a última mensagem e as não lidas de cada projeto, da
+     * conversa mais recente para a mais antiga
+     */
+    private Protocol.Response handleGetProjectsWithChat(Protocol.Message message, User user) {
+        try {
+            Long userId = user.getId();
+
+            log.debug("[CHAT-PROJECTS] Buscando projetos com chat para usuário: {}", userId);
+
+            // Caixa mantida em memória; montada só com os projetos do usuário
+            List<ChatInboxService.InboxEntry> inbox = chatInboxService.getInbox(userId);
+            com.google.gson.JsonArray projectsArray = new com.google.gson.JsonArray();
+            int totalUnread = 0;
+
+            for (ChatInboxService.InboxEntry entry : inbox) {
+                JsonObject projObj = new JsonObject();
+                projObj.addProperty("projectId", entry.getProjectId());
+                projObj.addProperty("projectName", entry.getProjectName());
+                projObj.addProperty("status", entry.getStatus());
+                projObj.addProperty("otherPartyName", entry.getOtherPartyName());
+                projObj.addProperty("otherPartyId", entry.getOtherPartyId());
+                projObj.addProperty("unreadCount", entry.getUnread());
+                projObj.addProperty("lastReadMessageId", entry.getLastReadId());
+
+                if (entry.getLastMessageId() > 0) {
+                    JsonObject lastObj = new JsonObject();
+                    lastObj.addProperty("id", entry.getLastMessageId());
+                    lastObj.addProperty("senderId", entry.getLastSenderId());
+                    lastObj.addProperty("senderName", entry.getLastSenderName());
+                    lastObj.addProperty("preview", entry.getLastPreview());
+                    lastObj.addProperty("timestamp", entry.getLastTimestamp() != null
+                            ? entry.getLastTimestamp().toString() : null);
+                    projObj.add("lastMessage", lastObj);
                 }
+
+                totalUnread += entry.getUnread();
+                projectsArray.add(projObj);
             }
 
             JsonObject responseData = new JsonObject();
             responseData.add("projects", projectsArray);
             responseData.addProperty("totalProjects", projectsArray.size());
+            responseData.addProperty("totalUnread", totalUnread);
 
-            log.info("[CHAT-PROJECTS] ✓ {} projetos encontrados para usuário {}", projectsArray.size(), userId);
+            log.debug("[CHAT-PROJECTS] ✓ {} projetos encontrados para usuário {}", projectsArray.size(), userId);
 
             return Protocol.createSuccess(message.getRequestId(), "Projetos recuperados", responseData);
 
@@ -271,4 +267,83 @@ public class ChatCommandHandler implements CommandHandler {
             return Protocol.createError(message.getRequestId(), "Erro ao obter projetos: " + e.getMessage());
         }
     }
+
+    /**
+     * Marca as mensagens do projeto como lidas até messageId (opcional;
+     * sem ele, até a última) e devolve as não lidas restantes
+     */
+    private Protocol.Response handleMarkRead(Protocol.Message message, User user) {
+        Long projectId = message.getLong("projectId");
+        Long userId = user.getId();
+        Long messageId = message.has("messageId") ? message.getLong("messageId") : null;
+
+        try {
+            chatService.checkAccess(projectId, userId);
+        } catch (RuntimeException e) {
+            log.warn("[CHAT-READ] Marca recusada - Usuário {}, Projeto {}: {}", userId, projectId, e.getMessage());
+            return Protocol.createError(message.getRequestId(), e.getMessage());
+        }
+
+        try {
+            ChatInboxService.InboxEntry entry = chatInboxService.markRead(userId, projectId, messageId);
+            if (entry == null) {
+                return Protocol.createError(message.getRequestId(), "Chat ainda não está ativo neste projeto");
+            }
+
+            JsonObject responseData = new JsonObject();
+            responseData.addProperty("projectId", projectId);
+            responseData.addProperty("lastReadMessageId", entry.getLastReadId());
+            responseData.addProperty("unreadCount", entry.getUnread());
+            return Protocol.createSuccess(message.getRequestId(), "Mensagens marcadas como lidas", responseData);
+
+        } catch (Exception e) {
+            log.error("[CHAT-READ] Erro ao marcar mensagens como lidas", e);
+            return Protocol.createError(message.getRequestId(), "Erro ao marcar mensagens: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Busca textual nas mensagens dos projetos do usuário da sessão, paginada por id
+     * (projectId, beforeId e limit opcionais)
+     */
+    private Protocol.Response handleSearch(Protocol.Message message, User user) {
+        Long userId = user.getId();
+        String query = message.getString("query");
+        Long projectId = message.getLong("projectId");
+        Long beforeId = message.getLong("beforeId");
+        Long limitField = message.getLong("limit");
+        Integer limit = limitField != null ? limitField.intValue() : null;
+
+        ChatSearchService.SearchPage page;
+        try {
+            page = chatSearchService.search(userId, query, projectId, beforeId, limit);
+        } catch (DataAccessException e) {
+            log.error("[CHAT-SEARCH] Erro ao buscar mensagens", e);
+            return Protocol.createError(message.getRequestId(), "Erro ao buscar mensagens");
+        } catch (RuntimeException e) {
+            log.warn("[CHAT-SEARCH] Busca recusada - Usuário {}: {}", userId, e.getMessage());
+            return Protocol.createError(message.getRequestId(), e.getMessage());
+        }
+
+        com.google.gson.JsonArray resultsArray = new com.google.gson.JsonArray();
+        for (ChatSearchService.SearchHit hit : page.getHits()) {
+            JsonObject hitObj = new JsonObject();
+            hitObj.addProperty("messageId", hit.getMessageId());
+            hitObj.addProperty("projectId", hit.getProjectId());
+            hitObj.addProperty("projectName", hit.getProjectName());
+            hitObj.addProperty("senderId", hit.getSenderId());
+            hitObj.addProperty("senderName", hit.getSenderName());
+            hitObj.addProperty("timestamp", hit.getTimestamp() != null ? hit.getTimestamp().toString() : null);
+            hitObj.addProperty("snippet", hit.getSnippet());
+            resultsArray.add(hitObj);
+        }
+
+        log.debug("[CHAT-SEARCH] ✓ {} mensagens encontradas para usuário {}", resultsArray.size(), userId);
+
+        JsonObject responseData = new JsonObject();
+        responseData.add("results", resultsArray);
+        responseData.addProperty("totalResults", resultsArray.size());
+        responseData.addProperty("hasMore", page.hasMore());
+        return Protocol.createSuccess(message.getRequestId(), "Busca concluída", responseData);
+    }
 }
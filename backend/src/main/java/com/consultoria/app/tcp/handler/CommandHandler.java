@@ -6,7 +6,9 @@ import com.consultoria.app.tcp.SessionManager;
 import com.google.gson.JsonObject;
 
 /**
- * Interface base para todos os command handlers
+ * Handler de um tipo de comando inteiro (todas as actions passam por
+ * handle). Handlers com várias actions declaram rotas (type, action) via
+ * RouteProvider.
  */
 public interface CommandHandler {
     /**
@@ -7,7 +7,8 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.EvaluationRepository;
 import com.consultoria.app.repository.RequestRepository;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +18,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Component
-public class EvaluationCommandHandler implements CommandHandler {
+public class EvaluationCommandHandler implements RouteProvider {
+    private static final String COMMAND_TYPE = "EVALUATION";
 
     @Autowired
     private EvaluationRepository evaluationRepository;
@@ -26,39 +28,14 @@ public class EvaluationCommandHandler implements CommandHandler {
     private RequestRepository requestRepository;
 
     @Override
-    public String getCommandType() {
-        return "EVALUATION";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "SUBMIT":
-                return handleSubmit(message, user);
-            case "GET":
-                return handleGet(message, user);
-            case "LIST_CONSULTANT":
-                return handleListConsultant(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+    public void registerRoutes(CommandRouter router) {
+        router.route(COMMAND_TYPE, "SUBMIT").authenticated().requires("requestId", "rating").to(this::handleSubmit);
+        router.route(COMMAND_TYPE, "GET").authenticated().requires("requestId").to(this::handleGet);
+        router.route(COMMAND_TYPE, "LIST_CONSULTANT").authenticated().to(this::handleListConsultant);
     }
 
     private Protocol.Response handleSubmit(Protocol.Message message, User user) {
         JsonObject data = message.getData();
-
-        if (!data.has("requestId") || !data.has("rating")) {
-            return Protocol.createError(message.getRequestId(), "Dados insuficientes");
-        }
-
         Long requestId = data.get("requestId").getAsLong();
         Integer rating = data.get("rating").getAsInt();
 
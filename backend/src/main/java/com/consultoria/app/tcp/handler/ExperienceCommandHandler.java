@@ -7,7 +7,8 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.ConsultantProfileRepository;
 import com.consultoria.app.repository.ExperienceRepository;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -18,7 +19,8 @@ import java.time.LocalDate;
 import java.util.List;
 
 @Component
-public class ExperienceCommandHandler implements CommandHandler {
+public class ExperienceCommandHandler implements RouteProvider {
+    private static final String COMMAND_TYPE = "EXPERIENCE";
 
     @Autowired
     private ExperienceRepository experienceRepository;
@@ -29,36 +31,12 @@ public class ExperienceCommandHandler implements CommandHandler {
     private final Gson gson = new Gson();
 
     @Override
-    public String getCommandType() {
-        return "EXPERIENCE";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        if (user.getRole() != User.Role.CONSULTANT) {
-            return Protocol.createError(message.getRequestId(), "Apenas consultores podem gerenciar experiências");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "ADD":
-                return handleAdd(message, user);
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+    public void registerRoutes(CommandRouter router) {
+        // Apenas consultores gerenciam experiências
+        router.route(COMMAND_TYPE, "ADD").role(User.Role.CONSULTANT).requires("title", "company").to(this::handleAdd);
+        router.route(COMMAND_TYPE, "UPDATE").role(User.Role.CONSULTANT).requires("id").to(this::handleUpdate);
+        router.route(COMMAND_TYPE, "DELETE").role(User.Role.CONSULTANT).requires("id").to(this::handleDelete);
+        router.route(COMMAND_TYPE, "LIST").role(User.Role.CONSULTANT).to(this::handleList);
     }
 
     private Protocol.Response handleAdd(Protocol.Message message, User user) {
@@ -8,7 +8,8 @@ import com.consultoria.app.repository.ProjectFileRepository;
 import com.consultoria.app.repository.RequestRepository;
 import com.consultoria.app.service.FileStorageService;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +19,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Component
-public class FileCommandHandler implements CommandHandler {
+public class FileCommandHandler implements RouteProvider {
+    private static final String COMMAND_TYPE = "FILE";
+    // Upload/download mantêm o arquivo inteiro em memória: poucos por vez
+    private static final int TRANSFER_MAX_CONCURRENT = 4;
 
     @Autowired
     private ProjectFileRepository projectFileRepository;
@@ -30,42 +34,23 @@ public class FileCommandHandler implements CommandHandler {
     private FileStorageService fileStorageService;
 
     @Override
-    public String getCommandType() {
-        return "FILE";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPLOAD":
-                return handleUpload(message, user);
-            case "LIST":
-                return handleList(message, user);
-            case "DOWNLOAD":
-                return handleDownload(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+    public void registerRoutes(CommandRouter router) {
+        router.route(COMMAND_TYPE, "UPLOAD").authenticated().requires("requestId", "fileName")
+                .maxConcurrent(TRANSFER_MAX_CONCURRENT).to(this::handleUpload);
+        router.route(COMMAND_TYPE, "LIST").authenticated().requires("requestId").to(this::handleList);
+        router.route(COMMAND_TYPE, "DOWNLOAD").authenticated().requires("fileId")
+                .maxConcurrent(TRANSFER_MAX_CONCURRENT).to(this::handleDownload);
+        router.route(COMMAND_TYPE, "DELETE").authenticated().requires("fileId").to(this::handleDelete);
     }
 
     private Protocol.Response handleUpload(Protocol.Message message, User user) {
-        JsonObject data = message.getData();
-
-        if (!data.has("requestId") || !data.has("fileData") || !data.has("fileName")) {
+        // Corpo binário (framing BINARY) dispensa o campo fileData em Base64
+        byte[] body = message.getBody();
+        if (body == null && !message.has("fileData")) {
             return Protocol.createError(message.getRequestId(), "Dados insuficientes");
         }
 
-        Long requestId = data.get("requestId").getAsLong();
+        Long requestId = message.getLong("requestId");
         Request request = requestRepository.findById(requestId).orElse(null);
 
         if (request == null) {
@@ -79,21 +64,31 @@ public class FileCommandHandler implements CommandHandler {
         }
 
         try {
-            String fileData = data.get("fileData").getAsString();
-            String fileName = data.get("fileName").getAsString();
-
-            if (!fileStorageService.validateFileSize(fileData)) {
-                return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+            String fileName = message.getString("fileName");
+            String savedFile;
+            long fileSize;
+
+            if (body != null) {
+                if (!fileStorageService.validateFileSize(body.length)) {
+                    return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+                }
+                savedFile = fileStorageService.saveFile(body, fileName);
+                fileSize = body.length;
+            } else {
+                String fileData = message.getString("fileData");
+                if (!fileStorageService.validateFileSize(fileData)) {
+                    return Protocol.createError(message.getRequestId(), "Arquivo muito grande (máx 10MB)");
+                }
+                savedFile = fileStorageService.saveFile(fileData, fileName);
+                fileSize = fileData.length() * 3 / 4; // Tamanho aproximado
             }
 
-            String savedFile = fileStorageService.saveFile(fileData, fileName);
-
             ProjectFile projectFile = new ProjectFile();
             projectFile.setRequest(request);
             projectFile.setUploadedBy(user);
             projectFile.setFileName(fileName);
             projectFile.setFilePath(savedFile);
-            projectFile.setFileSize((long) (fileData.length() * 3 / 4)); // Tamanho aproximado
+            projectFile.setFileSize(fileSize);
             projectFile.setUploadDate(LocalDateTime.now());
 
             projectFile = projectFileRepository.save(projectFile);
@@ -110,8 +105,7 @@ public class FileCommandHandler implements CommandHandler {
     }
 
     private Protocol.Response handleList(Protocol.Message message, User user) {
-        JsonObject data = message.getData();
-        Long requestId = data.get("requestId").getAsLong();
+        Long requestId = message.getLong("requestId");
 
         List<ProjectFile> files = projectFileRepository.findByRequestId(requestId);
 
@@ -133,8 +127,7 @@ public class FileCommandHandler implements CommandHandler {
     }
 
     private Protocol.Response handleDownload(Protocol.Message message, User user) {
-        JsonObject data = message.getData();
-        Long fileId = data.get("fileId").getAsLong();
+        Long fileId = message.getLong("fileId");
 
         ProjectFile file = projectFileRepository.findById(fileId).orElse(null);
         if (file == null) {
@@ -142,10 +135,17 @@ public class FileCommandHandler implements CommandHandler {
         }
 
         try {
-            String base64 = fileStorageService.getFileAsBase64(file.getFilePath());
-
             JsonObject responseData = new JsonObject();
             responseData.addProperty("fileName", file.getFileName());
+
+            // binary=true: bytes seguem como corpo do frame em vez de Base64
+            if (message.getBoolean("binary", false)) {
+                Protocol.Response response = Protocol.createSuccess(message.getRequestId(), "Arquivo obtido", responseData);
+                response.setBody(fileStorageService.getFileBytes(file.getFilePath()));
+                return response;
+            }
+
+            String base64 = fileStorageService.getFileAsBase64(file.getFilePath());
             responseData.addProperty("fileData", base64);
 
             return Protocol.createSuccess(message.getRequestId(), "Arquivo obtido", responseData);
@@ -156,8 +156,7 @@ public class FileCommandHandler implements CommandHandler {
     }
 
     private Protocol.Response handleDelete(Protocol.Message message, User user) {
-        JsonObject data = message.getData();
-        Long fileId = data.get("fileId").getAsLong();
+        Long fileId = message.getLong("fileId");
 
         ProjectFile file = projectFileRepository.findById(fileId).orElse(null);
         if (file == null || !file.getUploadedBy().getId().equals(user.getId())) {
@@ -5,7 +5,8 @@ import com.consultoria.app.model.User;
 import com.consultoria.app.repository.UserRepository;
 import com.consultoria.app.service.FileStorageService;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -15,7 +16,7 @@ import org.springframework.stereotype.Component;
  * UPDATE_CONSULTANT_PROFILE, GET_PROFILE)
  */
 @Component
-public class ProfileCommandHandler implements CommandHandler {
+public class ProfileCommandHandler implements RouteProvider {
 
     @Autowired
     private UserRepository userRepository;
@@ -26,42 +27,21 @@ public class ProfileCommandHandler implements CommandHandler {
     private static final String COMMAND_TYPE = "PROFILE";
 
     @Override
-    public String getCommandType() {
-        return COMMAND_TYPE;
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        // Valida sessão
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida ou expirada");
-        }
-
-        JsonObject data = message.getData();
-        if (data == null || !data.has("action")) {
-            return Protocol.createError(message.getRequestId(), "Campo 'action' obrigatório");
-        }
-
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "UPLOAD_PHOTO":
-                return handleUploadPhoto(message, user);
-            case "GET":
-                return handleGet(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida: " + action);
-        }
+    public void registerRoutes(CommandRouter router) {
+        router.route(COMMAND_TYPE, "UPDATE").authenticated().to(this::handleUpdate);
+        router.route(COMMAND_TYPE, "UPLOAD_PHOTO").authenticated().requires("photoData", "fileName").to(this::handleUploadPhoto);
+        router.route(COMMAND_TYPE, "GET").authenticated().to(this::handleGet);
     }
 
     /**
      * Atualiza perfil do usuário
      */
-    private Protocol.Response handleUpdate(Protocol.Message message, User user) {
+    private Protocol.Response handleUpdate(Protocol.Message message, User sessionUser) {
         JsonObject data = message.getData();
+        User user = loadUser(sessionUser);
+        if (user == null) {
+            return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
+        }
 
         boolean updated = false;
 
@@ -95,14 +75,12 @@ public class ProfileCommandHandler implements CommandHandler {
     /**
      * Upload de foto de perfil
      */
-    private Protocol.Response handleUploadPhoto(Protocol.Message message, User user) {
+    private Protocol.Response handleUploadPhoto(Protocol.Message message, User sessionUser) {
         JsonObject data = message.getData();
-
-        if (!data.has("photoData") || !data.has("fileName")) {
-            return Protocol.createError(message.getRequestId(),
-                    "photoData e fileName obrigatórios");
+        User user = loadUser(sessionUser);
+        if (user == null) {
+            return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
         }
-
         String base64Photo = data.get("photoData").getAsString();
         String fileName = data.get("fileName").getAsString();
 
@@ -145,10 +123,12 @@ public class ProfileCommandHandler implements CommandHandler {
         if (data.has("userId")) {
             Long userId = data.get("userId").getAsLong();
             user = userRepository.findById(userId).orElse(null);
+        } else {
+            user = loadUser(user);
+        }
 
-            if (user == null) {
-                return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
-            }
+        if (user == null) {
+            return Protocol.createError(message.getRequestId(), "Usuário não encontrado");
         }
 
         JsonObject responseData = buildUserData(user);
@@ -157,6 +137,14 @@ public class ProfileCommandHandler implements CommandHandler {
                 "Dados obtidos com sucesso", responseData);
     }
 
+    /**
+     * Cadastro atual do usuário da sessão: o User da sessão pode estar
+     * desatualizado ou ter só id e perfil (token sem estado)
+     */
+    private User loadUser(User sessionUser) {
+        return userRepository.findById(sessionUser.getId()).orElse(null);
+    }
+
     /**
      * Constrói JSON com dados do usuário
      */
@@ -8,7 +8,8 @@ import com.consultoria.app.repository.ConsultantProfileRepository;
 import com.consultoria.app.repository.ConsultantProjectRepository;
 import com.consultoria.app.service.FileStorageService;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +18,8 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 @Component
-public class ProjectCommandHandler implements CommandHandler {
+public class ProjectCommandHandler implements RouteProvider {
+    private static final String COMMAND_TYPE = "PROJECT";
 
     @Autowired
     private ConsultantProjectRepository projectRepository;
@@ -29,36 +31,12 @@ public class ProjectCommandHandler implements CommandHandler {
     private FileStorageService fileStorageService;
 
     @Override
-    public String getCommandType() {
-        return "PROJECT";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        if (user.getRole() != User.Role.CONSULTANT) {
-            return Protocol.createError(message.getRequestId(), "Apenas consultores podem gerenciar projetos");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "ADD":
-                return handleAdd(message, user);
-            case "UPDATE":
-                return handleUpdate(message, user);
-            case "DELETE":
-                return handleDelete(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+    public void registerRoutes(CommandRouter router) {
+        // Apenas consultores gerenciam projetos do portfólio
+        router.route(COMMAND_TYPE, "ADD").role(User.Role.CONSULTANT).requires("title", "description").to(this::handleAdd);
+        router.route(COMMAND_TYPE, "UPDATE").role(User.Role.CONSULTANT).requires("id").to(this::handleUpdate);
+        router.route(COMMAND_TYPE, "DELETE").role(User.Role.CONSULTANT).requires("id").to(this::handleDelete);
+        router.route(COMMAND_TYPE, "LIST").role(User.Role.CONSULTANT).to(this::handleList);
     }
 
     private Protocol.Response handleAdd(Protocol.Message message, User user) {
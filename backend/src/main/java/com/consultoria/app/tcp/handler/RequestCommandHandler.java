@@ -5,7 +5,8 @@ import com.consultoria.app.model.Request;
 import com.consultoria.app.model.User;
 import com.consultoria.app.repository.RequestRepository;
 import com.consultoria.app.tcp.Protocol;
-import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.consultoria.app.tcp.route.RouteProvider;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,36 +15,17 @@ import org.springframework.stereotype.Component;
 import java.util.List;
 
 @Component
-public class RequestCommandHandler implements CommandHandler {
+public class RequestCommandHandler implements RouteProvider {
+    private static final String COMMAND_TYPE = "REQUEST";
 
     @Autowired
     private RequestRepository requestRepository;
 
     @Override
-    public String getCommandType() {
-        return "REQUEST";
-    }
-
-    @Override
-    public Protocol.Response handle(Protocol.Message message, SessionManager sessionManager) {
-        User user = sessionManager.validateSession(message.getSessionId());
-        if (user == null) {
-            return Protocol.createError(message.getRequestId(), "Sessão inválida");
-        }
-
-        JsonObject data = message.getData();
-        String action = data.get("action").getAsString();
-
-        switch (action.toUpperCase()) {
-            case "UPDATE_STATUS":
-                return handleUpdateStatus(message, user);
-            case "UPDATE_PROGRESS":
-                return handleUpdateProgress(message, user);
-            case "LIST":
-                return handleList(message, user);
-            default:
-                return Protocol.createError(message.getRequestId(), "Action inválida");
-        }
+    public void registerRoutes(CommandRouter router) {
+        router.route(COMMAND_TYPE, "UPDATE_STATUS").authenticated().requires("id", "status").to(this::handleUpdateStatus);
+        router.route(COMMAND_TYPE, "UPDATE_PROGRESS").authenticated().requires("id", "progress").to(this::handleUpdateProgress);
+        router.route(COMMAND_TYPE, "LIST").authenticated().to(this::handleList);
     }
 
     private Protocol.Response handleUpdateStatus(Protocol.Message message, User user) {
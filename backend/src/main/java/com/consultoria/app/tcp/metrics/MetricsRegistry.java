@@ -0,0 +1,65 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.metrics;
+
+import com.google.gson.JsonObject;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Registro de métricas do servidor: histogramas de latência por rota
+ * (type, action) e gauges lidos no momento da consulta. Exposto pelo
+ * comando TCP METRICS e por GET /api/metrics.
+ */
+@Component
+public class MetricsRegistry {
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Histograma com o nome informado, criado no primeiro uso
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Registra (ou substitui) um gauge avaliado a cada consulta
+     */
+    public void gauge(String name, Supplier<? extends Number> supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Estado atual de todas as métricas, em ordem alfabética
+     */
+    public JsonObject snapshot() {
+        JsonObject latency = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            // Rotas registradas mas nunca executadas não poluem a saída
+            if (entry.getValue().getCount() > 0) {
+                latency.add(entry.getKey(), entry.getValue().snapshot());
+            }
+        }
+
+        JsonObject gaugeValues = new JsonObject();
+        for (Map.Entry<String, Supplier<? extends Number>> entry : new TreeMap<>(gauges).entrySet()) {
+            try {
+                gaugeValues.addProperty(entry.getKey(), entry.getValue().get());
+            } catch (RuntimeException e) {
+                // Componente ainda não inicializado ou já finalizado
+                gaugeValues.addProperty(entry.getKey(), (Number) null);
+            }
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("uptimeMs", System.currentTimeMillis() - startedAt);
+        json.add("latency", latency);
+        json.add("gauges", gaugeValues);
+        return json;
+    }
+}
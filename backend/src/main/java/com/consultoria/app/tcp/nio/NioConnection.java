@@ -0,0 +1,410 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.nio;
+
+import com.consultoria.app.tcp.ClientConnection;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.RequestPipeline;
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.tcp.frame.FrameCodec;
+import com.consultoria.app.tcp.frame.FrameCompressor;
+import com.consultoria.app.tcp.frame.FrameSettings;
+import com.consultoria.app.tcp.frame.Framing;
+import com.consultoria.app.tcp.frame.Handshake;
+import com.consultoria.app.util.ConsultoriaLogger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Estado de uma conexão no modo NIO: buffer de leitura com separação
+ * de frames (newline ou prefixo de tamanho) e fila de escrita drenada
+ * pelo event loop. A fila de escrita é limitada: acima do high-water a
+ * conexão para de ler comandos até o cliente consumir metade, e acima do
+ * máximo (cliente que não lê as respostas nem os pushes) é fechada.
+ */
+public class NioConnection implements ClientConnection {
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final NioEventLoop loop;
+    private final String clientIp;
+    private final int clientPort;
+    private final FrameSettings settings;
+    private final int maxFrameBytes;
+    private final RequestPipeline pipeline;
+
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Bytes na fila de escrita
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private volatile boolean inputShutdown = false;
+    private volatile boolean closeWhenFlushed = false;
+    private volatile Framing outputFraming = Framing.NEWLINE;
+    private volatile FrameCompressor compressor;
+    // HELLO com multiplex aceito: frames com streamId abrem streams lógicos
+    private volatile boolean multiplexed;
+
+    // Acessados apenas pela thread do event loop
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int scanPosition = 0;
+    private Framing inputFraming = Framing.NEWLINE;
+    private boolean firstFrame = true;
+    private int pendingFrameSize = 0;
+    // Leitura suspensa pela fila de escrita acima do high-water
+    private boolean writePaused = false;
+
+    NioConnection(SocketChannel channel, NioEventLoop loop, FrameSettings settings,
+            Function<ClientConnection, RequestPipeline> pipelineFactory) {
+        this.channel = channel;
+        this.loop = loop;
+        this.settings = settings;
+        this.maxFrameBytes = settings.getMaxFrameBytes();
+
+        InetSocketAddress remote = (InetSocketAddress) channel.socket().getRemoteSocketAddress();
+        this.clientIp = remote != null ? remote.getAddress().getHostAddress() : "unknown";
+        this.clientPort = remote != null ? remote.getPort() : 0;
+
+        this.pipeline = pipelineFactory.apply(this);
+        this.pipeline.setOnBacklogDrained(() -> loop.execute(this::resumeReading));
+        this.pipeline.setOnIdle(() -> {
+            if (inputShutdown) {
+                closeWhenFlushed();
+            }
+        });
+    }
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Lê bytes disponíveis e entrega ao pipeline cada linha completa
+     */
+    void onReadable() throws IOException {
+        if (pauseIfWriteBacklog()) {
+            return;
+        }
+        if (!readBuffer.hasRemaining()) {
+            growReadBuffer();
+        }
+
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            // Cliente fechou a escrita: entrega as respostas pendentes antes de fechar
+            inputShutdown = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            if (pipeline.getInFlight() == 0) {
+                closeWhenFlushed();
+            }
+            return;
+        }
+
+        int consumed = 0;
+        int previousConsumed;
+        do {
+            // Um HELLO pode trocar o enquadramento no meio do buffer
+            previousConsumed = consumed;
+            consumed = inputFraming == Framing.BINARY ? extractBinaryFrames(consumed) : extractLines(consumed);
+        } while (consumed != previousConsumed && consumed < readBuffer.position());
+
+        // Move bytes do frame incompleto para o início do buffer
+        if (consumed > 0) {
+            int remaining = readBuffer.position() - consumed;
+            System.arraycopy(readBuffer.array(), consumed, readBuffer.array(), 0, remaining);
+            readBuffer.position(remaining);
+            scanPosition = Math.max(0, scanPosition - consumed);
+        }
+        resizeReadBuffer();
+
+        // Backpressure: limite de requisições em andamento atingido
+        if (pipeline.hasBacklog()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+        pauseIfWriteBacklog();
+    }
+
+    /**
+     * Para de ler enquanto a fila de escrita está acima do high-water; o
+     * flush retoma quando ela cai para a metade
+     */
+    private boolean pauseIfWriteBacklog() {
+        if (queuedBytes.get() <= settings.getWriteHighWaterBytes()) {
+            return false;
+        }
+        writePaused = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        return true;
+    }
+
+    /**
+     * Entrega as linhas completas a partir de start. Para após um HELLO
+     * que troque o enquadramento. Retorna a posição consumida.
+     */
+    private int extractLines(int start) throws IOException {
+        byte[] bytes = readBuffer.array();
+        int limit = readBuffer.position();
+        int frameStart = start;
+
+        // Procura delimitadores apenas nos bytes ainda não examinados
+        for (int i = Math.max(scanPosition, start); i < limit; i++) {
+            if (bytes[i] == '\n') {
+                int end = i;
+                if (end > frameStart && bytes[end - 1] == '\r') {
+                    end--;
+                }
+                Framing before = inputFraming;
+                frameReceived(new Frame(new String(bytes, frameStart, end - frameStart, StandardCharsets.UTF_8)));
+                frameStart = i + 1;
+                if (inputFraming != before) {
+                    scanPosition = frameStart;
+                    return frameStart;
+                }
+            }
+        }
+
+        scanPosition = limit;
+        return frameStart;
+    }
+
+    /**
+     * Entrega os frames binários completos a partir de start. Quando o frame
+     * seguinte está incompleto, registra seu tamanho para alocação única.
+     */
+    private int extractBinaryFrames(int start) throws IOException {
+        byte[] bytes = readBuffer.array();
+        int limit = readBuffer.position();
+        int frameStart = start;
+        pendingFrameSize = 0;
+
+        while (limit - frameStart >= FrameCodec.HEADER_SIZE) {
+            int length = FrameCodec.readLength(bytes, frameStart);
+            if (length < 0 || length > maxFrameBytes) {
+                throw new IOException("Tamanho de frame inválido: " + length);
+            }
+
+            int total = FrameCodec.HEADER_SIZE + length;
+            if (limit - frameStart < total) {
+                pendingFrameSize = total;
+                break;
+            }
+
+            byte type = bytes[frameStart + 4];
+            frameReceived(FrameCodec.decodePayload(type, bytes, frameStart + FrameCodec.HEADER_SIZE, length, compressor));
+            frameStart += total;
+        }
+
+        scanPosition = limit;
+        return frameStart;
+    }
+
+    private void frameReceived(Frame frame) {
+        if (firstFrame) {
+            firstFrame = false;
+            Handshake.Result hello = Handshake.tryNegotiate(frame, inputFraming, settings, clientIp);
+            if (hello != null) {
+                // Resposta ainda no enquadramento antigo; depois troca os dois sentidos
+                inputFraming = hello.getFraming();
+                if (hello.isMultiplexed()) {
+                    multiplexed = true;
+                    pipeline.setMaxInFlight(settings.getMultiplexMaxInFlight());
+                }
+                synchronized (writeQueue) {
+                    send(hello.getResponse());
+                    outputFraming = hello.getFraming();
+                    compressor = hello.getCompressor();
+                }
+                return;
+            }
+        }
+        pipeline.submit(frame);
+    }
+
+    private void resumeReading() {
+        // Cada motivo de pausa retoma por conta própria: pipeline (backlog drenado) e fila de escrita (flush)
+        if (key.isValid() && !inputShutdown && !writePaused && !pipeline.hasBacklog()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Ajusta o buffer após consumir frames: aloca de uma vez o tamanho exato
+     * do frame binário pendente ou devolve buffers grandes que ficaram vazios
+     */
+    private void resizeReadBuffer() {
+        int buffered = readBuffer.position();
+        ByteBuffer resized = null;
+
+        if (pendingFrameSize > readBuffer.capacity()) {
+            resized = ByteBuffer.allocate(pendingFrameSize);
+        } else if (buffered == 0 && readBuffer.capacity() > RETAINED_BUFFER_SIZE) {
+            resized = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+
+        if (resized != null) {
+            resized.put(readBuffer.array(), 0, buffered);
+            readBuffer = resized;
+        }
+    }
+
+    private void growReadBuffer() throws IOException {
+        int capacity = readBuffer.capacity();
+        if (capacity >= maxFrameBytes) {
+            throw new IOException("Frame excede o limite de " + maxFrameBytes + " bytes");
+        }
+
+        ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) capacity * 2, maxFrameBytes));
+        readBuffer.flip();
+        larger.put(readBuffer);
+        readBuffer = larger;
+    }
+
+    /**
+     * Codifica e enfileira a resposta para envio. Pode ser chamado de qualquer thread.
+     */
+    @Override
+    public void send(Protocol.Response response) {
+        if (closed.get()) {
+            return;
+        }
+        byte[] encoded;
+        if (compressor == null) {
+            encoded = FrameCodec.encode(outputFraming, response);
+            writeQueue.add(ByteBuffer.wrap(encoded));
+        } else {
+            // O contexto DEFLATE exige que a ordem de compressão seja a ordem de escrita
+            synchronized (writeQueue) {
+                encoded = FrameCodec.encode(outputFraming, response, compressor);
+                writeQueue.add(ByteBuffer.wrap(encoded));
+            }
+        }
+        long queued = queuedBytes.addAndGet(encoded.length);
+        if (queued > settings.getMaxQueuedBytes()) {
+            ConsultoriaLogger.logWarn(ConsultoriaLogger.LogCategory.TCP_CLIENT,
+                    "Cliente %s:%d não lê as respostas (%d bytes na fila): fechando", clientIp, clientPort, queued);
+            close();
+            return;
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.scheduleFlush(this);
+        }
+    }
+
+    /**
+     * Fecha a conexão depois que a fila de escrita esvaziar
+     */
+    private void closeWhenFlushed() {
+        closeWhenFlushed = true;
+        scheduleFlush();
+    }
+
+    /**
+     * Escreve o máximo possível da fila. Executado apenas pelo event loop.
+     */
+    void flush() throws IOException {
+        flushScheduled.set(false);
+        if (!key.isValid()) {
+            return;
+        }
+
+        ByteBuffer buffer;
+        while ((buffer = writeQueue.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                // Socket cheio: aguarda OP_WRITE
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.poll();
+            if (queuedBytes.addAndGet(-buffer.capacity()) <= settings.getWriteHighWaterBytes() / 2 && writePaused) {
+                writePaused = false;
+                resumeReading();
+            }
+        }
+
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (closeWhenFlushed) {
+            close();
+        }
+    }
+
+    /**
+     * Fecha a conexão. Pode ser chamado de qualquer thread.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        writeQueue.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            ConsultoriaLogger.logError(ConsultoriaLogger.LogCategory.TCP_CLIENT, "Fechar canal", e);
+        }
+        FrameCompressor current = compressor;
+        if (current != null) {
+            ConsultoriaLogger.logInfo(ConsultoriaLogger.LogCategory.TCP_CLIENT, "Compressão %s:%d: %s",
+                    clientIp, clientPort, current.getStats());
+            current.close();
+        }
+        loop.connectionClosed(this);
+        notifyClosed();
+    }
+
+    @Override
+    public void addCloseListener(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed.get()) {
+            notifyClosed();
+        }
+    }
+
+    private void notifyClosed() {
+        for (Runnable listener : closeListeners) {
+            // remove garante execução única mesmo com chamadas concorrentes
+            if (closeListeners.remove(listener)) {
+                listener.run();
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    @Override
+    public String getClientIp() {
+        return clientIp;
+    }
+
+    @Override
+    public int getClientPort() {
+        return clientPort;
+    }
+
+    @Override
+    public boolean isMultiplexed() {
+        return multiplexed;
+    }
+}
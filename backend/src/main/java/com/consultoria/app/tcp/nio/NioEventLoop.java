@@ -0,0 +1,185 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.nio;
+
+import com.consultoria.app.tcp.ClientConnection;
+import com.consultoria.app.tcp.RequestPipeline;
+import com.consultoria.app.tcp.frame.FrameSettings;
+import com.consultoria.app.util.ConsultoriaLogger;
+import com.consultoria.app.util.ConsultoriaLogger.LogCategory;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Event loop NIO: uma thread com um Selector atende milhares de conexões.
+ * Apenas frames completos são repassados ao RequestPipeline de cada conexão.
+ */
+public class NioEventLoop implements Runnable {
+    private final Selector selector;
+    private final Thread thread;
+    private final FrameSettings settings;
+    private final Function<ClientConnection, RequestPipeline> pipelineFactory;
+
+    private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final Queue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public NioEventLoop(String name, FrameSettings settings,
+            Function<ClientConnection, RequestPipeline> pipelineFactory) throws IOException {
+        this.selector = Selector.open();
+        this.settings = settings;
+        this.pipelineFactory = pipelineFactory;
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Registra um canal aceito neste loop. Pode ser chamado de qualquer thread.
+     */
+    public void register(SocketChannel channel) {
+        pendingRegistrations.add(channel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                processRegistrations();
+                processTasks();
+                processFlushes();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+            } catch (IOException e) {
+                if (running) {
+                    ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Event loop NIO", e);
+                }
+            }
+        }
+
+        closeAll();
+    }
+
+    private void handleKey(SelectionKey key) {
+        NioConnection connection = (NioConnection) key.attachment();
+        try {
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            ConsultoriaLogger.logWarn(LogCategory.TCP_CLIENT, "Conexão %s:%d encerrada: %s",
+                    connection.getClientIp(), connection.getClientPort(), e.getMessage());
+            connection.close();
+        }
+    }
+
+    private void processRegistrations() {
+        SocketChannel channel;
+        while ((channel = pendingRegistrations.poll()) != null) {
+            NioConnection connection = new NioConnection(channel, this, settings, pipelineFactory);
+            connectionCount.incrementAndGet();
+            try {
+                channel.configureBlocking(false);
+                connection.attach(channel.register(selector, SelectionKey.OP_READ, connection));
+                ConsultoriaLogger.logTCPConnection(connection.getClientIp(), connection.getClientPort(),
+                        "Cliente conectado", true);
+            } catch (IOException e) {
+                ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Registrar conexão NIO", e);
+                // Fecha pela conexão para os close listeners (contadores) rodarem
+                connection.close();
+            }
+        }
+    }
+
+    private void processTasks() {
+        Runnable task;
+        while ((task = pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Tarefa do event loop", e);
+            }
+        }
+    }
+
+    private void processFlushes() {
+        NioConnection connection;
+        while ((connection = pendingFlushes.poll()) != null) {
+            if (!connection.isOpen()) {
+                continue;
+            }
+            try {
+                connection.flush();
+            } catch (IOException | RuntimeException e) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Executa uma tarefa na thread do loop. Pode ser chamado de qualquer thread.
+     */
+    void execute(Runnable task) {
+        pendingTasks.add(task);
+        selector.wakeup();
+    }
+
+    void scheduleFlush(NioConnection connection) {
+        pendingFlushes.add(connection);
+        selector.wakeup();
+    }
+
+    void connectionClosed(NioConnection connection) {
+        connectionCount.decrementAndGet();
+        ConsultoriaLogger.logTCPConnection(connection.getClientIp(), connection.getClientPort(),
+                "Cliente desconectado", false);
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof NioConnection) {
+                ((NioConnection) attachment).close();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            ConsultoriaLogger.logError(LogCategory.TCP_SERVER, "Fechar selector", e);
+        }
+    }
+
+    /**
+     * Para o loop e fecha todas as conexões
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+}
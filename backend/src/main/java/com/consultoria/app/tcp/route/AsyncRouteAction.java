@@ -0,0 +1,22 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.Protocol;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Execução de uma rota que responde quando uma operação assíncrona termina
+ * (ex.: gravação em log confirmada por outra thread), sem segurar o worker
+ * enquanto espera
+ */
+@FunctionalInterface
+public interface AsyncRouteAction {
+    /**
+     * @param message Mensagem recebida, já com os campos obrigatórios da rota
+     * @param user    Usuário da sessão validada, ou null se a rota é pública
+     * @return Futuro da resposta; completado com erro apenas em falhas inesperadas
+     */
+    CompletableFuture<Protocol.Response> execute(Protocol.Message message, User user);
+}
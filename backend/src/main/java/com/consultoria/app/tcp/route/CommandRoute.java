@@ -0,0 +1,165 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.metrics.LatencyHistogram;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rota resolvida de um par (type, action) com seus metadados: exigência
+ * de sessão e perfil, campos obrigatórios e executor.
+ */
+public class CommandRoute {
+    private final String type;
+    private final String action;
+    private final boolean authenticated;
+    private final User.Role role;
+    private final String[] requiredFields;
+    private final Executor executor;
+    private final String executorName;
+    private final RouteAction handler;
+    private final AsyncRouteAction asyncHandler;
+    private final LatencyHistogram latency;
+    private final int maxConcurrent;
+    private final AtomicInteger active = new AtomicInteger();
+
+    CommandRoute(String type, String action, boolean authenticated, User.Role role,
+            String[] requiredFields, Executor executor, String executorName, RouteAction handler,
+            AsyncRouteAction asyncHandler, LatencyHistogram latency, int maxConcurrent) {
+        this.type = type;
+        this.action = action;
+        this.authenticated = authenticated || role != null;
+        this.role = role;
+        this.requiredFields = requiredFields;
+        this.executor = executor;
+        this.executorName = executorName;
+        this.handler = handler;
+        this.asyncHandler = asyncHandler;
+        this.latency = latency;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Action da rota, ou null para a rota que atende todas as actions do tipo
+     */
+    public String getAction() {
+        return action;
+    }
+
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    /**
+     * Perfil exigido, ou null se qualquer usuário autenticado pode executar
+     */
+    public User.Role getRole() {
+        return role;
+    }
+
+    public String[] getRequiredFields() {
+        return requiredFields.clone();
+    }
+
+    String[] requiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Executor dedicado da rota, ou null para executar na thread do worker
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Nome do executor da rota ("worker" quando não há executor dedicado)
+     */
+    public String getExecutorName() {
+        return executorName;
+    }
+
+    /**
+     * Handler síncrono; em rotas assíncronas, aguarda o futuro da resposta
+     */
+    public RouteAction getHandler() {
+        return handler;
+    }
+
+    /**
+     * Handler assíncrono, ou null se a rota responde na própria execução
+     */
+    public AsyncRouteAction getAsyncHandler() {
+        return asyncHandler;
+    }
+
+    /**
+     * Latência das execuções da rota (inclui validação de sessão e campos)
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Máximo de execuções simultâneas da rota (0 = sem limite)
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Execuções da rota em andamento
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * Reserva uma execução; false se a rota já está no limite
+     */
+    boolean tryEnter() {
+        if (active.incrementAndGet() > maxConcurrent && maxConcurrent > 0) {
+            active.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void exit() {
+        active.decrementAndGet();
+    }
+
+    /**
+     * Descrição da rota para ferramentas (listagem, documentação)
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("type", type);
+        json.addProperty("action", action != null ? action : "*");
+        json.addProperty("authenticated", authenticated);
+        if (role != null) {
+            json.addProperty("role", role.toString());
+        }
+        JsonArray fields = new JsonArray();
+        for (String field : requiredFields) {
+            fields.add(field);
+        }
+        json.add("requiredFields", fields);
+        json.addProperty("executor", executorName);
+        json.addProperty("maxConcurrent", maxConcurrent);
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + (action != null ? action : "*");
+    }
+}
@@ -0,0 +1,373 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.AdmissionControl;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.handler.CommandHandler;
+import com.consultoria.app.tcp.metrics.LatencyHistogram;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tabela de rotas (type, action) montada em TCPServer.initialize().
+ * No caminho quente a rota sai de uma consulta à tabela; sessão, perfil e
+ * campos obrigatórios são verificados aqui, uma vez, em vez de em cada
+ * handler. Cada rota tem um limite de execuções simultâneas; acima dele o
+ * comando é recusado com BUSY sem ocupar o worker.
+ *
+ * Rotas com executor dedicado (ex.: hash de senha) completam de forma
+ * assíncrona em dispatchAsync: o worker é liberado enquanto o executor
+ * trabalha e a resposta segue quando o futuro completa. Rotas declaradas
+ * com toAsync fazem o mesmo com o futuro devolvido pelo próprio handler.
+ */
+public class CommandRouter {
+    private final SessionManager sessionManager;
+    private final MetricsRegistry metrics;
+    private final AdmissionControl admission;
+    private final int defaultMaxConcurrent;
+    private final Map<String, TypeRoutes> types = new HashMap<>();
+    private final List<CommandRoute> routes = new ArrayList<>();
+
+    /**
+     * @param defaultMaxConcurrent limite das rotas que não declaram
+     *                             maxConcurrent (0 = sem limite)
+     */
+    public CommandRouter(SessionManager sessionManager, MetricsRegistry metrics,
+            AdmissionControl admission, int defaultMaxConcurrent) {
+        this.sessionManager = sessionManager;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.defaultMaxConcurrent = Math.max(0, defaultMaxConcurrent);
+    }
+
+    /**
+     * Inicia a declaração de uma rota; a action é registrada como enviada
+     * pelos clientes (maiúsculas)
+     */
+    public RouteBuilder route(String type, String action) {
+        return new RouteBuilder(type, action);
+    }
+
+    /**
+     * Action usada quando a mensagem não informa o campo action
+     */
+    public void defaultAction(String type, String action) {
+        table(type).defaultAction = action;
+    }
+
+    /**
+     * Registra as rotas declaradas por um componente
+     */
+    public void register(RouteProvider provider) {
+        provider.registerRoutes(this);
+    }
+
+    /**
+     * Registra um handler sem rotas por action: todas as mensagens do tipo
+     * seguem para handle()
+     */
+    public void register(CommandHandler handler) {
+        String type = handler.getCommandType();
+        add(new CommandRoute(type, null, false, null, new String[0], null, "worker",
+                (message, user) -> handler.handle(message, sessionManager), null, latencyOf(type, null),
+                defaultMaxConcurrent));
+    }
+
+    /**
+     * Rotas registradas, ordenadas por tipo e action
+     */
+    public List<CommandRoute> getRoutes() {
+        Map<String, CommandRoute> sorted = new TreeMap<>();
+        for (CommandRoute route : routes) {
+            sorted.put(route.toString(), route);
+        }
+        return Collections.unmodifiableList(new ArrayList<>(sorted.values()));
+    }
+
+    /**
+     * Controle de admissão compartilhado com o servidor
+     */
+    public AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Resolve a rota da mensagem, ou null se o tipo ou a action não existem
+     */
+    public CommandRoute resolve(Protocol.Message message) {
+        TypeRoutes table = types.get(message.getType());
+        return table != null ? table.resolve(message) : null;
+    }
+
+    /**
+     * Resolve e executa a rota da mensagem, aguardando o executor dedicado
+     * da rota se houver (itens de BATCH)
+     */
+    public Protocol.Response dispatch(Protocol.Message message) {
+        try {
+            return dispatchAsync(message).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Protocol.createError(message.getRequestId(), "Comando interrompido");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Resolve e executa a rota da mensagem. Rotas síncronas sem executor
+     * dedicado retornam um futuro já completo; as demais completam na thread
+     * do executor ou quando o handler assíncrono conclui. Exceções do
+     * handler completam o futuro com erro.
+     */
+    public CompletableFuture<Protocol.Response> dispatchAsync(Protocol.Message message) {
+        TypeRoutes table = types.get(message.getType());
+        if (table == null) {
+            return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(),
+                    "Comando desconhecido: " + message.getType()));
+        }
+
+        CommandRoute route = table.resolve(message);
+        if (route == null) {
+            if (!message.has("action")) {
+                return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(),
+                        "Campo 'action' obrigatório (" + String.join(", ", new TreeSet<>(table.actions.keySet())) + ")"));
+            }
+            return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(),
+                    "Action inválida: " + message.getString("action")));
+        }
+
+        if (!route.tryEnter()) {
+            admission.recordRouteRejected();
+            return CompletableFuture.completedFuture(admission.busy(message.getRequestId(),
+                    "Servidor ocupado: limite de execuções simultâneas de " + route));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<Protocol.Response> result;
+        try {
+            result = execute(route, message);
+        } catch (RuntimeException | Error e) {
+            finish(route, start);
+            throw e;
+        }
+        // Libera a vaga da rota antes de quem aguarda o futuro ver a resposta
+        return result.whenComplete((response, error) -> finish(route, start));
+    }
+
+    private void finish(CommandRoute route, long start) {
+        route.getLatency().recordNanos(System.nanoTime() - start);
+        route.exit();
+    }
+
+    private CompletableFuture<Protocol.Response> execute(CommandRoute route, Protocol.Message message) {
+        User user = null;
+        if (route.isAuthenticated()) {
+            user = sessionManager.validateSession(message.getSessionId());
+            if (user == null) {
+                return CompletableFuture.completedFuture(
+                        Protocol.createError(message.getRequestId(), "Sessão inválida ou expirada"));
+            }
+            if (route.getRole() != null && user.getRole() != route.getRole()) {
+                return CompletableFuture.completedFuture(Protocol.createError(message.getRequestId(),
+                        "Permissão insuficiente: requer perfil " + route.getRole()));
+            }
+        }
+
+        String missing = missingFields(route, message);
+        if (missing != null) {
+            return CompletableFuture.completedFuture(
+                    Protocol.createError(message.getRequestId(), "Campos obrigatórios: " + missing));
+        }
+
+        if (route.getExecutor() == null) {
+            if (route.getAsyncHandler() != null) {
+                return route.getAsyncHandler().execute(message, user);
+            }
+            return CompletableFuture.completedFuture(route.getHandler().execute(message, user));
+        }
+        return executeOn(route, message, user);
+    }
+
+    /**
+     * Agenda no executor dedicado da rota (limita quantas execuções da rota
+     * ocupam recursos ao mesmo tempo) sem bloquear a thread atual
+     */
+    private CompletableFuture<Protocol.Response> executeOn(CommandRoute route, Protocol.Message message, User user) {
+        final User routeUser = user;
+        try {
+            if (route.getAsyncHandler() != null) {
+                return CompletableFuture.supplyAsync(() -> route.getAsyncHandler().execute(message, routeUser),
+                        route.getExecutor()).thenCompose(response -> response);
+            }
+            return CompletableFuture.supplyAsync(() -> route.getHandler().execute(message, routeUser),
+                    route.getExecutor());
+        } catch (RejectedExecutionException e) {
+            admission.recordQueueRejected();
+            return CompletableFuture.completedFuture(
+                    admission.busy(message.getRequestId(), "Servidor ocupado: fila do executor " + route + " cheia"));
+        }
+    }
+
+    private static String missingFields(CommandRoute route, Protocol.Message message) {
+        StringBuilder missing = null;
+        for (String field : route.requiredFields()) {
+            if (!message.has(field)) {
+                if (missing == null) {
+                    missing = new StringBuilder(field);
+                } else {
+                    missing.append(", ").append(field);
+                }
+            }
+        }
+        return missing != null ? missing.toString() : null;
+    }
+
+    private LatencyHistogram latencyOf(String type, String action) {
+        return metrics.histogram(type + " " + (action != null ? action : "*"));
+    }
+
+    private TypeRoutes table(String type) {
+        TypeRoutes table = types.get(type);
+        if (table == null) {
+            table = new TypeRoutes();
+            types.put(type, table);
+        }
+        return table;
+    }
+
+    private void add(CommandRoute route) {
+        TypeRoutes table = table(route.getType());
+        if (route.getAction() == null) {
+            if (table.fallback != null) {
+                throw new IllegalStateException("Rota duplicada: " + route);
+            }
+            table.fallback = route;
+        } else if (table.actions.putIfAbsent(route.getAction(), route) != null) {
+            throw new IllegalStateException("Rota duplicada: " + route);
+        }
+        routes.add(route);
+    }
+
+    /**
+     * Rotas de um tipo de comando
+     */
+    private static class TypeRoutes {
+        private final Map<String, CommandRoute> actions = new HashMap<>();
+        private CommandRoute fallback;
+        private String defaultAction;
+
+        CommandRoute resolve(Protocol.Message message) {
+            String action = message.has("action") ? message.getString("action") : defaultAction;
+            if (action == null) {
+                return fallback;
+            }
+
+            CommandRoute route = actions.get(action);
+            if (route == null) {
+                // Clientes antigos enviam a action em minúsculas
+                String upper = action.toUpperCase(Locale.ROOT);
+                if (!upper.equals(action)) {
+                    route = actions.get(upper);
+                }
+            }
+            return route != null ? route : fallback;
+        }
+    }
+
+    /**
+     * Declaração de uma rota; registrada ao chamar to()
+     */
+    public class RouteBuilder {
+        private final String type;
+        private final String action;
+        private boolean authenticated;
+        private User.Role role;
+        private String[] requiredFields = new String[0];
+        private Executor executor;
+        private String executorName = "worker";
+        private int maxConcurrent = defaultMaxConcurrent;
+
+        private RouteBuilder(String type, String action) {
+            this.type = type;
+            this.action = action;
+        }
+
+        /**
+         * Exige sessão válida; o usuário é entregue à RouteAction
+         */
+        public RouteBuilder authenticated() {
+            this.authenticated = true;
+            return this;
+        }
+
+        /**
+         * Exige sessão válida de um usuário com o perfil informado
+         */
+        public RouteBuilder role(User.Role role) {
+            this.role = role;
+            return this;
+        }
+
+        /**
+         * Campos que precisam estar presentes em data
+         */
+        public RouteBuilder requires(String... fields) {
+            this.requiredFields = fields.clone();
+            return this;
+        }
+
+        /**
+         * Executa a rota em um executor dedicado em vez da thread do worker
+         */
+        public RouteBuilder executor(String name, Executor executor) {
+            this.executorName = name;
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Limita as execuções simultâneas da rota (0 = sem limite)
+         */
+        public RouteBuilder maxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = Math.max(0, maxConcurrent);
+            return this;
+        }
+
+        public CommandRoute to(RouteAction handler) {
+            CommandRoute route = new CommandRoute(type, action, authenticated, role, requiredFields,
+                    executor, executorName, handler, null, latencyOf(type, action), maxConcurrent);
+            add(route);
+            return route;
+        }
+
+        /**
+         * Registra a rota com um handler que devolve o futuro da resposta;
+         * a vaga da rota e a latência valem até o futuro completar
+         */
+        public CommandRoute toAsync(AsyncRouteAction handler) {
+            CommandRoute route = new CommandRoute(type, action, authenticated, role, requiredFields,
+                    executor, executorName, (message, user) -> handler.execute(message, user).join(), handler,
+                    latencyOf(type, action), maxConcurrent);
+            add(route);
+            return route;
+        }
+    }
+}
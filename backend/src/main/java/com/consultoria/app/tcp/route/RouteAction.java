@@ -0,0 +1,17 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.Protocol;
+
+/**
+ * Execução de uma rota (type, action)
+ */
+@FunctionalInterface
+public interface RouteAction {
+    /**
+     * @param message Mensagem recebida, já com os campos obrigatórios da rota
+     * @param user    Usuário da sessão validada, ou null se a rota é pública
+     */
+    Protocol.Response execute(Protocol.Message message, User user);
+}
@@ -0,0 +1,10 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+/**
+ * Componente que declara rotas (type, action) no CommandRouter.
+ * As rotas são registradas uma vez, em TCPServer.initialize().
+ */
+public interface RouteProvider {
+    void registerRoutes(CommandRouter router);
+}
@@ -0,0 +1,374 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tabela compacta de sessões para volumes muito altos (session.mode=compact).
+ * Cada sessão ocupa um slot de 32 bytes fora do heap: o UUID da sessão em
+ * dois longs, userId, última atividade (segundos desde a criação da tabela)
+ * e o ordinal do perfil. Não há objeto por sessão no heap; o principal
+ * (User com id e perfil) é montado na validação.
+ *
+ * A tabela é dividida em segmentos com trava própria, cada um com
+ * endereçamento aberto (sondagem linear) e remoção por deslocamento para
+ * trás, sem lápides. A expiração é uma varredura incremental: cada chamada
+ * de sweep percorre alguns segmentos, como um ponteiro de relógio.
+ */
+public class CompactSessionTable {
+    private static final int SLOT_BYTES = 32;
+    private static final int MSB = 0;
+    private static final int LSB = 8;
+    private static final int USER_ID = 16;
+    private static final int LAST_ACTIVITY = 24;
+    private static final int ROLE = 28;
+    private static final int STATE = 29;
+    private static final byte USED = 1;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final int SEGMENTS_PER_SWEEP = 8;
+    private static final User.Role[] ROLES = User.Role.values();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // Base da última atividade gravada em segundos (int cobre ~68 anos)
+    private final long epochMs;
+    private int sweepHand;
+
+    /**
+     * Sessão removida pela varredura de expiração
+     */
+    public static final class Expired {
+        private final UUID sessionId;
+        private final long userId;
+        private final User.Role role;
+        private final long lastActivity;
+
+        Expired(UUID sessionId, long userId, User.Role role, long lastActivity) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.role = role;
+            this.lastActivity = lastActivity;
+        }
+
+        public UUID getSessionId() {
+            return sessionId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public User.Role getRole() {
+            return role;
+        }
+
+        public long getLastActivity() {
+            return lastActivity;
+        }
+    }
+
+    /**
+     * @param expectedSessions capacidade inicial total (cresce sob demanda)
+     */
+    public CompactSessionTable(int expectedSessions, long epochMs) {
+        this.epochMs = epochMs;
+        int perSegment = Integer.highestOneBit(Math.max(MIN_SEGMENT_CAPACITY,
+                (int) (Math.max(0, expectedSessions) / 0.75 / SEGMENTS) - 1) << 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Grava (ou substitui) a sessão
+     */
+    public void put(UUID sessionId, User user, long nowMs) {
+        long msb = sessionId.getMostSignificantBits();
+        long lsb = sessionId.getLeastSignificantBits();
+        long hash = mix(msb, lsb);
+        segmentFor(hash).put(msb, lsb, hash, user.getId(), user.getRole().ordinal(), toSeconds(nowMs));
+    }
+
+    /**
+     * Valida a sessão: se existe e não ficou inativa além de timeoutMs,
+     * atualiza a última atividade e retorna um User com apenas id e perfil.
+     * Retorna null se a sessão não existe ou expirou.
+     */
+    public User touch(UUID sessionId, long nowMs, long timeoutMs) {
+        long msb = sessionId.getMostSignificantBits();
+        long lsb = sessionId.getLeastSignificantBits();
+        long hash = mix(msb, lsb);
+        Segment segment = segmentFor(hash);
+        long userId;
+        int role;
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) {
+                return null;
+            }
+            ByteBuffer slots = segment.slots;
+            int now = toSeconds(nowMs);
+            if ((long) (now - slots.getInt(offset + LAST_ACTIVITY)) * 1000 > timeoutMs) {
+                return null;
+            }
+            slots.putInt(offset + LAST_ACTIVITY, now);
+            userId = slots.getLong(offset + USER_ID);
+            role = slots.get(offset + ROLE);
+        }
+        return principal(userId, ROLES[role]);
+    }
+
+    /**
+     * Remove a sessão (logout); false se não existia
+     */
+    public boolean remove(UUID sessionId) {
+        long msb = sessionId.getMostSignificantBits();
+        long lsb = sessionId.getLeastSignificantBits();
+        long hash = mix(msb, lsb);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            int offset = segment.find(msb, lsb, hash);
+            if (offset < 0) {
+                return false;
+            }
+            segment.delete(offset / SLOT_BYTES);
+            return true;
+        }
+    }
+
+    /**
+     * Avança o ponteiro de varredura por alguns segmentos e remove as
+     * sessões inativas há mais de timeoutMs. Uma volta completa leva
+     * SEGMENTS / SEGMENTS_PER_SWEEP chamadas.
+     */
+    public List<Expired> sweep(long nowMs, long timeoutMs) {
+        List<Expired> expired = new ArrayList<>();
+        int now = toSeconds(nowMs);
+        for (int i = 0; i < SEGMENTS_PER_SWEEP; i++) {
+            Segment segment;
+            synchronized (this) {
+                segment = segments[sweepHand];
+                sweepHand = (sweepHand + 1) & (SEGMENTS - 1);
+            }
+            synchronized (segment) {
+                segment.expire(now, timeoutMs, expired);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Copia as sessões para o snapshot, um segmento por vez
+     */
+    public List<SessionSnapshot.Entry> export() {
+        List<SessionSnapshot.Entry> entries = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.export(entries);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Sessões na tabela
+     */
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.size;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Bytes reservados fora do heap pelos segmentos
+     */
+    public long getOffHeapBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.slots.capacity();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Principal leve montado a partir do slot; o cadastro completo fica no
+     * repositório
+     */
+    public static User principal(long userId, User.Role role) {
+        User user = new User();
+        user.setId(userId);
+        user.setRole(role);
+        return user;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private int toSeconds(long ms) {
+        return (int) ((ms - epochMs) / 1000);
+    }
+
+    private static long mix(long msb, long lsb) {
+        // Finalizador do MurmurHash3 sobre os 128 bits
+        long h = msb ^ Long.rotateLeft(lsb, 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Segmento com endereçamento aberto; acesso sempre sob a trava do próprio
+     * segmento
+     */
+    private final class Segment {
+        private ByteBuffer slots;
+        private int mask;
+        private int size;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            slots = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+            mask = capacity - 1;
+            size = 0;
+        }
+
+        synchronized void put(long msb, long lsb, long hash, long userId, int roleOrdinal, int now) {
+            int offset = find(msb, lsb, hash);
+            if (offset < 0) {
+                if (size + 1 > (mask + 1) * 3 / 4) {
+                    grow();
+                }
+                offset = freeSlot(hash);
+                size++;
+            }
+            write(offset, msb, lsb, userId, roleOrdinal, now);
+        }
+
+        /**
+         * Offset do slot com a chave, ou -1
+         */
+        int find(long msb, long lsb, long hash) {
+            for (int index = (int) hash & mask; ; index = (index + 1) & mask) {
+                int offset = index * SLOT_BYTES;
+                if (slots.get(offset + STATE) != USED) {
+                    return -1;
+                }
+                if (slots.getLong(offset + MSB) == msb && slots.getLong(offset + LSB) == lsb) {
+                    return offset;
+                }
+            }
+        }
+
+        private int freeSlot(long hash) {
+            int index = (int) hash & mask;
+            while (slots.get(index * SLOT_BYTES + STATE) == USED) {
+                index = (index + 1) & mask;
+            }
+            return index * SLOT_BYTES;
+        }
+
+        private void write(int offset, long msb, long lsb, long userId, int roleOrdinal, int lastActivity) {
+            slots.putLong(offset + MSB, msb);
+            slots.putLong(offset + LSB, lsb);
+            slots.putLong(offset + USER_ID, userId);
+            slots.putInt(offset + LAST_ACTIVITY, lastActivity);
+            slots.put(offset + ROLE, (byte) roleOrdinal);
+            slots.put(offset + STATE, USED);
+        }
+
+        /**
+         * Remove o slot e puxa para trás as entradas seguintes do mesmo
+         * agrupamento, para a sondagem não parar em um buraco
+         */
+        void delete(int index) {
+            int hole = index;
+            for (int next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+                int offset = next * SLOT_BYTES;
+                if (slots.get(offset + STATE) != USED) {
+                    break;
+                }
+                int home = (int) mix(slots.getLong(offset + MSB), slots.getLong(offset + LSB)) & mask;
+                // A entrada pode ocupar o buraco se sua posição ideal não está entre (hole, next]
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    copySlot(offset, hole * SLOT_BYTES);
+                    hole = next;
+                }
+            }
+            slots.put(hole * SLOT_BYTES + STATE, (byte) 0);
+            size--;
+        }
+
+        private void copySlot(int from, int to) {
+            for (int i = 0; i < SLOT_BYTES; i += 8) {
+                slots.putLong(to + i, slots.getLong(from + i));
+            }
+        }
+
+        void expire(int now, long timeoutMs, List<Expired> expired) {
+            int index = 0;
+            while (index <= mask) {
+                int offset = index * SLOT_BYTES;
+                if (slots.get(offset + STATE) == USED
+                        && (long) (now - slots.getInt(offset + LAST_ACTIVITY)) * 1000 > timeoutMs) {
+                    expired.add(new Expired(new UUID(slots.getLong(offset + MSB), slots.getLong(offset + LSB)),
+                            slots.getLong(offset + USER_ID), ROLES[slots.get(offset + ROLE)],
+                            epochMs + slots.getInt(offset + LAST_ACTIVITY) * 1000L));
+                    // O deslocamento pode trazer outra entrada para este índice: reavalia
+                    delete(index);
+                    continue;
+                }
+                index++;
+            }
+        }
+
+        void export(List<SessionSnapshot.Entry> entries) {
+            for (int index = 0; index <= mask; index++) {
+                int offset = index * SLOT_BYTES;
+                if (slots.get(offset + STATE) == USED) {
+                    entries.add(new SessionSnapshot.Entry(
+                            new UUID(slots.getLong(offset + MSB), slots.getLong(offset + LSB)),
+                            slots.getLong(offset + USER_ID), ROLES[slots.get(offset + ROLE)],
+                            epochMs + slots.getInt(offset + LAST_ACTIVITY) * 1000L));
+                }
+            }
+        }
+
+        private void grow() {
+            ByteBuffer old = slots;
+            int oldCapacity = mask + 1;
+            allocate(oldCapacity << 1);
+            for (int index = 0; index < oldCapacity; index++) {
+                int offset = index * SLOT_BYTES;
+                if (old.get(offset + STATE) != USED) {
+                    continue;
+                }
+                long msb = old.getLong(offset + MSB);
+                long lsb = old.getLong(offset + LSB);
+                int target = freeSlot(mix(msb, lsb));
+                write(target, msb, lsb, old.getLong(offset + USER_ID), old.get(offset + ROLE),
+                        old.getInt(offset + LAST_ACTIVITY));
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.RevokedToken;
+import com.consultoria.app.model.TcpSession;
+import com.consultoria.app.repository.RevokedTokenRepository;
+import com.consultoria.app.repository.TcpSessionRepository;
+import com.consultoria.app.tcp.SessionManager.Session;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sessões na tabela tcp_sessions do banco da aplicação (PostgreSQL),
+ * compartilhadas por todos os nós. Cada nó consulta o banco apenas em
+ * falta no near-cache, na revalidação periódica e na expiração. Tokens
+ * revogados ficam em tcp_revoked_tokens.
+ */
+public class DatabaseSessionStore implements SessionStore {
+    private final TcpSessionRepository repository;
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    public DatabaseSessionStore(TcpSessionRepository repository, RevokedTokenRepository revokedTokenRepository) {
+        this.repository = repository;
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @Override
+    public void save(Session session) {
+        TcpSession row = new TcpSession();
+        row.setSessionId(session.getSessionId());
+        row.setUser(session.getUser());
+        row.setCreatedAt(session.getLastActivity());
+        row.setLastActivity(session.getLastActivity());
+        repository.save(row);
+    }
+
+    @Override
+    public Session load(String sessionId) {
+        TcpSession row = repository.findById(sessionId).orElse(null);
+        if (row == null) {
+            return null;
+        }
+        return new Session(row.getSessionId(), row.getUser(), row.getLastActivity());
+    }
+
+    @Override
+    public void touch(String sessionId, long lastActivity) {
+        repository.touch(sessionId, lastActivity);
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        repository.deleteBySessionId(sessionId);
+    }
+
+    @Override
+    public int deleteInactiveSince(long cutoff) {
+        return repository.deleteInactiveSince(cutoff);
+    }
+
+    @Override
+    public void revokeToken(long tokenId, long expiresAt) {
+        RevokedToken row = new RevokedToken();
+        row.setTokenId(tokenId);
+        row.setExpiresAt(expiresAt);
+        row.setRevokedAt(System.currentTimeMillis());
+        revokedTokenRepository.save(row);
+    }
+
+    @Override
+    public Map<Long, Long> loadRevocations(long since) {
+        Map<Long, Long> revoked = new HashMap<>();
+        for (RevokedToken row : revokedTokenRepository.findByRevokedAtGreaterThanEqual(since)) {
+            revoked.put(row.getTokenId(), row.getExpiresAt());
+        }
+        return revoked;
+    }
+
+    @Override
+    public int deleteExpiredRevocations(long now) {
+        return revokedTokenRepository.deleteExpired(now);
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+}
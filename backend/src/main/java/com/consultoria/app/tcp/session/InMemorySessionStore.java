@@ -0,0 +1,64 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.tcp.SessionManager.Session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessões na memória deste processo (um único nó). O near-cache e o store
+ * guardam os mesmos objetos Session, então atividade não precisa ser
+ * propagada.
+ */
+public class InMemorySessionStore implements SessionStore {
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(Session session) {
+        sessions.put(session.getSessionId(), session);
+    }
+
+    @Override
+    public Session load(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    @Override
+    public void touch(String sessionId, long lastActivity) {
+        // Mesmo objeto do near-cache: a atividade já está registrada
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    @Override
+    public int deleteInactiveSince(long cutoff) {
+        int before = sessions.size();
+        sessions.values().removeIf(session -> session.getLastActivity() < cutoff);
+        return before - sessions.size();
+    }
+
+    @Override
+    public void revokeToken(long tokenId, long expiresAt) {
+        // Um único nó: a lista de revogação local do SessionManager basta
+    }
+
+    @Override
+    public Map<Long, Long> loadRevocations(long since) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public int deleteExpiredRevocations(long now) {
+        return 0;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+}
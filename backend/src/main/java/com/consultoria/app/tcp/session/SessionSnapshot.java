@@ -0,0 +1,171 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot das sessões em arquivo local mapeado em memória, para que um
+ * restart não obrigue todos os clientes a refazer login (e o servidor a
+ * verificar um BCrypt por cliente). Layout: cabeçalho (magic, versão,
+ * instante da gravação, quantidade), registros de tamanho fixo e CRC32 de
+ * tudo que vem antes.
+ *
+ * A gravação vai para um arquivo temporário e substitui o anterior com
+ * move atômico: uma queda no meio da gravação mantém o snapshot antigo. Os
+ * ids de sessão são credenciais, então o arquivo é criado legível só pelo
+ * dono quando o sistema de arquivos permite.
+ */
+public final class SessionSnapshot {
+    private static final int MAGIC = 0x43535331; // "CSS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    // msb + lsb + userId + última atividade + perfil
+    private static final int ENTRY_BYTES = 8 + 8 + 8 + 8 + 1;
+    private static final int CRC_BYTES = 8;
+    private static final User.Role[] ROLES = User.Role.values();
+
+    private SessionSnapshot() {
+    }
+
+    /**
+     * Sessão gravada no snapshot
+     */
+    public static final class Entry {
+        private final UUID sessionId;
+        private final long userId;
+        private final User.Role role;
+        private final long lastActivity;
+
+        public Entry(UUID sessionId, long userId, User.Role role, long lastActivity) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.role = role;
+            this.lastActivity = lastActivity;
+        }
+
+        public UUID getSessionId() {
+            return sessionId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public User.Role getRole() {
+            return role;
+        }
+
+        public long getLastActivity() {
+            return lastActivity;
+        }
+    }
+
+    /**
+     * Grava as sessões, substituindo o snapshot anterior
+     */
+    public static void write(Path file, List<Entry> entries, long savedAt) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        createPrivate(temp);
+
+        int size = HEADER_BYTES + entries.size() * ENTRY_BYTES + CRC_BYTES;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(savedAt);
+            buffer.putInt(entries.size());
+            for (Entry entry : entries) {
+                buffer.putLong(entry.sessionId.getMostSignificantBits());
+                buffer.putLong(entry.sessionId.getLeastSignificantBits());
+                buffer.putLong(entry.userId);
+                buffer.putLong(entry.lastActivity);
+                buffer.put((byte) entry.role.ordinal());
+            }
+            buffer.putLong(checksum(buffer, size - CRC_BYTES));
+            buffer.force();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Lê o snapshot; lista vazia se o arquivo não existe. Arquivo truncado,
+     * de outra versão ou com CRC divergente gera IOException.
+     */
+    public static List<Entry> read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + CRC_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot de sessões com tamanho inválido: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Snapshot de sessões em formato desconhecido");
+            }
+            buffer.getLong(); // instante da gravação
+            int count = buffer.getInt();
+            if (count < 0 || (long) HEADER_BYTES + (long) count * ENTRY_BYTES + CRC_BYTES != size) {
+                throw new IOException("Snapshot de sessões truncado");
+            }
+            if (buffer.getLong((int) size - CRC_BYTES) != checksum(buffer, (int) size - CRC_BYTES)) {
+                throw new IOException("Snapshot de sessões corrompido (CRC)");
+            }
+
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID sessionId = new UUID(buffer.getLong(), buffer.getLong());
+                long userId = buffer.getLong();
+                long lastActivity = buffer.getLong();
+                int role = buffer.get();
+                if (role >= 0 && role < ROLES.length) {
+                    entries.add(new Entry(sessionId, userId, ROLES[role], lastActivity));
+                }
+            }
+            return entries;
+        }
+    }
+
+    private static long checksum(MappedByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.limit(length);
+        crc.update(view);
+        return crc.getValue();
+    }
+
+    private static void createPrivate(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(file);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.tcp.SessionManager.Session;
+
+import java.util.Map;
+
+/**
+ * Armazenamento das sessões TCP. O SessionManager mantém na frente dele
+ * um cache local (near-cache) com as sessões usadas neste nó; o store é a
+ * fonte de verdade e, quando compartilhado, torna o login visível em todos
+ * os nós atrás do balanceador.
+ */
+public interface SessionStore {
+
+    /**
+     * Grava uma sessão recém-criada
+     */
+    void save(Session session);
+
+    /**
+     * Sessão gravada com o id, ou null se não existe (ou foi encerrada)
+     */
+    Session load(String sessionId);
+
+    /**
+     * Propaga a última atividade vista neste nó (nunca retrocede)
+     */
+    void touch(String sessionId, long lastActivity);
+
+    /**
+     * Remove a sessão (logout ou expiração)
+     */
+    void delete(String sessionId);
+
+    /**
+     * Remove sessões sem atividade desde cutoff (ex.: criadas por um nó que
+     * caiu antes de expirá-las). Retorna quantas foram removidas.
+     */
+    int deleteInactiveSince(long cutoff);
+
+    /**
+     * Registra a revogação de um token sem estado (LOGOUT) para os demais
+     * nós; expiresAt é quando o token venceria
+     */
+    void revokeToken(long tokenId, long expiresAt);
+
+    /**
+     * Revogações registradas desde since (ms), tokenId → expiresAt
+     */
+    Map<Long, Long> loadRevocations(long since);
+
+    /**
+     * Remove revogações de tokens que já venceram
+     */
+    int deleteExpiredRevocations(long now);
+
+    /**
+     * Indica se outros nós leem e escrevem o mesmo store. Só nesse caso o
+     * near-cache revalida entradas e propaga atividade.
+     */
+    boolean isShared();
+}
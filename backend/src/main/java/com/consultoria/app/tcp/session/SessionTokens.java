@@ -0,0 +1,155 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Tokens de sessão TCP sem estado no servidor (session.mode=stateless):
+ * "st1." + payload + "." + assinatura, em base64url. O payload binário
+ * leva tokenId, userId, perfil e expiração; a assinatura é HMAC-SHA256
+ * (truncado em 128 bits) com a mesma chave dos JWT da API REST. Qualquer
+ * nó com a chave valida o token sem consultar nada além da lista de
+ * revogação.
+ */
+public class SessionTokens {
+    public static final String PREFIX = "st1.";
+    private static final byte[] PREFIX_BYTES = PREFIX.getBytes(StandardCharsets.US_ASCII);
+    // tokenId + userId + perfil + expiração (ms)
+    private static final int PAYLOAD_BYTES = 8 + 8 + 1 + 8;
+    private static final int SIGNATURE_BYTES = 16;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final User.Role[] ROLES = User.Role.values();
+
+    private final SecretKeySpec key;
+    private final long ttlMs;
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * Dados assinados de um token válido
+     */
+    public static final class Claims {
+        private final long tokenId;
+        private final long userId;
+        private final User.Role role;
+        private final long expiresAt;
+
+        Claims(long tokenId, long userId, User.Role role, long expiresAt) {
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.role = role;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getTokenId() {
+            return tokenId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public User.Role getRole() {
+            return role;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
+    public SessionTokens(byte[] secret, long ttlMs) {
+        this.key = new SecretKeySpec(secret.clone(), ALGORITHM);
+        this.ttlMs = ttlMs;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Indica se o identificador de sessão é um token (e não um UUID)
+     */
+    public static boolean isToken(String sessionId) {
+        return sessionId != null && sessionId.startsWith(PREFIX);
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    /**
+     * Emite um token para o usuário, válido por ttlMs
+     */
+    public String issue(User user) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+        payload.putLong(random.nextLong());
+        payload.putLong(user.getId());
+        payload.put((byte) user.getRole().ordinal());
+        payload.putLong(System.currentTimeMillis() + ttlMs);
+        byte[] bytes = payload.array();
+        return PREFIX + ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+    }
+
+    /**
+     * Confere assinatura e expiração; null se o token é inválido ou venceu
+     */
+    public Claims verify(String token, long now) {
+        if (!isToken(token)) {
+            return null;
+        }
+        int dot = token.indexOf('.', PREFIX.length());
+        if (dot < 0) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(PREFIX.length(), dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long tokenId = buffer.getLong();
+        long userId = buffer.getLong();
+        int role = buffer.get();
+        long expiresAt = buffer.getLong();
+        if (role < 0 || role >= ROLES.length || expiresAt <= now) {
+            return null;
+        }
+        return new Claims(tokenId, userId, ROLES[role], expiresAt);
+    }
+
+    private byte[] sign(byte[] payload) {
+        Mac mac = macs.get();
+        // Prefixo entra na assinatura: o token não vale em outro formato
+        mac.update(PREFIX_BYTES);
+        return Arrays.copyOf(mac.doFinal(payload), SIGNATURE_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Roda de tempo hierárquica para expiração: LEVELS níveis de SLOTS slots,
+ * cada nível com tick SLOTS vezes maior que o anterior (com tick de 1s:
+ * 64s, ~68min, ~3 dias e ~194 dias). Agendar e cancelar custam O(1); o
+ * avanço percorre apenas os slots cujo tempo chegou.
+ *
+ * O prazo é lido de Timeout.deadline() quando o slot vence: atividade que
+ * adia o prazo não precisa mexer na roda (basta atualizar o valor lido) e
+ * a entrada é reagendada no próprio avanço.
+ */
+public class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * Entrada da roda; os campos de encadeamento pertencem à roda
+     */
+    public abstract static class Timeout {
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+
+        /**
+         * Prazo atual em ms (pode mudar depois de agendado)
+         */
+        protected abstract long deadline();
+
+        public final boolean isScheduled() {
+            return level >= 0;
+        }
+    }
+
+    private final long tickMs;
+    // Lista circular com sentinela por slot: inserção e remoção O(1)
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMs, long startMs) {
+        this.tickMs = Math.max(1, tickMs);
+        this.currentTick = startMs / this.tickMs;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Timeout head = new Sentinel();
+                head.prev = head;
+                head.next = head;
+                wheels[level][slot] = head;
+            }
+        }
+    }
+
+    /**
+     * Agenda a entrada pelo prazo atual. Retorna false se o prazo já passou
+     * (a entrada não é agendada).
+     */
+    public synchronized boolean schedule(Timeout timeout) {
+        if (timeout.isScheduled()) {
+            unlink(timeout);
+        }
+        return place(timeout);
+    }
+
+    /**
+     * Remove a entrada da roda (ex.: logout)
+     */
+    public synchronized boolean cancel(Timeout timeout) {
+        if (!timeout.isScheduled()) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Avança o relógio até nowMs e retorna as entradas vencidas, já fora da
+     * roda. Entradas cujo prazo foi adiado são reagendadas.
+     */
+    public List<Timeout> advance(long nowMs) {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long targetTick = nowMs / tickMs;
+            if (targetTick <= currentTick) {
+                return expired;
+            }
+            long previousTick = currentTick;
+            currentTick = targetTick;
+
+            // Níveis altos primeiro: entradas que descem podem vencer ainda neste avanço
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                int shift = level * SLOT_BITS;
+                long from = (previousTick >>> shift) + 1;
+                long to = targetTick >>> shift;
+                if (to < from) {
+                    continue;
+                }
+                long steps = Math.min(SLOTS, to - from + 1);
+                for (long i = 0; i < steps; i++) {
+                    drain(level, (int) ((to - i) & SLOT_MASK), expired);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Entradas agendadas
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    private void drain(int level, int slot, List<Timeout> expired) {
+        // Desanexa a lista antes de reagendar: uma entrada pode voltar a este
+        // mesmo slot e não deve ser revisitada
+        Timeout head = wheels[level][slot];
+        if (head.next == head) {
+            return;
+        }
+        Timeout entry = head.next;
+        head.prev.next = null;
+        head.next = head;
+        head.prev = head;
+        while (entry != null) {
+            Timeout next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            entry.level = -1;
+            size--;
+            if (!place(entry)) {
+                expired.add(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private boolean place(Timeout timeout) {
+        long deadlineTick = timeout.deadline() / tickMs;
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+
+        // Menor nível em que o prazo cabe sem dar a volta na roda
+        int level = 0;
+        while (level < LEVELS - 1
+                && (deadlineTick >>> (level * SLOT_BITS)) - (currentTick >>> (level * SLOT_BITS)) >= SLOTS) {
+            level++;
+        }
+        int shift = level * SLOT_BITS;
+        long slotTick = deadlineTick >>> shift;
+        long lastSlotTick = (currentTick >>> shift) + SLOTS - 1;
+        // Além do alcance da roda: fica no slot mais distante e é reavaliado quando ele vencer
+        int slot = (int) (Math.min(slotTick, lastSlotTick) & SLOT_MASK);
+        link(timeout, level, slot);
+        return true;
+    }
+
+    private void link(Timeout timeout, int level, int slot) {
+        Timeout head = wheels[level][slot];
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+        timeout.level = level;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+        size--;
+    }
+
+    private static final class Sentinel extends Timeout {
+        @Override
+        protected long deadline() {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Buffer circular pré-alocado entre as threads que registram logs e uma
+ * única thread que formata e escreve. Produtores apenas reservam um slot
+ * e copiam referências; toda a formatação acontece na thread de log.
+ * Com o buffer cheio, INFO/DEBUG são descartados (e contados) e
+ * WARN/ERROR são escritos na própria thread chamadora.
+ */
+final class AsyncLogAppender {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Slot reutilizável do buffer
+     */
+    static final class LogEvent {
+        // Sequência publicada; o consumidor só lê o slot quando bate com a esperada
+        volatile long sequence = -1;
+        ConsultoriaLogger.Level level;
+        ConsultoriaLogger.LogCategory category;
+        String event;
+        String template;
+        Object[] params;
+        String[] keys;
+        Throwable throwable;
+        String thread;
+        long timestamp;
+        int sampleRate;
+
+        void clear() {
+            template = null;
+            params = null;
+            keys = null;
+            throwable = null;
+            event = null;
+            thread = null;
+        }
+    }
+
+    interface Writer {
+        void write(LogEvent event);
+    }
+
+    private final LogEvent[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Writer writer;
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    AsyncLogAppender(int capacity, Writer writer) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new LogEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new LogEvent();
+        }
+        this.mask = size - 1;
+        this.writer = writer;
+
+        this.consumer = new Thread(this::drainLoop, "consultoria-log");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "consultoria-log-flush"));
+    }
+
+    /**
+     * Publica um evento. Retorna false se o buffer estava cheio.
+     */
+    boolean publish(ConsultoriaLogger.Level level, ConsultoriaLogger.LogCategory category, String event,
+            String template, Object[] params, String[] keys, Throwable throwable, int sampleRate) {
+        long seq;
+        do {
+            seq = claimed.get();
+            if (seq - consumed.get() >= ring.length || !running) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(seq, seq + 1));
+
+        LogEvent slot = ring[(int) seq & mask];
+        slot.level = level;
+        slot.category = category;
+        slot.event = event;
+        slot.template = template;
+        slot.params = params;
+        slot.keys = keys;
+        slot.throwable = throwable;
+        slot.thread = Thread.currentThread().getName();
+        slot.timestamp = System.currentTimeMillis();
+        slot.sampleRate = sampleRate;
+        // Escrita volátil publica os campos acima para o consumidor
+        slot.sequence = seq;
+        return true;
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Eventos aguardando escrita
+     */
+    int getPending() {
+        return (int) (claimed.get() - consumed.get());
+    }
+
+    private void drainLoop() {
+        long next = 0;
+        long reportedDrops = 0;
+        while (true) {
+            LogEvent slot = ring[(int) next & mask];
+            if (slot.sequence == next) {
+                try {
+                    writer.write(slot);
+                } catch (RuntimeException e) {
+                    // Falha de escrita não derruba a thread de log
+                } finally {
+                    slot.clear();
+                    consumed.lazySet(++next);
+                }
+                continue;
+            }
+
+            long drops = dropped.sum();
+            if (drops != reportedDrops) {
+                ConsultoriaLogger.reportDropped(drops - reportedDrops);
+                reportedDrops = drops;
+            }
+            if (!running && claimed.get() == next) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Para de aceitar eventos e escreve o que estiver no buffer
+     */
+    void shutdown() {
+        running = false;
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
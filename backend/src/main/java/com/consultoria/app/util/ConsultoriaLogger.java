@@ -3,189 +3,404 @@ package com.consultoria.app.util;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Utilitário centralizado para logging com formatação padronizada
  * Fornece logs estruturados para rastrear operações TCP, Chat, Autenticação, etc.
+ *
+ * O nível é verificado antes de qualquer formatação; eventos habilitados
+ * vão para um buffer circular e são formatados como chave=valor por uma
+ * thread de log dedicada (AsyncLogAppender). INFO/DEBUG de categorias de
+ * caminho quente podem ser amostrados (1 a cada N). Parâmetros são
+ * formatados depois do retorno da chamada: passe apenas valores imutáveis.
  */
 public class ConsultoriaLogger {
     private static final Logger log = LoggerFactory.getLogger("CONSULTORIA");
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int BUFFER_SIZE = 8192;
+    private static final int PREVIEW_LENGTH = 50;
 
-    // Cores e símbolos para console
-    private static final String RESET = "\u001B[0m";
-    private static final String CYAN = "\u001B[36m";
-    private static final String GREEN = "\u001B[32m";
-    private static final String YELLOW = "\u001B[33m";
-    private static final String RED = "\u001B[31m";
-    private static final String MAGENTA = "\u001B[35m";
-    private static final String WHITE = "\u001B[37m";
+    // Chaves dos eventos estruturados
+    private static final String[] PERFORMANCE_KEYS = {"operation", "durationMs"};
+    private static final String[] SUMMARY_KEYS = {"operation", "status"};
+    private static final String[] CHAT_KEYS = {"messageId", "projectId", "senderId", "senderName", "preview"};
+    private static final String[] AUTH_KEYS = {"action", "email", "userId", "success"};
+    private static final String[] CONNECTION_KEYS = {"action", "ip", "port", "connected"};
+    private static final String[] PROJECT_KEYS = {"projectId", "projectName", "action", "status"};
+    private static final String[] TIMESTAMP_KEYS = {"time"};
+
+    enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
 
     // Categorias de log
     public enum LogCategory {
-        TCP_SERVER("TCP-SERVER", CYAN),
-        TCP_CLIENT("TCP-CLIENT", CYAN),
-        CHAT("CHAT", GREEN),
-        AUTH("AUTH", YELLOW),
-        PROJECT("PROJECT", MAGENTA),
-        REQUEST("REQUEST", WHITE),
-        ERROR("ERROR", RED);
+        TCP_SERVER("TCP-SERVER"),
+        TCP_CLIENT("TCP-CLIENT"),
+        // Linhas por comando (recebido/concluído): candidatas a amostragem
+        TCP_COMMAND("TCP-COMMAND"),
+        CHAT("CHAT"),
+        AUTH("AUTH"),
+        PROJECT("PROJECT"),
+        REQUEST("REQUEST"),
+        ERROR("ERROR");
 
         private final String label;
-        private final String color;
 
-        LogCategory(String label, String color) {
+        LogCategory(String label) {
             this.label = label;
-            this.color = color;
         }
 
-        public String format(String message) {
-            return color + "[" + label + "]" + RESET + " " + message;
+        public String getLabel() {
+            return label;
         }
     }
 
+    // 1 a cada N eventos INFO/DEBUG por categoria (1 = todos)
+    private static final int[] sampling = new int[LogCategory.values().length];
+
+    private static final AsyncLogAppender appender = new AsyncLogAppender(BUFFER_SIZE, ConsultoriaLogger::write);
+
+    static {
+        java.util.Arrays.fill(sampling, 1);
+    }
+
+    /**
+     * Define a amostragem de INFO/DEBUG de uma categoria (WARN/ERROR nunca
+     * são amostrados)
+     */
+    public static void setSampling(LogCategory category, int oneInN) {
+        sampling[category.ordinal()] = Math.max(1, oneInN);
+    }
+
+    /**
+     * Eventos INFO/DEBUG descartados por buffer cheio
+     */
+    public static long getDroppedCount() {
+        return appender.getDroppedCount();
+    }
+
+    /**
+     * Eventos aguardando a thread de log
+     */
+    public static int getPendingCount() {
+        return appender.getPending();
+    }
+
     /**
      * Log de inicialização de operação
      */
     public static void logStart(LogCategory category, String operation, Object... params) {
-        String message = formatMessage("▶ INICIANDO: " + operation, params);
-        log.info(category.format(message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, "start", operation, params, null, null);
+        }
     }
 
     /**
      * Log de sucesso
      */
     public static void logSuccess(LogCategory category, String operation, Object... params) {
-        String message = formatMessage("✓ SUCESSO: " + operation, params);
-        log.info(category.format(message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, "success", operation, params, null, null);
+        }
     }
 
     /**
      * Log de erro
      */
     public static void logError(LogCategory category, String operation, Exception e, Object... params) {
-        String message = formatMessage("✗ ERRO em " + operation + ": " + e.getMessage(), params);
-        log.error(category.format(message), e);
+        if (log.isErrorEnabled()) {
+            enqueue(Level.ERROR, category, "error", operation + ": " + e.getMessage(), params, null, e);
+        }
     }
 
     /**
      * Log de aviso
      */
     public static void logWarn(LogCategory category, String operation, Object... params) {
-        String message = formatMessage("⚠ AVISO: " + operation, params);
-        log.warn(category.format(message));
+        if (log.isWarnEnabled()) {
+            enqueue(Level.WARN, category, "warn", operation, params, null, null);
+        }
     }
 
     /**
      * Log informativo
      */
     public static void logInfo(LogCategory category, String message, Object... params) {
-        String formatted = formatMessage(message, params);
-        log.info(category.format(formatted));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, null, message, params, null, null);
+        }
     }
 
     /**
      * Log detalhado (debug)
      */
     public static void logDebug(LogCategory category, String message, Object... params) {
-        String formatted = formatMessage(message, params);
-        log.debug(category.format(formatted));
-    }
-
-    /**
-     * Log separador de linha
-     */
-    public static void logSeparator() {
-        log.info(CYAN + "════════════════════════════════════════════════════════════════" + RESET);
+        if (log.isDebugEnabled()) {
+            enqueue(Level.DEBUG, category, null, message, params, null, null);
+        }
     }
 
     /**
      * Log com contexto
      */
     public static void logContext(LogCategory category, String title, Object... params) {
-        logSeparator();
-        String message = formatMessage(title, params);
-        log.info(category.format(message));
-        logSeparator();
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, "context", title, params, null, null);
+        }
     }
 
     /**
      * Log com resumo de operação
      */
     public static void logSummary(LogCategory category, String operation, int statusCode, String details, Object... params) {
-        String statusSymbol = statusCode >= 200 && statusCode < 300 ? "✓" : "✗";
-        String message = String.format("%s %s [%d] - %s", statusSymbol, operation, statusCode, details);
-        log.info(category.format(formatMessage(message, params)));
+        if (log.isInfoEnabled()) {
+            // details vira msg; operation e status seguem como chaves
+            Object[] fields = new Object[] {operation, statusCode};
+            enqueue(Level.INFO, category, "summary", details, params, SUMMARY_KEYS, null, fields);
+        }
     }
 
     /**
      * Log para rastreamento de chat
      */
     public static void logChatMessage(Long messageId, Long projectId, Long senderId, String senderName, String preview) {
-        String message = String.format("ID:%d | Projeto:%d | Remetente:%s (%d) | Msg: %s...",
-                messageId, projectId, senderName, senderId,
-                preview.length() > 50 ? preview.substring(0, 50) : preview);
-        log.info(LogCategory.CHAT.format(message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, LogCategory.CHAT, "chat_message", null,
+                    new Object[] {messageId, projectId, senderId, senderName, preview}, CHAT_KEYS, null);
+        }
     }
 
     /**
      * Log para rastreamento de autenticação
      */
     public static void logAuthentication(String action, String email, Long userId, boolean success) {
-        String status = success ? "✓ SUCESSO" : "✗ FALHA";
-        String message = String.format("%s: %s (ID: %s)", status, email, userId != null ? userId : "N/A");
-        log.info(LogCategory.AUTH.format(action + " - " + message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, LogCategory.AUTH, "authentication", null,
+                    new Object[] {action, email, userId, success}, AUTH_KEYS, null);
+        }
     }
 
     /**
      * Log para rastreamento de conexão TCP
      */
     public static void logTCPConnection(String ip, int port, String action, boolean connected) {
-        String status = connected ? "✓ CONECTADO" : "✗ DESCONECTADO";
-        String message = String.format("%s: %s:%d", status, ip, port);
-        log.info(LogCategory.TCP_CLIENT.format(action + " - " + message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, LogCategory.TCP_CLIENT, "connection", null,
+                    new Object[] {action, ip, port, connected}, CONNECTION_KEYS, null);
+        }
     }
 
     /**
      * Log para rastreamento de projeto
      */
     public static void logProject(Long projectId, String projectName, String action, String status) {
-        String message = String.format("ID:%d | Nome:%s | Ação:%s | Status:%s",
-                projectId, projectName, action, status);
-        log.info(LogCategory.PROJECT.format(message));
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, LogCategory.PROJECT, "project", null,
+                    new Object[] {projectId, projectName, action, status}, PROJECT_KEYS, null);
+        }
     }
 
     /**
-     * Formata mensagem com parâmetros
+     * Log com timestamp detalhado
      */
-    private static String formatMessage(String template, Object... params) {
-        try {
-            if (params.length == 0) {
-                return template;
+    public static void logTimestamp(LogCategory category, String message) {
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, null, message, null, TIMESTAMP_KEYS, null,
+                    new Object[] {System.currentTimeMillis()});
+        }
+    }
+
+    /**
+     * Log de performance
+     */
+    public static void logPerformance(LogCategory category, String operation, long durationMs) {
+        if (log.isInfoEnabled()) {
+            enqueue(Level.INFO, category, "performance", null,
+                    new Object[] {operation, durationMs}, PERFORMANCE_KEYS, null);
+        }
+    }
+
+    private static void enqueue(Level level, LogCategory category, String event, String template,
+            Object[] params, String[] keys, Throwable throwable) {
+        // Sem template, os parâmetros são os valores das chaves
+        if (template == null) {
+            enqueue(level, category, event, null, null, keys, throwable, params);
+        } else {
+            enqueue(level, category, event, template, params, keys, throwable, null);
+        }
+    }
+
+    private static void enqueue(Level level, LogCategory category, String event, String template,
+            Object[] params, String[] keys, Throwable throwable, Object[] fields) {
+        int sampleRate = 1;
+        if (level == Level.INFO || level == Level.DEBUG) {
+            sampleRate = sampling[category.ordinal()];
+            if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+                return;
             }
-            return String.format(template, params);
-        } catch (Exception e) {
-            // Se houver erro na formatação, retorna a mensagem original
-            return template;
         }
+
+        // Template e valores das chaves compartilham o slot: params primeiro, depois fields
+        Object[] values = fields == null ? params : concat(params, fields);
+        if (appender.publish(level, category, event, template, values, keys, throwable, sampleRate)) {
+            return;
+        }
+
+        if (level == Level.WARN || level == Level.ERROR) {
+            // Avisos e erros não se perdem: escreve na própria thread
+            AsyncLogAppender.LogEvent direct = new AsyncLogAppender.LogEvent();
+            direct.level = level;
+            direct.category = category;
+            direct.event = event;
+            direct.template = template;
+            direct.params = values;
+            direct.keys = keys;
+            direct.throwable = throwable;
+            direct.thread = Thread.currentThread().getName();
+            direct.timestamp = System.currentTimeMillis();
+            direct.sampleRate = 1;
+            write(direct);
+        } else {
+            appender.recordDropped();
+        }
+    }
+
+    private static Object[] concat(Object[] params, Object[] fields) {
+        if (params == null || params.length == 0) {
+            return fields;
+        }
+        Object[] values = new Object[params.length + fields.length];
+        System.arraycopy(params, 0, values, 0, params.length);
+        System.arraycopy(fields, 0, values, params.length, fields.length);
+        return values;
     }
 
     /**
-     * Log com timestamp detalhado
+     * Formata e escreve um evento (thread de log)
      */
-    public static void logTimestamp(LogCategory category, String message) {
-        String timestamp = LocalDateTime.now().format(formatter);
-        String formatted = "[" + timestamp + "] " + message;
-        log.info(category.format(formatted));
+    private static void write(AsyncLogAppender.LogEvent e) {
+        StringBuilder line = new StringBuilder(128);
+        line.append("category=").append(e.category.label);
+        if (e.event != null) {
+            line.append(" event=").append(e.event);
+        }
+        line.append(" thread=");
+        appendValue(line, e.thread);
+
+        Object[] values = e.params;
+        int keyOffset = 0;
+        if (e.template != null) {
+            int templateParams = values == null ? 0
+                    : e.keys == null ? values.length : values.length - e.keys.length;
+            line.append(" msg=");
+            appendValue(line, formatMessage(e.template, values, templateParams));
+            keyOffset = templateParams;
+        }
+        if (e.keys != null && values != null) {
+            for (int i = 0; i < e.keys.length && keyOffset + i < values.length; i++) {
+                line.append(' ').append(e.keys[i]).append('=');
+                appendValue(line, render(e.keys[i], values[keyOffset + i]));
+            }
+        }
+        if (e.sampleRate > 1) {
+            line.append(" sample=1/").append(e.sampleRate);
+        }
+
+        String text = line.toString();
+        switch (e.level) {
+            case ERROR:
+                log.error(text, e.throwable);
+                break;
+            case WARN:
+                log.warn(text);
+                break;
+            case DEBUG:
+                log.debug(text);
+                break;
+            default:
+                log.info(text);
+        }
     }
 
     /**
-     * Log de performance
+     * Chamado pela thread de log quando eventos foram descartados
      */
-    public static void logPerformance(LogCategory category, String operation, long durationMs) {
-        String message = String.format("⏱ %s concluído em %dms", operation, durationMs);
-        log.info(category.format(message));
+    static void reportDropped(long count) {
+        log.warn("category=LOG event=dropped count={}", count);
+    }
+
+    private static Object render(String key, Object value) {
+        if ("preview".equals(key) && value instanceof String) {
+            String preview = (String) value;
+            return preview.length() > PREVIEW_LENGTH ? preview.substring(0, PREVIEW_LENGTH) : preview;
+        }
+        if ("time".equals(key) && value instanceof Long) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) value), ZoneId.systemDefault()).format(formatter);
+        }
+        return value;
+    }
+
+    /**
+     * Valores com espaço, aspas ou '=' saem entre aspas
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c == ' ' || c == '"' || c == '=' || c == '\n' || c == '\r' || c == '\t';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Formata mensagem com parâmetros
+     */
+    private static String formatMessage(String template, Object[] params, int count) {
+        try {
+            if (params == null || count == 0) {
+                return template;
+            }
+            Object[] args = params;
+            if (count < params.length) {
+                args = new Object[count];
+                System.arraycopy(params, 0, args, 0, count);
+            }
+            return String.format(template, args);
+        } catch (Exception e) {
+            // Se houver erro na formatação, retorna a mensagem original
+            return template;
+        }
     }
 }
@@ -0,0 +1,152 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.service.chat;
+
+import com.consultoria.app.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatAppendLogTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 5, 10, 14, 30, 15, 123_456_789);
+
+    @TempDir
+    Path dir;
+
+    private ChatAppendLog log;
+
+    @AfterEach
+    void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    void recuperaOsRegistrosGravados() throws IOException {
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        assertThat(log.recover()).isEmpty();
+        log.append(records(1, 3));
+        log.append(records(4, 2));
+        log.close();
+
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        List<ChatAppendLog.Record> recovered = log.recover();
+        assertThat(recovered).extracting(ChatAppendLog.Record::getId).containsExactly(1L, 2L, 3L, 4L, 5L);
+        ChatAppendLog.Record first = recovered.get(0);
+        assertThat(first.getProjectId()).isEqualTo(10L);
+        assertThat(first.getSenderId()).isEqualTo(20L);
+        assertThat(first.getTimestamp()).isEqualTo(NOW);
+        assertThat(first.getContent()).isEqualTo("mensagem 1 ção");
+        // Escritas após a recuperação vão para um segmento novo
+        assertThat(log.getCurrentSegment()).isGreaterThan(first.getSegment());
+    }
+
+    @Test
+    void caudaRasgadaPreservaOsRegistrosAnteriores() throws IOException {
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        log.recover();
+        log.append(records(1, 3));
+        log.close();
+
+        Path segment = onlySegment();
+        byte[] bytes = Files.readAllBytes(segment);
+        // Escrita interrompida no meio do último registro
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 5));
+
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        assertThat(log.recover()).extracting(ChatAppendLog.Record::getId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void crcDivergenteParaNoRegistroCorrompido() throws IOException {
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        log.recover();
+        log.append(records(1, 3));
+        long segment = log.getCurrentSegment();
+        log.close();
+
+        Path file = onlySegment();
+        byte[] bytes = Files.readAllBytes(file);
+        int recordBytes = bytes.length / 3;
+        // Altera um byte do texto do segundo registro
+        bytes[recordBytes + recordBytes - 6] ^= 0x01;
+        Files.write(file, bytes);
+
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        List<ChatAppendLog.Record> recovered = log.recover();
+        assertThat(recovered).extracting(ChatAppendLog.Record::getId).containsExactly(1L);
+        assertThat(recovered.get(0).getSegment()).isEqualTo(segment);
+    }
+
+    @Test
+    void segmentoVazioEApagadoNaRecuperacao() throws IOException {
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        log.recover();
+        log.close();
+
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        log.recover();
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    void registroSemTextoOuGrandeDemaisRecusaOGrupo() throws IOException {
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        log.recover();
+
+        List<ChatAppendLog.Record> nullContent = new ArrayList<>(records(1, 1));
+        nullContent.add(new ChatAppendLog.Record(2, 10, 20, NOW, null));
+        assertThatThrownBy(() -> log.append(nullContent)).isInstanceOf(IllegalArgumentException.class);
+
+        // 2000 caracteres de 4 bytes em UTF-8 passam do maior registro aceito na leitura
+        String emoji = "😀";
+        String oversized = String.join("", Collections.nCopies(ChatMessage.MAX_CONTENT_LENGTH, emoji));
+        List<ChatAppendLog.Record> tooBig = Collections.singletonList(new ChatAppendLog.Record(3, 10, 20, NOW, oversized));
+        assertThatThrownBy(() -> log.append(tooBig)).isInstanceOf(IllegalArgumentException.class);
+
+        // Nenhum byte do grupo recusado chegou ao disco
+        assertThat(Files.size(onlySegment())).isZero();
+
+        // O maior texto aceito (3 bytes por caractere) é lido de volta
+        String largest = String.join("", Collections.nCopies(ChatMessage.MAX_CONTENT_LENGTH, "€"));
+        log.append(Collections.singletonList(new ChatAppendLog.Record(4, 10, 20, NOW, largest)));
+        log.close();
+        log = new ChatAppendLog(dir, 1024 * 1024);
+        assertThat(log.recover()).extracting(ChatAppendLog.Record::getContent).containsExactly(largest);
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertThat(segments).hasSize(1);
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<ChatAppendLog.Record> records(long firstId, int count) {
+        List<ChatAppendLog.Record> records = new ArrayList<>();
+        for (long id = firstId; id < firstId + count; id++) {
+            records.add(new ChatAppendLog.Record(id, 10, 20, NOW, "mensagem " + id + " ção"));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,73 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDecoderTest {
+    @Test
+    void decodificaCabecalhoECampos() {
+        Protocol.Message message = MessageDecoder.decode("{\"type\":\"CHAT\",\"sessionId\":\"s1\",\"requestId\":\"r1\","
+                + "\"data\":{\"action\":\"SEND\",\"projectId\":12,\"content\":\"olá\",\"urgent\":true}}");
+
+        assertThat(message).isNotNull();
+        assertThat(message.getType()).isEqualTo("CHAT");
+        assertThat(message.getSessionId()).isEqualTo("s1");
+        assertThat(message.getRequestId()).isEqualTo("r1");
+        assertThat(message.getString("action")).isEqualTo("SEND");
+        assertThat(message.getLong("projectId")).isEqualTo(12L);
+        assertThat(message.getString("content")).isEqualTo("olá");
+        assertThat(message.getBoolean("urgent", false)).isTrue();
+        assertThat(message.getData().get("projectId").getAsLong()).isEqualTo(12L);
+    }
+
+    @Test
+    void dadosDepoisDoObjetoInvalidamAMensagem() {
+        assertThat(MessageDecoder.decode("{\"type\":\"PING\"}{}")).isNull();
+        assertThat(MessageDecoder.decode("{\"type\":\"PING\"} {\"type\":\"LOGOUT\"}")).isNull();
+        // Espaços e quebra de linha no fim continuam válidos
+        assertThat(MessageDecoder.decode("{\"type\":\"PING\"}  \r\n")).isNotNull();
+    }
+
+    @Test
+    void nullExplicitoContaComoAusente() {
+        Protocol.Message message = MessageDecoder.decode(
+                "{\"type\":\"CHAT\",\"data\":{\"content\":null,\"limit\":null}}");
+
+        assertThat(message.has("content")).isFalse();
+        assertThat(message.getString("content")).isNull();
+        assertThat(message.has("limit")).isFalse();
+        assertThat(message.getLong("limit")).isNull();
+        assertThat(message.has("inexistente")).isFalse();
+    }
+
+    @Test
+    void nullExplicitoNoJsonObjectContaComoAusente() {
+        Protocol.Message message = MessageDecoder.decode("{\"type\":\"CHAT\",\"data\":{\"content\":null}}");
+        // Depois de setData o acesso passa pelo JsonObject
+        message.setData(message.getData());
+
+        assertThat(message.has("content")).isFalse();
+        assertThat(message.getString("content")).isNull();
+    }
+
+    @Test
+    void dataNuloOuNaoObjeto() {
+        Protocol.Message message = MessageDecoder.decode("{\"type\":\"PING\",\"data\":null}");
+        assertThat(message).isNotNull();
+        assertThat(message.hasData()).isFalse();
+        assertThat(message.has("action")).isFalse();
+
+        assertThat(MessageDecoder.decode("{\"type\":\"PING\",\"data\":[1,2]}")).isNull();
+        assertThat(MessageDecoder.decode("{\"type\":\"PING\",\"data\":\"x\"}")).isNull();
+    }
+
+    @Test
+    void jsonInvalidoDevolveNull() {
+        assertThat(MessageDecoder.decode("")).isNull();
+        assertThat(MessageDecoder.decode("[]")).isNull();
+        assertThat(MessageDecoder.decode("{\"type\":")).isNull();
+        assertThat(MessageDecoder.decode("não é json")).isNull();
+    }
+}
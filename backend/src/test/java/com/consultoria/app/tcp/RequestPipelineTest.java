@@ -0,0 +1,159 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp;
+
+import com.consultoria.app.tcp.frame.Frame;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.consultoria.app.tcp.route.CommandRouter;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestPipelineTest {
+    private final Map<String, CompletableFuture<Protocol.Response>> pending = new ConcurrentHashMap<>();
+    private final RecordingConnection connection = new RecordingConnection();
+    private CommandDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        CommandRouter router = new CommandRouter(null, new MetricsRegistry(), new AdmissionControl(0, 250), 0);
+        // Rota que só responde quando o teste completa o futuro do requestId
+        router.route("WORK", null).toAsync((message, user) -> {
+            CompletableFuture<Protocol.Response> future = new CompletableFuture<>();
+            pending.put(message.getRequestId(), future);
+            return future;
+        });
+        dispatcher = new CommandDispatcher(router);
+    }
+
+    @Test
+    void respostasForaDeOrdemLiberamOsSlotsEOBacklog() {
+        RequestPipeline pipeline = new RequestPipeline(dispatcher, Runnable::run, connection, 2);
+        AtomicInteger drained = new AtomicInteger();
+        AtomicInteger idle = new AtomicInteger();
+        pipeline.setOnBacklogDrained(drained::incrementAndGet);
+        pipeline.setOnIdle(idle::incrementAndGet);
+
+        pipeline.submit(frame("r1"));
+        pipeline.submit(frame("r2"));
+        pipeline.submit(frame("r3"));
+        assertThat(pipeline.getInFlight()).isEqualTo(2);
+        assertThat(pipeline.hasBacklog()).isTrue();
+        assertThat(pending).containsOnlyKeys("r1", "r2");
+
+        // r2 termina antes de r1: o slot vai para r3, que aguardava
+        complete("r2");
+        assertThat(pipeline.hasBacklog()).isFalse();
+        assertThat(drained.get()).isEqualTo(1);
+        assertThat(pipeline.getInFlight()).isEqualTo(2);
+        assertThat(pending).containsKey("r3");
+
+        complete("r3");
+        assertThat(idle.get()).isZero();
+        complete("r1");
+
+        assertThat(connection.requestIds()).containsExactly("r2", "r3", "r1");
+        assertThat(pipeline.getInFlight()).isZero();
+        assertThat(idle.get()).isEqualTo(1);
+    }
+
+    @Test
+    void executorCheioRespondeBusySemExecutarOComando() {
+        Executor rejecting = command -> {
+            throw new RejectedExecutionException();
+        };
+        RequestPipeline pipeline = new RequestPipeline(dispatcher, rejecting, connection, 4);
+
+        pipeline.submit(frame("r1"));
+
+        assertThat(pending).isEmpty();
+        assertThat(connection.sent).hasSize(1);
+        Protocol.Response response = connection.sent.get(0);
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getRequestId()).isEqualTo("r1");
+        assertThat(response.getData().get("code").getAsString()).isEqualTo(Protocol.BUSY);
+        assertThat(response.getData().get("retryAfterMs").getAsLong()).isEqualTo(250L);
+        assertThat(pipeline.getInFlight()).isZero();
+    }
+
+    @Test
+    void backlogRecusadoPeloExecutorNaoPrendeOsSlots() {
+        AtomicInteger accepted = new AtomicInteger();
+        // Aceita os dois primeiros comandos; recusa o que sai do backlog
+        Executor executor = command -> {
+            if (accepted.incrementAndGet() > 2) {
+                throw new RejectedExecutionException();
+            }
+            command.run();
+        };
+        RequestPipeline pipeline = new RequestPipeline(dispatcher, executor, connection, 2);
+
+        pipeline.submit(frame("r1"));
+        pipeline.submit(frame("r2"));
+        pipeline.submit(frame("r3"));
+        complete("r1");
+
+        assertThat(connection.requestIds()).containsExactly("r1", "r3");
+        assertThat(connection.sent.get(1).getData().get("code").getAsString()).isEqualTo(Protocol.BUSY);
+        assertThat(pipeline.getInFlight()).isEqualTo(1);
+        complete("r2");
+        assertThat(pipeline.getInFlight()).isZero();
+    }
+
+    private void complete(String requestId) {
+        pending.get(requestId).complete(Protocol.createSuccess(requestId, "ok", new JsonObject()));
+    }
+
+    private static Frame frame(String requestId) {
+        return new Frame("{\"type\":\"WORK\",\"requestId\":\"" + requestId + "\",\"data\":{}}");
+    }
+
+    /**
+     * Conexão que registra as respostas enviadas
+     */
+    private static class RecordingConnection implements ClientConnection {
+        final List<Protocol.Response> sent = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(Protocol.Response response) {
+            sent.add(response);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public String getClientIp() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public int getClientPort() {
+            return 50000;
+        }
+
+        @Override
+        public void addCloseListener(Runnable listener) {
+        }
+
+        String[] requestIds() {
+            return sent.stream().map(Protocol.Response::getRequestId).toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import com.consultoria.app.tcp.Protocol;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrameCodecTest {
+    private static final int MAX_FRAME = 1024 * 1024;
+
+    @Test
+    void frameJsonIdaEVolta() throws IOException {
+        byte[] frame = FrameCodec.encodeBinary("{\"type\":\"PING\"}", null);
+
+        assertThat(frame[4]).isEqualTo(FrameCodec.TYPE_JSON);
+        assertThat(FrameCodec.readLength(frame, 0)).isEqualTo(frame.length - FrameCodec.HEADER_SIZE);
+        Frame decoded = decode(frame, null);
+        assertThat(decoded.getJson()).isEqualTo("{\"type\":\"PING\"}");
+        assertThat(decoded.getBody()).isNull();
+    }
+
+    @Test
+    void frameComCorpoIdaEVolta() throws IOException {
+        byte[] body = { 0, 1, 2, (byte) 0xFF };
+        byte[] frame = FrameCodec.encodeBinary("{\"type\":\"FILE\"}", body);
+
+        assertThat(frame[4]).isEqualTo(FrameCodec.TYPE_JSON_WITH_BODY);
+        Frame decoded = decode(frame, null);
+        assertThat(decoded.getJson()).isEqualTo("{\"type\":\"FILE\"}");
+        assertThat(decoded.getBody()).containsExactly(body);
+    }
+
+    @Test
+    void tamanhoDeJsonInvalidoNoCorpoGeraIOException() {
+        byte[] frame = FrameCodec.encodeBinary("{}", new byte[] { 1 });
+        // Tamanho do JSON maior que o payload
+        frame[FrameCodec.HEADER_SIZE + 3] = 100;
+
+        assertThatThrownBy(() -> decode(frame, null)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void compressaoIdaEVoltaMantemOContextoEntreFrames() throws IOException {
+        FrameCompressor sender = new FrameCompressor(64, MAX_FRAME);
+        FrameCompressor receiver = new FrameCompressor(64, MAX_FRAME);
+        try {
+            for (int i = 0; i < 5; i++) {
+                String json = json(2000, i);
+                byte[] body = i % 2 == 0 ? null : "corpo binário".getBytes(StandardCharsets.UTF_8);
+                byte[] frame = sender.compressFrame(FrameCodec.encodeBinary(json, body));
+                assertThat(frame[4] & FrameCodec.FLAG_DEFLATE).isNotZero();
+
+                Frame decoded = decode(frame, receiver);
+                assertThat(decoded.getJson()).isEqualTo(json);
+                assertThat(decoded.getBody()).isEqualTo(body);
+            }
+
+            // Abaixo do limite o frame segue sem compressão
+            byte[] small = sender.compressFrame(FrameCodec.encodeBinary("{}", null));
+            assertThat(small[4]).isEqualTo(FrameCodec.TYPE_JSON);
+            assertThat(decode(small, receiver).getJson()).isEqualTo("{}");
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    void frameDescomprimidoAlemDoLimiteGeraIOException() {
+        FrameCompressor sender = new FrameCompressor(0, 4 * MAX_FRAME);
+        FrameCompressor receiver = new FrameCompressor(0, 64 * 1024);
+        try {
+            // 1 MB de zeros comprime para poucos KB
+            byte[] bomb = sender.compressFrame(FrameCodec.encodeBinary(new String(new char[MAX_FRAME]), null));
+            assertThat(bomb.length).isLessThan(64 * 1024);
+
+            assertThatThrownBy(() -> decode(bomb, receiver)).isInstanceOf(IOException.class)
+                    .hasMessageContaining("limite");
+        } finally {
+            sender.close();
+            receiver.close();
+        }
+    }
+
+    @Test
+    void frameComprimidoSemCompressaoNegociadaGeraIOException() {
+        FrameCompressor sender = new FrameCompressor(0, MAX_FRAME);
+        try {
+            byte[] frame = sender.compressFrame(FrameCodec.encodeBinary(json(500, 0), null));
+
+            assertThatThrownBy(() -> decode(frame, null)).isInstanceOf(IOException.class);
+        } finally {
+            sender.close();
+        }
+    }
+
+    @Test
+    void encodeNewlineComCorpoNaoAlteraAResposta() {
+        JsonObject data = new JsonObject();
+        data.addProperty("name", "foto.png");
+        Protocol.Response response = Protocol.createSuccess("r1", "ok", data);
+        response.setBody(new byte[] { 1, 2, 3 });
+
+        String line = new String(FrameCodec.encode(Framing.NEWLINE, response), StandardCharsets.UTF_8);
+
+        assertThat(line).endsWith("\n");
+        JsonObject encoded = JsonParser.parseString(line.trim()).getAsJsonObject().getAsJsonObject("data");
+        assertThat(encoded.get("name").getAsString()).isEqualTo("foto.png");
+        assertThat(encoded.get("body").getAsString()).isEqualTo("AQID");
+        // Resposta compartilhada (ex.: push) continua sem o campo body
+        assertThat(response.getData()).isSameAs(data);
+        assertThat(data.has("body")).isFalse();
+    }
+
+    private static Frame decode(byte[] frame, FrameCompressor compressor) throws IOException {
+        int length = FrameCodec.readLength(frame, 0);
+        return FrameCodec.decodePayload(frame[4], Arrays.copyOfRange(frame, FrameCodec.HEADER_SIZE,
+                FrameCodec.HEADER_SIZE + length), 0, length, compressor);
+    }
+
+    private static String json(int fields, int seed) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < fields / 20; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("\"otherPartyName\":\"nome ").append(seed).append('-').append(i).append('"');
+        }
+        return json.append('}').toString();
+    }
+}
@@ -0,0 +1,92 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.frame;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FrameReaderTest {
+    private static final int MAX_FRAME = 1024 * 1024;
+
+    @Test
+    void linhasDivididasEntreLeituras() throws IOException {
+        String first = "{\"type\":\"A\"}";
+        char[] big = new char[200 * 1024];
+        Arrays.fill(big, 'x');
+        String second = new String(big);
+        byte[] input = (first + "\r\n" + second + "\n{\"type\":\"C\"}").getBytes(StandardCharsets.UTF_8);
+        FrameReader reader = new FrameReader(new TrickleInputStream(input, 7), MAX_FRAME);
+
+        assertThat(reader.read(Framing.NEWLINE).getJson()).isEqualTo(first);
+        assertThat(reader.read(Framing.NEWLINE).getJson()).isEqualTo(second);
+        // Última linha sem delimitador
+        assertThat(reader.read(Framing.NEWLINE).getJson()).isEqualTo("{\"type\":\"C\"}");
+        assertThat(reader.read(Framing.NEWLINE)).isNull();
+    }
+
+    @Test
+    void trocaParaBinarioSemPerderBytesJaLidos() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("{\"type\":\"HELLO\"}\n".getBytes(StandardCharsets.UTF_8));
+        out.write(FrameCodec.encodeBinary("{\"type\":\"PING\"}", null));
+        out.write(FrameCodec.encodeBinary("{\"type\":\"FILE\"}", new byte[] { 9, 8 }));
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(out.toByteArray()), MAX_FRAME);
+
+        assertThat(reader.read(Framing.NEWLINE).getJson()).isEqualTo("{\"type\":\"HELLO\"}");
+        assertThat(reader.read(Framing.BINARY).getJson()).isEqualTo("{\"type\":\"PING\"}");
+        Frame file = reader.read(Framing.BINARY);
+        assertThat(file.getJson()).isEqualTo("{\"type\":\"FILE\"}");
+        assertThat(file.getBody()).containsExactly(9, 8);
+        assertThat(reader.read(Framing.BINARY)).isNull();
+    }
+
+    @Test
+    void linhaAcimaDoLimiteGeraIOException() {
+        byte[] input = new byte[2048];
+        Arrays.fill(input, (byte) 'x');
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(input), 1024);
+
+        assertThatThrownBy(() -> reader.read(Framing.NEWLINE)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void frameBinarioTruncadoGeraEOFException() {
+        byte[] frame = FrameCodec.encodeBinary("{\"type\":\"PING\"}", null);
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 3)),
+                MAX_FRAME);
+
+        assertThatThrownBy(() -> reader.read(Framing.BINARY)).isInstanceOf(EOFException.class);
+    }
+
+    /**
+     * Entrega no máximo chunk bytes por leitura, como um socket lento
+     */
+    private static class TrickleInputStream extends InputStream {
+        private final ByteArrayInputStream in;
+        private final int chunk;
+
+        TrickleInputStream(byte[] bytes, int chunk) {
+            this.in = new ByteArrayInputStream(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, chunk));
+        }
+    }
+}
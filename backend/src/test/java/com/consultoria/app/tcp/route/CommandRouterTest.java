@@ -0,0 +1,118 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.route;
+
+import com.consultoria.app.model.User;
+import com.consultoria.app.tcp.AdmissionControl;
+import com.consultoria.app.tcp.MessageDecoder;
+import com.consultoria.app.tcp.Protocol;
+import com.consultoria.app.tcp.SessionManager;
+import com.consultoria.app.tcp.metrics.MetricsRegistry;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CommandRouterTest {
+    private SessionManager sessionManager;
+    private CommandRouter router;
+    private final AtomicReference<User> handledBy = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        sessionManager = mock(SessionManager.class);
+        when(sessionManager.validateSession("cliente")).thenReturn(user(1L, User.Role.USER));
+        when(sessionManager.validateSession("consultor")).thenReturn(user(2L, User.Role.CONSULTANT));
+
+        router = new CommandRouter(sessionManager, new MetricsRegistry(), new AdmissionControl(0, 200), 0);
+        router.route("PROJECT", "LIST").authenticated().to(this::ok);
+        router.route("PROJECT", "ADD").role(User.Role.CONSULTANT).requires("title", "description").to(this::ok);
+        router.route("PING", null).to(this::ok);
+    }
+
+    @Test
+    void rotaPublicaNaoValidaSessao() {
+        Protocol.Response response = dispatch("{\"type\":\"PING\",\"requestId\":\"r1\"}");
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(response.getRequestId()).isEqualTo("r1");
+        assertThat(handledBy.get()).isNull();
+        verify(sessionManager, never()).validateSession(null);
+    }
+
+    @Test
+    void sessaoInvalidaERecusada() {
+        Protocol.Response response = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"expirada\",\"data\":{\"action\":\"LIST\"}}");
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(response.getMessage()).isEqualTo("Sessão inválida ou expirada");
+    }
+
+    @Test
+    void rotaAutenticadaRecebeOUsuarioDaSessao() {
+        Protocol.Response response = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"cliente\",\"data\":{\"action\":\"list\"}}");
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(handledBy.get().getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void perfilDaRotaImplicaSessaoEPerfilCorreto() {
+        Protocol.Response anonymous = dispatch("{\"type\":\"PROJECT\",\"data\":{\"action\":\"ADD\",\"title\":\"t\",\"description\":\"d\"}}");
+        assertThat(anonymous.getMessage()).isEqualTo("Sessão inválida ou expirada");
+
+        Protocol.Response wrongRole = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"cliente\","
+                + "\"data\":{\"action\":\"ADD\",\"title\":\"t\",\"description\":\"d\"}}");
+        assertThat(wrongRole.isSuccess()).isFalse();
+        assertThat(wrongRole.getMessage()).isEqualTo("Permissão insuficiente: requer perfil CONSULTANT");
+
+        Protocol.Response allowed = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"consultor\","
+                + "\"data\":{\"action\":\"ADD\",\"title\":\"t\",\"description\":\"d\"}}");
+        assertThat(allowed.isSuccess()).isTrue();
+        assertThat(handledBy.get().getRole()).isEqualTo(User.Role.CONSULTANT);
+    }
+
+    @Test
+    void camposObrigatoriosAusentesOuNulos() {
+        Protocol.Response missing = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"consultor\",\"data\":{\"action\":\"ADD\"}}");
+        assertThat(missing.isSuccess()).isFalse();
+        assertThat(missing.getMessage()).isEqualTo("Campos obrigatórios: title, description");
+
+        // null explícito conta como ausente
+        Protocol.Response explicitNull = dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"consultor\","
+                + "\"data\":{\"action\":\"ADD\",\"title\":\"t\",\"description\":null}}");
+        assertThat(explicitNull.getMessage()).isEqualTo("Campos obrigatórios: description");
+        assertThat(handledBy.get()).isNull();
+    }
+
+    @Test
+    void comandoOuActionDesconhecidos() {
+        assertThat(dispatch("{\"type\":\"NADA\"}").getMessage()).isEqualTo("Comando desconhecido: NADA");
+        assertThat(dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"cliente\",\"data\":{\"action\":\"REMOVE\"}}")
+                .getMessage()).isEqualTo("Action inválida: REMOVE");
+        assertThat(dispatch("{\"type\":\"PROJECT\",\"sessionId\":\"cliente\"}").getMessage())
+                .isEqualTo("Campo 'action' obrigatório (ADD, LIST)");
+    }
+
+    private Protocol.Response dispatch(String json) {
+        return router.dispatch(MessageDecoder.decode(json));
+    }
+
+    private Protocol.Response ok(Protocol.Message message, User user) {
+        handledBy.set(user);
+        return Protocol.createSuccess(message.getRequestId(), "ok", new JsonObject());
+    }
+
+    private static User user(long id, User.Role role) {
+        User user = new User();
+        user.setId(id);
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,109 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactSessionTableTest {
+    private static final long EPOCH = 1_700_000_000_000L;
+    private static final long TIMEOUT = 60_000;
+
+    @Test
+    void cresceERemoveSemPerderSessoesDoMesmoCluster() {
+        // Capacidade mínima: os segmentos crescem várias vezes
+        CompactSessionTable table = new CompactSessionTable(0, EPOCH);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            table.put(id, CompactSessionTable.principal(i, role(i)), EPOCH);
+        }
+        assertThat(table.size()).isEqualTo(5000);
+
+        // Remoção com deslocamento para trás: as sessões seguintes da sonda continuam acessíveis
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertThat(table.remove(ids.get(i))).isTrue();
+        }
+        assertThat(table.remove(ids.get(0))).isFalse();
+        assertThat(table.size()).isEqualTo(2500);
+
+        for (int i = 0; i < ids.size(); i++) {
+            User user = table.touch(ids.get(i), EPOCH + 1000, TIMEOUT);
+            if (i % 2 == 0) {
+                assertThat(user).isNull();
+            } else {
+                assertThat(user).isNotNull();
+                assertThat(user.getId()).isEqualTo(i);
+                assertThat(user.getRole()).isEqualTo(role(i));
+            }
+        }
+    }
+
+    @Test
+    void putSubstituiSessaoExistente() {
+        CompactSessionTable table = new CompactSessionTable(16, EPOCH);
+        UUID id = UUID.randomUUID();
+        table.put(id, CompactSessionTable.principal(1, User.Role.USER), EPOCH);
+        table.put(id, CompactSessionTable.principal(2, User.Role.CONSULTANT), EPOCH);
+
+        assertThat(table.size()).isEqualTo(1);
+        User user = table.touch(id, EPOCH, TIMEOUT);
+        assertThat(user.getId()).isEqualTo(2L);
+        assertThat(user.getRole()).isEqualTo(User.Role.CONSULTANT);
+    }
+
+    @Test
+    void touchRenovaAtividadeEExpiraDepoisDoTimeout() {
+        CompactSessionTable table = new CompactSessionTable(16, EPOCH);
+        UUID id = UUID.randomUUID();
+        table.put(id, CompactSessionTable.principal(7, User.Role.USER), EPOCH);
+
+        assertThat(table.touch(id, EPOCH + 50_000, TIMEOUT)).isNotNull();
+        // Conta a partir do último touch
+        assertThat(table.touch(id, EPOCH + 100_000, TIMEOUT)).isNotNull();
+        assertThat(table.touch(id, EPOCH + 161_000, TIMEOUT)).isNull();
+    }
+
+    @Test
+    void varreduraCompletaRemoveSomenteAsInativas() {
+        CompactSessionTable table = new CompactSessionTable(0, EPOCH);
+        List<UUID> stale = new ArrayList<>();
+        List<UUID> active = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            UUID id = UUID.randomUUID();
+            table.put(id, CompactSessionTable.principal(i, User.Role.USER), EPOCH);
+            (i % 3 == 0 ? active : stale).add(id);
+        }
+        long now = EPOCH + 2 * TIMEOUT;
+        for (UUID id : active) {
+            table.touch(id, EPOCH + TIMEOUT, TIMEOUT);
+        }
+
+        // Uma volta completa: 64 segmentos, 8 por chamada
+        List<CompactSessionTable.Expired> expired = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            expired.addAll(table.sweep(now, TIMEOUT));
+        }
+
+        Set<UUID> expiredIds = expired.stream().map(CompactSessionTable.Expired::getSessionId)
+                .collect(Collectors.toSet());
+        assertThat(expiredIds).containsExactlyInAnyOrderElementsOf(stale);
+        assertThat(table.size()).isEqualTo(active.size());
+        for (UUID id : active) {
+            assertThat(table.touch(id, now, TIMEOUT)).isNotNull();
+        }
+        assertThat(table.export()).hasSize(active.size());
+    }
+
+    private static User.Role role(int i) {
+        return i % 5 == 0 ? User.Role.CONSULTANT : User.Role.USER;
+    }
+}
@@ -0,0 +1,78 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionSnapshotTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void gravaELeAsMesmasSessoes() throws IOException {
+        Path file = dir.resolve("sessions.snapshot");
+        List<SessionSnapshot.Entry> entries = entries(100);
+        SessionSnapshot.write(file, entries, 123L);
+
+        List<SessionSnapshot.Entry> read = SessionSnapshot.read(file);
+        assertThat(read).hasSize(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertThat(read.get(i).getSessionId()).isEqualTo(entries.get(i).getSessionId());
+            assertThat(read.get(i).getUserId()).isEqualTo(entries.get(i).getUserId());
+            assertThat(read.get(i).getRole()).isEqualTo(entries.get(i).getRole());
+            assertThat(read.get(i).getLastActivity()).isEqualTo(entries.get(i).getLastActivity());
+        }
+        assertThat(Files.exists(dir.resolve("sessions.snapshot.tmp"))).isFalse();
+    }
+
+    @Test
+    void arquivoAusenteDevolveListaVazia() throws IOException {
+        assertThat(SessionSnapshot.read(dir.resolve("inexistente"))).isEmpty();
+    }
+
+    @Test
+    void arquivoTruncadoGeraIOException() throws IOException {
+        Path file = dir.resolve("sessions.snapshot");
+        SessionSnapshot.write(file, entries(10), 0L);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 20));
+
+        assertThatThrownBy(() -> SessionSnapshot.read(file)).isInstanceOf(IOException.class);
+
+        Files.write(file, Arrays.copyOf(bytes, 10));
+        assertThatThrownBy(() -> SessionSnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void byteAlteradoFalhaNoCrc() throws IOException {
+        Path file = dir.resolve("sessions.snapshot");
+        SessionSnapshot.write(file, entries(10), 0L);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[30] ^= 0x40;
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> SessionSnapshot.read(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("CRC");
+    }
+
+    private static List<SessionSnapshot.Entry> entries(int count) {
+        List<SessionSnapshot.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entries.add(new SessionSnapshot.Entry(UUID.randomUUID(), i,
+                    i % 2 == 0 ? User.Role.USER : User.Role.CONSULTANT, 1_700_000_000_000L + i));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,79 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import com.consultoria.app.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionTokensTest {
+    private static final long TTL = 60_000;
+    private static final byte[] SECRET = "segredo-de-teste-com-32-bytes!!!".getBytes(StandardCharsets.UTF_8);
+
+    private final SessionTokens tokens = new SessionTokens(SECRET, TTL);
+
+    @Test
+    void tokenValidoDevolveAsClaims() {
+        long before = System.currentTimeMillis();
+        String token = tokens.issue(CompactSessionTable.principal(42, User.Role.CONSULTANT));
+
+        assertThat(SessionTokens.isToken(token)).isTrue();
+        SessionTokens.Claims claims = tokens.verify(token, before);
+        assertThat(claims).isNotNull();
+        assertThat(claims.getUserId()).isEqualTo(42L);
+        assertThat(claims.getRole()).isEqualTo(User.Role.CONSULTANT);
+        assertThat(claims.getExpiresAt()).isBetween(before + TTL, System.currentTimeMillis() + TTL);
+    }
+
+    @Test
+    void tokenVencidoEInvalido() {
+        String token = tokens.issue(CompactSessionTable.principal(1, User.Role.USER));
+        long expiresAt = tokens.verify(token, 0).getExpiresAt();
+
+        assertThat(tokens.verify(token, expiresAt - 1)).isNotNull();
+        assertThat(tokens.verify(token, expiresAt)).isNull();
+    }
+
+    @Test
+    void payloadAlteradoEInvalido() {
+        String token = tokens.issue(CompactSessionTable.principal(1, User.Role.USER));
+        int dot = token.indexOf('.', SessionTokens.PREFIX.length());
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(SessionTokens.PREFIX.length(), dot));
+        // Troca o userId mantendo a assinatura original
+        payload[15] ^= 1;
+        String tampered = SessionTokens.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(payload)
+                + token.substring(dot);
+
+        assertThat(tokens.verify(tampered, 0)).isNull();
+    }
+
+    @Test
+    void assinaturaAlteradaEInvalida() {
+        String token = tokens.issue(CompactSessionTable.principal(1, User.Role.USER));
+        char last = token.charAt(token.length() - 2);
+        String tampered = token.substring(0, token.length() - 2) + (last == 'A' ? 'B' : 'A')
+                + token.charAt(token.length() - 1);
+
+        assertThat(tokens.verify(tampered, 0)).isNull();
+    }
+
+    @Test
+    void tokenDeOutroSegredoEInvalido() {
+        SessionTokens other = new SessionTokens("outro-segredo".getBytes(StandardCharsets.UTF_8), TTL);
+        String token = other.issue(CompactSessionTable.principal(1, User.Role.USER));
+
+        assertThat(tokens.verify(token, 0)).isNull();
+    }
+
+    @Test
+    void tokenMalformadoEInvalido() {
+        assertThat(tokens.verify(null, 0)).isNull();
+        assertThat(tokens.verify("3f2a9c1e-0000-0000-0000-000000000000", 0)).isNull();
+        assertThat(tokens.verify(SessionTokens.PREFIX + "semponto", 0)).isNull();
+        assertThat(tokens.verify(SessionTokens.PREFIX + "@@@.@@@", 0)).isNull();
+        assertThat(tokens.verify(SessionTokens.PREFIX + "AAAA.AAAA", 0)).isNull();
+    }
+}
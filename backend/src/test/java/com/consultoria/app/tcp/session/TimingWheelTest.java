@@ -0,0 +1,108 @@
+// Criado por Octavio Nascimento
+package com.consultoria.app.tcp.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+
+    /**
+     * Entrada com prazo ajustável (sessão que teve atividade)
+     */
+    private static class TestTimeout extends TimingWheel.Timeout {
+        long deadline;
+
+        TestTimeout(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected long deadline() {
+            return deadline;
+        }
+    }
+
+    @Test
+    void entradaDeNivelAltoDesceEVenceNoTickExato() {
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        // 5000 ticks: começa no nível 2 e desce pelos níveis 1 e 0
+        TestTimeout timeout = new TestTimeout(5000 * TICK);
+        assertThat(wheel.schedule(timeout)).isTrue();
+
+        for (long tick = 1; tick < 5000; tick++) {
+            assertThat(wheel.advance(tick * TICK)).as("tick %d", tick).isEmpty();
+        }
+        assertThat(wheel.advance(5000 * TICK)).containsExactly(timeout);
+        assertThat(timeout.isScheduled()).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void saltoGrandeVenceTodasAsEntradasNoCaminho() {
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        List<TestTimeout> timeouts = new ArrayList<>();
+        for (long ticks : new long[] { 1, 63, 64, 65, 4095, 4096, 70000 }) {
+            TestTimeout timeout = new TestTimeout(ticks * TICK);
+            wheel.schedule(timeout);
+            timeouts.add(timeout);
+        }
+        TestTimeout later = new TestTimeout(70001 * TICK);
+        wheel.schedule(later);
+
+        assertThat(wheel.advance(70000 * TICK)).containsExactlyInAnyOrderElementsOf(timeouts);
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(70001 * TICK)).containsExactly(later);
+    }
+
+    @Test
+    void prazoAdiadoEReagendado() {
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        TestTimeout timeout = new TestTimeout(100 * TICK);
+        wheel.schedule(timeout);
+
+        // Atividade depois de agendada: o slot vence, mas a entrada volta à roda
+        timeout.deadline = 300 * TICK;
+        assertThat(wheel.advance(100 * TICK)).isEmpty();
+        assertThat(timeout.isScheduled()).isTrue();
+        assertThat(wheel.advance(299 * TICK)).isEmpty();
+        assertThat(wheel.advance(300 * TICK)).containsExactly(timeout);
+    }
+
+    @Test
+    void entradaCanceladaNaoVence() {
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        TestTimeout timeout = new TestTimeout(50 * TICK);
+        wheel.schedule(timeout);
+
+        assertThat(wheel.cancel(timeout)).isTrue();
+        assertThat(wheel.cancel(timeout)).isFalse();
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advance(100 * TICK)).isEmpty();
+    }
+
+    @Test
+    void prazoJaVencidoNaoEAgendado() {
+        TimingWheel wheel = new TimingWheel(TICK, 1000 * TICK);
+        assertThat(wheel.schedule(new TestTimeout(1000 * TICK))).isFalse();
+        assertThat(wheel.schedule(new TestTimeout(10 * TICK))).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void prazoAlemDoAlcanceDaRodaVenceNoPrazo() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        // 64^4 ticks é o alcance dos quatro níveis
+        long deadline = 20_000_000L;
+        TestTimeout timeout = new TestTimeout(deadline);
+        assertThat(wheel.schedule(timeout)).isTrue();
+
+        assertThat(wheel.advance(16_777_216L)).isEmpty();
+        assertThat(wheel.advance(deadline - 1)).isEmpty();
+        assertThat(wheel.advance(deadline)).containsExactly(timeout);
+    }
+}
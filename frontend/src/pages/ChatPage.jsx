@@ -16,38 +16,67 @@ const ChatPage = () => {
     const [loading, setLoading] = useState(true);
     const [sending, setSending] = useState(false);
     const [isRoadmapModalOpen, setIsRoadmapModalOpen] = useState(false);
+    const [hasOlder, setHasOlder] = useState(false);
+    const [loadingOlder, setLoadingOlder] = useState(false);
     const messagesEndRef = useRef(null);
-    const stopPollingRef = useRef(null);
+    const unsubscribeRef = useRef(null);
+    // Mensagens antigas entram no topo: não rola para o fim
+    const skipScrollRef = useRef(false);
+    const lastReadRef = useRef(0);
 
     const user = authService.getCurrentUser();
 
     useEffect(() => {
+        lastReadRef.current = 0;
         loadData();
         
-        // Inicia polling via TCP
-        console.log('[CHAT-PAGE] Iniciando polling via TCP');
-        stopPollingRef.current = tcpService.startChatPolling(
+        // Recebe novas mensagens via push do servidor TCP
+        console.log('[CHAT-PAGE] Inscrevendo no chat via TCP');
+        unsubscribeRef.current = tcpService.subscribeToChat(
             parseInt(requestId),
-            user?.userId,
-            (newMessages) => {
-                console.log(`[CHAT-PAGE] Mensagens atualizadas: ${newMessages.length}`);
-                setMessages(formatTCPMessages(newMessages));
+            (newMessage) => {
+                console.log(`[CHAT-PAGE] Nova mensagem recebida: ${newMessage.id}`);
+                appendMessages(formatTCPMessages([newMessage]));
             },
-            3000
+            (droppedId) => {
+                setMessages(current => current.filter(message => message.id !== droppedId));
+            }
         );
 
         return () => {
-            // Para polling quando componente é desmontado
-            if (stopPollingRef.current) {
-                stopPollingRef.current();
+            // Cancela inscrição quando componente é desmontado
+            if (unsubscribeRef.current) {
+                unsubscribeRef.current();
             }
         };
     }, [requestId]);
 
     useEffect(() => {
+        if (skipScrollRef.current) {
+            skipScrollRef.current = false;
+            return;
+        }
         scrollToBottom();
     }, [messages]);
 
+    // Guarda o histórico para a próxima abertura pedir só as novas
+    useEffect(() => {
+        if (!loading) {
+            tcpService.cacheChat(parseInt(requestId), messages, hasOlder);
+        }
+    }, [messages, hasOlder, loading]);
+
+    // Chat aberto: marca como lida até a última mensagem exibida (zera as não lidas da caixa de entrada)
+    useEffect(() => {
+        if (loading || messages.length === 0) return;
+        const lastId = messages[messages.length - 1].id;
+        if (lastId > lastReadRef.current) {
+            lastReadRef.current = lastId;
+            tcpService.markChatRead(parseInt(requestId), lastId)
+                .catch(error => console.error('[CHAT-PAGE] Erro ao marcar mensagens como lidas:', error));
+        }
+    }, [messages, loading]);
+
     const formatTCPMessages = (tcpMessages) => {
         return tcpMessages.map(msg => ({
             id: msg.id,
@@ -60,18 +89,44 @@ const ChatPage = () => {
         }));
     };
 
+    // Acrescenta mensagens ignorando as já exibidas
+    const appendMessages = (newMessages) => {
+        setMessages(current => {
+            const knownIds = new Set(current.map(msg => msg.id));
+            return [...current, ...newMessages.filter(msg => !knownIds.has(msg.id))];
+        });
+    };
+
     const loadData = async () => {
         try {
             setLoading(true);
             console.log('[CHAT-PAGE] Carregando dados do projeto e mensagens via TCP');
             
+            const projectId = parseInt(requestId);
             const projectData = await projectService.getProjectById(requestId);
-            const messagesResponse = await tcpService.getChatMessages(parseInt(requestId), user?.userId);
+            const cached = tcpService.getCachedChat(projectId);
+            const lastId = cached && cached.messages.length > 0
+                ? cached.messages[cached.messages.length - 1].id
+                : null;
+            let messagesResponse = await tcpService.getChatMessages(projectId, user?.userId,
+                lastId ? { afterId: lastId } : {});
             
             setProject(projectData);
             
+            if (lastId && messagesResponse.success && !messagesResponse.data.hasMore) {
+                // Chat já aberto antes: só chegaram as mensagens posteriores à última vista
+                setMessages([...cached.messages, ...formatTCPMessages(messagesResponse.data.messages)]);
+                setHasOlder(cached.hasOlder);
+                console.log(`[CHAT-PAGE] ✓ ${messagesResponse.data.messages.length} mensagens novas desde a última visita`);
+                return;
+            }
+            if (lastId) {
+                // Muitas mensagens novas: recomeça pela página mais recente
+                messagesResponse = await tcpService.getChatMessages(projectId, user?.userId);
+            }
             if (messagesResponse.success && messagesResponse.data.messages) {
                 setMessages(formatTCPMessages(messagesResponse.data.messages));
+                setHasOlder(messagesResponse.data.hasMore);
                 console.log(`[CHAT-PAGE] ✓ ${messagesResponse.data.messages.length} mensagens carregadas`);
             }
         } catch (err) {
@@ -83,6 +138,27 @@ const ChatPage = () => {
         }
     };
 
+    // Próxima página para trás, a partir da mensagem mais antiga exibida
+    const loadOlderMessages = async () => {
+        if (loadingOlder || messages.length === 0) return;
+
+        setLoadingOlder(true);
+        try {
+            const response = await tcpService.getChatMessages(parseInt(requestId), user?.userId,
+                { beforeId: messages[0].id });
+            if (response.success && response.data.messages) {
+                skipScrollRef.current = true;
+                const older = formatTCPMessages(response.data.messages);
+                setMessages(current => [...older, ...current]);
+                setHasOlder(response.data.hasMore);
+            }
+        } catch (err) {
+            console.error('[CHAT-PAGE] Erro ao carregar mensagens anteriores:', err);
+        } finally {
+            setLoadingOlder(false);
+        }
+    };
+
     const scrollToBottom = () => {
         messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
     };
@@ -104,11 +180,14 @@ const ChatPage = () => {
                 console.log('[CHAT-PAGE] ✓ Mensagem enviada com sucesso');
                 setMessage('');
                 
-                // Atualiza mensagens imediatamente
-                const messagesResponse = await tcpService.getChatMessages(parseInt(requestId), user?.userId);
-                if (messagesResponse.success && messagesResponse.data.messages) {
-                    setMessages(formatTCPMessages(messagesResponse.data.messages));
-                }
+                // A resposta do SEND já traz a mensagem salva
+                appendMessages(formatTCPMessages([{
+                    id: response.data.messageId,
+                    senderId: response.data.senderId,
+                    senderName: response.data.senderName,
+                    content: response.data.content,
+                    timestamp: response.data.timestamp
+                }]));
             } else {
                 alert('Erro ao enviar mensagem: ' + response.message);
             }
@@ -222,6 +301,17 @@ const ChatPage = () => {
 
                         {/* Messages Area */}
                         <div className="flex-1 overflow-y-auto p-6 space-y-4 bg-gray-900">
+                            {hasOlder && (
+                                <div className="text-center">
+                                    <button
+                                        onClick={loadOlderMessages}
+                                        disabled={loadingOlder}
+                                        className="text-sm text-blue-400 hover:text-blue-300 disabled:opacity-50 transition-colors"
+                                    >
+                                        {loadingOlder ? 'Carregando...' : 'Carregar mensagens anteriores'}
+                                    </button>
+                                </div>
+                            )}
                             {messages.length === 0 ? (
                                 <div className="text-center py-12">
                                     <svg className="w-16 h-16 text-gray-300 mx-auto mb-4" fill="none" stroke="currentColor" viewBox="0 0 24 24">
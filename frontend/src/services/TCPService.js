@@ -6,6 +6,20 @@ class TCPService {
     constructor() {
         this.sessionId = localStorage.getItem('sessionId');
         this.connected = false;
+        this.chatSubscriptions = new Set();
+        // Histórico já carregado por projeto: reabrir o chat pede só o que chegou depois
+        this.chatHistory = new Map();
+
+        // Assinaturas são por conexão: retoma a sessão e refaz após reconectar
+        tcpClient.onConnect(() => {
+            if (this.sessionId) {
+                this.resume().catch(error => console.error('[TCP-AUTH] Erro ao retomar sessão:', error));
+            }
+            this.chatSubscriptions.forEach(projectId => {
+                tcpClient.send('CHAT', { action: 'SUBSCRIBE', projectId }, this.sessionId)
+                    .catch(error => console.error('[TCP-CHAT] Erro ao refazer inscrição:', error));
+            });
+        });
     }
 
     // Inicializa conexão
@@ -54,6 +68,19 @@ class TCPService {
         return response;
     }
 
+    // Reaproveita a sessão salva (ex.: após restart do servidor) sem novo login
+    async resume() {
+        const response = await tcpClient.send('AUTH', {
+            action: 'RESUME'
+        }, this.sessionId);
+
+        if (response.success) {
+            localStorage.setItem('user', JSON.stringify(response.data));
+        }
+
+        return response;
+    }
+
     async logout() {
         await tcpClient.send('AUTH', {
             action: 'LOGOUT'
@@ -132,18 +159,23 @@ class TCPService {
     }
 
     /**
-     * Obtém mensagens de um projeto via TCP
+     * Obtém uma página de mensagens de um projeto via TCP (ordem cronológica)
      * @param {number} projectId - ID do projeto
      * @param {number} userId - ID do usuário
+     * @param {{beforeId?: number, afterId?: number, limit?: number}} cursor - sem cursor: mais recentes;
+     *        beforeId: anteriores a essa mensagem; afterId: novas desde essa mensagem
      */
-    async getChatMessages(projectId, userId) {
+    async getChatMessages(projectId, userId, { beforeId, afterId, limit } = {}) {
         console.log(`[TCP-CHAT] Buscando mensagens - Projeto: ${projectId}, Usuário: ${userId}`);
         
         await this.init();
         const response = await tcpClient.send('CHAT', {
             action: 'GET_MESSAGES',
             projectId,
-            userId
+            userId,
+            ...(beforeId && { beforeId }),
+            ...(afterId && { afterId }),
+            ...(limit && { limit })
         }, this.sessionId);
 
         if (response.success) {
@@ -180,27 +212,124 @@ class TCPService {
     }
 
     /**
-     * Polling de mensagens - atualiza mensagens periodicamente
+     * Busca mensagens pelo texto nos projetos do usuário da sessão via TCP (mais recentes primeiro)
+     * @param {string} query - Termos da busca
+     * @param {{projectId?: number, beforeId?: number, limit?: number}} options - beforeId: próxima página
+     *        a partir da última mensagem encontrada
+     */
+    async searchChat(query, { projectId, beforeId, limit } = {}) {
+        console.log(`[TCP-CHAT] Buscando "${query}" nas mensagens`);
+
+        await this.init();
+        const response = await tcpClient.send('CHAT', {
+            action: 'SEARCH',
+            query,
+            ...(projectId && { projectId }),
+            ...(beforeId && { beforeId }),
+            ...(limit && { limit })
+        }, this.sessionId);
+
+        if (response.success) {
+            console.log(`[TCP-CHAT] ✓ ${response.data.results.length} mensagens encontradas`);
+        } else {
+            console.error(`[TCP-CHAT] ✗ Erro na busca: ${response.message}`);
+        }
+
+        return response;
+    }
+
+    /**
+     * Marca as mensagens do projeto como lidas via TCP
+     * (usuário da sessão)
+     * @param {number} projectId - ID do projeto
+     * @param {number} messageId - Última mensagem lida (opcional; sem ela, até a última do projeto)
+     */
+    async markChatRead(projectId, messageId) {
+        await this.init();
+        const response = await tcpClient.send('CHAT', {
+            action: 'MARK_READ',
+            projectId,
+            ...(messageId && { messageId })
+        }, this.sessionId);
+
+        if (!response.success) {
+            console.error(`[TCP-CHAT] ✗ Erro ao marcar mensagens como lidas: ${response.message}`);
+        }
+
+        return response;
+    }
+
+    /**
+     * Recebe novas mensagens do projeto via push do servidor
+     * @param {number} projectId - ID do projeto
+     * @param {function} callback - Função chamada com cada nova mensagem
+     * @param {function} onDropped - Função chamada com o id de uma mensagem confirmada que não foi gravada (opcional)
+     * @returns {function} - Função para cancelar a inscrição
+     */
+    subscribeToChat(projectId, callback, onDropped) {
+        console.log(`[TCP-CHAT] Inscrevendo no chat do projeto ${projectId}`);
+
+        const removeListener = tcpClient.onPush((event, data) => {
+            if (event === 'CHAT_MESSAGE' && data.projectId === projectId) {
+                callback(data.message);
+            } else if (event === 'CHAT_MESSAGE_DROPPED' && data.projectId === projectId) {
+                console.warn(`[TCP-CHAT] Mensagem ${data.messageId} não foi gravada`);
+                this.chatHistory.delete(projectId);
+                if (onDropped) {
+                    onDropped(data.messageId);
+                }
+            }
+        });
+
+        this.chatSubscriptions.add(projectId);
+        this.init()
+            .then(() => tcpClient.send('CHAT', { action: 'SUBSCRIBE', projectId }, this.sessionId))
+            .catch(error => console.error('[TCP-CHAT] Erro ao inscrever no chat:', error));
+
+        return () => {
+            console.log(`[TCP-CHAT] Cancelando inscrição no chat do projeto ${projectId}`);
+            removeListener();
+            this.chatSubscriptions.delete(projectId);
+            tcpClient.send('CHAT', { action: 'UNSUBSCRIBE', projectId }, this.sessionId)
+                .catch(error => console.error('[TCP-CHAT] Erro ao cancelar inscrição:', error));
+        };
+    }
+
+    /**
+     * Histórico do chat guardado na última visita ao projeto
+     * @returns {{messages: Array, hasOlder: boolean} | undefined}
+     */
+    getCachedChat(projectId) {
+        return this.chatHistory.get(projectId);
+    }
+
+    cacheChat(projectId, messages, hasOlder) {
+        this.chatHistory.set(projectId, { messages, hasOlder });
+    }
+
+    /**
+     * Polling de mensagens - busca apenas as novas desde a última recebida
      * @param {number} projectId - ID do projeto
      * @param {number} userId - ID do usuário
-     * @param {function} callback - Função chamada com novas mensagens
+     * @param {function} callback - Função chamada com as novas mensagens
      * @param {number} interval - Intervalo em ms (padrão: 3000ms)
      * @returns {function} - Função para parar o polling
      */
     startChatPolling(projectId, userId, callback, interval = 3000) {
         console.log(`[TCP-CHAT] Iniciando polling de mensagens (intervalo: ${interval}ms)`);
         
-        let lastMessageCount = 0;
+        let lastMessageId = null;
         
         const poll = async () => {
             try {
-                const response = await this.getChatMessages(projectId, userId);
+                const response = await this.getChatMessages(projectId, userId,
+                    lastMessageId ? { afterId: lastMessageId } : {});
                 if (response.success && response.data.messages) {
                     const messages = response.data.messages;
-                    if (messages.length !== lastMessageCount) {
-                        console.log(`[TCP-CHAT] 📬 Novas mensagens detectadas: ${messages.length - lastMessageCount}`);
+                    if (messages.length > 0) {
+                        console.log(`[TCP-CHAT] 📬 Novas mensagens detectadas: ${messages.length}`);
                         callback(messages);
-                        lastMessageCount = messages.length;
+                        lastMessageId = messages[messages.length - 1].id;
                     }
                 }
             } catch (error) {
@@ -221,6 +350,22 @@ class TCPService {
         };
     }
 
+    // ===== LOTE =====
+
+    /**
+     * Envia vários comandos em um único BATCH (uma ida e volta)
+     * @param {Array<{type: string, data: object, requestId?: string, dependsOn?: string[]}>} commands
+     * @returns {Array} - Resultado de cada comando, na ordem enviada ({ success, message, data })
+     */
+    async batch(commands) {
+        await this.init();
+        const response = await tcpClient.send('BATCH', {
+            messages: commands
+        }, this.sessionId);
+
+        return response.data.results;
+    }
+
     // ===== UTILIDADES =====
 
     isAuthenticated() {
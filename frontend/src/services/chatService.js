@@ -7,8 +7,11 @@ const chatService = {
         return response.data;
     },
 
-    getMessages: async (projectId) => {
-        const response = await api.get(`/chat/${projectId}/messages`);
+    // Sem cursor: mensagens mais recentes; beforeId/afterId paginam pelo id (header X-Has-More)
+    getMessages: async (projectId, { beforeId, afterId, limit } = {}) => {
+        const response = await api.get(`/chat/${projectId}/messages`, {
+            params: { beforeId, afterId, limit }
+        });
         return response.data;
     }
 };
@@ -9,6 +9,7 @@ class TCPClient {
         this.requestCounter = 0;
         this.onConnectCallbacks = [];
         this.onDisconnectCallbacks = [];
+        this.pushListeners = [];
         this.reconnectAttempts = 0;
         this.maxReconnectAttempts = 5;
     }
@@ -38,6 +39,13 @@ class TCPClient {
                 this.socket.onmessage = (event) => {
                     try {
                         const response = JSON.parse(event.data);
+
+                        // Frames PUSH chegam sem requisição (ex.: nova mensagem de chat)
+                        if (response.type === 'PUSH') {
+                            this.pushListeners.forEach(cb => cb(response.message, response.data));
+                            return;
+                        }
+
                         console.log('📩 Resposta recebida:', response);
 
                         // Chama callback correspondente
@@ -119,6 +127,14 @@ class TCPClient {
         this.onConnectCallbacks.push(callback);
     }
 
+    // Registra listener para frames PUSH; retorna função para remover
+    onPush(callback) {
+        this.pushListeners.push(callback);
+        return () => {
+            this.pushListeners = this.pushListeners.filter(cb => cb !== callback);
+        };
+    }
+
     // Registra listener para desconexão
     onDisconnect(callback) {
         this.onDisconnectCallbacks.push(callback);